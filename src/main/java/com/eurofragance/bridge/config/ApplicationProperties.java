@@ -2,6 +2,11 @@ package com.eurofragance.bridge.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Properties specific to Bridge.
  * <p>
@@ -10,4 +15,947 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final UserSync userSync = new UserSync();
+
+    private final UserImport userImport = new UserImport();
+
+    private final JwtCache jwtCache = new JwtCache();
+
+    private final Jwk jwk = new Jwk();
+
+    private final Cache cache = new Cache();
+
+    private final Search search = new Search();
+
+    public UserSync getUserSync() {
+        return userSync;
+    }
+
+    public UserImport getUserImport() {
+        return userImport;
+    }
+
+    public JwtCache getJwtCache() {
+        return jwtCache;
+    }
+
+    public Jwk getJwk() {
+        return jwk;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Search getSearch() {
+        return search;
+    }
+
+    public static class UserSync {
+
+        private final FingerprintCache fingerprintCache = new FingerprintCache();
+
+        private final WriteBehind writeBehind = new WriteBehind();
+
+        public FingerprintCache getFingerprintCache() {
+            return fingerprintCache;
+        }
+
+        public WriteBehind getWriteBehind() {
+            return writeBehind;
+        }
+
+        public static class FingerprintCache {
+
+            private boolean enabled = true;
+
+            private long timeToLiveSeconds = 300;
+
+            private long maxEntries = 10000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+        }
+
+        public static class WriteBehind {
+
+            private boolean enabled = false;
+
+            private int queueCapacity = 10000;
+
+            private int batchSize = 25;
+
+            private long flushIntervalMs = 500;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getFlushIntervalMs() {
+                return flushIntervalMs;
+            }
+
+            public void setFlushIntervalMs(long flushIntervalMs) {
+                this.flushIntervalMs = flushIntervalMs;
+            }
+        }
+    }
+
+    public static class UserImport {
+
+        private int batchSize = 500;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class JwtCache {
+
+        private boolean enabled = true;
+
+        private long maxEntries = 10000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    public static class Jwk {
+
+        private long refreshIntervalSeconds = 300;
+
+        private long minRefreshIntervalSeconds = 30;
+
+        private int connectTimeoutMs = 2000;
+
+        private int readTimeoutMs = 5000;
+
+        public long getRefreshIntervalSeconds() {
+            return refreshIntervalSeconds;
+        }
+
+        public void setRefreshIntervalSeconds(long refreshIntervalSeconds) {
+            this.refreshIntervalSeconds = refreshIntervalSeconds;
+        }
+
+        public long getMinRefreshIntervalSeconds() {
+            return minRefreshIntervalSeconds;
+        }
+
+        public void setMinRefreshIntervalSeconds(long minRefreshIntervalSeconds) {
+            this.minRefreshIntervalSeconds = minRefreshIntervalSeconds;
+        }
+
+        public int getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(int connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public int getReadTimeoutMs() {
+            return readTimeoutMs;
+        }
+
+        public void setReadTimeoutMs(int readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+        }
+    }
+
+    public static class Cache {
+
+        private String diskPath = "target/ehcache";
+
+        private final Map<String, Region> regions = new LinkedHashMap<>();
+
+        private final Invalidation invalidation = new Invalidation();
+
+        private final WarmUp warmUp = new WarmUp();
+
+        private final UnknownLogins unknownLogins = new UnknownLogins();
+
+        private final Snapshot snapshot = new Snapshot();
+
+        public String getDiskPath() {
+            return diskPath;
+        }
+
+        public void setDiskPath(String diskPath) {
+            this.diskPath = diskPath;
+        }
+
+        public Map<String, Region> getRegions() {
+            return regions;
+        }
+
+        public Invalidation getInvalidation() {
+            return invalidation;
+        }
+
+        public WarmUp getWarmUp() {
+            return warmUp;
+        }
+
+        public UnknownLogins getUnknownLogins() {
+            return unknownLogins;
+        }
+
+        public Snapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * Sizing and expiry of a cache region, unset values fall back to {@code jhipster.cache.ehcache}.
+         */
+        public static class Region {
+
+            private Long heapEntries;
+
+            private Long offHeapMb;
+
+            private Long diskMb;
+
+            private boolean diskPersistent = false;
+
+            private Long timeToLiveSeconds;
+
+            private Long timeToIdleSeconds;
+
+            public Long getHeapEntries() {
+                return heapEntries;
+            }
+
+            public void setHeapEntries(Long heapEntries) {
+                this.heapEntries = heapEntries;
+            }
+
+            public Long getOffHeapMb() {
+                return offHeapMb;
+            }
+
+            public void setOffHeapMb(Long offHeapMb) {
+                this.offHeapMb = offHeapMb;
+            }
+
+            public Long getDiskMb() {
+                return diskMb;
+            }
+
+            public void setDiskMb(Long diskMb) {
+                this.diskMb = diskMb;
+            }
+
+            public boolean isDiskPersistent() {
+                return diskPersistent;
+            }
+
+            public void setDiskPersistent(boolean diskPersistent) {
+                this.diskPersistent = diskPersistent;
+            }
+
+            public Long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(Long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public Long getTimeToIdleSeconds() {
+                return timeToIdleSeconds;
+            }
+
+            public void setTimeToIdleSeconds(Long timeToIdleSeconds) {
+                this.timeToIdleSeconds = timeToIdleSeconds;
+            }
+        }
+
+        public static class Invalidation {
+
+            private boolean enabled = false;
+
+            private String secret;
+
+            private List<String> peers = new ArrayList<>();
+
+            private long flushIntervalMs = 200;
+
+            private int maxKeysPerRegion = 1000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getSecret() {
+                return secret;
+            }
+
+            public void setSecret(String secret) {
+                this.secret = secret;
+            }
+
+            public List<String> getPeers() {
+                return peers;
+            }
+
+            public void setPeers(List<String> peers) {
+                this.peers = peers;
+            }
+
+            public long getFlushIntervalMs() {
+                return flushIntervalMs;
+            }
+
+            public void setFlushIntervalMs(long flushIntervalMs) {
+                this.flushIntervalMs = flushIntervalMs;
+            }
+
+            public int getMaxKeysPerRegion() {
+                return maxKeysPerRegion;
+            }
+
+            public void setMaxKeysPerRegion(int maxKeysPerRegion) {
+                this.maxKeysPerRegion = maxKeysPerRegion;
+            }
+        }
+
+        public static class WarmUp {
+
+            private boolean enabled = true;
+
+            private int maxUsers = 1000;
+
+            private long maxSeconds = 30;
+
+            private int batchSize = 100;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxUsers() {
+                return maxUsers;
+            }
+
+            public void setMaxUsers(int maxUsers) {
+                this.maxUsers = maxUsers;
+            }
+
+            public long getMaxSeconds() {
+                return maxSeconds;
+            }
+
+            public void setMaxSeconds(long maxSeconds) {
+                this.maxSeconds = maxSeconds;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+        }
+
+        public static class UnknownLogins {
+
+            private boolean enabled = false;
+
+            private int expectedLogins = 100000;
+
+            private double falsePositiveProbability = 0.01;
+
+            private long timeToLiveSeconds = 60;
+
+            private long maxEntries = 10000;
+
+            private long rebuildIntervalMs = 3600000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getExpectedLogins() {
+                return expectedLogins;
+            }
+
+            public void setExpectedLogins(int expectedLogins) {
+                this.expectedLogins = expectedLogins;
+            }
+
+            public double getFalsePositiveProbability() {
+                return falsePositiveProbability;
+            }
+
+            public void setFalsePositiveProbability(double falsePositiveProbability) {
+                this.falsePositiveProbability = falsePositiveProbability;
+            }
+
+            public long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getRebuildIntervalMs() {
+                return rebuildIntervalMs;
+            }
+
+            public void setRebuildIntervalMs(long rebuildIntervalMs) {
+                this.rebuildIntervalMs = rebuildIntervalMs;
+            }
+        }
+
+        public static class Snapshot {
+
+            private boolean enabled = false;
+
+            private String path = "target/cache-snapshot.bin";
+
+            private long maxAgeSeconds = 86400;
+
+            private int batchSize = 500;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+
+            public long getMaxAgeSeconds() {
+                return maxAgeSeconds;
+            }
+
+            public void setMaxAgeSeconds(long maxAgeSeconds) {
+                this.maxAgeSeconds = maxAgeSeconds;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+        }
+    }
+
+    public static class Search {
+
+        private final Indexer indexer = new Indexer();
+
+        private final Reindex reindex = new Reindex();
+
+        private final ResultCache resultCache = new ResultCache();
+
+        private final Lucene lucene = new Lucene();
+
+        private final Consistency consistency = new Consistency();
+
+        private final Export export = new Export();
+
+        private final RestClient restClient = new RestClient();
+
+        private int maxPageSize = 100;
+
+        private int maxSuggestions = 10;
+
+        public Indexer getIndexer() {
+            return indexer;
+        }
+
+        public Reindex getReindex() {
+            return reindex;
+        }
+
+        public ResultCache getResultCache() {
+            return resultCache;
+        }
+
+        public Lucene getLucene() {
+            return lucene;
+        }
+
+        public Consistency getConsistency() {
+            return consistency;
+        }
+
+        public Export getExport() {
+            return export;
+        }
+
+        public RestClient getRestClient() {
+            return restClient;
+        }
+
+        public int getMaxPageSize() {
+            return maxPageSize;
+        }
+
+        public void setMaxPageSize(int maxPageSize) {
+            this.maxPageSize = maxPageSize;
+        }
+
+        public int getMaxSuggestions() {
+            return maxSuggestions;
+        }
+
+        public void setMaxSuggestions(int maxSuggestions) {
+            this.maxSuggestions = maxSuggestions;
+        }
+
+        public static class Indexer {
+
+            private boolean enabled = true;
+
+            private int batchSize = 500;
+
+            private long flushIntervalMs = 1000;
+
+            private long initialBackoffMs = 1000;
+
+            private long maxBackoffMs = 60000;
+
+            private int maxAttempts = 10;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getFlushIntervalMs() {
+                return flushIntervalMs;
+            }
+
+            public void setFlushIntervalMs(long flushIntervalMs) {
+                this.flushIntervalMs = flushIntervalMs;
+            }
+
+            public long getInitialBackoffMs() {
+                return initialBackoffMs;
+            }
+
+            public void setInitialBackoffMs(long initialBackoffMs) {
+                this.initialBackoffMs = initialBackoffMs;
+            }
+
+            public long getMaxBackoffMs() {
+                return maxBackoffMs;
+            }
+
+            public void setMaxBackoffMs(long maxBackoffMs) {
+                this.maxBackoffMs = maxBackoffMs;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+        }
+
+        public static class ResultCache {
+
+            private boolean enabled = true;
+
+            private long maxEntries = 1000;
+
+            private long timeToLiveSeconds = 10;
+
+            private long refreshIntervalMs = 1000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public long getRefreshIntervalMs() {
+                return refreshIntervalMs;
+            }
+
+            public void setRefreshIntervalMs(long refreshIntervalMs) {
+                this.refreshIntervalMs = refreshIntervalMs;
+            }
+        }
+
+        public static class Lucene {
+
+            private String path;
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+        }
+
+        public static class Reindex {
+
+            private int batchSize = 1000;
+
+            private int replicas = 1;
+
+            private long checkpointIntervalMs = 10000;
+
+            private long catchUpMarginSeconds = 60;
+
+            private boolean deletePreviousIndices = true;
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public int getReplicas() {
+                return replicas;
+            }
+
+            public void setReplicas(int replicas) {
+                this.replicas = replicas;
+            }
+
+            public long getCheckpointIntervalMs() {
+                return checkpointIntervalMs;
+            }
+
+            public void setCheckpointIntervalMs(long checkpointIntervalMs) {
+                this.checkpointIntervalMs = checkpointIntervalMs;
+            }
+
+            public long getCatchUpMarginSeconds() {
+                return catchUpMarginSeconds;
+            }
+
+            public void setCatchUpMarginSeconds(long catchUpMarginSeconds) {
+                this.catchUpMarginSeconds = catchUpMarginSeconds;
+            }
+
+            public boolean isDeletePreviousIndices() {
+                return deletePreviousIndices;
+            }
+
+            public void setDeletePreviousIndices(boolean deletePreviousIndices) {
+                this.deletePreviousIndices = deletePreviousIndices;
+            }
+        }
+
+        public static class Consistency {
+
+            private boolean enabled = true;
+
+            private long checkIntervalMs = 60000;
+
+            private int rangeSize = 10000;
+
+            private int buckets = 16;
+
+            private int leafSize = 100;
+
+            private long settleSeconds = 60;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getCheckIntervalMs() {
+                return checkIntervalMs;
+            }
+
+            public void setCheckIntervalMs(long checkIntervalMs) {
+                this.checkIntervalMs = checkIntervalMs;
+            }
+
+            public int getRangeSize() {
+                return rangeSize;
+            }
+
+            public void setRangeSize(int rangeSize) {
+                this.rangeSize = rangeSize;
+            }
+
+            public int getBuckets() {
+                return buckets;
+            }
+
+            public void setBuckets(int buckets) {
+                this.buckets = buckets;
+            }
+
+            public int getLeafSize() {
+                return leafSize;
+            }
+
+            public void setLeafSize(int leafSize) {
+                this.leafSize = leafSize;
+            }
+
+            public long getSettleSeconds() {
+                return settleSeconds;
+            }
+
+            public void setSettleSeconds(long settleSeconds) {
+                this.settleSeconds = settleSeconds;
+            }
+        }
+
+        public static class Export {
+
+            private int batchSize = 500;
+
+            private long scrollKeepAliveSeconds = 300;
+
+            private long timeoutMs = 3600000;
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getScrollKeepAliveSeconds() {
+                return scrollKeepAliveSeconds;
+            }
+
+            public void setScrollKeepAliveSeconds(long scrollKeepAliveSeconds) {
+                this.scrollKeepAliveSeconds = scrollKeepAliveSeconds;
+            }
+
+            public long getTimeoutMs() {
+                return timeoutMs;
+            }
+
+            public void setTimeoutMs(long timeoutMs) {
+                this.timeoutMs = timeoutMs;
+            }
+        }
+
+        public static class RestClient {
+
+            private int maxConnections = 100;
+
+            private int maxConnectionsPerRoute = 50;
+
+            private long keepAliveMs = 60000;
+
+            private int ioThreads = 0;
+
+            private int connectTimeoutMs = 1000;
+
+            private int socketTimeoutMs = 30000;
+
+            private boolean compression = true;
+
+            private int bufferPoolSize = 16;
+
+            private int maxBufferKb = 1024;
+
+            public int getMaxConnections() {
+                return maxConnections;
+            }
+
+            public void setMaxConnections(int maxConnections) {
+                this.maxConnections = maxConnections;
+            }
+
+            public int getMaxConnectionsPerRoute() {
+                return maxConnectionsPerRoute;
+            }
+
+            public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+                this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            }
+
+            public long getKeepAliveMs() {
+                return keepAliveMs;
+            }
+
+            public void setKeepAliveMs(long keepAliveMs) {
+                this.keepAliveMs = keepAliveMs;
+            }
+
+            public int getIoThreads() {
+                return ioThreads;
+            }
+
+            public void setIoThreads(int ioThreads) {
+                this.ioThreads = ioThreads;
+            }
+
+            public int getConnectTimeoutMs() {
+                return connectTimeoutMs;
+            }
+
+            public void setConnectTimeoutMs(int connectTimeoutMs) {
+                this.connectTimeoutMs = connectTimeoutMs;
+            }
+
+            public int getSocketTimeoutMs() {
+                return socketTimeoutMs;
+            }
+
+            public void setSocketTimeoutMs(int socketTimeoutMs) {
+                this.socketTimeoutMs = socketTimeoutMs;
+            }
+
+            public boolean isCompression() {
+                return compression;
+            }
+
+            public void setCompression(boolean compression) {
+                this.compression = compression;
+            }
+
+            public int getBufferPoolSize() {
+                return bufferPoolSize;
+            }
+
+            public void setBufferPoolSize(int bufferPoolSize) {
+                this.bufferPoolSize = bufferPoolSize;
+            }
+
+            public int getMaxBufferKb() {
+                return maxBufferKb;
+            }
+
+            public void setMaxBufferKb(int maxBufferKb) {
+                this.maxBufferKb = maxBufferKb;
+            }
+        }
+    }
 }
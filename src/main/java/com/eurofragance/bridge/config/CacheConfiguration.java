@@ -1,13 +1,27 @@
 package com.eurofragance.bridge.config;
 
+import java.io.File;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+import javax.cache.Caching;
 
 import org.ehcache.config.builders.*;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.expiry.ExpiryPolicy;
+import org.ehcache.impl.config.persistence.DefaultPersistenceConfiguration;
 import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
 
 import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import com.eurofragance.bridge.service.CacheInvalidationBus;
 import io.github.jhipster.config.JHipsterProperties;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
@@ -15,26 +29,88 @@ import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.cloud.client.serviceregistry.Registration;
 import org.springframework.context.annotation.*;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 
 @Configuration
 @EnableCaching
 public class CacheConfiguration {
 
-    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+    private final JHipsterProperties.Cache.Ehcache ehcache;
+
+    private final ApplicationProperties.Cache cache;
+
+    private final javax.cache.configuration.Configuration<Object, Object> userSyncCacheConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> jwtCacheConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> unknownLoginsCacheConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> userSearchCacheConfiguration;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        ehcache = jHipsterProperties.getCache().getEhcache();
+        cache = applicationProperties.getCache();
+
+        ApplicationProperties.UserSync.FingerprintCache fingerprintCache = applicationProperties.getUserSync().getFingerprintCache();
+        userSyncCacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(fingerprintCache.getMaxEntries()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(fingerprintCache.getTimeToLiveSeconds())))
+                .build());
+
+        jwtCacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(applicationProperties.getJwtCache().getMaxEntries()))
+                .withExpiry(new JwtExpiryPolicy())
+                .build());
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache = jHipsterProperties.getCache().getEhcache();
+        ApplicationProperties.Cache.UnknownLogins unknownLogins = cache.getUnknownLogins();
+        unknownLoginsCacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(unknownLogins.getMaxEntries()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(unknownLogins.getTimeToLiveSeconds())))
+                .build());
 
-        jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+        ApplicationProperties.Search.ResultCache resultCache = applicationProperties.getSearch().getResultCache();
+        userSearchCacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
             CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
-                ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
+                ResourcePoolsBuilder.heap(resultCache.getMaxEntries()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(resultCache.getTimeToLiveSeconds())))
                 .build());
     }
 
+    /**
+     * Replaces the JCache {@code CacheManager} of Spring Boot, which cannot have a disk tier as it is created
+     * without a persistence directory.
+     */
+    @Bean
+    public javax.cache.CacheManager jCacheCacheManager(ObjectProvider<JCacheManagerCustomizer> cacheManagerCustomizers) {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        DefaultConfiguration configuration = hasDiskTier()
+            ? new DefaultConfiguration(provider.getDefaultClassLoader(), new DefaultPersistenceConfiguration(new File(cache.getDiskPath())))
+            : new DefaultConfiguration(provider.getDefaultClassLoader());
+        javax.cache.CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), configuration);
+        cacheManagerCustomizers.orderedStream().forEach(customizer -> customizer.customize(cacheManager));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cacheManager,
+                                                                       CacheInvalidationBus cacheInvalidationBus) {
+        return hibernateProperties -> {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, new InvalidatingJCacheRegionFactory(cacheInvalidationBus));
+        };
+    }
+
+    /**
+     * Takes precedence over the {@code JCacheCacheMeterBinderProvider} of Spring Boot, as it is registered first.
+     */
     @Bean
-    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cacheManager) {
-        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public JCacheRegionMetrics.Provider jCacheRegionMeterBinderProvider() {
+        return new JCacheRegionMetrics.Provider();
     }
 
     @Bean
@@ -45,16 +121,81 @@ public class CacheConfiguration {
             createCache(cm, com.eurofragance.bridge.domain.User.class.getName());
             createCache(cm, com.eurofragance.bridge.domain.Authority.class.getName());
             createCache(cm, com.eurofragance.bridge.domain.User.class.getName() + ".authorities");
+            createCache(cm, com.eurofragance.bridge.service.UserSyncCache.USER_SYNC_CACHE, userSyncCacheConfiguration);
+            createCache(cm, com.eurofragance.bridge.security.oauth2.JwtCache.JWT_CACHE, jwtCacheConfiguration);
+            createCache(cm, com.eurofragance.bridge.service.UnknownLoginCache.UNKNOWN_LOGINS_CACHE, unknownLoginsCacheConfiguration);
+            createCache(cm, com.eurofragance.bridge.service.UserSearchCache.USER_SEARCH_CACHE, userSearchCacheConfiguration);
             // jhipster-needle-ehcache-add-entry
         };
     }
 
     private void createCache(javax.cache.CacheManager cm, String cacheName) {
+        createCache(cm, cacheName, regionConfiguration(cacheName));
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String cacheName, javax.cache.configuration.Configuration<Object, Object> configuration) {
         javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
         if (cache != null) {
             cm.destroyCache(cacheName);
         }
-        cm.createCache(cacheName, jcacheConfiguration);
+        cm.createCache(cacheName, configuration);
+    }
+
+    /**
+     * Build the configuration of a cache region from {@code application.cache.regions}, falling back to the
+     * {@code jhipster.cache.ehcache} heap size and time to live. The heap size and expiry can be changed at
+     * runtime through {@link com.eurofragance.bridge.service.CacheAdministrationService}.
+     */
+    private javax.cache.configuration.Configuration<Object, Object> regionConfiguration(String cacheName) {
+        ApplicationProperties.Cache.Region region = cache.getRegions().getOrDefault(cacheName, new ApplicationProperties.Cache.Region());
+
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder()
+            .heap(region.getHeapEntries() != null ? region.getHeapEntries() : ehcache.getMaxEntries(), EntryUnit.ENTRIES);
+        if (region.getOffHeapMb() != null) {
+            resourcePools = resourcePools.offheap(region.getOffHeapMb(), MemoryUnit.MB);
+        }
+        if (region.getDiskMb() != null) {
+            resourcePools = resourcePools.disk(region.getDiskMb(), MemoryUnit.MB, region.isDiskPersistent());
+        }
+
+        return Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, resourcePools)
+                .withExpiry(new RegionExpiryPolicy(region, ehcache))
+                .build());
+    }
+
+    private boolean hasDiskTier() {
+        return cache.getRegions().values().stream().anyMatch(region -> region.getDiskMb() != null);
+    }
+
+    /**
+     * Expires each {@link com.eurofragance.bridge.security.oauth2.JwtCache.Entry} when its token expires.
+     */
+    private static class JwtExpiryPolicy implements ExpiryPolicy<Object, Object> {
+
+        @Override
+        public Duration getExpiryForCreation(Object key, Object value) {
+            return timeToExpiry(value);
+        }
+
+        @Override
+        public Duration getExpiryForAccess(Object key, Supplier<?> value) {
+            return null;
+        }
+
+        @Override
+        public Duration getExpiryForUpdate(Object key, Supplier<?> oldValue, Object newValue) {
+            return timeToExpiry(newValue);
+        }
+
+        private static Duration timeToExpiry(Object value) {
+            if (!(value instanceof com.eurofragance.bridge.security.oauth2.JwtCache.Entry)) {
+                return Duration.ZERO;
+            }
+            Duration timeToExpiry = Duration.between(Instant.now(),
+                ((com.eurofragance.bridge.security.oauth2.JwtCache.Entry) value).getExpiresAt());
+            return timeToExpiry.isNegative() ? Duration.ZERO : timeToExpiry;
+        }
     }
 
 }
@@ -0,0 +1,75 @@
+package com.eurofragance.bridge.config;
+
+import com.eurofragance.bridge.service.CacheAdministrationService;
+import com.eurofragance.bridge.service.dto.CacheRegionDTO;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@code /management/caches} endpoint, replacing the read-only one of Spring Boot, to look at the cache regions
+ * and change them at runtime.
+ * <ul>
+ * <li>{@code GET /management/caches} lists the regions, with their sizing, expiry and statistics.</li>
+ * <li>{@code GET /management/caches/{name}} shows a region.</li>
+ * <li>{@code DELETE /management/caches/{name}?key=} evicts an entry, or clears the region without a key.</li>
+ * <li>{@code POST /management/caches/{name}} with any of {@code heapEntries}, {@code offHeapMb},
+ * {@code timeToLiveSeconds} and {@code timeToIdleSeconds} resizes the region or changes its expiry.</li>
+ * </ul>
+ * Resizes are not broadcast: they only apply to this instance until {@code application.cache.regions} is changed.
+ */
+@Component
+@Endpoint(id = "caches")
+public class CachesEndpoint {
+
+    private final CacheAdministrationService cacheAdministrationService;
+
+    public CachesEndpoint(CacheAdministrationService cacheAdministrationService) {
+        this.cacheAdministrationService = cacheAdministrationService;
+    }
+
+    @ReadOperation
+    public List<CacheRegionDTO> regions() {
+        return cacheAdministrationService.getRegions();
+    }
+
+    @ReadOperation
+    public WebEndpointResponse<CacheRegionDTO> region(@Selector String name) {
+        return toResponse(cacheAdministrationService.getRegion(name));
+    }
+
+    @DeleteOperation
+    public WebEndpointResponse<Void> evict(@Selector String name, @Nullable String key) {
+        boolean found = key == null ? cacheAdministrationService.clear(name) : cacheAdministrationService.evict(name, key);
+        return new WebEndpointResponse<>(found ? WebEndpointResponse.STATUS_NO_CONTENT : WebEndpointResponse.STATUS_NOT_FOUND);
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<CacheRegionDTO> update(@Selector String name, @Nullable Long heapEntries, @Nullable Long offHeapMb,
+                                                      @Nullable Long timeToLiveSeconds, @Nullable Long timeToIdleSeconds) {
+        ApplicationProperties.Cache.Region changes = new ApplicationProperties.Cache.Region();
+        changes.setHeapEntries(heapEntries);
+        changes.setOffHeapMb(offHeapMb);
+        changes.setTimeToLiveSeconds(timeToLiveSeconds);
+        changes.setTimeToIdleSeconds(timeToIdleSeconds);
+        try {
+            return toResponse(cacheAdministrationService.update(name, changes));
+        } catch (IllegalArgumentException e) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+    }
+
+    private static WebEndpointResponse<CacheRegionDTO> toResponse(Optional<CacheRegionDTO> region) {
+        return region.map(WebEndpointResponse::new)
+            .orElseGet(() -> new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND));
+    }
+}
@@ -1,25 +1,41 @@
 package com.eurofragance.bridge.config;
 
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.search.UserSearchAsyncClient;
+
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.github.vanroy.springdata.jest.JestElasticsearchTemplate;
 import com.github.vanroy.springdata.jest.mapper.DefaultJestResultsMapper;
 import io.searchbox.client.JestClient;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.elasticsearch.client.RestClient;
 import org.springframework.boot.autoconfigure.data.elasticsearch.ElasticsearchProperties;
+import org.springframework.boot.autoconfigure.elasticsearch.rest.RestClientBuilderCustomizer;
+import org.springframework.boot.autoconfigure.elasticsearch.rest.RestClientProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.EntityMapper;
 import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
 import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
 import java.io.IOException;
 
 @Configuration
-@EnableConfigurationProperties(ElasticsearchProperties.class)
+@Profile("!" + Constants.SPRING_PROFILE_LUCENE)
+@EnableConfigurationProperties({ElasticsearchProperties.class, RestClientProperties.class})
+@EnableElasticsearchRepositories("com.eurofragance.bridge.repository.search")
 public class ElasticsearchConfiguration {
 
     private ObjectMapper mapper;
@@ -45,6 +61,48 @@ public class ElasticsearchConfiguration {
             new DefaultJestResultsMapper(simpleElasticsearchMappingContext, mapper));
     }
 
+    /**
+     * Pool the connections of the low-level client of {@code spring.elasticsearch.rest.uris}, and keep them alive,
+     * as set in {@code application.search.rest-client}.
+     */
+    @Bean
+    public RestClientBuilderCustomizer restClientBuilderCustomizer(RestClientProperties restClientProperties,
+                                                                   ApplicationProperties applicationProperties) {
+        ApplicationProperties.Search.RestClient properties = applicationProperties.getSearch().getRestClient();
+        return builder -> builder
+            .setRequestConfigCallback(requestConfig -> requestConfig
+                .setConnectTimeout(properties.getConnectTimeoutMs())
+                .setSocketTimeout(properties.getSocketTimeoutMs()))
+            .setHttpClientConfigCallback(httpClient -> {
+                IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom().setSoKeepAlive(true);
+                if (properties.getIoThreads() > 0) {
+                    ioReactorConfig.setIoThreadCount(properties.getIoThreads());
+                }
+                httpClient
+                    .setMaxConnTotal(properties.getMaxConnections())
+                    .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                    .setKeepAliveStrategy((response, context) -> properties.getKeepAliveMs())
+                    .setDefaultIOReactorConfig(ioReactorConfig.build());
+                // replaces the callback of Spring Boot setting the credentials
+                if (restClientProperties.getUsername() != null) {
+                    CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                    credentialsProvider.setCredentials(AuthScope.ANY,
+                        new UsernamePasswordCredentials(restClientProperties.getUsername(), restClientProperties.getPassword()));
+                    httpClient.setDefaultCredentialsProvider(credentialsProvider);
+                }
+                return httpClient;
+            });
+    }
+
+    @Bean
+    public UserSearchAsyncClient userSearchAsyncClient(RestClient restClient, ElasticsearchOperations elasticsearchOperations,
+                                                       ApplicationProperties applicationProperties) {
+        ApplicationProperties.Search.RestClient properties = applicationProperties.getSearch().getRestClient();
+        ElasticsearchPersistentEntity<?> entity = elasticsearchOperations.getPersistentEntityFor(User.class);
+        return new UserSearchAsyncClient(restClient, mapper, entity.getIndexName(), entity.getIndexType(),
+            properties.isCompression(), properties.getBufferPoolSize(), properties.getMaxBufferKb() * 1024);
+    }
+
     public class CustomEntityMapper implements EntityMapper {
 
         private ObjectMapper objectMapper;
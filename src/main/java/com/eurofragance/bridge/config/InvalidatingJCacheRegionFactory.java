@@ -0,0 +1,67 @@
+package com.eurofragance.bridge.config;
+
+import com.eurofragance.bridge.service.CacheInvalidationBus;
+
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.internal.SimpleCacheKeysFactory;
+import org.hibernate.cache.jcache.internal.JCacheAccessImpl;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Hibernate second-level cache regions broadcasting their evictions through the {@link CacheInvalidationBus}.
+ * <p>
+ * Entries are keyed by the bare entity or collection owner id, rather than by a composite key, so that the
+ * evicted keys can be sent to the other instances as they are.
+ */
+public class InvalidatingJCacheRegionFactory extends JCacheRegionFactory {
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public InvalidatingJCacheRegionFactory(CacheInvalidationBus cacheInvalidationBus) {
+        super(SimpleCacheKeysFactory.INSTANCE);
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return new InvalidatingAccess(getOrCreateCache(regionConfig.getRegionName(), buildingContext.getSessionFactory()));
+    }
+
+    private class InvalidatingAccess extends JCacheAccessImpl {
+
+        private final String cacheName;
+
+        InvalidatingAccess(javax.cache.Cache<Object, Object> cache) {
+            super(cache);
+            this.cacheName = cache.getName();
+        }
+
+        @Override
+        public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+            super.removeFromCache(key, session);
+            cacheInvalidationBus.evict(cacheName, key);
+        }
+
+        @Override
+        public void evictData(Object key) {
+            super.evictData(key);
+            cacheInvalidationBus.evict(cacheName, key);
+        }
+
+        @Override
+        public void clearCache(SharedSessionContractImplementor session) {
+            super.clearCache(session);
+            cacheInvalidationBus.clear(cacheName);
+        }
+
+        @Override
+        public void evictData() {
+            super.evictData();
+            cacheInvalidationBus.clear(cacheName);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.eurofragance.bridge.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.cache.jcache.JCacheCache;
+import org.terracotta.context.ContextManager;
+import org.terracotta.statistics.ValueStatistic;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.terracotta.context.query.Matchers.allOf;
+import static org.terracotta.context.query.Matchers.attributes;
+import static org.terracotta.context.query.Matchers.context;
+import static org.terracotta.context.query.Matchers.hasAttribute;
+import static org.terracotta.context.query.Matchers.identifier;
+import static org.terracotta.context.query.Matchers.subclassOf;
+import static org.terracotta.context.query.QueryBuilder.queryBuilder;
+
+/**
+ * {@link JCacheMetrics} of an Ehcache region, also exposing the number of entries and the average get latency,
+ * which the JCache statistics do not provide.
+ * <p>
+ * The number of entries is read from the {@code mappings} statistics that the tiers of the region publish in the
+ * statistics context of the Ehcache cache, as the statistics service of Ehcache is not reachable from the JCache
+ * cache manager, and the latency from the JCache statistics MBean.
+ * <p>
+ * Spring caches and Hibernate second-level cache regions are all JCache caches, so they are all bound by
+ * {@link Provider} through the Spring Boot cache metrics.
+ */
+public class JCacheRegionMetrics extends JCacheMetrics {
+
+    private static final MBeanServer MBEAN_SERVER = ManagementFactory.getPlatformMBeanServer();
+
+    private final ObjectName statisticsName;
+
+    private final List<ValueStatistic<?>> mappings;
+
+    public JCacheRegionMetrics(javax.cache.Cache<?, ?> cache, Iterable<Tag> tags) {
+        super(cache, tags);
+        try {
+            this.statisticsName = new ObjectName("javax.cache:type=CacheStatistics,CacheManager=" +
+                cache.getCacheManager().getURI().toString().replace(':', '.') + ",Cache=" + cache.getName());
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cache name '" + cache.getName() + "' results in an invalid JMX name", e);
+        }
+        this.mappings = queryBuilder()
+            .descendants()
+            .filter(context(allOf(identifier(subclassOf(ValueStatistic.class)), attributes(hasAttribute("name", "mappings")))))
+            .build()
+            .execute(Collections.singleton(ContextManager.nodeFor(cache.unwrap(org.ehcache.Cache.class))))
+            .stream()
+            .map(node -> (ValueStatistic<?>) node.getContext().attributes().get("this"))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    protected Long size() {
+        // the authoritative tier holds every entry of the region, the caching tiers only some of them
+        return mappings.stream()
+            .map(statistic -> ((Number) statistic.value()).longValue())
+            .max(Long::compare)
+            .orElse(null);
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        super.bindImplementationSpecificMetrics(registry);
+        Gauge.builder("cache.gets.latency", this, JCacheRegionMetrics::averageGetTime)
+            .tags(getTagsWithCacheName())
+            .description("The average time taken by a get")
+            .baseUnit("seconds")
+            .strongReference(true)
+            .register(registry);
+    }
+
+    private double averageGetTime() {
+        try {
+            // JCache statistics are in microseconds
+            return ((Number) MBEAN_SERVER.getAttribute(statisticsName, "AverageGetTime")).doubleValue() / 1_000_000;
+        } catch (JMException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Binds {@link JCacheRegionMetrics} rather than {@link JCacheMetrics} to the JCache caches, enabling their
+     * statistics.
+     */
+    public static class Provider implements CacheMeterBinderProvider<JCacheCache> {
+
+        @Override
+        public JCacheRegionMetrics getMeterBinder(JCacheCache cache, Iterable<Tag> tags) {
+            javax.cache.Cache<Object, Object> nativeCache = cache.getNativeCache();
+            nativeCache.getCacheManager().enableStatistics(nativeCache.getName(), true);
+            return new JCacheRegionMetrics(nativeCache, tags);
+        }
+    }
+}
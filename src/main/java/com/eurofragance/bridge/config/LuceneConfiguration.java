@@ -0,0 +1,41 @@
+package com.eurofragance.bridge.config;
+
+import com.eurofragance.bridge.repository.search.LuceneUserSearchRepository;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Searches the users in an embedded Lucene index instead of Elasticsearch, with the
+ * {@value Constants#SPRING_PROFILE_LUCENE} profile.
+ * <p>
+ * The {@link ElasticsearchConfiguration} is disabled by the profile, and {@code application-lucene.yml} turns off
+ * the Jest client, so no Elasticsearch node is needed.
+ */
+@Configuration
+@Profile(Constants.SPRING_PROFILE_LUCENE)
+public class LuceneConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(LuceneConfiguration.class);
+
+    @Bean(destroyMethod = "close")
+    public UserSearchRepository userSearchRepository(ObjectMapper objectMapper, ApplicationProperties applicationProperties)
+        throws IOException {
+        String path = applicationProperties.getSearch().getLucene().getPath();
+        if (StringUtils.hasText(path)) {
+            log.debug("Configuring the embedded Lucene user index in {}", path);
+            return new LuceneUserSearchRepository(objectMapper, Paths.get(path));
+        }
+        log.debug("Configuring the embedded Lucene user index in memory");
+        return new LuceneUserSearchRepository(objectMapper, null);
+    }
+}
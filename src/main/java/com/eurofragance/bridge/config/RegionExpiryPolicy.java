@@ -0,0 +1,68 @@
+package com.eurofragance.bridge.config;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.expiry.ExpiryPolicy;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * The time to live or time to idle of a cache region, which can be changed while the region is in use.
+ * <p>
+ * A change applies to the entries created, updated or, with a time to idle, read after it, the other entries
+ * keep the expiration they were given.
+ */
+public class RegionExpiryPolicy implements ExpiryPolicy<Object, Object> {
+
+    private volatile Duration timeToLive;
+
+    private volatile Duration timeToIdle;
+
+    public RegionExpiryPolicy(ApplicationProperties.Cache.Region region, JHipsterProperties.Cache.Ehcache defaults) {
+        update(region, defaults);
+    }
+
+    /**
+     * Apply the expiry of a region, the time to idle taking precedence over the time to live, which falls back
+     * to {@code jhipster.cache.ehcache.time-to-live-seconds}.
+     *
+     * @param region   the region settings.
+     * @param defaults the default settings.
+     */
+    public synchronized void update(ApplicationProperties.Cache.Region region, JHipsterProperties.Cache.Ehcache defaults) {
+        if (region.getTimeToIdleSeconds() != null) {
+            timeToLive = null;
+            timeToIdle = Duration.ofSeconds(region.getTimeToIdleSeconds());
+        } else {
+            timeToLive = Duration.ofSeconds(region.getTimeToLiveSeconds() != null
+                ? region.getTimeToLiveSeconds() : defaults.getTimeToLiveSeconds());
+            timeToIdle = null;
+        }
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    public Duration getTimeToIdle() {
+        return timeToIdle;
+    }
+
+    @Override
+    public Duration getExpiryForCreation(Object key, Object value) {
+        Duration idle = timeToIdle;
+        return idle != null ? idle : timeToLive;
+    }
+
+    @Override
+    public Duration getExpiryForAccess(Object key, Supplier<?> value) {
+        // null keeps the current expiration
+        return timeToIdle;
+    }
+
+    @Override
+    public Duration getExpiryForUpdate(Object key, Supplier<?> oldValue, Object newValue) {
+        Duration idle = timeToIdle;
+        return idle != null ? idle : timeToLive;
+    }
+}
@@ -0,0 +1,44 @@
+package com.eurofragance.bridge.config;
+
+import com.eurofragance.bridge.service.UserSearchReindexer;
+import com.eurofragance.bridge.service.dto.ReindexStatusDTO;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /management/reindex} endpoint, to rebuild the {@code user} index from the database without downtime.
+ * <ul>
+ * <li>{@code GET /management/reindex} shows the progress of the current or last reindex of this instance.</li>
+ * <li>{@code POST /management/reindex} starts a reindex, resuming the last interrupted one unless {@code resume}
+ * is false. It answers 409 if a reindex is already running on this instance.</li>
+ * </ul>
+ */
+@Component
+@Endpoint(id = "reindex")
+public class ReindexEndpoint {
+
+    private final UserSearchReindexer userSearchReindexer;
+
+    public ReindexEndpoint(UserSearchReindexer userSearchReindexer) {
+        this.userSearchReindexer = userSearchReindexer;
+    }
+
+    @ReadOperation
+    public ReindexStatusDTO status() {
+        return userSearchReindexer.getStatus();
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<ReindexStatusDTO> start(@Nullable Boolean resume) {
+        try {
+            return new WebEndpointResponse<>(userSearchReindexer.start(resume == null || resume));
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(userSearchReindexer.getStatus(), 409);
+        }
+    }
+}
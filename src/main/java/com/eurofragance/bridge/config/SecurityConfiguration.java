@@ -23,6 +23,15 @@ import java.util.*;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.csrf.CsrfFilter;
 import com.eurofragance.bridge.security.oauth2.JwtAuthorityExtractor;
+import com.eurofragance.bridge.security.oauth2.JwkSourceJwtDecoder;
+import com.eurofragance.bridge.security.oauth2.JwtCache;
+import com.eurofragance.bridge.security.oauth2.RefreshingJwkSource;
+import com.eurofragance.bridge.service.CacheInvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.client.RestTemplate;
+import java.time.Duration;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
 import org.springframework.web.filter.CorsFilter;
 import org.zalando.problem.spring.web.advice.security.SecurityProblemSupport;
@@ -38,12 +47,14 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
     private final JHipsterProperties jHipsterProperties;
     private final JwtAuthorityExtractor jwtAuthorityExtractor;
+    private final JwtCache jwtCache;
     private final SecurityProblemSupport problemSupport;
 
-    public SecurityConfiguration(CorsFilter corsFilter, JwtAuthorityExtractor jwtAuthorityExtractor, JHipsterProperties jHipsterProperties, SecurityProblemSupport problemSupport) {
+    public SecurityConfiguration(CorsFilter corsFilter, JwtAuthorityExtractor jwtAuthorityExtractor, JwtCache jwtCache, JHipsterProperties jHipsterProperties, SecurityProblemSupport problemSupport) {
         this.corsFilter = corsFilter;
         this.problemSupport = problemSupport;
         this.jwtAuthorityExtractor = jwtAuthorityExtractor;
+        this.jwtCache = jwtCache;
         this.jHipsterProperties = jHipsterProperties;
     }
 
@@ -62,6 +73,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         http
             .csrf()
             .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
+            .ignoringAntMatchers(CacheInvalidationBus.PATH)
         .and()
             .addFilterBefore(corsFilter, CsrfFilter.class)
             .exceptionHandling()
@@ -80,6 +92,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         .and()
             .authorizeRequests()
             .antMatchers("/api/auth-info").permitAll()
+            .antMatchers(CacheInvalidationBus.PATH).permitAll()
             .antMatchers("/api/**").authenticated()
             .antMatchers("/management/health").permitAll()
             .antMatchers("/management/info").permitAll()
@@ -114,10 +127,23 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         };
     }
 
+    /**
+     * Decode bearer tokens with the keys of the IdP, which are fetched at startup and refreshed in the background.
+     *
+     * @return the {@link JwtDecoder}.
+     */
     @Bean
-    JwtDecoder jwtDecoder() {
-        NimbusJwtDecoderJwkSupport jwtDecoder = (NimbusJwtDecoderJwkSupport)
-            JwtDecoders.fromOidcIssuerLocation(issuerUri);
+    JwtDecoder jwtDecoder(ApplicationProperties applicationProperties, RestTemplateBuilder restTemplateBuilder,
+                          TaskScheduler taskScheduler, MeterRegistry meterRegistry) {
+        ApplicationProperties.Jwk jwk = applicationProperties.getJwk();
+        RestTemplate restTemplate = restTemplateBuilder
+            .setConnectTimeout(Duration.ofMillis(jwk.getConnectTimeoutMs()))
+            .setReadTimeout(Duration.ofMillis(jwk.getReadTimeoutMs()))
+            .build();
+        RefreshingJwkSource jwkSource = RefreshingJwkSource.fromOidcIssuerLocation(issuerUri, restTemplate,
+            Duration.ofSeconds(jwk.getMinRefreshIntervalSeconds()), meterRegistry);
+        jwkSource.scheduleRefresh(taskScheduler, Duration.ofSeconds(jwk.getRefreshIntervalSeconds()));
+        JwkSourceJwtDecoder jwtDecoder = new JwkSourceJwtDecoder(jwkSource);
 
         OAuth2TokenValidator<Jwt> audienceValidator = new AudienceValidator(jHipsterProperties.getSecurity().getOauth2().getAudience());
         OAuth2TokenValidator<Jwt> withIssuer = JwtValidators.createDefaultWithIssuer(issuerUri);
@@ -125,6 +151,6 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
         jwtDecoder.setJwtValidator(withAudience);
 
-        return jwtDecoder;
+        return jwtCache.decoder(jwtDecoder);
     }
 }
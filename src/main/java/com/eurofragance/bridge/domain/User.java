@@ -26,6 +26,8 @@ import java.util.Set;
 @Table(name = "jhi_user")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 @org.springframework.data.elasticsearch.annotations.Document(indexName = "user")
+@org.springframework.data.elasticsearch.annotations.Mapping(mappingPath = "/config/elasticsearch/user-mapping.json")
+@org.springframework.data.elasticsearch.annotations.Setting(settingPath = "/config/elasticsearch/user-settings.json")
 public class User extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -4,6 +4,7 @@ import com.eurofragance.bridge.domain.PersistentAuditEvent;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.Instant;
 import java.util.List;
@@ -20,4 +21,7 @@ public interface PersistenceAuditEventRepository extends JpaRepository<Persisten
     Page<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable);
 
     List<PersistentAuditEvent> findByAuditEventDateBefore(Instant before);
+
+    @Query("select e.principal from PersistentAuditEvent e group by e.principal order by max(e.auditEventDate) desc")
+    List<String> findMostRecentPrincipals(Pageable pageable);
 }
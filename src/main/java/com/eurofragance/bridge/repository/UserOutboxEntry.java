@@ -0,0 +1,50 @@
+package com.eurofragance.bridge.repository;
+
+import java.time.Instant;
+
+/**
+ * A row of the user outbox: a user changed in a committed transaction, not sent to Elasticsearch yet.
+ */
+public class UserOutboxEntry {
+
+    private final long id;
+
+    private final String userId;
+
+    private final Instant createdDate;
+
+    private final int attempts;
+
+    public UserOutboxEntry(long id, String userId, Instant createdDate, int attempts) {
+        this.id = id;
+        this.userId = userId;
+        this.createdDate = createdDate;
+        this.attempts = attempts;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "UserOutboxEntry{" +
+            "id=" + id +
+            ", userId='" + userId + '\'' +
+            ", createdDate=" + createdDate +
+            ", attempts=" + attempts +
+            "}";
+    }
+}
@@ -0,0 +1,156 @@
+package com.eurofragance.bridge.repository;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Repository of the {@code jhi_user_outbox} table, the user changes waiting to be sent to Elasticsearch.
+ * <p>
+ * The rows are claimed with {@code SELECT ... FOR UPDATE SKIP LOCKED}, so every instance polling the outbox gets
+ * its own rows. The batch is bounded with {@link java.sql.Statement#setMaxRows(int)}, rather than a row limiting
+ * clause which Oracle rejects with {@code FOR UPDATE}: Oracle and PostgreSQL lock the rows as they are fetched.
+ * Databases without {@code SKIP LOCKED}, like H2, wait for the rows locked by another instance instead.
+ */
+@Repository
+public class UserOutboxRepository {
+
+    private static final String INSERT_ENTRY =
+        "INSERT INTO jhi_user_outbox (user_id, created_date, attempts, available_date) VALUES (?, ?, 0, ?)";
+
+    private static final String SELECT_AVAILABLE_ENTRIES =
+        "SELECT id, user_id, created_date, attempts FROM jhi_user_outbox WHERE available_date <= ? ORDER BY id";
+
+    private static final String DELETE_ENTRY = "DELETE FROM jhi_user_outbox WHERE id = ?";
+
+    private static final String RESCHEDULE_ENTRY =
+        "UPDATE jhi_user_outbox SET attempts = attempts + 1, available_date = ? WHERE id = ?";
+
+    private static final RowMapper<UserOutboxEntry> ENTRY_MAPPER = (rs, rowNum) ->
+        new UserOutboxEntry(rs.getLong("id"), rs.getString("user_id"), rs.getTimestamp("created_date").toInstant(),
+            rs.getInt("attempts"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile String lockClause;
+
+    public UserOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Add a change of a user to the outbox, in the current transaction if there is one.
+     *
+     * @param userId      the id of the user changed.
+     * @param createdDate the date of the change, which versions the deletion of the user.
+     */
+    @Transactional
+    public void append(String userId, Instant createdDate) {
+        Timestamp timestamp = Timestamp.from(createdDate);
+        jdbcTemplate.update(INSERT_ENTRY, userId, timestamp, timestamp);
+    }
+
+    /**
+     * Add the changes of several users to the outbox in a batch, in the current transaction if there is one.
+     *
+     * @param userIds     the ids of the users changed.
+     * @param createdDate the date of the changes.
+     */
+    @Transactional
+    public void appendAll(Collection<String> userIds, Instant createdDate) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Timestamp timestamp = Timestamp.from(createdDate);
+        List<Object[]> parameters = new ArrayList<>(userIds.size());
+        userIds.forEach(userId -> parameters.add(new Object[]{userId, timestamp, timestamp}));
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, parameters);
+    }
+
+    /**
+     * Lock the oldest available rows until the end of the current transaction, skipping the rows locked by
+     * another transaction where the database allows it.
+     *
+     * @param maxRows the maximum number of rows to claim.
+     * @param now     the current date, the rows available later are not claimed.
+     * @return the rows claimed, by id.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<UserOutboxEntry> claim(int maxRows, Instant now) {
+        String sql = SELECT_AVAILABLE_ENTRIES + getLockClause();
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setMaxRows(maxRows);
+            statement.setFetchSize(maxRows);
+            statement.setTimestamp(1, Timestamp.from(now));
+            return statement;
+        }, ENTRY_MAPPER);
+    }
+
+    /**
+     * Delete the rows sent, or given up.
+     *
+     * @param entries the rows to delete.
+     */
+    @Transactional
+    public void delete(Collection<UserOutboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Object[]> ids = new ArrayList<>(entries.size());
+        entries.forEach(entry -> ids.add(new Object[]{entry.getId()}));
+        jdbcTemplate.batchUpdate(DELETE_ENTRY, ids);
+    }
+
+    /**
+     * Count a failed attempt on rows, and make them available again later.
+     *
+     * @param availableDates the date each row is available again, by row.
+     */
+    @Transactional
+    public void reschedule(Map<UserOutboxEntry, Instant> availableDates) {
+        if (availableDates.isEmpty()) {
+            return;
+        }
+        List<Object[]> parameters = new ArrayList<>(availableDates.size());
+        availableDates.forEach((entry, availableDate) ->
+            parameters.add(new Object[]{Timestamp.from(availableDate), entry.getId()}));
+        jdbcTemplate.batchUpdate(RESCHEDULE_ENTRY, parameters);
+    }
+
+    @Transactional(readOnly = true)
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM jhi_user_outbox", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @return the date of the oldest change not sent yet, if any.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Instant> findOldestCreatedDate() {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(created_date) FROM jhi_user_outbox", Timestamp.class);
+        return Optional.ofNullable(oldest).map(Timestamp::toInstant);
+    }
+
+    private String getLockClause() {
+        if (lockClause == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+            lockClause = "Oracle".equals(product) || "PostgreSQL".equals(product) ? " FOR UPDATE SKIP LOCKED" : " FOR UPDATE";
+        }
+        return lockClause;
+    }
+}
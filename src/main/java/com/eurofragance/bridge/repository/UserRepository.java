@@ -8,12 +8,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import java.time.Instant;
 
+import javax.persistence.QueryHint;
+
 /**
  * Spring Data JPA repository for the {@link User} entity.
  */
@@ -28,9 +35,14 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     Optional<User> findOneByLogin(String login);
 
+    List<User> findAllByLoginIn(Collection<String> logins);
+
     @EntityGraph(attributePaths = "authorities")
     Optional<User> findOneWithAuthoritiesById(Long id);
 
+    @EntityGraph(attributePaths = "authorities")
+    List<User> findAllWithAuthoritiesByLoginIn(Collection<String> logins);
+
     @EntityGraph(attributePaths = "authorities")
     @Cacheable(cacheNames = USERS_BY_LOGIN_CACHE)
     Optional<User> findOneWithAuthoritiesByLogin(String login);
@@ -39,5 +51,34 @@ public interface UserRepository extends JpaRepository<User, String> {
     @Cacheable(cacheNames = USERS_BY_EMAIL_CACHE)
     Optional<User> findOneWithAuthoritiesByEmailIgnoreCase(String email);
 
+    @Query("select u.login from User u")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllLogins();
+
+    @Query("select a.name, count(u) from User u join u.authorities a group by a.name")
+    List<Object[]> countByAuthority();
+
+    @Query("select u.id, u.lastModifiedDate from User u where u.id in :ids")
+    List<Object[]> findLastModifiedDatesByIdIn(@Param("ids") Collection<String> ids);
+
+    @Query("select u.id, a.name from User u join u.authorities a where u.id in :ids")
+    List<Object[]> findAuthorityNamesByIdIn(@Param("ids") Collection<String> ids);
+
+    @Query("select u.id, u.lastModifiedDate from User u where u.id > :id order by u.id")
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    List<Object[]> findLastModifiedDatesByIdGreaterThan(@Param("id") String id, Pageable pageable);
+
+    @QueryHints({
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    List<User> findAllByIdGreaterThanOrderByIdAsc(String id, Pageable pageable);
+
+    @QueryHints({
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+    })
+    List<User> findAllByLastModifiedDateGreaterThanEqualAndIdGreaterThanOrderByIdAsc(Instant lastModifiedDate, String id, Pageable pageable);
+
     Page<User> findAllByLoginNot(Pageable pageable, String login);
 }
@@ -0,0 +1,1166 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.domain.User;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+import org.apache.lucene.analysis.ngram.EdgeNGramTokenFilter;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.mlt.MoreLikeThis;
+import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.query.MatchAllQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryStringQueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.query.SearchQuery;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Embedded Lucene implementation of the {@link UserSearchRepository}, used instead of Elasticsearch with the
+ * {@code lucene} profile.
+ * <p>
+ * The users are indexed in the JVM, in memory or in a directory, with the fields, analyzers and write versioning
+ * of the {@code user} index described by {@code user-mapping.json} and {@code user-settings.json}, so that the
+ * same queries find the same users. The versioned indices of the reindex live in sub-directories, the
+ * {@code user} alias being a file naming the one searched. Every write is committed and searchable when the
+ * call returns.
+ * <p>
+ * Of the Spring Data methods taking Elasticsearch queries, only the {@code query_string} and {@code match_all}
+ * queries are supported, the former parsed by the classic query parser as above.
+ */
+public class LuceneUserSearchRepository implements UserSearchRepository, Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(LuceneUserSearchRepository.class);
+
+    private static final String ALIAS = User.class.getAnnotation(org.springframework.data.elasticsearch.annotations.Document.class).indexName();
+
+    private static final String ALIAS_FILE = "alias";
+
+    private static final String SOURCE = "_source";
+
+    private static final String VERSION = "_version";
+
+    private static final String DELETED = "_deleted";
+
+    /**
+     * The largest page of results read without a cursor, as {@code index.max_result_window}.
+     */
+    private static final int MAX_RESULT_WINDOW = 10000;
+
+    /**
+     * The edge n-grams of the {@code autocomplete} analyzer of {@code user-settings.json}.
+     */
+    private static final int MIN_GRAM = 1;
+
+    private static final int MAX_GRAM = 20;
+
+    private static final int IGNORE_ABOVE = 256;
+
+    private static final String[] TEXT_FIELDS = {"login", "firstName", "lastName", "email"};
+
+    private static final String[] KEYWORD_FIELDS = {"id", "activated", "langKey"};
+
+    /**
+     * The fields searched by a query without field name, as the {@code *} default field of {@code query_string}.
+     */
+    private static final String[] DEFAULT_FIELDS = {"login", "firstName", "lastName", "email", "imageUrl", "langKey"};
+
+    private static final String[] SUGGESTION_FIELDS = {"id", "login", "firstName", "lastName"};
+
+    private static final String[] CHECKSUM_FIELDS = {"id", "lastModifiedDate"};
+
+    /**
+     * The boosts of the edge n-gram fields matching the suggestions, a match on the login counting most.
+     */
+    private static final Map<String, Float> AUTOCOMPLETE_FIELDS = new LinkedHashMap<>();
+
+    /**
+     * The fields sorting the searches, by property of the user.
+     */
+    private static final Map<String, String> SORT_FIELDS = new HashMap<>();
+
+    private static final Query LIVE = live(new MatchAllDocsQuery());
+
+    static {
+        AUTOCOMPLETE_FIELDS.put("login.autocomplete", 3f);
+        AUTOCOMPLETE_FIELDS.put("firstName.autocomplete", 2f);
+        AUTOCOMPLETE_FIELDS.put("lastName.autocomplete", 2f);
+        AUTOCOMPLETE_FIELDS.put("email.autocomplete", 1f);
+        SORT_FIELDS.put("id", "id");
+        SORT_FIELDS.put("login", "login.keyword");
+        SORT_FIELDS.put("firstName", "firstName.keyword");
+        SORT_FIELDS.put("lastName", "lastName.keyword");
+        SORT_FIELDS.put("email", "email.keyword");
+        SORT_FIELDS.put("activated", "activated");
+        SORT_FIELDS.put("langKey", "langKey");
+    }
+
+    private final Path path;
+
+    private final ObjectReader reader;
+
+    private final ObjectReader hitReader;
+
+    private final ObjectWriter writer;
+
+    private final ObjectMapper objectMapper;
+
+    private final Analyzer indexAnalyzer;
+
+    private final Analyzer searchAnalyzer;
+
+    private final Analyzer autocompleteSearchAnalyzer;
+
+    private final Map<String, LuceneIndex> indices = new ConcurrentHashMap<>();
+
+    private volatile String aliasedIndex;
+
+    /**
+     * @param objectMapper the mapper of the documents.
+     * @param path         the directory of the indices, or null to keep them in memory.
+     * @throws IOException if the indices in the directory could not be opened.
+     */
+    public LuceneUserSearchRepository(ObjectMapper objectMapper, Path path) throws IOException {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(User.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .with(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY);
+        this.hitReader = objectMapper.readerFor(UserSearchHit.class);
+        this.writer = objectMapper.writerFor(User.class).without(SerializationFeature.INDENT_OUTPUT);
+        Analyzer standard = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+        Analyzer autocomplete = new AutocompleteAnalyzer();
+        this.autocompleteSearchAnalyzer = new AutocompleteSearchAnalyzer();
+        Map<String, Analyzer> indexAnalyzers = new HashMap<>();
+        Map<String, Analyzer> searchAnalyzers = new HashMap<>();
+        for (String field : KEYWORD_FIELDS) {
+            searchAnalyzers.put(field, new KeywordAnalyzer());
+        }
+        for (String field : TEXT_FIELDS) {
+            indexAnalyzers.put(field + ".autocomplete", autocomplete);
+            searchAnalyzers.put(field + ".autocomplete", autocompleteSearchAnalyzer);
+            searchAnalyzers.put(field + ".keyword", new KeywordAnalyzer());
+        }
+        this.indexAnalyzer = new PerFieldAnalyzerWrapper(standard, indexAnalyzers);
+        this.searchAnalyzer = new PerFieldAnalyzerWrapper(standard, searchAnalyzers);
+        if (path != null) {
+            open();
+        }
+        if (indices.isEmpty()) {
+            // as Spring Data creates the index at startup
+            indices.put(ALIAS, new LuceneIndex(ALIAS, newDirectory(ALIAS), indexAnalyzer));
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(path);
+        try (Stream<Path> directories = Files.list(path)) {
+            for (Path directory : directories.filter(Files::isDirectory).collect(Collectors.toList())) {
+                String name = directory.getFileName().toString();
+                Directory luceneDirectory = FSDirectory.open(directory);
+                if (DirectoryReader.indexExists(luceneDirectory)) {
+                    indices.put(name, new LuceneIndex(name, luceneDirectory, indexAnalyzer));
+                } else {
+                    luceneDirectory.close();
+                }
+            }
+        }
+        Path aliasFile = path.resolve(ALIAS_FILE);
+        if (Files.exists(aliasFile)) {
+            String index = new String(Files.readAllBytes(aliasFile), StandardCharsets.UTF_8).trim();
+            if (indices.containsKey(index)) {
+                aliasedIndex = index;
+            } else {
+                log.warn("The {} alias points to the missing index {}", ALIAS, index);
+            }
+        }
+        log.debug("Opened the user indices {} in {}, {} aliased to {}", indices.keySet(), path, ALIAS, aliasedIndex);
+    }
+
+    @Override
+    public Map<String, Integer> bulk(String index, Collection<User> users, Map<String, Instant> deletions) throws IOException {
+        write(getIndex(index), users, deletions, true);
+        // the writes are not sent anywhere, so they fail as a whole or not at all
+        return new HashMap<>();
+    }
+
+    @Override
+    public SearchAfterPage<UserSearchHit> searchPage(String query, Pageable pageable, String searchAfter) throws IOException {
+        Query parsed = parse(query);
+        Sort sort = toSort(pageable.getSort());
+        LuceneIndex index = getIndex(null);
+        IndexSearcher searcher = index.searcherManager.acquire();
+        try {
+            int from;
+            TopDocs topDocs;
+            if (searchAfter != null) {
+                from = 0;
+                topDocs = searcher.searchAfter(decodeCursor(searchAfter, sort, searcher.getIndexReader().maxDoc()), live(parsed), pageable.getPageSize(), sort);
+            } else {
+                from = toResultWindow(pageable);
+                topDocs = searcher.search(live(parsed), from + pageable.getPageSize(), sort);
+            }
+            List<UserSearchHit> users = new ArrayList<>(pageable.getPageSize());
+            ScoreDoc last = null;
+            for (int i = from; i < topDocs.scoreDocs.length; i++) {
+                last = topDocs.scoreDocs[i];
+                users.add(hitReader.readValue(readSource(searcher, last.doc, UserSearchHit.FIELDS)));
+            }
+            String next = users.size() == pageable.getPageSize() && last != null ? encodeCursor((FieldDoc) last) : null;
+            return new SearchAfterPage<>(users, pageable, topDocs.totalHits, next);
+        } finally {
+            index.searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public List<User> suggest(String prefix, int size) throws IOException {
+        List<String> terms = analyze(autocompleteSearchAnalyzer, prefix);
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // as a cross_fields multi_match with the and operator, every term matches one of the fields
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms) {
+            List<Query> fields = new ArrayList<>();
+            AUTOCOMPLETE_FIELDS.forEach((field, boost) -> fields.add(new BoostQuery(new TermQuery(new Term(field, term)), boost)));
+            query.add(new DisjunctionMaxQuery(fields, 0f), BooleanClause.Occur.MUST);
+        }
+        LuceneIndex index = getIndex(null);
+        IndexSearcher searcher = index.searcherManager.acquire();
+        try {
+            List<User> users = new ArrayList<>(size);
+            for (ScoreDoc scoreDoc : searcher.search(live(query.build()), size).scoreDocs) {
+                users.add(read(searcher, scoreDoc.doc, SUGGESTION_FIELDS));
+            }
+            return users;
+        } finally {
+            index.searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public UserFacets facets(UserFacets.Interval interval) throws IOException {
+        LuceneIndex index = getIndex(null);
+        IndexSearcher searcher = index.searcherManager.acquire();
+        try {
+            Map<String, Long> langKeys = new HashMap<>();
+            Map<Boolean, Long> activated = new HashMap<>();
+            NavigableMap<Instant, Long> createdDates = new TreeMap<>();
+            long[] total = {0};
+            searcher.search(LIVE, new SimpleCollector() {
+
+                private SortedDocValues langKeyValues;
+
+                private SortedDocValues activatedValues;
+
+                private NumericDocValues createdDateValues;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    langKeyValues = context.reader().getSortedDocValues("langKey");
+                    activatedValues = context.reader().getSortedDocValues("activated");
+                    createdDateValues = context.reader().getNumericDocValues("createdDate");
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    total[0]++;
+                    if (langKeyValues != null && langKeyValues.advanceExact(doc)) {
+                        langKeys.merge(langKeyValues.binaryValue().utf8ToString(), 1L, Long::sum);
+                    }
+                    if (activatedValues != null && activatedValues.advanceExact(doc)) {
+                        activated.merge(Boolean.valueOf(activatedValues.binaryValue().utf8ToString()), 1L, Long::sum);
+                    }
+                    if (createdDateValues != null && createdDateValues.advanceExact(doc)) {
+                        createdDates.merge(interval.truncate(Instant.ofEpochMilli(createdDateValues.longValue())), 1L, Long::sum);
+                    }
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+            // the empty buckets between the oldest and the newest user are returned too, as by Elasticsearch
+            Map<Instant, Long> histogram = new LinkedHashMap<>();
+            if (!createdDates.isEmpty()) {
+                for (Instant start = createdDates.firstKey(); !start.isAfter(createdDates.lastKey()); start = interval.next(start)) {
+                    histogram.put(start, createdDates.getOrDefault(start, 0L));
+                }
+            }
+            return new UserFacets(total[0], byCount(langKeys), byCount(activated), histogram);
+        } finally {
+            index.searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public List<RangeChecksum> checksum(List<UserIdRange> ranges) throws IOException {
+        LuceneIndex index = getIndex(null);
+        IndexSearcher searcher = index.searcherManager.acquire();
+        try {
+            List<RangeChecksum> checksums = new ArrayList<>(ranges.size());
+            for (UserIdRange range : ranges) {
+                RangeChecksum checksum = new RangeChecksum();
+                searcher.search(live(toRangeQuery(range)), new SimpleCollector() {
+
+                    private SortedDocValues ids;
+
+                    private NumericDocValues lastModifiedDates;
+
+                    @Override
+                    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                        ids = context.reader().getSortedDocValues("id");
+                        lastModifiedDates = context.reader().getNumericDocValues("lastModifiedDate");
+                    }
+
+                    @Override
+                    public void collect(int doc) throws IOException {
+                        if (ids == null || !ids.advanceExact(doc)) {
+                            return;
+                        }
+                        Instant lastModifiedDate = lastModifiedDates != null && lastModifiedDates.advanceExact(doc)
+                            ? Instant.ofEpochMilli(lastModifiedDates.longValue()) : null;
+                        checksum.add(ids.binaryValue().utf8ToString(), lastModifiedDate);
+                    }
+
+                    @Override
+                    public boolean needsScores() {
+                        return false;
+                    }
+                });
+                checksums.add(checksum);
+            }
+            return checksums;
+        } finally {
+            index.searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public List<User> findInRange(UserIdRange range, int size) throws IOException {
+        LuceneIndex index = getIndex(null);
+        IndexSearcher searcher = index.searcherManager.acquire();
+        try {
+            List<User> users = new ArrayList<>(size);
+            Sort sort = new Sort(new SortField("id", SortField.Type.STRING));
+            for (ScoreDoc scoreDoc : searcher.search(live(toRangeQuery(range)), Math.max(size, 1), sort).scoreDocs) {
+                users.add(read(searcher, scoreDoc.doc, CHECKSUM_FIELDS));
+            }
+            return users;
+        } finally {
+            index.searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public Set<String> getIndices() {
+        String aliased = aliasedIndex;
+        if (aliased != null) {
+            return Collections.singleton(aliased);
+        }
+        return indices.containsKey(ALIAS) ? Collections.singleton(ALIAS) : Collections.emptySet();
+    }
+
+    @Override
+    public synchronized ReindexCheckpoint createIndex() throws IOException {
+        Instant now = Instant.now();
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint(ALIAS + "_" + now.toEpochMilli(), now);
+        if (indices.containsKey(checkpoint.getIndex())) {
+            throw new IOException("The index " + checkpoint.getIndex() + " already exists");
+        }
+        LuceneIndex index = new LuceneIndex(checkpoint.getIndex(), newDirectory(checkpoint.getIndex()), indexAnalyzer);
+        indices.put(checkpoint.getIndex(), index);
+        saveCheckpoint(checkpoint);
+        return checkpoint;
+    }
+
+    @Override
+    public List<ReindexCheckpoint> getCheckpoints() {
+        List<ReindexCheckpoint> checkpoints = new ArrayList<>();
+        for (LuceneIndex index : indices.values()) {
+            Map<String, String> data = new HashMap<>();
+            Iterable<Map.Entry<String, String>> commitData = index.writer.getLiveCommitData();
+            if (commitData != null) {
+                commitData.forEach(entry -> data.put(entry.getKey(), entry.getValue()));
+            }
+            if (data.containsKey("reindex.started_at")) {
+                ReindexCheckpoint checkpoint = new ReindexCheckpoint(index.name, Instant.ofEpochMilli(Long.parseLong(data.get("reindex.started_at"))));
+                checkpoint.setLastId(data.get("reindex.last_id"));
+                checkpoint.setIndexed(Long.parseLong(data.get("reindex.indexed")));
+                checkpoint.setCompleted(Boolean.parseBoolean(data.get("reindex.completed")));
+                checkpoints.add(checkpoint);
+            }
+        }
+        return checkpoints;
+    }
+
+    @Override
+    public void saveCheckpoint(ReindexCheckpoint checkpoint) throws IOException {
+        Map<String, String> data = new HashMap<>();
+        data.put("reindex.started_at", String.valueOf(checkpoint.getStartedAt().toEpochMilli()));
+        data.put("reindex.last_id", checkpoint.getLastId());
+        data.put("reindex.indexed", String.valueOf(checkpoint.getIndexed()));
+        data.put("reindex.completed", String.valueOf(checkpoint.isCompleted()));
+        LuceneIndex index = getIndex(checkpoint.getIndex());
+        // committed with the documents written so far, so that a resumed reindex never skips any
+        index.writer.setLiveCommitData(data.entrySet());
+        index.writer.commit();
+    }
+
+    @Override
+    public void finishIndex(String index, int replicas) throws IOException {
+        LuceneIndex luceneIndex = getIndex(index);
+        luceneIndex.writer.commit();
+        luceneIndex.searcherManager.maybeRefreshBlocking();
+    }
+
+    @Override
+    public synchronized Set<String> swapAlias(String index, Set<String> previousIndices) throws IOException {
+        getIndex(index);
+        if (path != null) {
+            Path aliasFile = path.resolve(ALIAS_FILE);
+            Path tempFile = path.resolve(ALIAS_FILE + ".tmp");
+            Files.write(tempFile, index.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, aliasFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        aliasedIndex = index;
+        Set<String> detached = new LinkedHashSet<>();
+        for (String previous : previousIndices) {
+            if (previous.equals(ALIAS)) {
+                // as the index is replaced by an alias of the same name
+                deleteIndex(previous);
+            } else if (!previous.equals(index) && indices.containsKey(previous)) {
+                detached.add(previous);
+            }
+        }
+        return detached;
+    }
+
+    @Override
+    public synchronized void deleteIndex(String index) throws IOException {
+        if (index.equals(aliasedIndex)) {
+            throw new IOException("The index " + index + " is behind the " + ALIAS + " alias");
+        }
+        LuceneIndex luceneIndex = indices.remove(index);
+        if (luceneIndex == null) {
+            return;
+        }
+        luceneIndex.close();
+        if (path != null) {
+            FileSystemUtils.deleteRecursively(path.resolve(index));
+        }
+    }
+
+    @Override
+    public void scrollIds(String index, int batchSize, Consumer<List<String>> consumer) throws IOException {
+        LuceneIndex luceneIndex = getIndex(index);
+        luceneIndex.searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = luceneIndex.searcherManager.acquire();
+        try {
+            List<String> ids = new ArrayList<>(batchSize);
+            searcher.search(LIVE, new SimpleCollector() {
+
+                private SortedDocValues values;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    values = context.reader().getSortedDocValues("id");
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    if (values != null && values.advanceExact(doc)) {
+                        ids.add(values.binaryValue().utf8ToString());
+                    }
+                    if (ids.size() == batchSize) {
+                        consumer.accept(new ArrayList<>(ids));
+                        ids.clear();
+                    }
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+            if (!ids.isEmpty()) {
+                consumer.accept(ids);
+            }
+        } finally {
+            luceneIndex.searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public void scrollSearch(String query, int batchSize, Duration keepAlive, Consumer<List<UserSearchHit>> consumer) throws IOException {
+        Query parsed = live(parse(query));
+        LuceneIndex index = getIndex(null);
+        // as a scroll, the searcher reads the index as it was when the scroll started
+        IndexSearcher searcher = index.searcherManager.acquire();
+        try {
+            ScoreDoc after = null;
+            while (true) {
+                ScoreDoc[] scoreDocs = searcher.searchAfter(after, parsed, batchSize, Sort.INDEXORDER).scoreDocs;
+                if (scoreDocs.length == 0) {
+                    return;
+                }
+                List<UserSearchHit> users = new ArrayList<>(scoreDocs.length);
+                for (ScoreDoc scoreDoc : scoreDocs) {
+                    users.add(hitReader.readValue(readSource(searcher, scoreDoc.doc, UserSearchHit.FIELDS)));
+                }
+                consumer.accept(users);
+                after = scoreDocs[scoreDocs.length - 1];
+            }
+        } finally {
+            index.searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public <S extends User> S save(S user) {
+        saveAll(Collections.singletonList(user));
+        return user;
+    }
+
+    @Override
+    public <S extends User> Iterable<S> saveAll(Iterable<S> users) {
+        List<S> list = StreamSupport.stream(users.spliterator(), false).collect(Collectors.toList());
+        try {
+            write(getIndex(null), list, Collections.emptyMap(), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return list;
+    }
+
+    @Override
+    public <S extends User> S index(S user) {
+        return save(user);
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        return find(new TermQuery(new Term("id", id)), Sort.INDEXORDER, 1).stream().findFirst();
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public Iterable<User> findAll() {
+        return find(new MatchAllDocsQuery(), new Sort(new SortField("id", SortField.Type.STRING)), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Iterable<User> findAllById(Iterable<String> ids) {
+        List<BytesRef> terms = StreamSupport.stream(ids.spliterator(), false).map(BytesRef::new).collect(Collectors.toList());
+        return find(new TermInSetQuery("id", terms), Sort.INDEXORDER, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Iterable<User> findAll(org.springframework.data.domain.Sort sort) {
+        return find(new MatchAllDocsQuery(), toSort(sort), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<User> findAll(Pageable pageable) {
+        return find(new MatchAllDocsQuery(), pageable);
+    }
+
+    @Override
+    public long count() {
+        try {
+            LuceneIndex index = getIndex(null);
+            IndexSearcher searcher = index.searcherManager.acquire();
+            try {
+                return searcher.count(LIVE);
+            } finally {
+                index.searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        try {
+            LuceneIndex index = getIndex(null);
+            synchronized (index) {
+                index.writer.deleteDocuments(new Term("id", id));
+                index.commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void delete(User user) {
+        deleteById(user.getId());
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends User> users) {
+        users.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        try {
+            LuceneIndex index = getIndex(null);
+            synchronized (index) {
+                index.writer.deleteAll();
+                index.commit();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Iterable<User> search(QueryBuilder query) {
+        return find(toQuery(query), Sort.RELEVANCE, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Page<User> search(QueryBuilder query, Pageable pageable) {
+        return find(toQuery(query), pageable);
+    }
+
+    @Override
+    public Page<User> search(SearchQuery searchQuery) {
+        if (searchQuery.getFilter() != null || !CollectionUtils.isEmpty(searchQuery.getElasticsearchSorts())
+            || !CollectionUtils.isEmpty(searchQuery.getAggregations())) {
+            throw new UnsupportedOperationException("Only the query and the pageable of a search query are supported by the embedded Lucene index");
+        }
+        return find(toQuery(searchQuery.getQuery()), searchQuery.getPageable());
+    }
+
+    @Override
+    public Page<User> searchSimilar(User entity, String[] fields, Pageable pageable) {
+        String[] similarFields = fields == null || fields.length == 0 ? DEFAULT_FIELDS : fields;
+        JsonNode source = objectMapper.valueToTree(entity);
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        try {
+            LuceneIndex index = getIndex(null);
+            IndexSearcher searcher = index.searcherManager.acquire();
+            try {
+                MoreLikeThis moreLikeThis = new MoreLikeThis(searcher.getIndexReader());
+                moreLikeThis.setFieldNames(similarFields);
+                moreLikeThis.setAnalyzer(searchAnalyzer);
+                // a user has few terms, each of them once
+                moreLikeThis.setMinTermFreq(1);
+                moreLikeThis.setMinDocFreq(1);
+                for (String field : similarFields) {
+                    if (source.hasNonNull(field)) {
+                        query.add(moreLikeThis.like(field, new StringReader(source.get(field).asText())), BooleanClause.Occur.SHOULD);
+                    }
+                }
+            } finally {
+                index.searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // the user is not similar to itself
+        query.add(new TermQuery(new Term("id", entity.getId())), BooleanClause.Occur.MUST_NOT);
+        return find(query.build(), pageable);
+    }
+
+    @Override
+    public void refresh() {
+        try {
+            getIndex(null).searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Class<User> getEntityClass() {
+        return User.class;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (LuceneIndex index : indices.values()) {
+            index.close();
+        }
+        indices.clear();
+    }
+
+    /**
+     * Write users and deletions as a {@code _bulk} request would, versioned with {@code external_gte} if asked:
+     * a write older than the document, or than the deletion of the document, is ignored.
+     */
+    private void write(LuceneIndex index, Collection<? extends User> users, Map<String, Instant> deletions, boolean versioned)
+        throws IOException {
+        if (users.isEmpty() && deletions.isEmpty()) {
+            return;
+        }
+        synchronized (index) {
+            IndexSearcher searcher = index.searcherManager.acquire();
+            try {
+                Map<String, Long> written = new HashMap<>();
+                for (User user : users) {
+                    Long version = versioned && user.getLastModifiedDate() != null ? user.getLastModifiedDate().toEpochMilli() : null;
+                    Long current = getVersion(searcher, written, user.getId());
+                    if (version == null) {
+                        version = current != null ? current : 0L;
+                    } else if (current != null && version < current) {
+                        continue;
+                    }
+                    index.writer.updateDocument(new Term("id", user.getId()), toDocument(user, version));
+                    written.put(user.getId(), version);
+                }
+                for (Map.Entry<String, Instant> deletion : deletions.entrySet()) {
+                    long version = deletion.getValue().toEpochMilli();
+                    Long current = getVersion(searcher, written, deletion.getKey());
+                    if (current != null && version < current) {
+                        continue;
+                    }
+                    // the tombstone keeps the version of the deletion, as Elasticsearch does for a while
+                    index.writer.updateDocument(new Term("id", deletion.getKey()), toTombstone(deletion.getKey(), version));
+                    written.put(deletion.getKey(), version);
+                }
+            } finally {
+                index.searcherManager.release(searcher);
+            }
+            index.commit();
+        }
+    }
+
+    private Long getVersion(IndexSearcher searcher, Map<String, Long> written, String id) throws IOException {
+        if (written.containsKey(id)) {
+            return written.get(id);
+        }
+        TopDocs topDocs = searcher.search(new TermQuery(new Term("id", id)), 1);
+        if (topDocs.scoreDocs.length == 0) {
+            return null;
+        }
+        return searcher.doc(topDocs.scoreDocs[0].doc, Collections.singleton(VERSION)).getField(VERSION).numericValue().longValue();
+    }
+
+    private Document toDocument(User user, long version) throws IOException {
+        Document document = new Document();
+        addKeyword(document, "id", user.getId());
+        document.add(new StoredField(VERSION, version));
+        document.add(new StoredField(SOURCE, writer.writeValueAsBytes(user)));
+        addText(document, "login", user.getLogin());
+        addText(document, "firstName", user.getFirstName());
+        addText(document, "lastName", user.getLastName());
+        addText(document, "email", user.getEmail());
+        if (user.getImageUrl() != null) {
+            document.add(new TextField("imageUrl", user.getImageUrl(), Field.Store.NO));
+        }
+        addKeyword(document, "activated", String.valueOf(user.getActivated()));
+        addKeyword(document, "langKey", user.getLangKey());
+        addDate(document, "createdDate", user.getCreatedDate());
+        addDate(document, "lastModifiedDate", user.getLastModifiedDate());
+        return document;
+    }
+
+    private static Document toTombstone(String id, long version) {
+        Document document = new Document();
+        addKeyword(document, "id", id);
+        document.add(new StoredField(VERSION, version));
+        document.add(new StringField(DELETED, "true", Field.Store.NO));
+        return document;
+    }
+
+    /**
+     * A text field, with its {@code keyword} and {@code autocomplete} sub-fields.
+     */
+    private static void addText(Document document, String field, String value) {
+        if (value == null) {
+            return;
+        }
+        document.add(new TextField(field, value, Field.Store.NO));
+        document.add(new TextField(field + ".autocomplete", value, Field.Store.NO));
+        if (value.length() <= IGNORE_ABOVE) {
+            addKeyword(document, field + ".keyword", value);
+        }
+    }
+
+    private static void addKeyword(Document document, String field, String value) {
+        if (value == null) {
+            return;
+        }
+        document.add(new StringField(field, value, Field.Store.NO));
+        document.add(new SortedDocValuesField(field, new BytesRef(value)));
+    }
+
+    private static void addDate(Document document, String field, Instant value) {
+        if (value == null) {
+            return;
+        }
+        document.add(new NumericDocValuesField(field, value.toEpochMilli()));
+    }
+
+    /**
+     * Order the terms as the {@code terms} aggregations of Elasticsearch, by decreasing count then by term.
+     */
+    private static <K extends Comparable<K>> Map<K, Long> byCount(Map<K, Long> counts) {
+        Map<K, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+            .sorted(Map.Entry.<K, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private static Query toRangeQuery(UserIdRange range) {
+        return TermRangeQuery.newStringRange("id", range.getFrom(), range.getTo(), false, true);
+    }
+
+    /**
+     * @param fields the fields to read from the source, or null for all of them.
+     */
+    private User read(IndexSearcher searcher, int doc, String[] fields) throws IOException {
+        return reader.readValue(readSource(searcher, doc, fields));
+    }
+
+    private JsonNode readSource(IndexSearcher searcher, int doc, String[] fields) throws IOException {
+        BytesRef source = searcher.doc(doc, Collections.singleton(SOURCE)).getBinaryValue(SOURCE);
+        JsonNode node = objectMapper.readTree(objectMapper.getFactory().createParser(source.bytes, source.offset, source.length));
+        if (fields != null) {
+            ((ObjectNode) node).retain(fields);
+        }
+        return node;
+    }
+
+    private List<User> find(Query query, Sort sort, int size) {
+        try {
+            LuceneIndex index = getIndex(null);
+            IndexSearcher searcher = index.searcherManager.acquire();
+            try {
+                int n = Math.max(1, Math.min(size, searcher.getIndexReader().maxDoc()));
+                List<User> users = new ArrayList<>();
+                for (ScoreDoc scoreDoc : searcher.search(live(query), n, sort).scoreDocs) {
+                    users.add(read(searcher, scoreDoc.doc, null));
+                }
+                return users;
+            } finally {
+                index.searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Page<User> find(Query query, Pageable pageable) {
+        Sort sort = toSort(pageable.getSort());
+        try {
+            LuceneIndex index = getIndex(null);
+            IndexSearcher searcher = index.searcherManager.acquire();
+            try {
+                int from = toResultWindow(pageable);
+                TopDocs topDocs = searcher.search(live(query), from + pageable.getPageSize(), sort);
+                List<User> users = new ArrayList<>(pageable.getPageSize());
+                for (int i = from; i < topDocs.scoreDocs.length; i++) {
+                    users.add(read(searcher, topDocs.scoreDocs[i].doc, null));
+                }
+                return new PageImpl<>(users, pageable, topDocs.totalHits);
+            } finally {
+                index.searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Translate the Elasticsearch queries the index supports.
+     */
+    private Query toQuery(QueryBuilder query) {
+        if (query instanceof QueryStringQueryBuilder) {
+            return parse(((QueryStringQueryBuilder) query).queryString());
+        }
+        if (query instanceof MatchAllQueryBuilder) {
+            return new MatchAllDocsQuery();
+        }
+        throw new UnsupportedOperationException(query.getName() + " queries are not supported by the embedded Lucene index");
+    }
+
+    /**
+     * Parse a {@code query_string} query, which has the syntax of the classic Lucene query parser.
+     */
+    private Query parse(String query) {
+        MultiFieldQueryParser parser = new MultiFieldQueryParser(DEFAULT_FIELDS, searchAnalyzer);
+        parser.setAllowLeadingWildcard(true);
+        try {
+            return parser.parse(query);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid query " + query, e);
+        }
+    }
+
+    private static Query live(Query query) {
+        return new BooleanQuery.Builder()
+            .add(query, BooleanClause.Occur.MUST)
+            .add(new TermQuery(new Term(DELETED, "true")), BooleanClause.Occur.MUST_NOT)
+            .build();
+    }
+
+    private static List<String> analyze(Analyzer analyzer, String text) throws IOException {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream("", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    private static int toResultWindow(Pageable pageable) {
+        if (pageable.getOffset() + pageable.getPageSize() > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("Result window is too large, read the pages beyond " + MAX_RESULT_WINDOW +
+                " users with the cursor of the previous page");
+        }
+        return (int) pageable.getOffset();
+    }
+
+    private static Sort toSort(org.springframework.data.domain.Sort sort) {
+        List<SortField> fields = new ArrayList<>();
+        boolean sortedById = false;
+        for (org.springframework.data.domain.Sort.Order order : sort) {
+            String field = SORT_FIELDS.get(order.getProperty());
+            if (field == null) {
+                throw new IllegalArgumentException("Users cannot be sorted by " + order.getProperty());
+            }
+            fields.add(toSortField(field, order.isAscending()));
+            sortedById |= "id".equals(field);
+        }
+        if (sort.isUnsorted()) {
+            fields.add(SortField.FIELD_SCORE);
+        }
+        if (!sortedById) {
+            // search_after needs a total order
+            fields.add(toSortField("id", true));
+        }
+        return new Sort(fields.toArray(new SortField[0]));
+    }
+
+    private static SortField toSortField(String field, boolean ascending) {
+        SortField sortField = new SortField(field, SortField.Type.STRING, !ascending);
+        // missing values last, whatever the order
+        sortField.setMissingValue(ascending ? SortField.STRING_LAST : SortField.STRING_FIRST);
+        return sortField;
+    }
+
+    private String encodeCursor(FieldDoc doc) {
+        ArrayNode values = objectMapper.createArrayNode();
+        for (Object value : doc.fields) {
+            if (value instanceof BytesRef) {
+                values.add(((BytesRef) value).utf8ToString());
+            } else if (value instanceof Float) {
+                values.add((Float) value);
+            } else {
+                values.addNull();
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(values.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FieldDoc decodeCursor(String cursor, Sort sort, int maxDoc) {
+        JsonNode values;
+        try {
+            values = objectMapper.readTree(Base64.getUrlDecoder().decode(cursor));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Invalid search cursor " + cursor, e);
+        }
+        SortField[] sortFields = sort.getSort();
+        if (values == null || !values.isArray() || values.size() != sortFields.length) {
+            throw new IllegalArgumentException("Invalid search cursor " + cursor);
+        }
+        Object[] fields = new Object[sortFields.length];
+        for (int i = 0; i < sortFields.length; i++) {
+            JsonNode value = values.get(i);
+            if (sortFields[i].getType() == SortField.Type.SCORE) {
+                if (!value.isNumber()) {
+                    throw new IllegalArgumentException("Invalid search cursor " + cursor);
+                }
+                fields[i] = value.floatValue();
+            } else {
+                fields[i] = value.isNull() ? null : new BytesRef(value.asText());
+            }
+        }
+        // after the last doc, so that the doc of the cursor, equal on every field, is not read again
+        return new FieldDoc(maxDoc - 1, Float.NaN, fields);
+    }
+
+    private LuceneIndex getIndex(String index) throws IOException {
+        String name = index != null ? index : Optional.ofNullable(aliasedIndex).orElse(ALIAS);
+        LuceneIndex luceneIndex = indices.get(name);
+        if (luceneIndex == null) {
+            throw new IOException("No such index " + name);
+        }
+        return luceneIndex;
+    }
+
+    private Directory newDirectory(String index) throws IOException {
+        if (path == null) {
+            return new RAMDirectory();
+        }
+        Path directory = path.resolve(index);
+        Files.createDirectories(directory);
+        return FSDirectory.open(directory);
+    }
+
+    /**
+     * A Lucene index with its writer and its near real-time searchers.
+     */
+    private static class LuceneIndex implements Closeable {
+
+        private final String name;
+
+        private final Directory directory;
+
+        private final IndexWriter writer;
+
+        private final SearcherManager searcherManager;
+
+        LuceneIndex(String name, Directory directory, Analyzer analyzer) throws IOException {
+            this.name = name;
+            this.directory = directory;
+            this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+            this.writer.commit();
+            this.searcherManager = new SearcherManager(writer, null);
+        }
+
+        /**
+         * Make the writes durable and searchable, as a {@code _bulk} request with {@code refresh=true} would.
+         */
+        void commit() throws IOException {
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        }
+
+        @Override
+        public void close() throws IOException {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        }
+    }
+
+    /**
+     * The {@code autocomplete} analyzer of {@code user-settings.json}: the edge n-grams of the words, lowercased and
+     * ascii-folded.
+     */
+    private static class AutocompleteAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = CharTokenizer.fromTokenCharPredicate(Character::isLetterOrDigit);
+            TokenStream stream = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+            return new TokenStreamComponents(tokenizer, new EdgeNGramTokenFilter(stream, MIN_GRAM, MAX_GRAM, false));
+        }
+    }
+
+    /**
+     * The {@code autocomplete_search} analyzer of {@code user-settings.json}: the words, lowercased and ascii-folded.
+     */
+    private static class AutocompleteSearchAnalyzer extends Analyzer {
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            return new TokenStreamComponents(tokenizer, new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer)));
+        }
+    }
+}
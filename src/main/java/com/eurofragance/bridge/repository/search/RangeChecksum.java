@@ -0,0 +1,81 @@
+package com.eurofragance.bridge.repository.search;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The number of users of a {@link UserIdRange} and the sum of the hashes of their id and last modified date, which
+ * is the same whatever the order the users are added in, so that a range of the database and of the index can be
+ * compared without reading their users.
+ * <p>
+ * The hash is computed by the {@code checksum} script of {@link UserSearchRepositoryImpl} too, both must be kept
+ * identical.
+ */
+public class RangeChecksum {
+
+    private long count;
+
+    private long sum;
+
+    public RangeChecksum() {
+    }
+
+    public RangeChecksum(long count, long sum) {
+        this.count = count;
+        this.sum = sum;
+    }
+
+    /**
+     * @param id               the id of the user.
+     * @param lastModifiedDate its last modified date, to the millisecond as indexed, or null.
+     */
+    public void add(String id, Instant lastModifiedDate) {
+        count++;
+        sum += hash(id, lastModifiedDate == null ? 0L : lastModifiedDate.toEpochMilli());
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * The golden ratio spreads the hash code of the id over the 64 bits, and the finalizer of MurmurHash3 mixes
+     * it with the date.
+     */
+    static long hash(String id, long lastModifiedDate) {
+        long hash = id.hashCode() * -7046029254386353131L + lastModifiedDate;
+        hash ^= hash >>> 33;
+        hash *= -49064778989728563L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RangeChecksum)) {
+            return false;
+        }
+        RangeChecksum that = (RangeChecksum) o;
+        return count == that.count && sum == that.sum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, sum);
+    }
+
+    @Override
+    public String toString() {
+        return "RangeChecksum{" +
+            "count=" + count +
+            ", sum=" + sum +
+            "}";
+    }
+}
@@ -0,0 +1,71 @@
+package com.eurofragance.bridge.repository.search;
+
+import java.time.Instant;
+
+/**
+ * The progress of a reindex into a versioned user index, kept in the {@code _meta} of its mapping so that an
+ * interrupted reindex can be resumed from any instance.
+ */
+public class ReindexCheckpoint {
+
+    private final String index;
+
+    private final Instant startedAt;
+
+    private String lastId = "";
+
+    private long indexed;
+
+    private boolean completed;
+
+    public ReindexCheckpoint(String index, Instant startedAt) {
+        this.index = index;
+        this.startedAt = startedAt;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return the greatest id copied to the index, users are copied in id order.
+     */
+    public String getLastId() {
+        return lastId;
+    }
+
+    public void setLastId(String lastId) {
+        this.lastId = lastId;
+    }
+
+    public long getIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(long indexed) {
+        this.indexed = indexed;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(boolean completed) {
+        this.completed = completed;
+    }
+
+    @Override
+    public String toString() {
+        return "ReindexCheckpoint{" +
+            "index='" + index + '\'' +
+            ", startedAt=" + startedAt +
+            ", lastId='" + lastId + '\'' +
+            ", indexed=" + indexed +
+            ", completed=" + completed +
+            "}";
+    }
+}
@@ -0,0 +1,30 @@
+package com.eurofragance.bridge.repository.search;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * A page of search results, with the cursor of the next page for {@code search_after}.
+ *
+ * @param <T> the type of the results.
+ */
+public class SearchAfterPage<T> extends PageImpl<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String searchAfter;
+
+    public SearchAfterPage(List<T> content, Pageable pageable, long total, String searchAfter) {
+        super(content, pageable, total);
+        this.searchAfter = searchAfter;
+    }
+
+    /**
+     * @return the opaque cursor of the next page, or null if this page is the last one.
+     */
+    public String getSearchAfter() {
+        return searchAfter;
+    }
+}
@@ -0,0 +1,136 @@
+package com.eurofragance.bridge.repository.search;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The number of users of the {@code user} index per language, per activation status, and per creation date
+ * bucket, counted by aggregations rather than by reading the users.
+ */
+public class UserFacets implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long total;
+
+    private final Map<String, Long> langKeys;
+
+    private final Map<Boolean, Long> activated;
+
+    private final Map<Instant, Long> createdDates;
+
+    /**
+     * @param total        the number of users.
+     * @param langKeys     the number of users per language key.
+     * @param activated    the number of users per activation status.
+     * @param createdDates the number of users per creation date bucket, by start of bucket in order, without gaps.
+     */
+    public UserFacets(long total, Map<String, Long> langKeys, Map<Boolean, Long> activated, Map<Instant, Long> createdDates) {
+        this.total = total;
+        this.langKeys = Collections.unmodifiableMap(langKeys);
+        this.activated = Collections.unmodifiableMap(activated);
+        this.createdDates = Collections.unmodifiableMap(createdDates);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Map<String, Long> getLangKeys() {
+        return langKeys;
+    }
+
+    public Map<Boolean, Long> getActivated() {
+        return activated;
+    }
+
+    public Map<Instant, Long> getCreatedDates() {
+        return createdDates;
+    }
+
+    /**
+     * The calendar intervals of the creation date histogram, in UTC, weeks starting on Monday as in Elasticsearch.
+     */
+    public enum Interval {
+
+        DAY, WEEK, MONTH, QUARTER, YEAR;
+
+        /**
+         * @param value the name of the interval, in any case.
+         * @return the interval.
+         * @throws IllegalArgumentException if there is no such interval.
+         */
+        public static Interval parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown interval " + value + ", expected one of day, week, month, quarter or year");
+            }
+        }
+
+        /**
+         * @return the {@code interval} of a {@code date_histogram} aggregation.
+         */
+        public String getExpression() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * @return the start of the bucket of an instant.
+         */
+        public Instant truncate(Instant instant) {
+            LocalDate date = instant.atOffset(ZoneOffset.UTC).toLocalDate();
+            switch (this) {
+                case WEEK:
+                    date = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                    break;
+                case MONTH:
+                    date = date.withDayOfMonth(1);
+                    break;
+                case QUARTER:
+                    date = date.with(IsoFields.DAY_OF_QUARTER, 1);
+                    break;
+                case YEAR:
+                    date = date.withDayOfYear(1);
+                    break;
+                default:
+                    break;
+            }
+            return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+
+        /**
+         * @return the start of the bucket after the one starting at an instant.
+         */
+        public Instant next(Instant start) {
+            LocalDate date = start.atOffset(ZoneOffset.UTC).toLocalDate();
+            switch (this) {
+                case WEEK:
+                    date = date.plus(1, ChronoUnit.WEEKS);
+                    break;
+                case MONTH:
+                    date = date.plus(1, ChronoUnit.MONTHS);
+                    break;
+                case QUARTER:
+                    date = date.plus(3, ChronoUnit.MONTHS);
+                    break;
+                case YEAR:
+                    date = date.plus(1, ChronoUnit.YEARS);
+                    break;
+                default:
+                    date = date.plus(1, ChronoUnit.DAYS);
+                    break;
+            }
+            return date.atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+    }
+}
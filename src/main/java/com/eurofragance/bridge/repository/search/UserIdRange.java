@@ -0,0 +1,34 @@
+package com.eurofragance.bridge.repository.search;
+
+/**
+ * A range of user ids, after {@code from} and up to {@code to} included, the ids being compared as keywords are,
+ * by the bytes of their UTF-8 encoding.
+ */
+public class UserIdRange {
+
+    private final String from;
+
+    private final String to;
+
+    /**
+     * @param from the id before the range, or the empty string to start from the first id.
+     * @param to   the last id of the range, or null to end with the last id.
+     */
+    public UserIdRange(String from, String to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + from + ", " + (to != null ? to + "]" : "...)");
+    }
+}
@@ -0,0 +1,293 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.domain.User;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.client.RestClient;
+import org.springframework.data.domain.Pageable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Non-blocking client of the {@code user} index, over the pooled keep-alive connections of the low-level
+ * Elasticsearch {@link RestClient}, as an alternative to the Jest transport of the {@link UserSearchRepositoryImpl}.
+ * <p>
+ * The documents of the {@code _bulk} requests are serialized by Jackson straight into pooled byte buffers, gzipped
+ * if enabled, rather than into a String per document and then a String per request. The responses are asked
+ * gzipped, and parsed from their stream. The futures are completed by the I/O threads of the client, so the
+ * callers should not block in their callbacks.
+ * <p>
+ * The searches send the same request bodies as the {@link UserSearchRepositoryImpl}, so both transports read the
+ * same pages with the same cursors.
+ */
+public class UserSearchAsyncClient {
+
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private static final Gson GSON = new Gson();
+
+    private final RestClient restClient;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter writer;
+
+    private final ObjectReader hitReader;
+
+    private final String alias;
+
+    private final String type;
+
+    private final boolean compression;
+
+    private final BlockingQueue<Buffer> buffers;
+
+    private final int maxBufferSize;
+
+    private final RequestOptions options;
+
+    /**
+     * @param restClient     the low-level client.
+     * @param objectMapper   the mapper of the documents.
+     * @param alias          the alias of the user index.
+     * @param type           the mapping type of the users.
+     * @param compression    whether the {@code _bulk} requests are gzipped.
+     * @param bufferPoolSize the number of request buffers kept for reuse.
+     * @param maxBufferSize  the size of the largest request buffer kept for reuse, in bytes.
+     */
+    public UserSearchAsyncClient(RestClient restClient, ObjectMapper objectMapper, String alias, String type,
+                                 boolean compression, int bufferPoolSize, int maxBufferSize) {
+        this.restClient = restClient;
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writerFor(User.class)
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.hitReader = objectMapper.readerFor(UserSearchHit.class).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.alias = alias;
+        this.type = type;
+        this.compression = compression;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, bufferPoolSize));
+        this.maxBufferSize = maxBufferSize;
+        RequestOptions.Builder builder = RequestOptions.DEFAULT.toBuilder();
+        builder.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        this.options = builder.build();
+    }
+
+    /**
+     * Index and delete users in a single {@code _bulk} request, as {@link UserSearchRepository#bulk}.
+     *
+     * @param index     the index, or null for the alias.
+     * @param users     the users to index, versioned by their last modified date.
+     * @param deletions the dates of deletion of the users to delete, by id.
+     * @return the future of the ids of the failed operations, with their status.
+     */
+    public CompletableFuture<Map<String, Integer>> bulk(String index, Collection<User> users, Map<String, Instant> deletions) {
+        if (users.isEmpty() && deletions.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        Buffer buffer = acquire();
+        try {
+            try (OutputStream out = compression ? new GZIPOutputStream(buffer, INITIAL_BUFFER_SIZE) : buffer;
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                for (User user : users) {
+                    writeAction(generator, "index", user.getId(), user.getLastModifiedDate());
+                    writer.writeValue(generator, user);
+                }
+                for (Map.Entry<String, Instant> deletion : deletions.entrySet()) {
+                    writeAction(generator, "delete", deletion.getKey(), deletion.getValue());
+                }
+                // the body of a _bulk request ends with a newline
+                generator.writeRaw('\n');
+            }
+        } catch (IOException | RuntimeException e) {
+            release(buffer);
+            CompletableFuture<Map<String, Integer>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return perform("POST", "/" + (index != null ? index : alias) + "/" + type + "/_bulk", buffer, NDJSON, compression,
+            UserSearchAsyncClient::toFailures);
+    }
+
+    /**
+     * Search a page of users, as {@link UserSearchRepository#searchPage}.
+     *
+     * @param query       the query string.
+     * @param pageable    the pagination information.
+     * @param searchAfter the cursor of the previous page, or null.
+     * @return the future of the page of users, with the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is not valid or a sort property is not sortable.
+     */
+    public CompletableFuture<SearchAfterPage<UserSearchHit>> searchPage(String query, Pageable pageable, String searchAfter) {
+        JsonObject body = UserSearchRepositoryImpl.toSearchPageBody(query, pageable, searchAfter);
+        Buffer buffer = acquire();
+        try (JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            GSON.toJson(body, jsonWriter);
+        } catch (IOException | RuntimeException e) {
+            release(buffer);
+            CompletableFuture<SearchAfterPage<UserSearchHit>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return perform("POST", "/" + alias + "/" + type + "/_search", buffer, ContentType.APPLICATION_JSON, false,
+            json -> toPage(json, pageable));
+    }
+
+    private <T> CompletableFuture<T> perform(String method, String endpoint, Buffer buffer, ContentType contentType,
+                                             boolean gzipped, ResponseParser<T> parser) {
+        NByteArrayEntity entity = new NByteArrayEntity(buffer.array(), 0, buffer.size(), contentType);
+        if (gzipped) {
+            entity.setContentEncoding("gzip");
+        }
+        Request request = new Request(method, endpoint);
+        request.setEntity(entity);
+        request.setOptions(options);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        restClient.performRequestAsync(request, new ResponseListener() {
+
+            @Override
+            public void onSuccess(Response response) {
+                // not before, as the request may be retried on another node until then
+                release(buffer);
+                try {
+                    future.complete(parser.parse(readTree(response)));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                release(buffer);
+                future.completeExceptionally(exception);
+            }
+        });
+        return future;
+    }
+
+    private JsonNode readTree(Response response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if ("gzip".equalsIgnoreCase(response.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            entity = new GzipDecompressingEntity(entity);
+        }
+        try (InputStream in = entity.getContent()) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private SearchAfterPage<UserSearchHit> toPage(JsonNode json, Pageable pageable) throws IOException {
+        JsonNode hits = json.path("hits");
+        JsonNode documents = hits.path("hits");
+        List<UserSearchHit> users = new ArrayList<>(documents.size());
+        JsonNode lastSort = null;
+        for (JsonNode document : documents) {
+            users.add(hitReader.readValue(document.get("_source")));
+            lastSort = document.get("sort");
+        }
+        String next = documents.size() == pageable.getPageSize() && lastSort != null
+            ? UserSearchRepositoryImpl.encodeCursor(lastSort.toString()) : null;
+        return new SearchAfterPage<>(users, pageable, hits.path("total").asLong(), next);
+    }
+
+    private static Map<String, Integer> toFailures(JsonNode json) {
+        Map<String, Integer> failures = new HashMap<>();
+        if (!json.path("errors").asBoolean()) {
+            return failures;
+        }
+        for (JsonNode item : json.path("items")) {
+            Iterator<Map.Entry<String, JsonNode>> operations = item.fields();
+            if (!operations.hasNext()) {
+                continue;
+            }
+            Map.Entry<String, JsonNode> operation = operations.next();
+            int status = operation.getValue().path("status").asInt();
+            // a conflict is an older write than the indexed document, deleting a missing document is not a failure
+            if (status >= 300 && status != 409 && !("delete".equals(operation.getKey()) && status == 404)) {
+                failures.put(operation.getValue().path("_id").asText(), status);
+            }
+        }
+        return failures;
+    }
+
+    private static void writeAction(JsonGenerator generator, String action, String id, Instant version) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart(action);
+        generator.writeStringField("_id", id);
+        if (version != null) {
+            generator.writeNumberField("version", version.toEpochMilli());
+            generator.writeStringField("version_type", UserSearchRepositoryImpl.VERSION_TYPE);
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private Buffer acquire() {
+        Buffer buffer = buffers.poll();
+        return buffer != null ? buffer : new Buffer();
+    }
+
+    private void release(Buffer buffer) {
+        if (buffer.array().length <= maxBufferSize) {
+            buffer.reset();
+            buffers.offer(buffer);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+
+        T parse(JsonNode json) throws IOException;
+    }
+
+    /**
+     * A buffer whose bytes are sent without being copied to a new array.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
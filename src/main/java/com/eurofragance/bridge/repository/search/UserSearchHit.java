@@ -0,0 +1,133 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A user found by a search, with only the fields the {@code user} index holds.
+ * <p>
+ * The hits are not read into the {@link com.eurofragance.bridge.domain.User} entity, whose audit dates default to
+ * the current instant and whose authorities, not indexed, would read as none.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class UserSearchHit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The fields read from the documents of the searches.
+     */
+    public static final String[] FIELDS = {"id", "login", "firstName", "lastName", "email", "imageUrl", "activated", "langKey",
+        "createdDate", "lastModifiedDate"};
+
+    private String id;
+
+    private String login;
+
+    private String firstName;
+
+    private String lastName;
+
+    private String email;
+
+    private String imageUrl;
+
+    private boolean activated;
+
+    private String langKey;
+
+    private Instant createdDate;
+
+    private Instant lastModifiedDate;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
+    public boolean isActivated() {
+        return activated;
+    }
+
+    public void setActivated(boolean activated) {
+        this.activated = activated;
+    }
+
+    public String getLangKey() {
+        return langKey;
+    }
+
+    public void setLangKey(String langKey) {
+        this.langKey = langKey;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Instant getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    public void setLastModifiedDate(Instant lastModifiedDate) {
+        this.lastModifiedDate = lastModifiedDate;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSearchHit{" +
+            "id='" + id + '\'' +
+            ", login='" + login + '\'' +
+            ", activated=" + activated +
+            "}";
+    }
+}
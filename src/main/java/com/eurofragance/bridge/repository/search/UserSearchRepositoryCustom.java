@@ -0,0 +1,161 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.domain.User;
+
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Spring Data Elasticsearch custom methods of the {@link UserSearchRepository}.
+ * <p>
+ * The {@code user} index is an alias of a versioned index once it has been rebuilt, see
+ * {@link com.eurofragance.bridge.service.UserSearchReindexer}.
+ */
+public interface UserSearchRepositoryCustom {
+
+    /**
+     * Index and delete users in a single {@code _bulk} request.
+     * <p>
+     * Writes are versioned with the last modified date of the users, and deletes with their date, so a write
+     * older than the document already indexed is ignored.
+     *
+     * @param index     the index to write to, or null for the {@code user} index.
+     * @param users     the users to index.
+     * @param deletions the date of the deletion of the users to delete, by id.
+     * @return the HTTP status of the operations which failed, by id.
+     * @throws IOException if the request failed as a whole.
+     */
+    Map<String, Integer> bulk(String index, Collection<User> users, Map<String, Instant> deletions) throws IOException;
+
+    /**
+     * Search users with a {@code query_string} query, reading only the fields of the user DTO from the documents.
+     * <p>
+     * The results are sorted by the sort of the pageable, or by score, then by id so that the order is total.
+     * The first page is read from the page number of the pageable, the following ones should be read with the
+     * cursor of the previous page, which does not get slower with the depth of the page.
+     *
+     * @param query       the query.
+     * @param pageable    the size and sort of the page, and its number if there is no cursor.
+     * @param searchAfter the cursor of the previous page, or null.
+     * @return the page of users, only with the fields of the index.
+     * @throws IllegalArgumentException if the cursor is not valid or a sort property is not sortable.
+     * @throws IOException              if the request failed.
+     */
+    SearchAfterPage<UserSearchHit> searchPage(String query, Pageable pageable, String searchAfter) throws IOException;
+
+    /**
+     * Suggest users whose login, first name, last name or email have words starting with the words of a prefix,
+     * from the edge n-grams of the {@code autocomplete} sub-fields, reading only their login and names.
+     *
+     * @param prefix the prefix typed, without any query syntax.
+     * @param size   the maximum number of suggestions.
+     * @return the best matching users, only with their id, login and names.
+     * @throws IOException if the request failed.
+     */
+    List<User> suggest(String prefix, int size) throws IOException;
+
+    /**
+     * Count the users per language, per activation status and per creation date bucket, with aggregations.
+     *
+     * @param interval the interval of the creation date buckets.
+     * @return the counts, the creation date buckets from the oldest user to the newest one.
+     * @throws IOException if the request failed.
+     */
+    UserFacets facets(UserFacets.Interval interval) throws IOException;
+
+    /**
+     * Count and checksum the documents of id ranges of the {@code user} index, in a single request.
+     *
+     * @param ranges the ranges.
+     * @return the checksum of the documents of each range, in the order of the ranges.
+     * @throws IOException if the request failed.
+     */
+    List<RangeChecksum> checksum(List<UserIdRange> ranges) throws IOException;
+
+    /**
+     * Read the first documents of an id range of the {@code user} index, in id order.
+     *
+     * @param range the range.
+     * @param size  the maximum number of documents.
+     * @return the users, only with their id and last modified date.
+     * @throws IOException if the request failed.
+     */
+    List<User> findInRange(UserIdRange range, int size) throws IOException;
+
+    /**
+     * @return the indices behind the {@code user} alias, or the {@code user} index itself if it is not an alias yet.
+     * @throws IOException if the request failed.
+     */
+    Set<String> getIndices() throws IOException;
+
+    /**
+     * Create a new versioned user index with the mapping of the {@link User} entity, without replicas nor
+     * refreshes until {@link #finishIndex(String, int)}.
+     *
+     * @return the checkpoint of the reindex filling the index.
+     * @throws IOException if the request failed.
+     */
+    ReindexCheckpoint createIndex() throws IOException;
+
+    /**
+     * @return the reindex checkpoints of all the versioned user indices.
+     * @throws IOException if the request failed.
+     */
+    List<ReindexCheckpoint> getCheckpoints() throws IOException;
+
+    void saveCheckpoint(ReindexCheckpoint checkpoint) throws IOException;
+
+    /**
+     * Turn the refreshes back on, add the replicas and refresh a versioned user index.
+     *
+     * @param index    the index.
+     * @param replicas the number of replicas.
+     * @throws IOException if the request failed.
+     */
+    void finishIndex(String index, int replicas) throws IOException;
+
+    /**
+     * Point the {@code user} alias to an index in one atomic request, replacing the {@code user} index itself
+     * if it is not an alias yet.
+     *
+     * @param index           the new index.
+     * @param previousIndices the indices the alias pointed to.
+     * @return the previous indices which still exist, no longer behind the alias.
+     * @throws IOException if the request failed.
+     */
+    Set<String> swapAlias(String index, Set<String> previousIndices) throws IOException;
+
+    void deleteIndex(String index) throws IOException;
+
+    /**
+     * Scroll through the ids of the documents of an index.
+     *
+     * @param index     the index.
+     * @param batchSize the number of ids per batch.
+     * @param consumer  called with each batch of ids.
+     * @throws IOException if a request failed.
+     */
+    void scrollIds(String index, int batchSize, Consumer<List<String>> consumer) throws IOException;
+
+    /**
+     * Scroll through the users matching a query string, with only the fields of the index, in no particular order.
+     * <p>
+     * The users are read as they were indexed when the scroll started. The next batch is only requested once the
+     * consumer returns, so a slow consumer slows the scroll down rather than buffering the results.
+     *
+     * @param query     the query string.
+     * @param batchSize the number of users per batch.
+     * @param keepAlive the time the consumer may take with a batch before the scroll expires.
+     * @param consumer  called with each batch of users.
+     * @throws IOException if a request failed.
+     */
+    void scrollSearch(String query, int batchSize, Duration keepAlive, Consumer<List<UserSearchHit>> consumer) throws IOException;
+}
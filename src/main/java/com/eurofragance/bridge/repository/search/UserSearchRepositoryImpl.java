@@ -0,0 +1,588 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.domain.User;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.action.GenericResultAbstractAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.config.ElasticsearchVersion;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.params.Parameters;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.annotations.Mapping;
+import org.springframework.data.elasticsearch.annotations.Setting;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.EntityMapper;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Jest implementation of the {@link UserSearchRepositoryCustom} methods.
+ */
+public class UserSearchRepositoryImpl implements UserSearchRepositoryCustom {
+
+    static final String VERSION_TYPE = "external_gte";
+
+    private static final String SCROLL_KEEP_ALIVE = "1m";
+
+    /**
+     * The fields read from the documents of the suggestions.
+     */
+    private static final String[] SUGGESTION_FIELDS = {"id", "login", "firstName", "lastName"};
+
+    /**
+     * The edge n-gram fields matching the suggestions, a match on the login counting most.
+     */
+    private static final String[] AUTOCOMPLETE_FIELDS = {"login.autocomplete^3", "firstName.autocomplete^2", "lastName.autocomplete^2",
+        "email.autocomplete"};
+
+    /**
+     * The fields read from the documents compared with the database.
+     */
+    private static final String[] CHECKSUM_FIELDS = {"id", "lastModifiedDate"};
+
+    /**
+     * The most language keys counted by the facets, far more than the languages of the application.
+     */
+    private static final int MAX_LANG_KEYS = 100;
+
+    /**
+     * Sums the hashes of {@link RangeChecksum#hash(String, long)} per shard, then over the shards.
+     */
+    private static final String CHECKSUM_INIT_SCRIPT = "state.sum = 0L";
+
+    private static final String CHECKSUM_MAP_SCRIPT =
+        "long date = doc.containsKey('lastModifiedDate') && doc['lastModifiedDate'].size() > 0 ? doc['lastModifiedDate'].value.getMillis() : 0L; " +
+        "long hash = doc['id'].value.hashCode() * -7046029254386353131L + date; " +
+        "hash ^= hash >>> 33; hash *= -49064778989728563L; hash ^= hash >>> 33; " +
+        "state.sum += hash";
+
+    private static final String CHECKSUM_COMBINE_SCRIPT = "return state.sum";
+
+    private static final String CHECKSUM_REDUCE_SCRIPT = "long sum = 0L; for (s in states) { if (s != null) { sum += s } } return sum";
+
+    /**
+     * The fields sorting the searches, by property of the user.
+     */
+    private static final Map<String, String> SORT_FIELDS = new HashMap<>();
+
+    static {
+        SORT_FIELDS.put("id", "id");
+        SORT_FIELDS.put("login", "login.keyword");
+        SORT_FIELDS.put("firstName", "firstName.keyword");
+        SORT_FIELDS.put("lastName", "lastName.keyword");
+        SORT_FIELDS.put("email", "email.keyword");
+        SORT_FIELDS.put("activated", "activated");
+        SORT_FIELDS.put("langKey", "langKey");
+    }
+
+    private final JestClient jestClient;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+
+    private final EntityMapper entityMapper;
+
+    public UserSearchRepositoryImpl(JestClient jestClient, ElasticsearchOperations elasticsearchOperations, EntityMapper entityMapper) {
+        this.jestClient = jestClient;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.entityMapper = entityMapper;
+    }
+
+    @Override
+    public Map<String, Integer> bulk(String index, Collection<User> users, Map<String, Instant> deletions) throws IOException {
+        List<BulkableAction<?>> actions = new ArrayList<>(users.size() + deletions.size());
+        for (User user : users) {
+            Index.Builder action = new Index.Builder(entityMapper.mapToString(user)).id(user.getId());
+            if (user.getLastModifiedDate() != null) {
+                action.setParameter(Parameters.VERSION, user.getLastModifiedDate().toEpochMilli())
+                    .setParameter(Parameters.VERSION_TYPE, VERSION_TYPE);
+            }
+            actions.add(action.build());
+        }
+        deletions.forEach((id, deletedAt) -> actions.add(new Delete.Builder(id)
+            .setParameter(Parameters.VERSION, deletedAt.toEpochMilli())
+            .setParameter(Parameters.VERSION_TYPE, VERSION_TYPE)
+            .build()));
+        Map<String, Integer> failures = new HashMap<>();
+        if (actions.isEmpty()) {
+            return failures;
+        }
+        BulkResult result = jestClient.execute(new Bulk.Builder()
+            .defaultIndex(index != null ? index : getAlias())
+            .defaultType(getType())
+            .addAction(actions)
+            .build());
+        if (!result.isSucceeded() && result.getItems().isEmpty()) {
+            throw new IOException("Bulk request failed with status " + result.getResponseCode() + ": " + result.getErrorMessage());
+        }
+        for (BulkResult.BulkResultItem item : result.getFailedItems()) {
+            // a conflict is an older write than the indexed document, deleting a missing document is not a failure
+            if (item.status != 409 && !("delete".equals(item.operation) && item.status == 404)) {
+                failures.put(item.id, item.status);
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public SearchAfterPage<UserSearchHit> searchPage(String query, Pageable pageable, String searchAfter) throws IOException {
+        JsonObject body = toSearchPageBody(query, pageable, searchAfter);
+        JsonObject hits = execute("POST", getAlias() + "/" + getType() + "/_search", body).getJsonObject().getAsJsonObject("hits");
+        JsonArray documents = hits.getAsJsonArray("hits");
+        List<UserSearchHit> users = new ArrayList<>(documents.size());
+        JsonArray lastSort = null;
+        for (JsonElement document : documents) {
+            users.add(entityMapper.mapToObject(document.getAsJsonObject().get("_source").toString(), UserSearchHit.class));
+            lastSort = document.getAsJsonObject().getAsJsonArray("sort");
+        }
+        String next = documents.size() == pageable.getPageSize() && lastSort != null ? encodeCursor(lastSort.toString()) : null;
+        return new SearchAfterPage<>(users, pageable, hits.get("total").getAsLong(), next);
+    }
+
+    @Override
+    public List<User> suggest(String prefix, int size) throws IOException {
+        JsonObject multiMatch = new JsonObject();
+        multiMatch.addProperty("query", prefix);
+        multiMatch.add("fields", toJsonArray(AUTOCOMPLETE_FIELDS));
+        multiMatch.addProperty("type", "cross_fields");
+        multiMatch.addProperty("operator", "and");
+        JsonObject body = new JsonObject();
+        body.add("query", wrap("multi_match", multiMatch));
+        body.addProperty("size", size);
+        body.add("_source", toJsonArray(SUGGESTION_FIELDS));
+        JsonArray documents = execute("POST", getAlias() + "/" + getType() + "/_search", body).getJsonObject()
+            .getAsJsonObject("hits").getAsJsonArray("hits");
+        List<User> users = new ArrayList<>(documents.size());
+        for (JsonElement document : documents) {
+            users.add(entityMapper.mapToObject(document.getAsJsonObject().get("_source").toString(), User.class));
+        }
+        return users;
+    }
+
+    @Override
+    public UserFacets facets(UserFacets.Interval interval) throws IOException {
+        JsonObject langKeys = new JsonObject();
+        langKeys.addProperty("field", "langKey");
+        langKeys.addProperty("size", MAX_LANG_KEYS);
+        JsonObject activated = new JsonObject();
+        activated.addProperty("field", "activated");
+        JsonObject createdDates = new JsonObject();
+        createdDates.addProperty("field", "createdDate");
+        createdDates.addProperty("interval", interval.getExpression());
+        // the empty buckets between the oldest and the newest user are returned too
+        createdDates.addProperty("min_doc_count", 0);
+        JsonObject aggregations = new JsonObject();
+        aggregations.add("langKey", wrap("terms", langKeys));
+        aggregations.add("activated", wrap("terms", activated));
+        aggregations.add("createdDate", wrap("date_histogram", createdDates));
+        JsonObject body = new JsonObject();
+        body.addProperty("size", 0);
+        body.add("aggs", aggregations);
+        JsonObject result = execute("POST", getAlias() + "/" + getType() + "/_search", body).getJsonObject();
+        JsonObject buckets = result.getAsJsonObject("aggregations");
+        Map<String, Long> langKeyCounts = new LinkedHashMap<>();
+        for (JsonElement bucket : buckets.getAsJsonObject("langKey").getAsJsonArray("buckets")) {
+            langKeyCounts.put(bucket.getAsJsonObject().get("key").getAsString(), bucket.getAsJsonObject().get("doc_count").getAsLong());
+        }
+        Map<Boolean, Long> activatedCounts = new LinkedHashMap<>();
+        for (JsonElement bucket : buckets.getAsJsonObject("activated").getAsJsonArray("buckets")) {
+            // the keys of the boolean terms are 1 and 0
+            activatedCounts.put(Boolean.valueOf(bucket.getAsJsonObject().get("key_as_string").getAsString()),
+                bucket.getAsJsonObject().get("doc_count").getAsLong());
+        }
+        Map<Instant, Long> createdDateCounts = new LinkedHashMap<>();
+        for (JsonElement bucket : buckets.getAsJsonObject("createdDate").getAsJsonArray("buckets")) {
+            createdDateCounts.put(Instant.ofEpochMilli(bucket.getAsJsonObject().get("key").getAsLong()),
+                bucket.getAsJsonObject().get("doc_count").getAsLong());
+        }
+        return new UserFacets(result.getAsJsonObject("hits").get("total").getAsLong(), langKeyCounts, activatedCounts,
+            createdDateCounts);
+    }
+
+    @Override
+    public List<RangeChecksum> checksum(List<UserIdRange> ranges) throws IOException {
+        JsonArray filters = new JsonArray();
+        ranges.forEach(range -> filters.add(toRangeQuery(range)));
+        JsonObject checksum = new JsonObject();
+        checksum.addProperty("init_script", CHECKSUM_INIT_SCRIPT);
+        checksum.addProperty("map_script", CHECKSUM_MAP_SCRIPT);
+        checksum.addProperty("combine_script", CHECKSUM_COMBINE_SCRIPT);
+        checksum.addProperty("reduce_script", CHECKSUM_REDUCE_SCRIPT);
+        JsonObject aggregation = new JsonObject();
+        aggregation.add("filters", wrap("filters", filters));
+        aggregation.add("aggs", wrap("checksum", wrap("scripted_metric", checksum)));
+        JsonObject body = new JsonObject();
+        body.addProperty("size", 0);
+        body.add("aggs", wrap("ranges", aggregation));
+        JsonArray buckets = execute("POST", getAlias() + "/" + getType() + "/_search", body).getJsonObject()
+            .getAsJsonObject("aggregations").getAsJsonObject("ranges").getAsJsonArray("buckets");
+        List<RangeChecksum> checksums = new ArrayList<>(buckets.size());
+        for (JsonElement bucket : buckets) {
+            checksums.add(new RangeChecksum(bucket.getAsJsonObject().get("doc_count").getAsLong(),
+                bucket.getAsJsonObject().getAsJsonObject("checksum").get("value").getAsLong()));
+        }
+        return checksums;
+    }
+
+    @Override
+    public List<User> findInRange(UserIdRange range, int size) throws IOException {
+        JsonObject body = new JsonObject();
+        body.add("query", toRangeQuery(range));
+        body.addProperty("size", size);
+        body.add("_source", toJsonArray(CHECKSUM_FIELDS));
+        JsonArray sort = new JsonArray();
+        sort.add(wrap("id", new JsonPrimitive("asc")));
+        body.add("sort", sort);
+        JsonArray documents = execute("POST", getAlias() + "/" + getType() + "/_search", body).getJsonObject()
+            .getAsJsonObject("hits").getAsJsonArray("hits");
+        List<User> users = new ArrayList<>(documents.size());
+        for (JsonElement document : documents) {
+            users.add(entityMapper.mapToObject(document.getAsJsonObject().get("_source").toString(), User.class));
+        }
+        return users;
+    }
+
+    @Override
+    public Set<String> getIndices() throws IOException {
+        JestResult result = execute("GET", "_alias/" + getAlias(), null, 404);
+        if (result.getResponseCode() == 404) {
+            return elasticsearchOperations.indexExists(getAlias()) ? Collections.singleton(getAlias()) : Collections.emptySet();
+        }
+        return new LinkedHashSet<>(result.getJsonObject().keySet());
+    }
+
+    @Override
+    public ReindexCheckpoint createIndex() throws IOException {
+        Instant now = Instant.now();
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint(getAlias() + "_" + now.toEpochMilli(), now);
+        JsonObject mapping = readJson(User.class.getAnnotation(Mapping.class).mappingPath());
+        mapping.add("_meta", toMeta(checkpoint));
+        JsonObject mappings = new JsonObject();
+        mappings.add(getType(), mapping);
+        JsonObject settings = readJson(User.class.getAnnotation(Setting.class).settingPath());
+        settings.addProperty("number_of_replicas", 0);
+        settings.addProperty("refresh_interval", "-1");
+        JsonObject body = new JsonObject();
+        body.add("settings", settings);
+        body.add("mappings", mappings);
+        execute("PUT", checkpoint.getIndex(), body);
+        return checkpoint;
+    }
+
+    @Override
+    public List<ReindexCheckpoint> getCheckpoints() throws IOException {
+        JestResult result = execute("GET", getAlias() + "_*/_mapping", null);
+        List<ReindexCheckpoint> checkpoints = new ArrayList<>();
+        for (Map.Entry<String, JsonElement> index : result.getJsonObject().entrySet()) {
+            JsonObject mapping = index.getValue().getAsJsonObject().getAsJsonObject("mappings").getAsJsonObject(getType());
+            if (mapping != null && mapping.has("_meta") && mapping.getAsJsonObject("_meta").has("reindex")) {
+                checkpoints.add(fromMeta(index.getKey(), mapping.getAsJsonObject("_meta").getAsJsonObject("reindex")));
+            }
+        }
+        return checkpoints;
+    }
+
+    @Override
+    public void saveCheckpoint(ReindexCheckpoint checkpoint) throws IOException {
+        JsonObject body = new JsonObject();
+        body.add("_meta", toMeta(checkpoint));
+        execute("PUT", checkpoint.getIndex() + "/_mapping/" + getType(), body);
+    }
+
+    @Override
+    public void finishIndex(String index, int replicas) throws IOException {
+        JsonObject settings = new JsonObject();
+        settings.addProperty("number_of_replicas", replicas);
+        settings.addProperty("refresh_interval", "1s");
+        JsonObject body = new JsonObject();
+        body.add("index", settings);
+        execute("PUT", index + "/_settings", body);
+        execute("POST", index + "/_refresh", null);
+    }
+
+    @Override
+    public Set<String> swapAlias(String index, Set<String> previousIndices) throws IOException {
+        Set<String> detached = new LinkedHashSet<>();
+        JsonArray actions = new JsonArray();
+        actions.add(aliasAction("add", index, getAlias()));
+        for (String previous : previousIndices) {
+            if (previous.equals(getAlias())) {
+                // an index cannot be replaced by an alias of the same name in two steps without downtime
+                actions.add(aliasAction("remove_index", previous, null));
+            } else if (!previous.equals(index)) {
+                actions.add(aliasAction("remove", previous, getAlias()));
+                detached.add(previous);
+            }
+        }
+        JsonObject body = new JsonObject();
+        body.add("actions", actions);
+        execute("POST", "_aliases", body);
+        return detached;
+    }
+
+    @Override
+    public void deleteIndex(String index) throws IOException {
+        execute("DELETE", index, null, 404);
+    }
+
+    @Override
+    public void scrollIds(String index, int batchSize, Consumer<List<String>> consumer) throws IOException {
+        JsonObject query = new JsonObject();
+        query.addProperty("size", batchSize);
+        query.addProperty("_source", false);
+        scroll(index, query, SCROLL_KEEP_ALIVE, hits -> {
+            List<String> ids = new ArrayList<>(hits.size());
+            hits.forEach(hit -> ids.add(hit.getAsJsonObject().get("_id").getAsString()));
+            consumer.accept(ids);
+        });
+    }
+
+    @Override
+    public void scrollSearch(String query, int batchSize, Duration keepAlive, Consumer<List<UserSearchHit>> consumer) throws IOException {
+        JsonObject queryString = new JsonObject();
+        queryString.addProperty("query", query);
+        JsonObject body = new JsonObject();
+        body.add("query", wrap("query_string", queryString));
+        body.addProperty("size", batchSize);
+        body.add("_source", toJsonArray(UserSearchHit.FIELDS));
+        scroll(getAlias() + "/" + getType(), body, keepAlive.getSeconds() + "s", hits -> {
+            List<UserSearchHit> users = new ArrayList<>(hits.size());
+            for (JsonElement hit : hits) {
+                users.add(entityMapper.mapToObject(hit.getAsJsonObject().get("_source").toString(), UserSearchHit.class));
+            }
+            consumer.accept(users);
+        });
+    }
+
+    /**
+     * Scroll through the hits of a search, sorted by {@code _doc} as it is the cheapest order, clearing the scroll
+     * at the end even if the consumer failed.
+     */
+    private void scroll(String path, JsonObject body, String keepAlive, HitsConsumer consumer) throws IOException {
+        JsonArray sort = new JsonArray();
+        sort.add("_doc");
+        body.add("sort", sort);
+        JestResult result = execute("POST", path + "/_search?scroll=" + keepAlive, body);
+        String scrollId = null;
+        try {
+            while (true) {
+                scrollId = result.getJsonObject().get("_scroll_id").getAsString();
+                JsonArray hits = result.getJsonObject().getAsJsonObject("hits").getAsJsonArray("hits");
+                if (hits.size() == 0) {
+                    return;
+                }
+                consumer.accept(hits);
+                JsonObject scroll = new JsonObject();
+                scroll.addProperty("scroll", keepAlive);
+                scroll.addProperty("scroll_id", scrollId);
+                result = execute("POST", "_search/scroll", scroll);
+            }
+        } finally {
+            if (scrollId != null) {
+                JsonObject clear = new JsonObject();
+                clear.addProperty("scroll_id", scrollId);
+                execute("DELETE", "_search/scroll", clear, 404);
+            }
+        }
+    }
+
+    private static JsonObject readJson(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return JsonParser.parseString(StreamUtils.copyToString(in, StandardCharsets.UTF_8)).getAsJsonObject();
+        }
+    }
+
+    private static JsonObject toMeta(ReindexCheckpoint checkpoint) {
+        JsonObject reindex = new JsonObject();
+        reindex.addProperty("started_at", checkpoint.getStartedAt().toEpochMilli());
+        reindex.addProperty("last_id", checkpoint.getLastId());
+        reindex.addProperty("indexed", checkpoint.getIndexed());
+        reindex.addProperty("completed", checkpoint.isCompleted());
+        JsonObject meta = new JsonObject();
+        meta.add("reindex", reindex);
+        return meta;
+    }
+
+    private static ReindexCheckpoint fromMeta(String index, JsonObject reindex) {
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint(index, Instant.ofEpochMilli(reindex.get("started_at").getAsLong()));
+        checkpoint.setLastId(reindex.get("last_id").getAsString());
+        checkpoint.setIndexed(reindex.get("indexed").getAsLong());
+        checkpoint.setCompleted(reindex.get("completed").getAsBoolean());
+        return checkpoint;
+    }
+
+    /**
+     * The body of the search of a page, shared with the {@link UserSearchAsyncClient} so that both read the same
+     * pages.
+     */
+    static JsonObject toSearchPageBody(String query, Pageable pageable, String searchAfter) {
+        JsonObject queryString = new JsonObject();
+        queryString.addProperty("query", query);
+        JsonObject body = new JsonObject();
+        body.add("query", wrap("query_string", queryString));
+        body.addProperty("size", pageable.getPageSize());
+        body.add("_source", toJsonArray(UserSearchHit.FIELDS));
+        body.add("sort", toSort(pageable.getSort()));
+        if (searchAfter != null) {
+            body.add("search_after", decodeCursor(searchAfter));
+        } else {
+            body.addProperty("from", pageable.getOffset());
+        }
+        return body;
+    }
+
+    private static JsonArray toSort(Sort sort) {
+        JsonArray fields = new JsonArray();
+        boolean sortedById = false;
+        for (Sort.Order order : sort) {
+            String field = SORT_FIELDS.get(order.getProperty());
+            if (field == null) {
+                throw new IllegalArgumentException("Users cannot be sorted by " + order.getProperty());
+            }
+            fields.add(wrap(field, new JsonPrimitive(order.isAscending() ? "asc" : "desc")));
+            sortedById |= "id".equals(field);
+        }
+        if (sort.isUnsorted()) {
+            fields.add(wrap("_score", new JsonPrimitive("desc")));
+        }
+        if (!sortedById) {
+            // search_after needs a total order
+            fields.add(wrap("id", new JsonPrimitive("asc")));
+        }
+        return fields;
+    }
+
+    private static JsonObject toRangeQuery(UserIdRange range) {
+        JsonObject bounds = new JsonObject();
+        bounds.addProperty("gt", range.getFrom());
+        if (range.getTo() != null) {
+            bounds.addProperty("lte", range.getTo());
+        }
+        return wrap("range", wrap("id", bounds));
+    }
+
+    /**
+     * @param sortValues the JSON array of the sort values of the last hit of a page.
+     */
+    static String encodeCursor(String sortValues) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sortValues.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static JsonArray decodeCursor(String cursor) {
+        try {
+            return JsonParser.parseString(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)).getAsJsonArray();
+        } catch (IllegalArgumentException | IllegalStateException | JsonParseException e) {
+            throw new IllegalArgumentException("Invalid search cursor " + cursor, e);
+        }
+    }
+
+    private static JsonArray toJsonArray(String... values) {
+        JsonArray array = new JsonArray();
+        Arrays.stream(values).forEach(array::add);
+        return array;
+    }
+
+    private static JsonObject wrap(String name, JsonElement value) {
+        JsonObject object = new JsonObject();
+        object.add(name, value);
+        return object;
+    }
+
+    private static JsonObject aliasAction(String type, String index, String alias) {
+        JsonObject target = new JsonObject();
+        target.addProperty("index", index);
+        if (alias != null) {
+            target.addProperty("alias", alias);
+        }
+        JsonObject action = new JsonObject();
+        action.add(type, target);
+        return action;
+    }
+
+    private JestResult execute(String method, String path, JsonObject body, int... allowedStatuses) throws IOException {
+        JestResult result = jestClient.execute(new JsonAction(method, path, body));
+        for (int status : allowedStatuses) {
+            if (result.getResponseCode() == status) {
+                return result;
+            }
+        }
+        if (!result.isSucceeded()) {
+            throw new IOException(method + " " + path + " failed with status " + result.getResponseCode() + ": " + result.getErrorMessage());
+        }
+        return result;
+    }
+
+    private String getAlias() {
+        return getPersistentEntity().getIndexName();
+    }
+
+    private String getType() {
+        return getPersistentEntity().getIndexType();
+    }
+
+    private ElasticsearchPersistentEntity<?> getPersistentEntity() {
+        return elasticsearchOperations.getPersistentEntityFor(User.class);
+    }
+
+    /**
+     * A request of the Elasticsearch REST API, for the APIs Jest has no builder for.
+     */
+    private static class JsonAction extends GenericResultAbstractAction {
+
+        private final String method;
+
+        private final String path;
+
+        JsonAction(String method, String path, JsonObject body) {
+            this.method = method;
+            this.path = path;
+            this.payload = body == null ? null : body.toString();
+        }
+
+        @Override
+        public String getRestMethodName() {
+            return method;
+        }
+
+        @Override
+        protected String buildURI(ElasticsearchVersion elasticsearchVersion) {
+            return path;
+        }
+    }
+
+    @FunctionalInterface
+    private interface HitsConsumer {
+
+        void accept(JsonArray hits) throws IOException;
+    }
+}
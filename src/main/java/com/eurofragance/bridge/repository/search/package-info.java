@@ -1,4 +1,4 @@
 /**
- * Spring Data Elasticsearch repositories.
+ * Spring Data Elasticsearch repositories, and the embedded Lucene one replacing them with the lucene profile.
  */
 package com.eurofragance.bridge.repository.search;
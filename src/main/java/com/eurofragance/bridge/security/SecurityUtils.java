@@ -73,10 +73,8 @@ public final class SecurityUtils {
     }
 
     private static Stream<String> getAuthorities(Authentication authentication) {
-        Collection<? extends GrantedAuthority> authorities = authentication instanceof JwtAuthenticationToken ?
-            extractAuthorityFromClaims(((JwtAuthenticationToken) authentication).getToken().getClaims())
-            : authentication.getAuthorities();
-        return authorities.stream()
+        // the authorities of a JwtAuthenticationToken were already extracted from its claims by JwtAuthorityExtractor
+        return authentication.getAuthorities().stream()
             .map(GrantedAuthority::getAuthority);
     }
 
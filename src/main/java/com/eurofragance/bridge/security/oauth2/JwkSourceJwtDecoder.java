@@ -0,0 +1,74 @@
+package com.eurofragance.bridge.security.oauth2;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.proc.ConfigurableJWTProcessor;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A {@link JwtDecoder} verifying RS256 tokens with the keys of a {@link JWKSource}.
+ * <p>
+ * It decodes and validates tokens the same way as {@code NimbusJwtDecoderJwkSupport}, which always fetches its
+ * keys itself, so that the keys can come from a {@link RefreshingJwkSource}.
+ */
+public class JwkSourceJwtDecoder implements JwtDecoder {
+
+    private static final String DECODING_ERROR_MESSAGE_TEMPLATE = "An error occurred while attempting to decode the Jwt: %s";
+
+    private final ConfigurableJWTProcessor<SecurityContext> jwtProcessor;
+
+    private final MappedJwtClaimSetConverter claimSetConverter = MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+
+    private OAuth2TokenValidator<Jwt> jwtValidator = JwtValidators.createDefault();
+
+    public JwkSourceJwtDecoder(JWKSource<SecurityContext> jwkSource) {
+        this.jwtProcessor = new DefaultJWTProcessor<>();
+        this.jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // spring security validates the claim set independent from Nimbus
+        this.jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> { });
+    }
+
+    public void setJwtValidator(OAuth2TokenValidator<Jwt> jwtValidator) {
+        this.jwtValidator = jwtValidator;
+    }
+
+    @Override
+    public Jwt decode(String token) {
+        Jwt jwt;
+        try {
+            JWT parsedJwt = JWTParser.parse(token);
+            JWTClaimsSet jwtClaimsSet = jwtProcessor.process(parsedJwt, null);
+            Map<String, Object> claims = claimSetConverter.convert(jwtClaimsSet.getClaims());
+            jwt = new Jwt(token, (Instant) claims.get("iat"), (Instant) claims.get("exp"),
+                parsedJwt.getHeader().toJSONObject(), claims);
+        } catch (ParseException | BadJOSEException | JOSEException e) {
+            throw new JwtException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE, e.getMessage()), e);
+        }
+        OAuth2TokenValidatorResult result = jwtValidator.validate(jwt);
+        if (result.hasErrors()) {
+            String description = result.getErrors().iterator().next().getDescription();
+            throw new JwtValidationException(String.format(DECODING_ERROR_MESSAGE_TEMPLATE, description), result.getErrors());
+        }
+        return jwt;
+    }
+}
@@ -1,6 +1,5 @@
 package com.eurofragance.bridge.security.oauth2;
 
-import com.eurofragance.bridge.security.SecurityUtils;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
@@ -11,11 +10,14 @@ import java.util.Collection;
 @Component
 public class JwtAuthorityExtractor extends JwtAuthenticationConverter {
 
-    public JwtAuthorityExtractor() {
+    private final JwtCache jwtCache;
+
+    public JwtAuthorityExtractor(JwtCache jwtCache) {
+        this.jwtCache = jwtCache;
     }
 
     @Override
     protected Collection<GrantedAuthority> extractAuthorities(Jwt jwt) {
-        return SecurityUtils.extractAuthorityFromClaims(jwt.getClaims());
+        return jwtCache.getAuthorities(jwt);
     }
 }
@@ -0,0 +1,145 @@
+package com.eurofragance.bridge.security.oauth2;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.security.SecurityUtils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Keeps the bearer tokens that were already decoded and verified, along with their authorities.
+ * <p>
+ * Entries live in the {@link #JWT_CACHE} region, keyed by a SHA-256 hash of the raw token, and expire with the
+ * token itself, so repeated requests with the same token skip parsing, signature verification and claims
+ * walking. Tokens without an expiration are never cached.
+ */
+@Component
+public class JwtCache {
+
+    public static final String JWT_CACHE = "jwtTokens";
+
+    private final CacheManager cacheManager;
+
+    private final boolean enabled;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public JwtCache(CacheManager cacheManager, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.enabled = applicationProperties.getJwtCache().isEnabled();
+        this.hits = Counter.builder("security.jwt.cache")
+            .description("Bearer tokens decoded from the cache or verified")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.misses = Counter.builder("security.jwt.cache")
+            .description("Bearer tokens decoded from the cache or verified")
+            .tag("result", "miss")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Wrap a decoder so that it only decodes and verifies the tokens which are not in the cache.
+     *
+     * @param decoder the decoder verifying the tokens.
+     * @return the caching decoder.
+     */
+    public JwtDecoder decoder(JwtDecoder decoder) {
+        return token -> decode(token, decoder);
+    }
+
+    /**
+     * Get the authorities of a token, from the cache if it was decoded through {@link #decoder(JwtDecoder)}.
+     *
+     * @param jwt the decoded token.
+     * @return the authorities extracted from the claims of the token.
+     */
+    public Collection<GrantedAuthority> getAuthorities(Jwt jwt) {
+        Entry entry = enabled ? get(hash(jwt.getTokenValue())) : null;
+        return entry != null ? entry.getAuthorities() : SecurityUtils.extractAuthorityFromClaims(jwt.getClaims());
+    }
+
+    private Jwt decode(String token, JwtDecoder decoder) {
+        if (!enabled) {
+            return decoder.decode(token);
+        }
+        String key = hash(token);
+        Entry entry = get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry.getJwt();
+        }
+        misses.increment();
+        Jwt jwt = decoder.decode(token);
+        if (jwt.getExpiresAt() != null) {
+            getCache().put(key, new Entry(jwt, SecurityUtils.extractAuthorityFromClaims(jwt.getClaims())));
+        }
+        return jwt;
+    }
+
+    private Entry get(String key) {
+        Entry entry = getCache().get(key, Entry.class);
+        // the region expires entries with their token, this guards against caches without a per-entry expiry
+        return entry != null && entry.getExpiresAt().isAfter(Instant.now()) ? entry : null;
+    }
+
+    private Cache getCache() {
+        return Objects.requireNonNull(cacheManager.getCache(JWT_CACHE));
+    }
+
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A verified token and its authorities.
+     */
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Jwt jwt;
+
+        private final List<GrantedAuthority> authorities;
+
+        Entry(Jwt jwt, List<GrantedAuthority> authorities) {
+            this.jwt = jwt;
+            this.authorities = Collections.unmodifiableList(authorities);
+        }
+
+        public Jwt getJwt() {
+            return jwt;
+        }
+
+        public List<GrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+
+        public Instant getExpiresAt() {
+            return jwt.getExpiresAt();
+        }
+    }
+}
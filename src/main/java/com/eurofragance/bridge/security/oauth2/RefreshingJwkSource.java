@@ -0,0 +1,164 @@
+package com.eurofragance.bridge.security.oauth2;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestOperations;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link JWKSource} serving the last known JWK set of the IdP, which is refreshed in the background.
+ * <p>
+ * Unlike the JWK set of {@code NimbusJwtDecoderJwkSupport}, which is fetched lazily on the request path, the
+ * JWK set is fetched when the source is created, then refreshed on a schedule while the last known keys keep
+ * being served. A token signed with an unknown key id triggers a refresh on the request path, at most once every
+ * minimum refresh interval, so that key rotations are picked up without waiting for the schedule.
+ */
+public class RefreshingJwkSource implements JWKSource<SecurityContext> {
+
+    private static final String OIDC_METADATA_PATH = "/.well-known/openid-configuration";
+
+    private final Logger log = LoggerFactory.getLogger(RefreshingJwkSource.class);
+
+    private final String jwkSetUri;
+
+    private final RestOperations restOperations;
+
+    private final Duration minRefreshInterval;
+
+    private final Timer refreshSuccesses;
+
+    private final Timer refreshFailures;
+
+    private volatile JWKSet jwkSet = new JWKSet();
+
+    private volatile Instant fetchedAt;
+
+    private volatile Instant refreshedAt = Instant.EPOCH;
+
+    public RefreshingJwkSource(String jwkSetUri, RestOperations restOperations, Duration minRefreshInterval, MeterRegistry meterRegistry) {
+        this.jwkSetUri = jwkSetUri;
+        this.restOperations = restOperations;
+        this.minRefreshInterval = minRefreshInterval;
+        Gauge.builder("security.jwk.age", this, source -> source.getAge().toMillis() / 1000d)
+            .description("Time since the JWK set was last fetched from the IdP")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        this.refreshSuccesses = Timer.builder("security.jwk.refresh")
+            .description("Time taken to fetch the JWK set from the IdP")
+            .tag("result", "success")
+            .register(meterRegistry);
+        this.refreshFailures = Timer.builder("security.jwk.refresh")
+            .description("Time taken to fetch the JWK set from the IdP")
+            .tag("result", "failure")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Create a source for the JWK set of an OIDC issuer, reading its {@code jwks_uri} from the issuer metadata,
+     * and fetch the JWK set.
+     *
+     * @param issuer         the issuer location.
+     * @param restOperations the client used to call the IdP.
+     * @param minRefreshInterval the minimum delay between two refreshes triggered by an unknown key id.
+     * @param meterRegistry  the registry of the JWK set metrics.
+     * @return the source.
+     */
+    public static RefreshingJwkSource fromOidcIssuerLocation(String issuer, RestOperations restOperations,
+                                                            Duration minRefreshInterval, MeterRegistry meterRegistry) {
+        Map<String, Object> metadata = restOperations.exchange(
+            UriComponentsBuilder.fromUriString(issuer + OIDC_METADATA_PATH).build().toUri(), HttpMethod.GET, null,
+            new ParameterizedTypeReference<Map<String, Object>>() { }).getBody();
+        if (metadata == null || !issuer.equals(metadata.get("issuer"))) {
+            throw new IllegalStateException("The issuer \"" + (metadata == null ? null : metadata.get("issuer")) +
+                "\" provided in the OpenID Configuration did not match the requested issuer \"" + issuer + "\"");
+        }
+        String jwkSetUri = (String) metadata.get("jwks_uri");
+        if (jwkSetUri == null) {
+            throw new IllegalStateException("The OpenID Configuration of \"" + issuer + "\" has no jwks_uri");
+        }
+        RefreshingJwkSource source = new RefreshingJwkSource(jwkSetUri, restOperations, minRefreshInterval, meterRegistry);
+        source.refresh();
+        return source;
+    }
+
+    /**
+     * Refresh the JWK set periodically.
+     *
+     * @param taskScheduler the scheduler running the refreshes.
+     * @param interval      the delay between two refreshes.
+     */
+    public void scheduleRefresh(TaskScheduler taskScheduler, Duration interval) {
+        taskScheduler.scheduleWithFixedDelay(this::refresh, Instant.now().plus(interval), interval);
+    }
+
+    /**
+     * Fetch the JWK set from the IdP. The last known JWK set is kept if the IdP cannot be reached.
+     *
+     * @return true if the JWK set was fetched.
+     */
+    public synchronized boolean refresh() {
+        refreshedAt = Instant.now();
+        long start = System.nanoTime();
+        try {
+            String body = restOperations.getForObject(jwkSetUri, String.class);
+            jwkSet = JWKSet.parse(body);
+            fetchedAt = Instant.now();
+            refreshSuccesses.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("Fetched {} keys from {}", jwkSet.getKeys().size(), jwkSetUri);
+            return true;
+        } catch (RestClientException | ParseException | IllegalArgumentException e) {
+            refreshFailures.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("Could not fetch the JWK set from {}, keeping the last known keys: {}", jwkSetUri, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> keys = jwkSelector.select(jwkSet);
+        if (keys.isEmpty() && refreshAllowed()) {
+            // probably a key rotation, the token is signed with a key that was not published at the last refresh
+            synchronized (this) {
+                if (refreshAllowed()) {
+                    refresh();
+                }
+            }
+            keys = jwkSelector.select(jwkSet);
+        }
+        return keys;
+    }
+
+    /**
+     * @return the time since the JWK set was last fetched, or since the epoch if it was never fetched.
+     */
+    public Duration getAge() {
+        return Duration.between(fetchedAt == null ? Instant.EPOCH : fetchedAt, Instant.now());
+    }
+
+    public JWKSet getJwkSet() {
+        return jwkSet;
+    }
+
+    private boolean refreshAllowed() {
+        return !refreshedAt.plus(minRefreshInterval).isAfter(Instant.now());
+    }
+}
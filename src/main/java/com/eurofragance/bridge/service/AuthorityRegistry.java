@@ -0,0 +1,143 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.repository.AuthorityRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory registry of the {@link Authority} names stored in the database.
+ * <p>
+ * The names are loaded once and kept in an immutable set, which is swapped atomically when an authority is
+ * registered, so lookups never hit the database. Authorities must be inserted through {@link #register(String)}
+ * for the registry to stay up to date.
+ */
+@Component
+public class AuthorityRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(AuthorityRegistry.class);
+
+    private final AuthorityRepository authorityRepository;
+
+    private final AtomicReference<SortedSet<String>> names = new AtomicReference<>();
+
+    public AuthorityRegistry(AuthorityRepository authorityRepository) {
+        this.authorityRepository = authorityRepository;
+    }
+
+    /**
+     * @return the names of all the authorities, sorted.
+     */
+    public SortedSet<String> getNames() {
+        SortedSet<String> current = names.get();
+        if (current == null) {
+            current = refresh();
+        }
+        return current;
+    }
+
+    public boolean contains(String name) {
+        return getNames().contains(name);
+    }
+
+    /**
+     * Get a reference to a known authority, to be added to a managed {@link com.eurofragance.bridge.domain.User}.
+     *
+     * @param name the name of the authority.
+     * @return the authority reference, or null if the authority is unknown.
+     */
+    public Authority getReference(String name) {
+        return contains(name) ? authorityRepository.getOne(name) : null;
+    }
+
+    /**
+     * Get references to known authorities, to be added to a managed {@link com.eurofragance.bridge.domain.User}.
+     * <p>
+     * The names are reloaded once if one of them is unknown, as another instance may have created it since they were
+     * loaded. The names still unknown then are left out, with a warning.
+     *
+     * @param names the names of the authorities.
+     * @return the authority references.
+     */
+    public List<Authority> getReferences(Collection<String> names) {
+        SortedSet<String> current = getNames();
+        if (!current.containsAll(names)) {
+            current = refresh();
+        }
+        List<Authority> references = new ArrayList<>(names.size());
+        for (String name : names) {
+            if (current.contains(name)) {
+                references.add(authorityRepository.getOne(name));
+            } else {
+                log.warn("Ignoring the unknown authority '{}'", name);
+            }
+        }
+        return references;
+    }
+
+    /**
+     * Insert the authority if it is unknown. The registry includes it once the current transaction commits.
+     * <p>
+     * The insert is flushed right away, so the rows written with JDBC in the same transaction can reference it.
+     *
+     * @param name the name of the authority.
+     */
+    public void register(String name) {
+        if (contains(name)) {
+            return;
+        }
+        log.debug("Saving authority '{}' in local database", name);
+        Authority authority = new Authority();
+        authority.setName(name);
+        authorityRepository.saveAndFlush(authority);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    add(name);
+                }
+            });
+        } else {
+            add(name);
+        }
+    }
+
+    /**
+     * Reload the authority names from the database.
+     *
+     * @return the reloaded names.
+     */
+    public SortedSet<String> refresh() {
+        SortedSet<String> loaded = authorityRepository.findAll().stream()
+            .map(Authority::getName)
+            .collect(Collectors.toCollection(TreeSet::new));
+        SortedSet<String> current = Collections.unmodifiableSortedSet(loaded);
+        names.set(current);
+        return current;
+    }
+
+    private void add(String name) {
+        names.updateAndGet(current -> {
+            if (current == null || current.contains(name)) {
+                // not loaded yet, the next lookup reads the committed authority from the database
+                return current;
+            }
+            SortedSet<String> updated = new TreeSet<>(current);
+            updated.add(name);
+            return Collections.unmodifiableSortedSet(updated);
+        });
+    }
+}
@@ -0,0 +1,246 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.RegionExpiryPolicy;
+import com.eurofragance.bridge.service.dto.CacheRegionDTO;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Measurement;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.SizedResourcePool;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Lists the cache regions and changes them at runtime, for the {@code caches} management endpoint.
+ * <p>
+ * The heap tier of a region can be resized while it is in use, and so can the expiry of the regions built from
+ * {@code application.cache.regions}, which have a {@link RegionExpiryPolicy}. Ehcache cannot resize the
+ * off-heap and disk tiers of a live region, those changes need a restart. Evictions and clears are broadcast
+ * to the other instances through the {@link CacheInvalidationBus}.
+ * <p>
+ * The regions follow the changes of {@code application.cache.regions} and {@code jhipster.cache.ehcache} pushed
+ * by the config server, once the refresh scope is refreshed.
+ */
+@Service
+public class CacheAdministrationService {
+
+    private static final long MB = 1024 * 1024;
+
+    private final Logger log = LoggerFactory.getLogger(CacheAdministrationService.class);
+
+    private final javax.cache.CacheManager cacheManager;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ApplicationProperties.Cache cache;
+
+    private final JHipsterProperties.Cache.Ehcache ehcache;
+
+    public CacheAdministrationService(javax.cache.CacheManager cacheManager, CacheInvalidationBus cacheInvalidationBus,
+                                      MeterRegistry meterRegistry, ApplicationProperties applicationProperties,
+                                      JHipsterProperties jHipsterProperties) {
+        this.cacheManager = cacheManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.meterRegistry = meterRegistry;
+        this.cache = applicationProperties.getCache();
+        this.ehcache = jHipsterProperties.getCache().getEhcache();
+    }
+
+    public List<CacheRegionDTO> getRegions() {
+        List<CacheRegionDTO> regions = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            getRegion(name).ifPresent(regions::add);
+        }
+        return regions;
+    }
+
+    public Optional<CacheRegionDTO> getRegion(String name) {
+        return getCache(name).map(this::toRegion);
+    }
+
+    /**
+     * Remove an entry from a region, on this instance and on the other instances.
+     *
+     * @param name the name of the region.
+     * @param key  the key of the entry.
+     * @return false if there is no such region.
+     */
+    public boolean evict(String name, String key) {
+        Optional<javax.cache.Cache<Object, Object>> region = getCache(name);
+        region.ifPresent(cache -> {
+            cache.remove(key);
+            cacheInvalidationBus.evict(name, key);
+            log.info("Evicted '{}' from cache region {}", key, name);
+        });
+        return region.isPresent();
+    }
+
+    /**
+     * Remove all the entries of a region, on this instance and on the other instances.
+     *
+     * @param name the name of the region.
+     * @return false if there is no such region.
+     */
+    public boolean clear(String name) {
+        Optional<javax.cache.Cache<Object, Object>> region = getCache(name);
+        region.ifPresent(cache -> {
+            cache.clear();
+            cacheInvalidationBus.clear(name);
+            log.info("Cleared cache region {}", name);
+        });
+        return region.isPresent();
+    }
+
+    /**
+     * Change the sizing or expiry of a region while it is in use, on this instance.
+     *
+     * @param name    the name of the region.
+     * @param changes the new values, unset values are left unchanged.
+     * @return the changed region, or empty if there is no such region.
+     * @throws IllegalArgumentException if a change cannot be applied to a live region.
+     */
+    public Optional<CacheRegionDTO> update(String name, ApplicationProperties.Cache.Region changes) {
+        Optional<javax.cache.Cache<Object, Object>> region = getCache(name);
+        region.ifPresent(cache -> {
+            org.ehcache.Cache<?, ?> nativeCache = cache.unwrap(org.ehcache.Cache.class);
+            boolean expiryChanged = changes.getTimeToLiveSeconds() != null || changes.getTimeToIdleSeconds() != null;
+            // checked before resizing, so a rejected update leaves the region unchanged
+            if (expiryChanged && !(nativeCache.getRuntimeConfiguration().getExpiryPolicy() instanceof RegionExpiryPolicy)) {
+                throw new IllegalArgumentException("The expiry of cache region " + name + " cannot be changed");
+            }
+            updateResourcePools(name, nativeCache, changes);
+            if (expiryChanged) {
+                ((RegionExpiryPolicy) nativeCache.getRuntimeConfiguration().getExpiryPolicy()).update(changes, ehcache);
+            }
+            log.info("Updated cache region {}: {}", name, toRegion(cache));
+        });
+        return region.map(this::toRegion);
+    }
+
+    /**
+     * Apply {@code application.cache.regions} and {@code jhipster.cache.ehcache} to the regions built from them,
+     * after the config server pushed new values.
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void applyConfiguration() {
+        for (String name : cacheManager.getCacheNames()) {
+            javax.cache.Cache<Object, Object> region = cacheManager.getCache(name);
+            org.ehcache.Cache<?, ?> nativeCache = region.unwrap(org.ehcache.Cache.class);
+            if (!(nativeCache.getRuntimeConfiguration().getExpiryPolicy() instanceof RegionExpiryPolicy)) {
+                // sized by its own properties
+                continue;
+            }
+            ApplicationProperties.Cache.Region configured = cache.getRegions().getOrDefault(name, new ApplicationProperties.Cache.Region());
+            ApplicationProperties.Cache.Region changes = new ApplicationProperties.Cache.Region();
+            changes.setHeapEntries(configured.getHeapEntries() != null ? configured.getHeapEntries() : ehcache.getMaxEntries());
+            changes.setOffHeapMb(configured.getOffHeapMb());
+            changes.setDiskMb(configured.getDiskMb());
+            try {
+                updateResourcePools(name, nativeCache, changes);
+            } catch (IllegalArgumentException e) {
+                log.warn("Could not resize cache region {}: {}", name, e.getMessage());
+            }
+            ((RegionExpiryPolicy) nativeCache.getRuntimeConfiguration().getExpiryPolicy()).update(configured, ehcache);
+        }
+        log.info("Applied the cache region configuration");
+    }
+
+    private void updateResourcePools(String name, org.ehcache.Cache<?, ?> nativeCache, ApplicationProperties.Cache.Region changes) {
+        ResourcePools pools = nativeCache.getRuntimeConfiguration().getResourcePools();
+        ResourcePoolsBuilder updates = ResourcePoolsBuilder.newResourcePoolsBuilder();
+        boolean updated = false;
+        if (changes.getHeapEntries() != null && !Objects.equals(changes.getHeapEntries(), getHeapEntries(pools))) {
+            updates = updates.heap(changes.getHeapEntries(), EntryUnit.ENTRIES);
+            updated = true;
+        }
+        if (changes.getOffHeapMb() != null && !Objects.equals(changes.getOffHeapMb(), getMb(pools, ResourceType.Core.OFFHEAP))) {
+            updates = updates.offheap(changes.getOffHeapMb(), MemoryUnit.MB);
+            updated = true;
+        }
+        if (changes.getDiskMb() != null && !Objects.equals(changes.getDiskMb(), getMb(pools, ResourceType.Core.DISK))) {
+            updates = updates.disk(changes.getDiskMb(), MemoryUnit.MB);
+            updated = true;
+        }
+        if (!updated) {
+            return;
+        }
+        try {
+            nativeCache.getRuntimeConfiguration().updateResourcePools(updates.build());
+        } catch (UnsupportedOperationException | IllegalArgumentException | IllegalStateException e) {
+            throw new IllegalArgumentException("Cannot resize cache region " + name + " while it is in use (" + e.getMessage() +
+                "), set application.cache.regions and restart instead", e);
+        }
+    }
+
+    private CacheRegionDTO toRegion(javax.cache.Cache<Object, Object> region) {
+        org.ehcache.Cache<?, ?> nativeCache = region.unwrap(org.ehcache.Cache.class);
+        ResourcePools pools = nativeCache.getRuntimeConfiguration().getResourcePools();
+        CacheRegionDTO dto = new CacheRegionDTO();
+        dto.setName(region.getName());
+        dto.setHeapEntries(getHeapEntries(pools));
+        dto.setOffHeapMb(getMb(pools, ResourceType.Core.OFFHEAP));
+        dto.setDiskMb(getMb(pools, ResourceType.Core.DISK));
+        if (nativeCache.getRuntimeConfiguration().getExpiryPolicy() instanceof RegionExpiryPolicy) {
+            RegionExpiryPolicy expiry = (RegionExpiryPolicy) nativeCache.getRuntimeConfiguration().getExpiryPolicy();
+            dto.setTimeToLiveSeconds(expiry.getTimeToLive() == null ? null : expiry.getTimeToLive().getSeconds());
+            dto.setTimeToIdleSeconds(expiry.getTimeToIdle() == null ? null : expiry.getTimeToIdle().getSeconds());
+        }
+        // the statistics of the cache metrics, bound to every region by the JCacheRegionMetrics
+        dto.setSize(toLong(measure("cache.size", region.getName(), null)));
+        dto.setHits(toLong(measure("cache.gets", region.getName(), "hit")));
+        dto.setMisses(toLong(measure("cache.gets", region.getName(), "miss")));
+        dto.setPuts(toLong(measure("cache.puts", region.getName(), null)));
+        dto.setRemovals(toLong(measure("cache.removals", region.getName(), null)));
+        dto.setEvictions(toLong(measure("cache.evictions", region.getName(), null)));
+        Double latency = measure("cache.gets.latency", region.getName(), null);
+        dto.setAverageGetTimeMillis(latency == null || latency.isNaN() ? null : latency * 1000);
+        return dto;
+    }
+
+    private Double measure(String meterName, String cacheName, String result) {
+        Meter meter = result == null
+            ? meterRegistry.find(meterName).tag("cache", cacheName).meter()
+            : meterRegistry.find(meterName).tag("cache", cacheName).tag("result", result).meter();
+        if (meter == null) {
+            return null;
+        }
+        Iterator<Measurement> measurements = meter.measure().iterator();
+        return measurements.hasNext() ? measurements.next().getValue() : null;
+    }
+
+    private static Long toLong(Double value) {
+        return value == null || value.isNaN() ? null : value.longValue();
+    }
+
+    private static Long getHeapEntries(ResourcePools pools) {
+        SizedResourcePool heap = pools.getPoolForResource(ResourceType.Core.HEAP);
+        return heap != null && heap.getUnit() == EntryUnit.ENTRIES ? heap.getSize() : null;
+    }
+
+    private static Long getMb(ResourcePools pools, ResourceType<SizedResourcePool> type) {
+        SizedResourcePool pool = pools.getPoolForResource(type);
+        return pool != null && pool.getUnit() instanceof MemoryUnit ? ((MemoryUnit) pool.getUnit()).toBytes(pool.getSize()) / MB : null;
+    }
+
+    private Optional<javax.cache.Cache<Object, Object>> getCache(String name) {
+        return Optional.ofNullable(cacheManager.getCache(name));
+    }
+}
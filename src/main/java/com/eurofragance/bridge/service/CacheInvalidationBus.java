@@ -0,0 +1,279 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.service.dto.CacheInvalidationDTO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestOperations;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Broadcasts the local evictions of cache entries to the other instances of the application, so that they do
+ * not serve stale entries until the entries expire.
+ * <p>
+ * Evictions are queued once the current transaction commits, then sent in batches on a schedule to the peers
+ * registered under the same service id in the {@link DiscoveryClient}, and to the static
+ * {@code application.cache.invalidation.peers}. Only {@code String} keys are sent, other keys and regions with
+ * too many evicted keys are cleared on the peers instead. Invalidations received from a peer are applied to the
+ * local caches directly, so they are not broadcast again, then passed to the {@link Listener}s of the caches.
+ */
+@Component
+public class CacheInvalidationBus {
+
+    public static final String SECRET_HEADER = "X-Cache-Invalidation-Secret";
+
+    public static final String PATH = "/api/cache-invalidations";
+
+    private final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final javax.cache.CacheManager cacheManager;
+
+    private final DiscoveryClient discoveryClient;
+
+    private final ObjectProvider<Registration> registration;
+
+    private final RestOperations restOperations;
+
+    private final ApplicationProperties.Cache.Invalidation properties;
+
+    private final Map<String, Set<String>> pendingEvictions = new HashMap<>();
+
+    private final Set<String> pendingClears = new HashSet<>();
+
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+    private final Counter sent;
+
+    private final Counter failed;
+
+    private final Counter received;
+
+    public CacheInvalidationBus(javax.cache.CacheManager cacheManager, DiscoveryClient discoveryClient,
+                                ObjectProvider<Registration> registration, RestTemplateBuilder restTemplateBuilder,
+                                ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.discoveryClient = discoveryClient;
+        this.registration = registration;
+        this.restOperations = restTemplateBuilder
+            .setConnectTimeout(Duration.ofSeconds(1))
+            .setReadTimeout(Duration.ofSeconds(2))
+            .build();
+        this.properties = applicationProperties.getCache().getInvalidation();
+        this.sent = Counter.builder("cache.invalidation.messages")
+            .description("Batches of cache invalidations sent to or received from the other instances")
+            .tag("result", "sent")
+            .register(meterRegistry);
+        this.failed = Counter.builder("cache.invalidation.messages")
+            .description("Batches of cache invalidations sent to or received from the other instances")
+            .tag("result", "failed")
+            .register(meterRegistry);
+        this.received = Counter.builder("cache.invalidation.messages")
+            .description("Batches of cache invalidations sent to or received from the other instances")
+            .tag("result", "received")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Broadcast the eviction of a cache entry, once the current transaction commits.
+     *
+     * @param cacheName the name of the cache.
+     * @param key       the key of the evicted entry.
+     */
+    public void evict(String cacheName, Object key) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (!(key instanceof String)) {
+            clear(cacheName);
+            return;
+        }
+        afterCommit(() -> addEviction(cacheName, (String) key));
+    }
+
+    /**
+     * Broadcast the clearing of a cache, once the current transaction commits.
+     *
+     * @param cacheName the name of the cache.
+     */
+    public void clear(String cacheName) {
+        if (!isEnabled()) {
+            return;
+        }
+        afterCommit(() -> addClear(cacheName));
+    }
+
+    /**
+     * Register a listener of the invalidations received from the peers for a cache, to invalidate local state
+     * derived from the cache.
+     *
+     * @param cacheName the name of the cache.
+     * @param listener  the listener.
+     */
+    public void addListener(String cacheName, Listener listener) {
+        listeners.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Send the pending invalidations to the peers.
+     */
+    @Scheduled(fixedDelayString = "${application.cache.invalidation.flush-interval-ms:200}")
+    public void flush() {
+        CacheInvalidationDTO invalidation = drain();
+        if (invalidation == null) {
+            return;
+        }
+        for (URI peer : getPeers()) {
+            try {
+                restOperations.exchange(RequestEntity.post(peer.resolve(PATH))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(SECRET_HEADER, properties.getSecret())
+                    .body(invalidation), Void.class);
+                sent.increment();
+            } catch (RestClientException e) {
+                failed.increment();
+                log.warn("Could not send cache invalidations to {}: {}", peer, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Apply the invalidations received from a peer to the local caches.
+     *
+     * @param invalidation the invalidations.
+     */
+    public void apply(CacheInvalidationDTO invalidation) {
+        if (origin.equals(invalidation.getOrigin())) {
+            return;
+        }
+        received.increment();
+        invalidation.getClears().forEach(cacheName -> {
+            javax.cache.Cache<Object, Object> cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.clear();
+            }
+            listeners.getOrDefault(cacheName, Collections.emptyList()).forEach(Listener::cleared);
+        });
+        invalidation.getEvictions().forEach((cacheName, keys) -> {
+            javax.cache.Cache<Object, Object> cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                cache.removeAll(new HashSet<>(keys));
+            }
+            listeners.getOrDefault(cacheName, Collections.emptyList()).forEach(listener -> listener.evicted(keys));
+        });
+        log.debug("Applied cache invalidations from {}", invalidation.getOrigin());
+    }
+
+    /**
+     * @param secret the secret sent by a peer.
+     * @return true if the invalidations of the peer should be applied.
+     */
+    public boolean isTrusted(String secret) {
+        return isEnabled() && properties.getSecret() != null && secret != null &&
+            MessageDigest.isEqual(properties.getSecret().getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the base URIs of the other instances.
+     */
+    public Set<URI> getPeers() {
+        Set<URI> peers = new LinkedHashSet<>();
+        properties.getPeers().forEach(peer -> peers.add(URI.create(peer)));
+        Registration self = registration.getIfAvailable();
+        if (self != null) {
+            for (ServiceInstance instance : discoveryClient.getInstances(self.getServiceId())) {
+                if (!(instance.getHost().equals(self.getHost()) && instance.getPort() == self.getPort())) {
+                    peers.add(instance.getUri());
+                }
+            }
+        }
+        return peers;
+    }
+
+    String getOrigin() {
+        return origin;
+    }
+
+    synchronized CacheInvalidationDTO drain() {
+        if (pendingEvictions.isEmpty() && pendingClears.isEmpty()) {
+            return null;
+        }
+        CacheInvalidationDTO invalidation = new CacheInvalidationDTO(origin, new HashMap<>(pendingEvictions), new HashSet<>(pendingClears));
+        pendingEvictions.clear();
+        pendingClears.clear();
+        return invalidation;
+    }
+
+    private synchronized void addEviction(String cacheName, String key) {
+        if (pendingClears.contains(cacheName)) {
+            return;
+        }
+        Set<String> keys = pendingEvictions.computeIfAbsent(cacheName, name -> new HashSet<>());
+        keys.add(key);
+        if (keys.size() > properties.getMaxKeysPerRegion()) {
+            addClear(cacheName);
+        }
+    }
+
+    private synchronized void addClear(String cacheName) {
+        pendingEvictions.remove(cacheName);
+        pendingClears.add(cacheName);
+    }
+
+    private static void afterCommit(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Notified of the invalidations received from the peers for a cache, after they are applied to the cache.
+     */
+    public interface Listener {
+
+        void evicted(Set<String> keys);
+
+        void cleared();
+    }
+}
@@ -0,0 +1,221 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.AuthorityRepository;
+import com.eurofragance.bridge.repository.UserRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Saves the user caches to a {@link UserCacheSnapshot} on graceful shutdown and restores them on startup, so
+ * that a restarted instance does not have to load them from the database again.
+ * <p>
+ * The {@code usersByLogin} and {@code usersByEmail} caches are restored before the application is ready, and
+ * before {@link UserCacheWarmer} runs. Users modified since the snapshot was written, detected by their
+ * {@code lastModifiedDate} or by their authority names, which are changed without it, are left out, and the whole snapshot is ignored past
+ * {@code application.cache.snapshot.max-age-seconds}. The authorities of the Hibernate {@code Authority} region
+ * are loaded again in one query, which puts them back in the region when the second-level cache is enabled.
+ */
+@Service
+public class CacheSnapshotService {
+
+    private static final String AUTHORITY_CACHE = Authority.class.getName();
+
+    private final Logger log = LoggerFactory.getLogger(CacheSnapshotService.class);
+
+    private final UserRepository userRepository;
+
+    private final AuthorityRepository authorityRepository;
+
+    private final javax.cache.CacheManager cacheManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Cache.Snapshot properties;
+
+    public CacheSnapshotService(UserRepository userRepository, AuthorityRepository authorityRepository,
+                                javax.cache.CacheManager cacheManager, PlatformTransactionManager transactionManager,
+                                ApplicationProperties applicationProperties) {
+        this.userRepository = userRepository;
+        this.authorityRepository = authorityRepository;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getCache().getSnapshot();
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void restoreOnStartup() {
+        if (properties.isEnabled()) {
+            restore();
+        }
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        if (properties.isEnabled()) {
+            save();
+        }
+    }
+
+    /**
+     * Write the user caches to the snapshot file.
+     *
+     * @return the number of users written, or -1 if the file could not be written.
+     */
+    public int save() {
+        long start = System.currentTimeMillis();
+        Map<String, User> byLogin = getUsers(UserRepository.USERS_BY_LOGIN_CACHE);
+        Map<String, User> byEmail = getUsers(UserRepository.USERS_BY_EMAIL_CACHE);
+        Map<String, UserCacheSnapshot.Entry> entries = new LinkedHashMap<>();
+        byLogin.values().forEach(user -> entries.put(user.getId(), new UserCacheSnapshot.Entry(user, true, false)));
+        byEmail.values().forEach(user -> entries.merge(user.getId(), new UserCacheSnapshot.Entry(user, false, true),
+            (entry, email) -> new UserCacheSnapshot.Entry(entry.getUser(), true, true)));
+        List<String> authorities = new ArrayList<>();
+        javax.cache.Cache<Object, Object> authorityCache = cacheManager.getCache(AUTHORITY_CACHE);
+        if (authorityCache != null) {
+            authorityCache.forEach(entry -> {
+                if (entry.getKey() instanceof String) {
+                    authorities.add((String) entry.getKey());
+                }
+            });
+        }
+        Path path = getPath();
+        try {
+            new UserCacheSnapshot(Instant.now(), authorities, new ArrayList<>(entries.values())).write(path);
+            log.info("Saved {} users and {} authorities to the cache snapshot {} in {} ms", entries.size(), authorities.size(),
+                path, System.currentTimeMillis() - start);
+            return entries.size();
+        } catch (IOException e) {
+            log.warn("Could not save the cache snapshot {}: {}", path, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Put the users of the snapshot file which were not modified since it was written in the user caches.
+     *
+     * @return the number of users restored.
+     */
+    public int restore() {
+        long start = System.currentTimeMillis();
+        Path path = getPath();
+        if (!Files.isRegularFile(path)) {
+            log.debug("No cache snapshot {} to restore", path);
+            return 0;
+        }
+        UserCacheSnapshot snapshot;
+        try {
+            snapshot = UserCacheSnapshot.read(path);
+        } catch (IOException e) {
+            log.warn("Could not read the cache snapshot {}, starting with cold caches: {}", path, e.getMessage());
+            return 0;
+        }
+        if (snapshot.getWrittenAt().plusSeconds(properties.getMaxAgeSeconds()).isBefore(Instant.now())) {
+            log.info("Ignoring the cache snapshot {} written at {}, it is too old", path, snapshot.getWrittenAt());
+            return 0;
+        }
+        if (!snapshot.getAuthorities().isEmpty() && cacheManager.getCache(AUTHORITY_CACHE) != null) {
+            transactionTemplate.execute(status -> authorityRepository.findAllById(snapshot.getAuthorities()));
+        }
+        javax.cache.Cache<Object, Object> usersByLogin = Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE));
+        javax.cache.Cache<Object, Object> usersByEmail = Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE));
+        List<UserCacheSnapshot.Entry> entries = snapshot.getEntries();
+        int restored = 0;
+        for (int from = 0; from < entries.size(); from += properties.getBatchSize()) {
+            List<UserCacheSnapshot.Entry> batch = entries.subList(from, Math.min(from + properties.getBatchSize(), entries.size()));
+            List<String> ids = batch.stream().map(entry -> entry.getUser().getId()).collect(Collectors.toList());
+            Map<String, Instant> lastModifiedDates = findLastModifiedDates(ids);
+            Map<String, Set<String>> authorityNames = findAuthorityNames(ids);
+            for (UserCacheSnapshot.Entry entry : batch) {
+                User user = entry.getUser();
+                if (!isUnmodified(user, lastModifiedDates.get(user.getId()),
+                    authorityNames.getOrDefault(user.getId(), Collections.emptySet()))) {
+                    continue;
+                }
+                // entries cached by requests since startup are at least as fresh
+                if (entry.isInUsersByLogin()) {
+                    usersByLogin.putIfAbsent(user.getLogin(), user);
+                }
+                if (entry.isInUsersByEmail() && user.getEmail() != null) {
+                    usersByEmail.putIfAbsent(user.getEmail(), user);
+                }
+                restored++;
+            }
+        }
+        log.info("Restored {} of {} users from the cache snapshot {} in {} ms", restored, entries.size(), path,
+            System.currentTimeMillis() - start);
+        return restored;
+    }
+
+    private Map<String, Instant> findLastModifiedDates(List<String> ids) {
+        List<Object[]> rows = transactionTemplate.execute(status -> userRepository.findLastModifiedDatesByIdIn(ids));
+        Map<String, Instant> lastModifiedDates = new HashMap<>();
+        Objects.requireNonNull(rows).forEach(row -> lastModifiedDates.put((String) row[0], (Instant) row[1]));
+        return lastModifiedDates;
+    }
+
+    private Map<String, Set<String>> findAuthorityNames(List<String> ids) {
+        List<Object[]> rows = transactionTemplate.execute(status -> userRepository.findAuthorityNamesByIdIn(ids));
+        Map<String, Set<String>> authorityNames = new HashMap<>();
+        Objects.requireNonNull(rows).forEach(row ->
+            authorityNames.computeIfAbsent((String) row[0], id -> new HashSet<>()).add((String) row[1]));
+        return authorityNames;
+    }
+
+    private static boolean isUnmodified(User user, Instant lastModifiedDate, Set<String> authorityNames) {
+        if (lastModifiedDate == null || user.getLastModifiedDate() == null) {
+            return false;
+        }
+        // the database may store a lower precision than the instant the entity was cached with
+        if (lastModifiedDate.toEpochMilli() != user.getLastModifiedDate().toEpochMilli()) {
+            return false;
+        }
+        // the authorities of a user may be granted or revoked without changing its last modified date
+        return user.getAuthorities().stream().map(Authority::getName).collect(Collectors.toSet()).equals(authorityNames);
+    }
+
+    private Map<String, User> getUsers(String cacheName) {
+        Map<String, User> users = new LinkedHashMap<>();
+        javax.cache.Cache<Object, Object> cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.forEach(entry -> {
+                // empty lookups are cached as null values
+                if (entry.getValue() instanceof User) {
+                    User user = (User) entry.getValue();
+                    users.put(user.getId(), user);
+                }
+            });
+        }
+        return users;
+    }
+
+    private Path getPath() {
+        return Paths.get(properties.getPath());
+    }
+}
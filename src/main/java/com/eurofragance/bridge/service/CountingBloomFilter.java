@@ -0,0 +1,102 @@
+package com.eurofragance.bridge.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Bloom filter of strings which supports removals, by keeping a counter instead of a bit in each cell.
+ * <p>
+ * {@link #mightContain(String)} never returns false for a string which was added and not removed, it returns
+ * true for a string which was never added with about the false positive probability the filter was sized for.
+ * Counters saturate at 255 and are never decremented from there, so removals can only cause false positives.
+ * This class is not thread-safe.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 0xFF;
+
+    private final byte[] counters;
+
+    private final int hashFunctions;
+
+    /**
+     * @param expectedInsertions        the number of strings the filter is sized for.
+     * @param falsePositiveProbability the false positive probability at {@code expectedInsertions} strings.
+     */
+    public CountingBloomFilter(int expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be in ]0, 1[: " + falsePositiveProbability);
+        }
+        long cells = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.counters = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, cells))];
+        this.hashFunctions = Math.max(1, (int) Math.round((double) counters.length / expectedInsertions * Math.log(2)));
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashFunctions; i++) {
+            int cell = cell(hash, i);
+            int count = counters[cell] & MAX_COUNT;
+            if (count < MAX_COUNT) {
+                counters[cell] = (byte) (count + 1);
+            }
+        }
+    }
+
+    /**
+     * Remove a string, which must have been added before, otherwise other strings could be reported as absent.
+     *
+     * @param value the string to remove.
+     */
+    public void remove(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashFunctions; i++) {
+            int cell = cell(hash, i);
+            int count = counters[cell] & MAX_COUNT;
+            if (count > 0 && count < MAX_COUNT) {
+                counters[cell] = (byte) (count - 1);
+            }
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashFunctions; i++) {
+            if (counters[cell(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getCells() {
+        return counters.length;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    private int cell(long hash, int i) {
+        // double hashing, the two halves of the 64-bit hash give the k cells
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (combined & Integer.MAX_VALUE) % counters.length;
+    }
+
+    private static long hash(String value) {
+        // FNV-1a over the UTF-8 bytes, finalized with the MurmurHash3 mixer to spread the bits of short strings
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
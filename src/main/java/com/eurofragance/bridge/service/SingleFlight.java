@@ -0,0 +1,81 @@
+package com.eurofragance.bridge.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent executions of the same work.
+ * <p>
+ * The first caller for a key runs the work, and callers arriving with the same key while it is in flight
+ * wait for it and share its result (or its exception) instead of running the work themselves.
+ *
+ * @param <K> the type of the keys identifying the work.
+ * @param <V> the type of the result of the work.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile Consumer<K> waitListener = key -> { };
+
+    /**
+     * Run the work for the given key, or wait for the execution already in flight for that key.
+     *
+     * @param key  the key identifying the work.
+     * @param work the work to run.
+     * @return the result of the work.
+     */
+    public V execute(K key, Supplier<V> work) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            waitListener.accept(key);
+            return await(existing);
+        }
+        try {
+            V result = work.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * @return the number of keys which currently have work in flight.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * Set the listener notified when a caller starts waiting for the execution in flight for a key, e.g. for
+     * the tests to know when the callers are coalesced.
+     *
+     * @param waitListener the listener, called with the key.
+     */
+    void setWaitListener(Consumer<K> waitListener) {
+        this.waitListener = waitListener;
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
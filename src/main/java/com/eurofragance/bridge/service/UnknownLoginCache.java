@@ -0,0 +1,295 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.repository.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Answers the lookups of logins which are not in the database from memory.
+ * <p>
+ * A {@link CountingBloomFilter} of the known logins, built from the database after startup and rebuilt on a
+ * schedule, rejects most unknown logins without any query. The few unknown logins passing the filter are kept
+ * in the short-lived {@link #UNKNOWN_LOGINS_CACHE} region after their query. New logins are added to the filter
+ * before their transaction commits, and evicted from the region both before and after it commits; a lookup
+ * which overlapped a new login does not cache its miss. Other instances are notified through the
+ * {@link CacheInvalidationBus}, so it must be enabled when several instances write users.
+ * <p>
+ * Until the filter is built, and while this is disabled, every lookup goes to the database.
+ */
+@Component
+public class UnknownLoginCache {
+
+    public static final String UNKNOWN_LOGINS_CACHE = "unknownLogins";
+
+    private final Logger log = LoggerFactory.getLogger(UnknownLoginCache.class);
+
+    private final UserRepository userRepository;
+
+    private final CacheManager cacheManager;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final Executor taskExecutor;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Cache.UnknownLogins properties;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter filtered;
+
+    private final Counter cached;
+
+    private final Counter queried;
+
+    private CountingBloomFilter filter;
+
+    private CountingBloomFilter building;
+
+    public UnknownLoginCache(UserRepository userRepository, CacheManager cacheManager, CacheInvalidationBus cacheInvalidationBus,
+                             @Qualifier("taskExecutor") Executor taskExecutor, PlatformTransactionManager transactionManager,
+                             ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.taskExecutor = taskExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getCache().getUnknownLogins();
+        if (properties.isEnabled() && !applicationProperties.getCache().getInvalidation().isEnabled()) {
+            log.warn("application.cache.unknown-logins is enabled without application.cache.invalidation: " +
+                "the logins added by other instances are unknown here until the next rebuild");
+        }
+        this.filtered = Counter.builder("user.lookup.unknown")
+            .description("Lookups of unknown logins, answered by the Bloom filter, the negative cache or the database")
+            .tag("result", "filtered")
+            .register(meterRegistry);
+        this.cached = Counter.builder("user.lookup.unknown")
+            .description("Lookups of unknown logins, answered by the Bloom filter, the negative cache or the database")
+            .tag("result", "cached")
+            .register(meterRegistry);
+        this.queried = Counter.builder("user.lookup.unknown")
+            .description("Lookups of unknown logins, answered by the Bloom filter, the negative cache or the database")
+            .tag("result", "queried")
+            .register(meterRegistry);
+        cacheInvalidationBus.addListener(UNKNOWN_LOGINS_CACHE, new CacheInvalidationBus.Listener() {
+            @Override
+            public void evicted(Set<String> logins) {
+                // logins added on a peer
+                logins.forEach(UnknownLoginCache.this::addToFilter);
+            }
+
+            @Override
+            public void cleared() {
+                // too many logins added on a peer to list them
+                reset();
+                taskExecutor.execute(UnknownLoginCache.this::rebuild);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Find a user by login, unless the login is known to be missing from the database.
+     *
+     * @param login  the login.
+     * @param finder the query of the user.
+     * @param <T>    the type of the user.
+     * @return the user, or empty if there is no user with this login.
+     */
+    public <T> Optional<T> find(String login, Function<String, Optional<T>> finder) {
+        if (!isEnabled() || login == null) {
+            return finder.apply(login);
+        }
+        if (!mightExist(login)) {
+            filtered.increment();
+            return Optional.empty();
+        }
+        if (getCache().get(login) != null) {
+            cached.increment();
+            return Optional.empty();
+        }
+        long lookupGeneration = generation.get();
+        Optional<T> user = finder.apply(login);
+        if (!user.isPresent()) {
+            queried.increment();
+            if (generation.get() == lookupGeneration) {
+                getCache().put(login, Boolean.TRUE);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Register a login inserted in the current transaction.
+     *
+     * @param login the new login.
+     */
+    public void loginAdded(String login) {
+        if (!isEnabled()) {
+            return;
+        }
+        addToFilter(login);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    // a concurrent lookup may have cached the miss before the commit
+                    generation.incrementAndGet();
+                    getCache().evict(login);
+                }
+            });
+        }
+        cacheInvalidationBus.evict(UNKNOWN_LOGINS_CACHE, login);
+    }
+
+    /**
+     * Unregister a login deleted or renamed in the current transaction, once it commits.
+     *
+     * @param login the removed login.
+     */
+    public void loginRemoved(String login) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    removeFromFilter(login);
+                }
+            });
+        } else {
+            removeFromFilter(login);
+        }
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (isEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuild the Bloom filter from the logins in the database, which drops the logins removed on the other
+     * instances and the counts left by the removals which raced with the last build.
+     * <p>
+     * This is scheduled to get fired every {@code application.cache.unknown-logins.rebuild-interval-ms}.
+     */
+    @Scheduled(fixedDelayString = "${application.cache.unknown-logins.rebuild-interval-ms:3600000}",
+        initialDelayString = "${application.cache.unknown-logins.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!isEnabled()) {
+            return;
+        }
+        CountingBloomFilter next = new CountingBloomFilter(properties.getExpectedLogins(), properties.getFalsePositiveProbability());
+        synchronized (this) {
+            if (building != null) {
+                return;
+            }
+            building = next;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Long count = transactionTemplate.execute(status -> {
+                long logins = 0;
+                try (Stream<String> stream = userRepository.streamAllLogins()) {
+                    for (String login : (Iterable<String>) stream::iterator) {
+                        synchronized (this) {
+                            next.add(login);
+                        }
+                        logins++;
+                    }
+                }
+                return logins;
+            });
+            synchronized (this) {
+                if (building != next) {
+                    // reset while building
+                    return;
+                }
+                filter = next;
+                building = null;
+            }
+            log.info("Built the Bloom filter of {} known logins in {} ms", count, System.currentTimeMillis() - start);
+            if (count != null && count > properties.getExpectedLogins()) {
+                log.warn("There are more logins than application.cache.unknown-logins.expected-logins ({}), " +
+                    "the Bloom filter lets more unknown logins through", properties.getExpectedLogins());
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (building == next) {
+                    building = null;
+                }
+            }
+            log.warn("Could not build the Bloom filter of known logins: {}", e.getMessage());
+        }
+    }
+
+    synchronized boolean isBuilt() {
+        return filter != null;
+    }
+
+    private synchronized boolean mightExist(String login) {
+        return filter == null || filter.mightContain(login);
+    }
+
+    private synchronized void addToFilter(String login) {
+        generation.incrementAndGet();
+        if (filter != null) {
+            filter.add(login);
+        }
+        if (building != null) {
+            building.add(login);
+        }
+        getCache().evict(login);
+    }
+
+    private synchronized void removeFromFilter(String login) {
+        // a filter being built may or may not have read the login, leaving a count is the safe side
+        if (filter != null) {
+            filter.remove(login);
+        }
+    }
+
+    private synchronized void reset() {
+        generation.incrementAndGet();
+        filter = null;
+        building = null;
+        getCache().clear();
+    }
+
+    private Cache getCache() {
+        return Objects.requireNonNull(cacheManager.getCache(UNKNOWN_LOGINS_CACHE));
+    }
+}
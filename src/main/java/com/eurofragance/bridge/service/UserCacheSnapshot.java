@@ -0,0 +1,291 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A binary snapshot of the user caches, written by {@link CacheSnapshotService} on shutdown and read back on
+ * startup.
+ * <p>
+ * Version 1 of the format is, big-endian:
+ * <pre>
+ * int    magic "BRCS"
+ * short  format version
+ * long   written at, epoch milliseconds
+ * int    number of authority names, then for each: string name, byte 1 if it was in the Authority region
+ * int    number of users, then for each:
+ *        byte   flags: 1 in usersByLogin, 2 in usersByEmail, 4 activated
+ *        string id, login, email, first name, last name, lang key, image URL, created by, last modified by
+ *        instant created date, last modified date
+ *        short  number of authorities, then for each: short index in the authority names
+ * int    CRC32 of all the previous bytes
+ * </pre>
+ * where a string is an int length, -1 for null, followed by its UTF-8 bytes, and an instant is a long epoch
+ * second, {@code Long.MIN_VALUE} for null, followed by an int nano adjustment. A new version must get a new
+ * number, files with another version are ignored.
+ */
+public final class UserCacheSnapshot {
+
+    public static final int MAGIC = 0x42524353;
+
+    public static final short VERSION = 1;
+
+    private static final int IN_USERS_BY_LOGIN = 1;
+
+    private static final int IN_USERS_BY_EMAIL = 2;
+
+    private static final int ACTIVATED = 4;
+
+    private final Instant writtenAt;
+
+    private final List<String> authorities;
+
+    private final List<Entry> entries;
+
+    public UserCacheSnapshot(Instant writtenAt, List<String> authorities, List<Entry> entries) {
+        this.writtenAt = writtenAt;
+        this.authorities = Collections.unmodifiableList(authorities);
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    public Instant getWrittenAt() {
+        return writtenAt;
+    }
+
+    /**
+     * @return the names of the authorities which were in the Hibernate Authority region.
+     */
+    public List<String> getAuthorities() {
+        return authorities;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Write the snapshot to a temporary file, then move it to the path, so that a crash while writing does not
+     * leave a truncated snapshot behind.
+     *
+     * @param path the snapshot file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        Set<String> regionNames = new HashSet<>(authorities);
+        authorities.forEach(name -> names.putIfAbsent(name, names.size()));
+        entries.forEach(entry -> entry.getUser().getAuthorities().forEach(authority -> names.putIfAbsent(authority.getName(), names.size())));
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temporary))) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, crc));
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(writtenAt.toEpochMilli());
+            out.writeInt(names.size());
+            for (String name : names.keySet()) {
+                writeString(out, name);
+                out.writeByte(regionNames.contains(name) ? 1 : 0);
+            }
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                writeUser(out, entry, names);
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a snapshot through a memory mapping of the file.
+     *
+     * @param path the snapshot file.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read, is corrupted or has another version.
+     */
+    public static UserCacheSnapshot read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4 + 2 + 8 + 4 + 4 + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid cache snapshot size " + size + " of " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a cache snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported cache snapshot version " + version + " of " + path + ", expected " + VERSION);
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.position(0);
+            body.limit((int) size - 4);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt((int) size - 4)) {
+                throw new IOException("Corrupted cache snapshot " + path);
+            }
+            try {
+                return read(buffer);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupted cache snapshot " + path, e);
+            }
+        }
+    }
+
+    private static UserCacheSnapshot read(ByteBuffer buffer) {
+        Instant writtenAt = Instant.ofEpochMilli(buffer.getLong());
+        int nameCount = buffer.getInt();
+        List<Authority> names = new ArrayList<>(nameCount);
+        List<String> regionNames = new ArrayList<>();
+        for (int i = 0; i < nameCount; i++) {
+            Authority authority = new Authority();
+            authority.setName(readString(buffer));
+            names.add(authority);
+            if (buffer.get() == 1) {
+                regionNames.add(authority.getName());
+            }
+        }
+        int userCount = buffer.getInt();
+        List<Entry> entries = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            entries.add(readUser(buffer, names));
+        }
+        return new UserCacheSnapshot(writtenAt, regionNames, entries);
+    }
+
+    private static void writeUser(DataOutputStream out, Entry entry, Map<String, Integer> names) throws IOException {
+        User user = entry.getUser();
+        out.writeByte((entry.isInUsersByLogin() ? IN_USERS_BY_LOGIN : 0) | (entry.isInUsersByEmail() ? IN_USERS_BY_EMAIL : 0) |
+            (user.getActivated() ? ACTIVATED : 0));
+        writeString(out, user.getId());
+        writeString(out, user.getLogin());
+        writeString(out, user.getEmail());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+        writeString(out, user.getLangKey());
+        writeString(out, user.getImageUrl());
+        writeString(out, user.getCreatedBy());
+        writeString(out, user.getLastModifiedBy());
+        writeInstant(out, user.getCreatedDate());
+        writeInstant(out, user.getLastModifiedDate());
+        out.writeShort(user.getAuthorities().size());
+        for (Authority authority : user.getAuthorities()) {
+            out.writeShort(names.get(authority.getName()));
+        }
+    }
+
+    private static Entry readUser(ByteBuffer buffer, List<Authority> names) {
+        int flags = buffer.get();
+        User user = new User();
+        user.setId(readString(buffer));
+        user.setLogin(readString(buffer));
+        user.setEmail(readString(buffer));
+        user.setFirstName(readString(buffer));
+        user.setLastName(readString(buffer));
+        user.setLangKey(readString(buffer));
+        user.setImageUrl(readString(buffer));
+        user.setCreatedBy(readString(buffer));
+        user.setLastModifiedBy(readString(buffer));
+        user.setCreatedDate(readInstant(buffer));
+        user.setLastModifiedDate(readInstant(buffer));
+        user.setActivated((flags & ACTIVATED) != 0);
+        int authorityCount = buffer.getShort();
+        Set<Authority> authorities = new HashSet<>();
+        for (int i = 0; i < authorityCount; i++) {
+            authorities.add(names.get(buffer.getShort()));
+        }
+        user.setAuthorities(authorities);
+        return new Entry(user, (flags & IN_USERS_BY_LOGIN) != 0, (flags & IN_USERS_BY_EMAIL) != 0);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        out.writeLong(value == null ? Long.MIN_VALUE : value.getEpochSecond());
+        out.writeInt(value == null ? 0 : value.getNano());
+    }
+
+    private static Instant readInstant(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        return seconds == Long.MIN_VALUE ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    /**
+     * A user of the snapshot, with the caches it was in.
+     */
+    public static class Entry {
+
+        private final User user;
+
+        private final boolean inUsersByLogin;
+
+        private final boolean inUsersByEmail;
+
+        public Entry(User user, boolean inUsersByLogin, boolean inUsersByEmail) {
+            this.user = user;
+            this.inUsersByLogin = inUsersByLogin;
+            this.inUsersByEmail = inUsersByEmail;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public boolean isInUsersByLogin() {
+            return inUsersByLogin;
+        }
+
+        public boolean isInUsersByEmail() {
+            return inUsersByEmail;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.PersistenceAuditEventRepository;
+import com.eurofragance.bridge.repository.UserRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Fills the user caches with the most recently active users after startup, so that their first requests after
+ * a deploy do not all hit the database at once.
+ * <p>
+ * Users are read from the principals of the most recent audit events and loaded with their authorities in
+ * batched {@code IN} queries, which also puts them in the Hibernate second-level cache. The warm-up stops at
+ * {@code application.cache.warm-up.max-users} users or after {@code max-seconds}, whichever comes first. Users
+ * already in the cache, e.g. restored by {@link CacheSnapshotService}, are not loaded again.
+ * <p>
+ * A batch read before a user was modified, here or on a peer, is not cached: the evictions of the user caches
+ * start a new generation, as in {@link UserSearchCache}, and the users of a batch are only kept in the caches if
+ * the generation did not change since the batch was read.
+ */
+@Service
+public class UserCacheWarmer {
+
+    private final Logger log = LoggerFactory.getLogger(UserCacheWarmer.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final UserRepository userRepository;
+
+    private final CacheManager cacheManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Cache.WarmUp properties;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public UserCacheWarmer(PersistenceAuditEventRepository persistenceAuditEventRepository, UserRepository userRepository,
+                           CacheManager cacheManager, PlatformTransactionManager transactionManager,
+                           CacheInvalidationBus cacheInvalidationBus, ApplicationProperties applicationProperties) {
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.userRepository = userRepository;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getCache().getWarmUp();
+        CacheInvalidationBus.Listener listener = new CacheInvalidationBus.Listener() {
+            @Override
+            public void evicted(Set<String> keys) {
+                generation.incrementAndGet();
+            }
+
+            @Override
+            public void cleared() {
+                generation.incrementAndGet();
+            }
+        };
+        cacheInvalidationBus.addListener(UserRepository.USERS_BY_LOGIN_CACHE, listener);
+        cacheInvalidationBus.addListener(UserRepository.USERS_BY_EMAIL_CACHE, listener);
+    }
+
+    /**
+     * Record the eviction of a user from the user caches, once the current transaction commits, so that a warm-up
+     * in progress does not cache the user as read before the change.
+     */
+    public void evicted() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                }
+            });
+        } else {
+            generation.incrementAndGet();
+        }
+    }
+
+    /**
+     * Warm up the user caches on the {@code taskExecutor} once the application has started.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (properties.isEnabled()) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Load the most recently active users into the user caches, within the configured budget.
+     *
+     * @return the number of users loaded.
+     */
+    public int warmUp() {
+        Instant start = Instant.now();
+        Instant deadline = start.plusSeconds(properties.getMaxSeconds());
+        Cache usersByLogin = Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE));
+        Cache usersByEmail = Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE));
+        List<String> logins = persistenceAuditEventRepository.findMostRecentPrincipals(PageRequest.of(0, properties.getMaxUsers()))
+            .stream()
+            .filter(login -> usersByLogin.get(login) == null)
+            .collect(Collectors.toList());
+        int loaded = 0;
+        for (int from = 0; from < logins.size(); from += properties.getBatchSize()) {
+            if (Instant.now().isAfter(deadline)) {
+                log.info("Stopped the user cache warm-up after {} seconds", properties.getMaxSeconds());
+                break;
+            }
+            List<String> batch = logins.subList(from, Math.min(from + properties.getBatchSize(), logins.size()));
+            long batchGeneration = generation.get();
+            List<User> users = transactionTemplate.execute(status -> userRepository.findAllWithAuthoritiesByLoginIn(batch));
+            loaded += cache(Objects.requireNonNull(users), batchGeneration, usersByLogin, usersByEmail);
+        }
+        log.info("Warmed up the user caches with {} of {} recently active users in {} ms", loaded, logins.size(),
+            Duration.between(start, Instant.now()).toMillis());
+        return loaded;
+    }
+
+    private int cache(List<User> users, long batchGeneration, Cache usersByLogin, Cache usersByEmail) {
+        if (generation.get() != batchGeneration) {
+            log.debug("Skipped a batch of {} users of the user cache warm-up, modified while it was read", users.size());
+            return 0;
+        }
+        for (User user : users) {
+            // entries cached by requests since startup are at least as fresh
+            usersByLogin.putIfAbsent(user.getLogin(), user);
+            if (user.getEmail() != null) {
+                usersByEmail.putIfAbsent(user.getEmail(), user);
+            }
+        }
+        if (generation.get() != batchGeneration) {
+            // a user was modified between the check and the puts: drop the batch, an entry cached by a request is
+            // only read again
+            log.debug("Evicted a batch of {} users of the user cache warm-up, modified while it was cached", users.size());
+            for (User user : users) {
+                usersByLogin.evict(user.getLogin());
+                if (user.getEmail() != null) {
+                    usersByEmail.evict(user.getEmail());
+                }
+            }
+            return 0;
+        }
+        return users.size();
+    }
+}
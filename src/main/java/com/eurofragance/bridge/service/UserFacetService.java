@@ -0,0 +1,69 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.UserFacets;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+import com.eurofragance.bridge.service.dto.UserFacetsDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Counts the users per language, activation status, authority and creation date bucket in two requests, rather
+ * than by paging through the users.
+ * <p>
+ * The languages, activation statuses and creation dates are counted by aggregations of the user index, and the
+ * authorities, which are not indexed, by a group-by of the database. Both are cached together by the
+ * {@link UserSearchCache}, until the next write to the user index: the authorities of a user are only changed
+ * along with it, so their counts are invalidated too.
+ */
+@Service
+public class UserFacetService {
+
+    private final Logger log = LoggerFactory.getLogger(UserFacetService.class);
+
+    private final UserSearchRepository userSearchRepository;
+
+    private final UserRepository userRepository;
+
+    private final UserSearchCache userSearchCache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public UserFacetService(UserSearchRepository userSearchRepository, UserRepository userRepository,
+                            UserSearchCache userSearchCache, PlatformTransactionManager transactionManager) {
+        this.userSearchRepository = userSearchRepository;
+        this.userRepository = userRepository;
+        this.userSearchCache = userSearchCache;
+        // not around the search request, which would hold a connection of the pool meanwhile
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * @param interval the interval of the creation date buckets.
+     * @return the number of users per facet.
+     * @throws IOException if the search request failed.
+     */
+    public UserFacetsDTO getFacets(UserFacets.Interval interval) throws IOException {
+        return userSearchCache.get("facets|" + interval, () -> {
+            UserFacets facets = userSearchRepository.facets(interval);
+            List<Object[]> rows = Optional.ofNullable(transactionTemplate.execute(status -> userRepository.countByAuthority()))
+                .orElse(Collections.emptyList());
+            Map<String, Long> authorities = new TreeMap<>();
+            rows.forEach(row -> authorities.put((String) row[0], (Long) row[1]));
+            log.debug("Counted the facets of {} users", facets.getTotal());
+            return new UserFacetsDTO(facets, interval, authorities);
+        });
+    }
+}
@@ -0,0 +1,344 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.Constants;
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.service.dto.UserImportDTO;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Service to bulk import users from a Keycloak realm export.
+ * <p>
+ * The export is streamed, and the users are inserted with batched JDBC statements,
+ * {@code application.user-import.batch-size} users at a time, each batch in its own transaction. Each batch adds its
+ * users to the outbox of the {@link UserSearchIndexer} in the same transaction, so they are indexed once it commits,
+ * and a failed batch is never indexed. Users whose id, login or email already exists are skipped: they are kept up to date by the IdP
+ * synchronization of {@link UserService}.
+ */
+@Service
+public class UserImportService {
+
+    private static final String INSERT_USER = "INSERT INTO jhi_user (id, login, first_name, last_name, email, image_url, " +
+        "activated, lang_key, created_by, created_date, last_modified_by, last_modified_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_USER_AUTHORITY = "INSERT INTO jhi_user_authority (user_id, authority_name) VALUES (?, ?)";
+
+    private static final Pattern LOGIN_PATTERN = Pattern.compile(Constants.LOGIN_REGEX);
+
+    private final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final UserSearchIndexer userSearchIndexer;
+
+    private final AuthorityRegistry authorityRegistry;
+
+    private final UnknownLoginCache unknownLoginCache;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+
+    public UserImportService(JdbcTemplate jdbcTemplate, UserSearchIndexer userSearchIndexer, AuthorityRegistry authorityRegistry,
+                             UnknownLoginCache unknownLoginCache, ObjectMapper objectMapper, PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.userSearchIndexer = userSearchIndexer;
+        this.authorityRegistry = authorityRegistry;
+        this.unknownLoginCache = unknownLoginCache;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = applicationProperties.getUserImport().getBatchSize();
+    }
+
+    /**
+     * Read the realm roles of the groups of a Keycloak realm export, to resolve the groups of the imported users.
+     *
+     * @param realm the realm export.
+     * @return the realm roles, by group path.
+     * @throws IOException if the export cannot be read.
+     */
+    public Map<String, Set<String>> readGroupRoles(InputStream realm) throws IOException {
+        Map<String, Set<String>> groupRoles = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(realm)) {
+            if (moveToArray(parser, "groups")) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    addGroupRoles(groupRoles, parser.readValueAs(RealmGroup.class));
+                }
+            }
+        }
+        return groupRoles;
+    }
+
+    /**
+     * Import the users of a Keycloak realm or users export.
+     *
+     * @param users      the export.
+     * @param groupRoles the realm roles by group path, used along with the realm roles of each user to find its authorities.
+     * @param progress   called after each batch with the progress of the import.
+     * @return the outcome of the import.
+     * @throws IOException if the export cannot be read.
+     */
+    public UserImportDTO importUsers(InputStream users, Map<String, Set<String>> groupRoles, Consumer<UserImportDTO> progress) throws IOException {
+        long start = System.currentTimeMillis();
+        long read = 0;
+        long imported = 0;
+        List<RealmUser> batch = new ArrayList<>(batchSize);
+        try (JsonParser parser = objectMapper.getFactory().createParser(users)) {
+            if (moveToArray(parser, "users")) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    batch.add(parser.readValueAs(RealmUser.class));
+                    read++;
+                    if (batch.size() == batchSize) {
+                        imported += importBatch(batch, groupRoles);
+                        batch.clear();
+                        progress.accept(new UserImportDTO(read, imported, read - imported, System.currentTimeMillis() - start));
+                    }
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            imported += importBatch(batch, groupRoles);
+        }
+        UserImportDTO result = new UserImportDTO(read, imported, read - imported, System.currentTimeMillis() - start);
+        progress.accept(result);
+        log.info("Imported {} users, skipped {}, in {} ms", result.getImported(), result.getSkipped(), result.getElapsedMillis());
+        return result;
+    }
+
+    private int importBatch(List<RealmUser> realmUsers, Map<String, Set<String>> groupRoles) {
+        List<User> users = transactionTemplate.execute(status -> {
+            List<User> newUsers = filterNewUsers(realmUsers, groupRoles);
+            newUsers.stream()
+                .flatMap(user -> user.getAuthorities().stream())
+                .map(Authority::getName)
+                .distinct()
+                .forEach(authorityRegistry::register);
+            insertUsers(newUsers);
+            userSearchIndexer.indexAll(newUsers);
+            newUsers.forEach(user -> unknownLoginCache.loginAdded(user.getLogin()));
+            return newUsers;
+        });
+        log.debug("Imported a batch of {} users", users == null ? 0 : users.size());
+        return users == null ? 0 : users.size();
+    }
+
+    private List<User> filterNewUsers(List<RealmUser> realmUsers, Map<String, Set<String>> groupRoles) {
+        Instant now = Instant.now();
+        List<User> candidates = new ArrayList<>(realmUsers.size());
+        for (RealmUser realmUser : realmUsers) {
+            User user = toUser(realmUser, groupRoles, now);
+            if (user == null) {
+                log.debug("Skipping user '{}', it is not a valid user", realmUser.username);
+            } else {
+                candidates.add(user);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Set<String> takenIds = new HashSet<>();
+        Set<String> takenLogins = new HashSet<>();
+        Set<String> takenEmails = new HashSet<>();
+        findExistingUsers(candidates, takenIds, takenLogins, takenEmails);
+        List<User> newUsers = new ArrayList<>(candidates.size());
+        for (User user : candidates) {
+            // the sets also catch the duplicates within the batch
+            if (takenIds.add(user.getId()) & takenLogins.add(user.getLogin()) & (user.getEmail() == null || takenEmails.add(user.getEmail()))) {
+                newUsers.add(user);
+            } else {
+                log.debug("Skipping user '{}', it already exists", user.getLogin());
+            }
+        }
+        return newUsers;
+    }
+
+    private void findExistingUsers(List<User> users, Set<String> ids, Set<String> logins, Set<String> emails) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+            .addValue("ids", users.stream().map(User::getId).collect(Collectors.toList()))
+            .addValue("logins", users.stream().map(User::getLogin).collect(Collectors.toList()));
+        StringBuilder sql = new StringBuilder("SELECT id, login, email FROM jhi_user WHERE id IN (:ids) OR login IN (:logins)");
+        List<String> userEmails = users.stream().map(User::getEmail).filter(Objects::nonNull).collect(Collectors.toList());
+        if (!userEmails.isEmpty()) {
+            sql.append(" OR email IN (:emails)");
+            parameters.addValue("emails", userEmails);
+        }
+        namedParameterJdbcTemplate.query(sql.toString(), parameters, rs -> {
+            ids.add(rs.getString("id"));
+            logins.add(rs.getString("login"));
+            if (rs.getString("email") != null) {
+                emails.add(rs.getString("email"));
+            }
+        });
+    }
+
+    private void insertUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_USER, users, users.size(), (ps, user) -> {
+            ps.setString(1, user.getId());
+            ps.setString(2, user.getLogin());
+            ps.setString(3, user.getFirstName());
+            ps.setString(4, user.getLastName());
+            ps.setString(5, user.getEmail());
+            ps.setString(6, user.getImageUrl());
+            ps.setBoolean(7, user.getActivated());
+            ps.setString(8, user.getLangKey());
+            ps.setString(9, user.getCreatedBy());
+            ps.setTimestamp(10, Timestamp.from(user.getCreatedDate()));
+            ps.setString(11, user.getLastModifiedBy());
+            ps.setTimestamp(12, Timestamp.from(user.getLastModifiedDate()));
+        });
+        List<String[]> userAuthorities = new ArrayList<>();
+        users.forEach(user -> user.getAuthorities()
+            .forEach(authority -> userAuthorities.add(new String[]{user.getId(), authority.getName()})));
+        jdbcTemplate.batchUpdate(INSERT_USER_AUTHORITY, userAuthorities, userAuthorities.size(), (ps, userAuthority) -> {
+            ps.setString(1, userAuthority[0]);
+            ps.setString(2, userAuthority[1]);
+        });
+    }
+
+    private static User toUser(RealmUser realmUser, Map<String, Set<String>> groupRoles, Instant now) {
+        if (realmUser.id == null || realmUser.username == null || realmUser.serviceAccountClientId != null) {
+            return null;
+        }
+        String login = realmUser.username.toLowerCase();
+        if (login.length() > 50 || !LOGIN_PATTERN.matcher(login).matches()) {
+            return null;
+        }
+        User user = new User();
+        user.setId(realmUser.id);
+        user.setLogin(login);
+        user.setFirstName(truncate(realmUser.firstName, 50));
+        user.setLastName(truncate(realmUser.lastName, 50));
+        if (realmUser.email != null && !realmUser.email.isEmpty() && realmUser.email.length() <= 191) {
+            user.setEmail(realmUser.email.toLowerCase());
+        }
+        user.setActivated(realmUser.enabled);
+        user.setLangKey(getLangKey(realmUser));
+        user.setCreatedBy(Constants.SYSTEM_ACCOUNT);
+        user.setCreatedDate(realmUser.createdTimestamp == null ? now : Instant.ofEpochMilli(realmUser.createdTimestamp));
+        user.setLastModifiedBy(Constants.SYSTEM_ACCOUNT);
+        user.setLastModifiedDate(now);
+        Set<String> roles = new HashSet<>(realmUser.realmRoles);
+        realmUser.groups.forEach(group -> roles.addAll(groupRoles.getOrDefault(group, Collections.emptySet())));
+        roles.stream()
+            .filter(role -> role.startsWith("ROLE_"))
+            .forEach(role -> {
+                Authority authority = new Authority();
+                authority.setName(role);
+                user.getAuthorities().add(authority);
+            });
+        return user;
+    }
+
+    private static String getLangKey(RealmUser realmUser) {
+        List<String> locales = realmUser.attributes.get("locale");
+        if (locales == null || locales.isEmpty()) {
+            return Constants.DEFAULT_LANGUAGE;
+        }
+        // trim off country code if it exists
+        String locale = locales.get(0).split("[_-]")[0].toLowerCase();
+        return locale.length() < 2 || locale.length() > 10 ? Constants.DEFAULT_LANGUAGE : locale;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+
+    private static void addGroupRoles(Map<String, Set<String>> groupRoles, RealmGroup group) {
+        if (group.path != null) {
+            groupRoles.put(group.path, new HashSet<>(group.realmRoles));
+        }
+        group.subGroups.forEach(subGroup -> addGroupRoles(groupRoles, subGroup));
+    }
+
+    /**
+     * Move the parser to the start of a top-level array, skipping the other top-level fields.
+     *
+     * @return false if the export has no such array.
+     */
+    private static boolean moveToArray(JsonParser parser, String fieldName) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a Keycloak realm export, starting with a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (fieldName.equals(name) && value == JsonToken.START_ARRAY) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * A user of a Keycloak realm export, only with the fields that are imported.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class RealmUser {
+
+        public String id;
+
+        public String username;
+
+        public boolean enabled;
+
+        public String firstName;
+
+        public String lastName;
+
+        public String email;
+
+        public Long createdTimestamp;
+
+        public String serviceAccountClientId;
+
+        public List<String> realmRoles = new ArrayList<>();
+
+        public List<String> groups = new ArrayList<>();
+
+        public Map<String, List<String>> attributes = new HashMap<>();
+    }
+
+    /**
+     * A group of a Keycloak realm export, only with the fields needed to resolve the roles of its members.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class RealmGroup {
+
+        public String path;
+
+        public List<String> realmRoles = new ArrayList<>();
+
+        public List<RealmGroup> subGroups = new ArrayList<>();
+    }
+}
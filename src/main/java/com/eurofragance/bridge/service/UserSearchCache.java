@@ -0,0 +1,191 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.search.SearchAfterPage;
+import com.eurofragance.bridge.repository.search.UserSearchHit;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the pages of the user search, the suggestions and the facets in the short-lived {@link #USER_SEARCH_CACHE}
+ * region, for the searches repeated as the query is typed and the dashboards refreshed.
+ * <p>
+ * The pages are cached by normalized query, page and cursor, under the generation of the index they were read
+ * from. Every write to the user index, by the {@link UserSearchIndexer} or the {@link UserSearchReindexer},
+ * starts a new generation, so the pages of the previous ones are never read again and expire with the region.
+ * A write is only searchable once the index is refreshed, so the pages read less than
+ * {@code application.search.result-cache.refresh-interval-ms} after a write are not cached. Other instances are
+ * notified of the writes through the {@link CacheInvalidationBus}; the time to live of the region bounds the
+ * staleness when it is disabled.
+ */
+@Component
+public class UserSearchCache {
+
+    public static final String USER_SEARCH_CACHE = "userSearch";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final UserSearchRepository userSearchRepository;
+
+    private final CacheManager cacheManager;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final ApplicationProperties.Search.ResultCache properties;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile long lastWriteAt;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public UserSearchCache(UserSearchRepository userSearchRepository, CacheManager cacheManager,
+                           CacheInvalidationBus cacheInvalidationBus, ApplicationProperties applicationProperties,
+                           MeterRegistry meterRegistry) {
+        this.userSearchRepository = userSearchRepository;
+        this.cacheManager = cacheManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.properties = applicationProperties.getSearch().getResultCache();
+        this.hits = Counter.builder("search.cache")
+            .description("User searches, answered by the result cache or by Elasticsearch")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.misses = Counter.builder("search.cache")
+            .description("User searches, answered by the result cache or by Elasticsearch")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        cacheInvalidationBus.addListener(USER_SEARCH_CACHE, new CacheInvalidationBus.Listener() {
+            @Override
+            public void evicted(Set<String> keys) {
+                newGeneration();
+            }
+
+            @Override
+            public void cleared() {
+                // the user index was written on a peer
+                newGeneration();
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Search users, from the cache if the same page was read since the last write to the user index.
+     *
+     * @param query       the query.
+     * @param pageable    the pagination information.
+     * @param searchAfter the cursor of the previous page, or null.
+     * @return the page of users.
+     * @throws IOException if the search request failed.
+     * @see UserSearchRepository#searchPage(String, Pageable, String)
+     */
+    public SearchAfterPage<UserSearchHit> search(String query, Pageable pageable, String searchAfter) throws IOException {
+        return get(key(query, pageable, searchAfter), () -> userSearchRepository.searchPage(query, pageable, searchAfter));
+    }
+
+    /**
+     * Suggest users, from the cache if the same prefix was typed since the last write to the user index.
+     *
+     * @param prefix the prefix typed.
+     * @param size   the maximum number of suggestions.
+     * @return the suggested users.
+     * @throws IOException if the search request failed.
+     * @see UserSearchRepository#suggest(String, int)
+     */
+    public List<User> suggest(String prefix, int size) throws IOException {
+        return get("suggest|" + size + "|" + normalize(prefix).toLowerCase(Locale.ROOT), () -> userSearchRepository.suggest(prefix, size));
+    }
+
+    /**
+     * Read a result derived from the user index, from the cache if it was read since the last write to the user
+     * index, as the pages of the searches.
+     *
+     * @param key    the key of the result, unique among the results of the user index.
+     * @param loader reads the result on a miss.
+     * @param <T>    the type of the result.
+     * @return the result.
+     * @throws IOException if the loader failed.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Loader<T> loader) throws IOException {
+        if (!isEnabled()) {
+            return loader.load();
+        }
+        long searchGeneration = generation.get();
+        long searchedAt = System.currentTimeMillis();
+        String generationKey = searchGeneration + "|" + key;
+        Cache.ValueWrapper cached = getCache().get(generationKey);
+        if (cached != null) {
+            hits.increment();
+            return (T) cached.get();
+        }
+        misses.increment();
+        T result = loader.load();
+        // a write during the search, or not refreshed yet when it started, may be missing from the result
+        if (generation.get() == searchGeneration && searchedAt - lastWriteAt >= properties.getRefreshIntervalMs()) {
+            getCache().put(generationKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * Stop serving the cached pages after a write to the user index, on this instance and on the others.
+     */
+    public void invalidate() {
+        newGeneration();
+        cacheInvalidationBus.clear(USER_SEARCH_CACHE);
+    }
+
+    private void newGeneration() {
+        lastWriteAt = System.currentTimeMillis();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * The whitespace of the queries is normalized, but not their case, as field names and operators of the
+     * {@code query_string} syntax are case sensitive.
+     */
+    static String key(String query, Pageable pageable, String searchAfter) {
+        return pageable.getPageNumber() + "|" + pageable.getPageSize() + "|" + pageable.getSort() + "|" +
+            Objects.toString(searchAfter, "") + "|" + normalize(query);
+    }
+
+    private static String normalize(String query) {
+        return WHITESPACE.matcher(query.trim()).replaceAll(" ");
+    }
+
+    private Cache getCache() {
+        return Objects.requireNonNull(cacheManager.getCache(USER_SEARCH_CACHE));
+    }
+
+    /**
+     * Reads a result from the user index on a cache miss.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+
+        T load() throws IOException;
+    }
+}
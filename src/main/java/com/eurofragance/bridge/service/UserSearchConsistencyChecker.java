@@ -0,0 +1,318 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.RangeChecksum;
+import com.eurofragance.bridge.repository.search.UserIdRange;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds and repairs the drift of the {@code user} index from the database, without comparing them user by user.
+ * <p>
+ * Every {@code application.search.consistency.check-interval-ms}, the next range of
+ * {@code application.search.consistency.range-size} users, in id order, is checked, so that the whole id space is
+ * covered in turn at a bounded cost. The count and the {@link RangeChecksum checksum} of the ids and last modified
+ * dates of the range are compared on both sides, Elasticsearch computing its own with an aggregation. A range which
+ * differs is split into {@code application.search.consistency.buckets} buckets of as many users, compared in one
+ * request, and so on only for the buckets which differ, until they hold at most
+ * {@code application.search.consistency.leaf-size} users: they are then compared user by user, and the drifted
+ * users are written again from the database.
+ * <p>
+ * The users modified in the last {@code application.search.consistency.settle-seconds} may still be in the outbox
+ * of the {@link UserSearchIndexer}, so they are not counted as drifted. Repairs are versioned as the writes of the
+ * indexer, so they never replace a newer document.
+ */
+@Service
+public class UserSearchConsistencyChecker {
+
+    private final Logger log = LoggerFactory.getLogger(UserSearchConsistencyChecker.class);
+
+    private final UserRepository userRepository;
+
+    private final UserSearchRepository userSearchRepository;
+
+    private final UserSearchCache userSearchCache;
+
+    private final UserSearchReindexer userSearchReindexer;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Search.Consistency properties;
+
+    private final Counter matchingBuckets;
+
+    private final Counter differingBuckets;
+
+    private final Counter missing;
+
+    private final Counter stale;
+
+    private final Counter orphaned;
+
+    private final Timer check;
+
+    private final Timer repairSuccess;
+
+    private final Timer repairFailure;
+
+    private String lastId = "";
+
+    public UserSearchConsistencyChecker(UserRepository userRepository, UserSearchRepository userSearchRepository,
+                                        UserSearchCache userSearchCache, UserSearchReindexer userSearchReindexer,
+                                        PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+                                        MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.userSearchRepository = userSearchRepository;
+        this.userSearchCache = userSearchCache;
+        this.userSearchReindexer = userSearchReindexer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.properties = applicationProperties.getSearch().getConsistency();
+        this.matchingBuckets = Counter.builder("search.consistency.buckets")
+            .description("Buckets of users compared between the database and the user index")
+            .tag("result", "match")
+            .register(meterRegistry);
+        this.differingBuckets = Counter.builder("search.consistency.buckets")
+            .description("Buckets of users compared between the database and the user index")
+            .tag("result", "mismatch")
+            .register(meterRegistry);
+        this.missing = Counter.builder("search.consistency.drift")
+            .description("Users found drifted from the database in the user index")
+            .tag("type", "missing")
+            .register(meterRegistry);
+        this.stale = Counter.builder("search.consistency.drift")
+            .description("Users found drifted from the database in the user index")
+            .tag("type", "stale")
+            .register(meterRegistry);
+        this.orphaned = Counter.builder("search.consistency.drift")
+            .description("Users found drifted from the database in the user index")
+            .tag("type", "orphaned")
+            .register(meterRegistry);
+        this.check = Timer.builder("search.consistency.check")
+            .description("Time taken to check a range of users")
+            .register(meterRegistry);
+        this.repairSuccess = Timer.builder("search.consistency.repair")
+            .description("Time taken to write the drifted users of a bucket again")
+            .tag("result", "success")
+            .register(meterRegistry);
+        this.repairFailure = Timer.builder("search.consistency.repair")
+            .description("Time taken to write the drifted users of a bucket again")
+            .tag("result", "failure")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Check the next range of users, unless a reindex is rebuilding the index.
+     * <p>
+     * This is scheduled to get fired every {@code application.search.consistency.check-interval-ms}.
+     */
+    @Scheduled(fixedDelayString = "${application.search.consistency.check-interval-ms:60000}",
+        initialDelayString = "${application.search.consistency.check-interval-ms:60000}")
+    public void scheduledCheck() {
+        if (!properties.isEnabled() || userSearchReindexer.isRunning()) {
+            return;
+        }
+        try {
+            checkNextRange();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not check the consistency of the user index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Check the range of users after the last one checked, starting over from the first user after the last range.
+     *
+     * @return the number of users repaired.
+     * @throws IOException if a request to the index failed.
+     */
+    public synchronized long checkNextRange() throws IOException {
+        long start = System.nanoTime();
+        String from = lastId;
+        List<Object[]> rows = Optional.ofNullable(transactionTemplate.execute(status ->
+            userRepository.findLastModifiedDatesByIdGreaterThan(from, PageRequest.of(0, properties.getRangeSize()))))
+            .orElse(Collections.emptyList());
+        List<User> users = new ArrayList<>(rows.size());
+        rows.forEach(row -> users.add(toUser((String) row[0], (Instant) row[1])));
+        // the last range goes on to the documents after the last user
+        String to = rows.size() < properties.getRangeSize() ? null : users.get(users.size() - 1).getId();
+        UserIdRange range = new UserIdRange(from, to);
+        long repaired = compare(new Bucket(range, users));
+        lastId = to != null ? to : "";
+        check.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Checked the {} users of the range {}, {} repaired", users.size(), range, repaired);
+        return repaired;
+    }
+
+    /**
+     * Compare the buckets level by level, splitting the buckets which differ, until they are small enough to be
+     * compared user by user.
+     */
+    private long compare(Bucket range) throws IOException {
+        long repaired = 0;
+        List<Bucket> level = Collections.singletonList(range);
+        while (!level.isEmpty()) {
+            List<UserIdRange> ranges = new ArrayList<>(level.size());
+            level.forEach(bucket -> ranges.add(bucket.range));
+            List<RangeChecksum> indexed = userSearchRepository.checksum(ranges);
+            List<Bucket> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i++) {
+                Bucket bucket = level.get(i);
+                if (bucket.getChecksum().equals(indexed.get(i))) {
+                    matchingBuckets.increment();
+                } else {
+                    differingBuckets.increment();
+                    if (bucket.users.size() <= properties.getLeafSize()) {
+                        repaired += repair(bucket);
+                    } else {
+                        next.addAll(split(bucket));
+                    }
+                }
+            }
+            level = next;
+        }
+        return repaired;
+    }
+
+    /**
+     * Split a bucket into buckets of as many users, the first one starting and the last one ending as it does.
+     */
+    private List<Bucket> split(Bucket bucket) {
+        int size = (bucket.users.size() + properties.getBuckets() - 1) / properties.getBuckets();
+        List<Bucket> buckets = new ArrayList<>(properties.getBuckets());
+        String from = bucket.range.getFrom();
+        for (int start = 0; start < bucket.users.size(); start += size) {
+            int end = Math.min(start + size, bucket.users.size());
+            String to = end == bucket.users.size() ? bucket.range.getTo() : bucket.users.get(end - 1).getId();
+            buckets.add(new Bucket(new UserIdRange(from, to), bucket.users.subList(start, end)));
+            from = to;
+        }
+        return buckets;
+    }
+
+    /**
+     * Compare the users of a bucket with its documents, and write the drifted users again from the database.
+     */
+    private long repair(Bucket bucket) throws IOException {
+        Map<String, User> documents = new HashMap<>();
+        String after = bucket.range.getFrom();
+        while (true) {
+            List<User> page = userSearchRepository.findInRange(new UserIdRange(after, bucket.range.getTo()), properties.getLeafSize());
+            page.forEach(document -> documents.put(document.getId(), document));
+            if (page.size() < properties.getLeafSize()) {
+                break;
+            }
+            after = page.get(page.size() - 1).getId();
+        }
+        Instant settled = Instant.now().minusSeconds(properties.getSettleSeconds());
+        Set<String> drifted = new LinkedHashSet<>();
+        Map<String, User> orphans = new LinkedHashMap<>(documents);
+        for (User user : bucket.users) {
+            orphans.remove(user.getId());
+            if (user.getLastModifiedDate() != null && user.getLastModifiedDate().isAfter(settled)) {
+                continue;
+            }
+            User document = documents.get(user.getId());
+            if (document == null) {
+                missing.increment();
+                drifted.add(user.getId());
+            } else if (!Objects.equals(toEpochMilli(user.getLastModifiedDate()), toEpochMilli(document.getLastModifiedDate()))) {
+                stale.increment();
+                drifted.add(user.getId());
+            }
+        }
+        if (drifted.isEmpty() && orphans.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            long repaired = write(drifted, orphans);
+            repairSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.info("Repaired {} users drifted from the database in the range {}", repaired, bucket.range);
+            return repaired;
+        } catch (IOException | RuntimeException e) {
+            repairFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private long write(Set<String> drifted, Map<String, User> orphans) throws IOException {
+        Set<String> ids = new LinkedHashSet<>(drifted);
+        // an orphan may have been created since the range was read
+        ids.addAll(orphans.keySet());
+        List<User> users = Optional.ofNullable(transactionTemplate.execute(status -> userRepository.findAllById(ids)))
+            .orElse(Collections.emptyList());
+        Map<String, Instant> deletions = new LinkedHashMap<>();
+        orphans.forEach((id, document) -> {
+            if (users.stream().noneMatch(user -> user.getId().equals(id))) {
+                // versioned as the document, so that a newer write of the user wins
+                deletions.put(id, Optional.ofNullable(document.getLastModifiedDate()).orElseGet(Instant::now));
+            }
+        });
+        orphaned.increment(deletions.size());
+        Map<String, Integer> failures = userSearchRepository.bulk(null, users, deletions);
+        userSearchCache.invalidate();
+        if (!failures.isEmpty()) {
+            throw new IOException(failures.size() + " repairs were rejected by Elasticsearch, first " +
+                failures.entrySet().iterator().next());
+        }
+        return users.size() + deletions.size();
+    }
+
+    private static Long toEpochMilli(Instant instant) {
+        return instant == null ? null : instant.toEpochMilli();
+    }
+
+    private static User toUser(String id, Instant lastModifiedDate) {
+        User user = new User();
+        user.setId(id);
+        user.setLastModifiedDate(lastModifiedDate);
+        return user;
+    }
+
+    /**
+     * A range of ids with the users of the database in it, in id order.
+     */
+    private static class Bucket {
+
+        private final UserIdRange range;
+
+        private final List<User> users;
+
+        Bucket(UserIdRange range, List<User> users) {
+            this.range = range;
+            this.users = users;
+        }
+
+        RangeChecksum getChecksum() {
+            RangeChecksum checksum = new RangeChecksum();
+            users.forEach(user -> checksum.add(user.getId(), user.getLastModifiedDate()));
+            return checksum;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.repository.search.UserSearchHit;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes every user matching a search as newline-delimited JSON, one {@link UserSearchHit} per line.
+ * <p>
+ * The users are read from a scroll of the user index, {@code application.search.export.batch-size} at a time,
+ * and each batch is sent to the client before the next one is requested: the memory used does not depend on the
+ * number of users, and a client reading slowly blocks the writes, so the scroll waits for it. A client may take
+ * up to {@code application.search.export.scroll-keep-alive-seconds} to read a batch, and the export as a whole
+ * up to {@code application.search.export.timeout-ms}.
+ */
+@Service
+public class UserSearchExporter {
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+
+    public static final MediaType NDJSON = MediaType.parseMediaType(NDJSON_VALUE);
+
+    private final Logger log = LoggerFactory.getLogger(UserSearchExporter.class);
+
+    private final UserSearchRepository userSearchRepository;
+
+    private final ObjectWriter writer;
+
+    // a thread per export, as Spring MVC runs the streamed responses: the few core threads of the taskExecutor
+    // would queue the exports behind one another
+    private final Executor executor = new SimpleAsyncTaskExecutor("user-export-");
+
+    private final ApplicationProperties.Search.Export properties;
+
+    private final Counter exported;
+
+    private final Timer success;
+
+    private final Timer failure;
+
+    public UserSearchExporter(UserSearchRepository userSearchRepository, ObjectMapper objectMapper,
+                              ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.userSearchRepository = userSearchRepository;
+        // the batches are written line by line
+        this.writer = objectMapper.writerFor(UserSearchHit.class)
+            .without(SerializationFeature.INDENT_OUTPUT)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.properties = applicationProperties.getSearch().getExport();
+        this.exported = Counter.builder("search.export.users")
+            .description("Users written by the exports of the user search")
+            .register(meterRegistry);
+        this.success = Timer.builder("search.export")
+            .description("Time taken to export the users matching a search")
+            .tag("result", "success")
+            .register(meterRegistry);
+        this.failure = Timer.builder("search.export")
+            .description("Time taken to export the users matching a search")
+            .tag("result", "failure")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Start sending the users matching a query string, in no particular order, on a thread of its own.
+     * <p>
+     * The emitter is completed once the users are sent, or with the error that interrupted the export.
+     *
+     * @param query the query string.
+     * @return the emitter the users are sent to, timing out after {@code application.search.export.timeout-ms}.
+     */
+    public ResponseBodyEmitter export(String query) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(properties.getTimeoutMs());
+        emitter.onTimeout(() -> log.warn("Export of the users matching {} timed out after {}ms", query, properties.getTimeoutMs()));
+        executor.execute(() -> {
+            try {
+                export(query, batch -> emitter.send(batch, NDJSON));
+                emitter.complete();
+            } catch (IOException | RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Write the users matching a query string, in no particular order, a batch at a time.
+     *
+     * @param query  the query string.
+     * @param sender called with the newline-delimited JSON of each batch.
+     * @return the number of users written.
+     * @throws IOException if a search request or a send failed.
+     */
+    long export(String query, BatchSender sender) throws IOException {
+        long start = System.nanoTime();
+        long[] count = {0};
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        try {
+            userSearchRepository.scrollSearch(query, properties.getBatchSize(),
+                Duration.ofSeconds(properties.getScrollKeepAliveSeconds()), users -> {
+                    try {
+                        batch.reset();
+                        for (UserSearchHit user : users) {
+                            writer.writeValue(batch, user);
+                            batch.write('\n');
+                        }
+                        sender.send(batch.toByteArray());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0] += users.size();
+                    exported.increment(users.size());
+                });
+        } catch (UncheckedIOException e) {
+            failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("Export of the users matching {} interrupted after {} users: {}", query, count[0], e.getMessage());
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            failure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        success.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Exported the {} users matching {}", count[0], query);
+        return count[0];
+    }
+
+    /**
+     * Sends a batch of exported users, blocking while the client is reading the previous ones.
+     */
+    @FunctionalInterface
+    interface BatchSender {
+
+        void send(byte[] batch) throws IOException;
+    }
+}
@@ -0,0 +1,306 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserOutboxEntry;
+import com.eurofragance.bridge.repository.UserOutboxRepository;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the Elasticsearch writes of {@link UserService} in {@code _bulk} requests, through the user outbox.
+ * <p>
+ * Every change of a user adds a row to the outbox in the transaction of the change, so a rolled back change never
+ * reaches the index, and a committed one is sent even if the instance stops before. The outbox is polled every
+ * {@code application.search.indexer.flush-interval-ms}: the oldest rows are claimed in batches, in a transaction
+ * which skips the rows claimed by the other instances, and the current state of their users is sent, so several
+ * changes of a user are sent once. A user missing from the database is deleted from the index. Failed rows are
+ * made available again after an exponential backoff, unless Elasticsearch rejected them, and dropped after
+ * {@code application.search.indexer.max-attempts}. Writes are versioned by the repository, so a retried
+ * operation never replaces a newer document, written by another instance or by the {@link UserSearchReindexer}.
+ * <p>
+ * While this is disabled, operations are sent one by one on the calling thread, as before.
+ */
+@Component
+public class UserSearchIndexer {
+
+    private final Logger log = LoggerFactory.getLogger(UserSearchIndexer.class);
+
+    private final UserSearchRepository userSearchRepository;
+
+    private final UserSearchCache userSearchCache;
+
+    private final UserOutboxRepository userOutboxRepository;
+
+    private final UserRepository userRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Search.Indexer properties;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile long backlog;
+
+    private volatile Instant oldestCreatedDate;
+
+    private final Timer flushSuccess;
+
+    private final Timer flushFailure;
+
+    private final DistributionSummary batchSize;
+
+    private final Counter sent;
+
+    private final Timer delay;
+
+    private final Counter dropped;
+
+    public UserSearchIndexer(UserSearchRepository userSearchRepository, UserSearchCache userSearchCache,
+                             UserOutboxRepository userOutboxRepository, UserRepository userRepository,
+                             PlatformTransactionManager transactionManager, ApplicationProperties applicationProperties,
+                             MeterRegistry meterRegistry) {
+        this.userSearchRepository = userSearchRepository;
+        this.userSearchCache = userSearchCache;
+        this.userOutboxRepository = userOutboxRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getSearch().getIndexer();
+        Gauge.builder("search.indexer.backlog", this, UserSearchIndexer::size)
+            .description("User changes waiting in the outbox, as of the last poll")
+            .register(meterRegistry);
+        Gauge.builder("search.indexer.lag", this, indexer -> indexer.getLag().toMillis() / 1000.0)
+            .description("Age of the oldest user change waiting in the outbox, in seconds")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        this.flushSuccess = Timer.builder("search.indexer.flush")
+            .description("Time taken to send a _bulk request of Elasticsearch operations")
+            .tag("result", "success")
+            .register(meterRegistry);
+        this.flushFailure = Timer.builder("search.indexer.flush")
+            .description("Time taken to send a _bulk request of Elasticsearch operations")
+            .tag("result", "failure")
+            .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("search.indexer.batch.size")
+            .description("Elasticsearch operations per _bulk request")
+            .register(meterRegistry);
+        this.sent = Counter.builder("search.indexer.sent")
+            .description("Elasticsearch operations applied, the throughput of the indexer")
+            .register(meterRegistry);
+        this.delay = Timer.builder("search.indexer.delay")
+            .description("Time taken from a user change to its Elasticsearch operation being applied")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("search.indexer.dropped")
+            .description("Elasticsearch operations given up after failing too many times or being rejected")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Index a user once the current transaction commits, by adding its change to the outbox in the transaction.
+     *
+     * @param user the user to index.
+     */
+    public void index(User user) {
+        if (!properties.isEnabled()) {
+            userSearchRepository.save(user);
+            userSearchCache.invalidate();
+            return;
+        }
+        userOutboxRepository.append(user.getId(), Instant.now());
+    }
+
+    /**
+     * Index users once the current transaction commits, by adding their changes to the outbox in a batch.
+     *
+     * @param users the users to index.
+     */
+    public void indexAll(Collection<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        if (!properties.isEnabled()) {
+            userSearchRepository.saveAll(users);
+            userSearchCache.invalidate();
+            return;
+        }
+        userOutboxRepository.appendAll(users.stream().map(User::getId).collect(Collectors.toList()), Instant.now());
+    }
+
+    /**
+     * Remove a user from the index once the current transaction commits, by adding its change to the outbox in the
+     * transaction.
+     *
+     * @param user the user to remove.
+     */
+    public void delete(User user) {
+        if (!properties.isEnabled()) {
+            userSearchRepository.delete(user);
+            userSearchCache.invalidate();
+            return;
+        }
+        userOutboxRepository.append(user.getId(), Instant.now());
+    }
+
+    /**
+     * Send the available changes of the outbox, batch by batch, until a request fails.
+     * <p>
+     * This is scheduled to get fired every {@code application.search.indexer.flush-interval-ms}. The outbox is
+     * polled even while the indexer is disabled, to send the changes written before.
+     */
+    @Scheduled(fixedDelayString = "${application.search.indexer.flush-interval-ms:1000}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            // the running flush sends the new changes too
+            return;
+        }
+        try {
+            while (sendBatch()) {
+                // until the outbox is empty, or a request failed
+            }
+            backlog = userOutboxRepository.count();
+            oldestCreatedDate = userOutboxRepository.findOldestCreatedDate().orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Could not poll the user outbox: {}", e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        if (size() > 0) {
+            log.info("{} user changes are kept in the outbox until the next start", size());
+        }
+    }
+
+    /**
+     * @return the number of changes in the outbox, as of the last poll.
+     */
+    public long size() {
+        return backlog;
+    }
+
+    /**
+     * @return the age of the oldest change in the outbox, as of the last poll.
+     */
+    public Duration getLag() {
+        Instant oldest = oldestCreatedDate;
+        return oldest == null ? Duration.ZERO : Duration.between(oldest, Instant.now());
+    }
+
+    private boolean sendBatch() {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Instant now = Instant.now();
+            Map<String, List<UserOutboxEntry>> changes = new LinkedHashMap<>();
+            userOutboxRepository.claim(properties.getBatchSize(), now)
+                .forEach(entry -> changes.computeIfAbsent(entry.getUserId(), id -> new ArrayList<>()).add(entry));
+            if (changes.isEmpty()) {
+                return false;
+            }
+            return send(changes, now);
+        }));
+    }
+
+    /**
+     * Send the current state of the users changed, and remove their rows from the outbox.
+     *
+     * @param changes the rows claimed, by user id, in the order they were added.
+     * @param now     the current date.
+     * @return true if every operation was applied or given up.
+     */
+    private boolean send(Map<String, List<UserOutboxEntry>> changes, Instant now) {
+        Map<String, User> users = new LinkedHashMap<>();
+        userRepository.findAllById(changes.keySet()).forEach(user -> users.put(user.getId(), user));
+        Map<String, Instant> deletions = new LinkedHashMap<>();
+        changes.forEach((id, entries) -> {
+            if (!users.containsKey(id)) {
+                // versioned by the latest change, the deletion of the user
+                deletions.put(id, entries.get(entries.size() - 1).getCreatedDate());
+            }
+        });
+        batchSize.record(changes.size());
+        long start = System.nanoTime();
+        Map<String, Integer> failed;
+        try {
+            failed = userSearchRepository.bulk(null, users.values(), deletions);
+        } catch (IOException | RuntimeException e) {
+            flushFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("Could not send {} Elasticsearch operations: {}", changes.size(), e.getMessage());
+            // some operations may have been applied before the failure
+            userSearchCache.invalidate();
+            retry(changes, now);
+            return false;
+        }
+        flushSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        userSearchCache.invalidate();
+        List<UserOutboxEntry> done = new ArrayList<>();
+        Map<String, List<UserOutboxEntry>> retried = new LinkedHashMap<>();
+        changes.forEach((id, entries) -> {
+            Integer status = failed.get(id);
+            if (status == null) {
+                sent.increment();
+                entries.forEach(entry -> delay.record(Duration.between(entry.getCreatedDate(), now)));
+                done.addAll(entries);
+            } else if (status == 429 || status >= 500) {
+                // too many requests or a server error may succeed later, other errors would not
+                retried.put(id, entries);
+            } else {
+                log.error("Elasticsearch rejected the operation on user {} with status {}", id, status);
+                dropped.increment();
+                done.addAll(entries);
+            }
+        });
+        userOutboxRepository.delete(done);
+        if (!retried.isEmpty()) {
+            retry(retried, now);
+            return false;
+        }
+        return true;
+    }
+
+    private void retry(Map<String, List<UserOutboxEntry>> changes, Instant now) {
+        List<UserOutboxEntry> givenUp = new ArrayList<>();
+        Map<UserOutboxEntry, Instant> availableDates = new LinkedHashMap<>();
+        changes.forEach((id, entries) -> {
+            int attempts = entries.stream().mapToInt(UserOutboxEntry::getAttempts).max().orElse(0) + 1;
+            if (attempts >= properties.getMaxAttempts()) {
+                log.error("Giving up the Elasticsearch operation on user {} after {} attempts", id, attempts);
+                dropped.increment();
+                givenUp.addAll(entries);
+                return;
+            }
+            entries.forEach(entry -> {
+                long backoff = properties.getInitialBackoffMs() << Math.min(entry.getAttempts(), 20);
+                availableDates.put(entry, now.plusMillis(Math.min(backoff, properties.getMaxBackoffMs())));
+            });
+        });
+        userOutboxRepository.delete(givenUp);
+        userOutboxRepository.reschedule(availableDates);
+    }
+}
@@ -0,0 +1,266 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.ReindexCheckpoint;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+import com.eurofragance.bridge.service.dto.ReindexStatusDTO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds the {@code user} index from the database without downtime, for the {@code reindex} management endpoint.
+ * <p>
+ * The users are copied in id order, with keyset pagination, into a new versioned index created without replicas
+ * nor refreshes. The progress is saved in the new index every {@code application.search.reindex.checkpoint-interval-ms},
+ * so a reindex interrupted by a restart or a failure resumes from its last checkpoint. Once the copy is done the
+ * replicas and refreshes are turned on and the {@code user} alias is moved to the new index in one atomic request,
+ * so searches never see a partial index.
+ * <p>
+ * The {@link UserSearchIndexer} of every instance keeps writing to the alias meanwhile, so after the swap the
+ * users modified since the reindex started are copied again and the documents of deleted users are removed.
+ * All writes are versioned with the last modified date of the users, so neither pass can overwrite a newer
+ * document.
+ */
+@Service
+public class UserSearchReindexer {
+
+    private final Logger log = LoggerFactory.getLogger(UserSearchReindexer.class);
+
+    private final UserRepository userRepository;
+
+    private final UserSearchRepository userSearchRepository;
+
+    private final UserSearchCache userSearchCache;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Executor taskExecutor;
+
+    private final ApplicationProperties.Search.Reindex properties;
+
+    private final Counter documents;
+
+    private ReindexStatusDTO status = new ReindexStatusDTO();
+
+    public UserSearchReindexer(UserRepository userRepository, UserSearchRepository userSearchRepository, UserSearchCache userSearchCache,
+                               PlatformTransactionManager transactionManager, @Qualifier("taskExecutor") Executor taskExecutor,
+                               ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.userSearchRepository = userSearchRepository;
+        this.userSearchCache = userSearchCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.taskExecutor = taskExecutor;
+        this.properties = applicationProperties.getSearch().getReindex();
+        this.documents = Counter.builder("search.reindex.documents")
+            .description("Users written to the new index by the reindex")
+            .register(meterRegistry);
+        Gauge.builder("search.reindex.documents.per.second", this, reindexer -> reindexer.getStatus().getDocumentsPerSecond())
+            .description("Users copied per second by the current or last reindex")
+            .register(meterRegistry);
+    }
+
+    public synchronized ReindexStatusDTO getStatus() {
+        return new ReindexStatusDTO(status);
+    }
+
+    /**
+     * Start a reindex in the background.
+     *
+     * @param resume true to resume the last interrupted reindex, if any, rather than starting from scratch.
+     * @return the status of the reindex.
+     * @throws IllegalStateException if a reindex is already running on this instance.
+     */
+    public synchronized ReindexStatusDTO start(boolean resume) {
+        if (isRunning()) {
+            throw new IllegalStateException("A reindex is already running");
+        }
+        status = new ReindexStatusDTO();
+        status.setState(ReindexStatusDTO.State.COPYING);
+        status.setStartedAt(Instant.now());
+        taskExecutor.execute(() -> reindex(resume));
+        return getStatus();
+    }
+
+    public synchronized boolean isRunning() {
+        return status.getState() == ReindexStatusDTO.State.COPYING || status.getState() == ReindexStatusDTO.State.CATCHING_UP ||
+            status.getState() == ReindexStatusDTO.State.PRUNING;
+    }
+
+    void reindex(boolean resume) {
+        try {
+            Set<String> previousIndices = userSearchRepository.getIndices();
+            ReindexCheckpoint checkpoint = prepare(resume, previousIndices);
+            copy(checkpoint);
+            userSearchRepository.finishIndex(checkpoint.getIndex(), properties.getReplicas());
+            Set<String> detachedIndices = userSearchRepository.swapAlias(checkpoint.getIndex(), previousIndices);
+            log.info("Swapped the user alias from {} to {}", previousIndices, checkpoint.getIndex());
+            userSearchCache.invalidate();
+            catchUp(checkpoint);
+            prune(checkpoint);
+            userSearchCache.invalidate();
+            checkpoint.setCompleted(true);
+            userSearchRepository.saveCheckpoint(checkpoint);
+            if (properties.isDeletePreviousIndices()) {
+                for (String detached : detachedIndices) {
+                    userSearchRepository.deleteIndex(detached);
+                }
+            }
+            update(status -> {
+                status.setState(ReindexStatusDTO.State.COMPLETED);
+                status.setFinishedAt(Instant.now());
+            });
+            log.info("Reindexed the users: {}", getStatus());
+        } catch (IOException | RuntimeException e) {
+            update(status -> {
+                status.setState(ReindexStatusDTO.State.FAILED);
+                status.setFinishedAt(Instant.now());
+                status.setError(e.getMessage());
+            });
+            log.error("Reindex of the users failed, it can be resumed: {}", getStatus(), e);
+        }
+    }
+
+    private ReindexCheckpoint prepare(boolean resume, Set<String> previousIndices) throws IOException {
+        List<ReindexCheckpoint> interrupted = userSearchRepository.getCheckpoints().stream()
+            .filter(checkpoint -> !checkpoint.isCompleted() && !previousIndices.contains(checkpoint.getIndex()))
+            .sorted(Comparator.comparing(ReindexCheckpoint::getStartedAt).reversed())
+            .collect(Collectors.toList());
+        if (resume && !interrupted.isEmpty()) {
+            ReindexCheckpoint checkpoint = interrupted.get(0);
+            log.info("Resuming the reindex into {} after user {}", checkpoint.getIndex(), checkpoint.getLastId());
+            update(status -> {
+                status.setIndex(checkpoint.getIndex());
+                status.setResumed(true);
+                status.setIndexed(checkpoint.getIndexed());
+            });
+            return checkpoint;
+        }
+        for (ReindexCheckpoint abandoned : interrupted) {
+            log.info("Deleting the index {} of an abandoned reindex", abandoned.getIndex());
+            userSearchRepository.deleteIndex(abandoned.getIndex());
+        }
+        ReindexCheckpoint checkpoint = userSearchRepository.createIndex();
+        log.info("Reindexing the users into {}", checkpoint.getIndex());
+        update(status -> status.setIndex(checkpoint.getIndex()));
+        return checkpoint;
+    }
+
+    private void copy(ReindexCheckpoint checkpoint) throws IOException {
+        long start = System.nanoTime();
+        long copied = 0;
+        long lastCheckpoint = System.currentTimeMillis();
+        while (true) {
+            String lastId = checkpoint.getLastId();
+            List<User> users = findPage(batch -> userRepository.findAllByIdGreaterThanOrderByIdAsc(lastId, batch));
+            if (users.isEmpty()) {
+                break;
+            }
+            write(checkpoint.getIndex(), users, Collections.emptyMap());
+            copied += users.size();
+            checkpoint.setLastId(users.get(users.size() - 1).getId());
+            checkpoint.setIndexed(checkpoint.getIndexed() + users.size());
+            double documentsPerSecond = copied / Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+            update(status -> {
+                status.setIndexed(checkpoint.getIndexed());
+                status.setDocumentsPerSecond(documentsPerSecond);
+            });
+            if (System.currentTimeMillis() - lastCheckpoint >= properties.getCheckpointIntervalMs()) {
+                userSearchRepository.saveCheckpoint(checkpoint);
+                lastCheckpoint = System.currentTimeMillis();
+                log.debug("Reindex checkpoint {}, {} users per second", checkpoint, Math.round(documentsPerSecond));
+            }
+        }
+        userSearchRepository.saveCheckpoint(checkpoint);
+        log.info("Copied {} users into {} at {} users per second", copied, checkpoint.getIndex(),
+            Math.round(getStatus().getDocumentsPerSecond()));
+    }
+
+    private void catchUp(ReindexCheckpoint checkpoint) throws IOException {
+        update(status -> status.setState(ReindexStatusDTO.State.CATCHING_UP));
+        // transactions which started before the reindex may have committed after the copy read their users
+        Instant since = checkpoint.getStartedAt().minus(Duration.ofSeconds(properties.getCatchUpMarginSeconds()));
+        String lastId = "";
+        while (true) {
+            String after = lastId;
+            List<User> users = findPage(batch -> userRepository.findAllByLastModifiedDateGreaterThanEqualAndIdGreaterThanOrderByIdAsc(
+                since, after, batch));
+            if (users.isEmpty()) {
+                return;
+            }
+            write(checkpoint.getIndex(), users, Collections.emptyMap());
+            lastId = users.get(users.size() - 1).getId();
+            update(status -> status.setCaughtUp(status.getCaughtUp() + users.size()));
+        }
+    }
+
+    private void prune(ReindexCheckpoint checkpoint) throws IOException {
+        update(status -> status.setState(ReindexStatusDTO.State.PRUNING));
+        AtomicLong pruned = new AtomicLong();
+        userSearchRepository.scrollIds(checkpoint.getIndex(), properties.getBatchSize(), ids -> {
+            List<Object[]> rows = transactionTemplate.execute(status -> userRepository.findLastModifiedDatesByIdIn(ids));
+            Set<String> existing = new HashSet<>();
+            Objects.requireNonNull(rows).forEach(row -> existing.add((String) row[0]));
+            Map<String, Instant> deletions = new LinkedHashMap<>();
+            Instant now = Instant.now();
+            ids.stream().filter(id -> !existing.contains(id)).forEach(id -> deletions.put(id, now));
+            if (!deletions.isEmpty()) {
+                try {
+                    write(checkpoint.getIndex(), Collections.emptyList(), deletions);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                pruned.addAndGet(deletions.size());
+            }
+        });
+        update(status -> status.setPruned(pruned.get()));
+    }
+
+    private List<User> findPage(Function<PageRequest, List<User>> query) {
+        return Optional.ofNullable(transactionTemplate.execute(status -> query.apply(PageRequest.of(0, properties.getBatchSize()))))
+            .orElse(Collections.emptyList());
+    }
+
+    private void write(String index, List<User> users, Map<String, Instant> deletions) throws IOException {
+        Map<String, Integer> failures = userSearchRepository.bulk(index, users, deletions);
+        if (!failures.isEmpty()) {
+            throw new IOException(failures.size() + " operations were rejected by Elasticsearch, first " +
+                failures.entrySet().iterator().next());
+        }
+        documents.increment(users.size());
+    }
+
+    private synchronized void update(Consumer<ReindexStatusDTO> change) {
+        change.accept(status);
+    }
+}
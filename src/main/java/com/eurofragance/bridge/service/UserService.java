@@ -3,9 +3,7 @@ package com.eurofragance.bridge.service;
 import com.eurofragance.bridge.config.Constants;
 import com.eurofragance.bridge.domain.Authority;
 import com.eurofragance.bridge.domain.User;
-import com.eurofragance.bridge.repository.AuthorityRepository;
 import com.eurofragance.bridge.repository.UserRepository;
-import com.eurofragance.bridge.repository.search.UserSearchRepository;
 import com.eurofragance.bridge.security.SecurityUtils;
 import com.eurofragance.bridge.service.dto.UserDTO;
 
@@ -14,15 +12,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PreDestroy;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -36,17 +40,37 @@ public class UserService {
 
     private final UserRepository userRepository;
 
-    private final UserSearchRepository userSearchRepository;
+    private final UserSearchIndexer userSearchIndexer;
 
-    private final AuthorityRepository authorityRepository;
+    private final AuthorityRegistry authorityRegistry;
 
     private final CacheManager cacheManager;
 
-    public UserService(UserRepository userRepository, UserSearchRepository userSearchRepository, AuthorityRepository authorityRepository, CacheManager cacheManager) {
+    private final UserSyncCache userSyncCache;
+
+    private final UserSyncWriteBehind userSyncWriteBehind;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    private final UnknownLoginCache unknownLoginCache;
+
+    private final UserCacheWarmer userCacheWarmer;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final SingleFlight<String, String> userSyncs = new SingleFlight<>();
+
+    public UserService(UserRepository userRepository, UserSearchIndexer userSearchIndexer, AuthorityRegistry authorityRegistry, CacheManager cacheManager, UserSyncCache userSyncCache, UserSyncWriteBehind userSyncWriteBehind, CacheInvalidationBus cacheInvalidationBus, UnknownLoginCache unknownLoginCache, UserCacheWarmer userCacheWarmer, PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
-        this.userSearchRepository = userSearchRepository;
-        this.authorityRepository = authorityRepository;
+        this.userSearchIndexer = userSearchIndexer;
+        this.authorityRegistry = authorityRegistry;
         this.cacheManager = cacheManager;
+        this.userSyncCache = userSyncCache;
+        this.userSyncWriteBehind = userSyncWriteBehind;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.unknownLoginCache = unknownLoginCache;
+        this.userCacheWarmer = userCacheWarmer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -62,19 +86,23 @@ public class UserService {
         SecurityUtils.getCurrentUserLogin()
             .flatMap(userRepository::findOneByLogin)
             .ifPresent(user -> {
-                user.setFirstName(firstName);
-                user.setLastName(lastName);
-                if (email != null) {
-	                user.setEmail(email.toLowerCase());
-                }
-                user.setLangKey(langKey);
-                user.setImageUrl(imageUrl);
-                userSearchRepository.save(user);
+                updateUserDetails(user, firstName, lastName, email, langKey, imageUrl);
+                userSearchIndexer.index(user);
                 this.clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
             });
     }
 
+    private static void updateUserDetails(User user, String firstName, String lastName, String email, String langKey, String imageUrl) {
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        if (email != null) {
+            user.setEmail(email.toLowerCase());
+        }
+        user.setLangKey(langKey);
+        user.setImageUrl(imageUrl);
+    }
+
     /**
      * Update all information for a specific user, and return the modified user.
      *
@@ -88,7 +116,12 @@ public class UserService {
             .map(Optional::get)
             .map(user -> {
                 this.clearUserCaches(user);
+                String previousLogin = user.getLogin();
                 user.setLogin(userDTO.getLogin().toLowerCase());
+                if (!user.getLogin().equals(previousLogin)) {
+                    unknownLoginCache.loginAdded(user.getLogin());
+                    unknownLoginCache.loginRemoved(previousLogin);
+                }
                 user.setFirstName(userDTO.getFirstName());
                 user.setLastName(userDTO.getLastName());
                 if (userDTO.getEmail() != null) {
@@ -99,12 +132,8 @@ public class UserService {
                 user.setLangKey(userDTO.getLangKey());
                 Set<Authority> managedAuthorities = user.getAuthorities();
                 managedAuthorities.clear();
-                userDTO.getAuthorities().stream()
-                    .map(authorityRepository::findById)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .forEach(managedAuthorities::add);
-                userSearchRepository.save(user);
+                managedAuthorities.addAll(authorityRegistry.getReferences(userDTO.getAuthorities()));
+                userSearchIndexer.index(user);
                 this.clearUserCaches(user);
                 log.debug("Changed Information for User: {}", user);
                 return user;
@@ -115,7 +144,8 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
-            userSearchRepository.delete(user);
+            userSearchIndexer.delete(user);
+            unknownLoginCache.loginRemoved(user.getLogin());
             this.clearUserCaches(user);
             log.debug("Deleted User: {}", user);
         });
@@ -128,7 +158,7 @@ public class UserService {
 
     @Transactional(readOnly = true)
     public Optional<User> getUserWithAuthoritiesByLogin(String login) {
-        return userRepository.findOneWithAuthoritiesByLogin(login);
+        return unknownLoginCache.find(login, userRepository::findOneWithAuthoritiesByLogin);
     }
 
     @Transactional(readOnly = true)
@@ -146,55 +176,64 @@ public class UserService {
      * @return a list of all the authorities.
      */
     public List<String> getAuthorities() {
-        return authorityRepository.findAll().stream().map(Authority::getName).collect(Collectors.toList());
+        return new ArrayList<>(authorityRegistry.getNames());
     }
 
-    private User syncUserWithIdP(Map<String, Object> details, User user) {
+    private void syncUsersWithIdP(List<UserSyncWriteBehind.PendingSync> syncs) {
         // save authorities in to sync user roles/groups between IdP and JHipster's local database
-        Collection<String> dbAuthorities = getAuthorities();
-        Collection<String> userAuthorities =
-            user.getAuthorities().stream().map(Authority::getName).collect(Collectors.toList());
-        for (String authority : userAuthorities) {
-            if (!dbAuthorities.contains(authority)) {
-                log.debug("Saving authority '{}' in local database", authority);
-                Authority authorityToSave = new Authority();
-                authorityToSave.setName(authority);
-                authorityRepository.save(authorityToSave);
-            }
-        }
-        // save account in to sync users between IdP and JHipster's local database
-        Optional<User> existingUser = userRepository.findOneByLogin(user.getLogin());
-        if (existingUser.isPresent()) {
-            // if IdP sends last updated information, use it to determine if an update should happen
-            if (details.get("updated_at") != null) {
-                Instant dbModifiedDate = existingUser.get().getLastModifiedDate();
-                Instant idpModifiedDate = new Date(Long.valueOf((Integer) details.get("updated_at"))).toInstant();
-                if (idpModifiedDate.isAfter(dbModifiedDate)) {
-                    log.debug("Updating user '{}' in local database", user.getLogin());
-                    updateUser(user.getFirstName(), user.getLastName(), user.getEmail(),
-                        user.getLangKey(), user.getImageUrl());
-                }
-                // no last updated info, blindly update
-            } else {
+        syncs.stream()
+            .flatMap(sync -> sync.getUser().getAuthorities().stream())
+            .map(Authority::getName)
+            .distinct()
+            .forEach(authorityRegistry::register);
+        // save accounts in to sync users between IdP and JHipster's local database
+        Map<String, User> existingUsers = userRepository.findAllByLoginIn(syncs.stream()
+            .map(sync -> sync.getUser().getLogin())
+            .collect(Collectors.toSet()))
+            .stream()
+            .collect(Collectors.toMap(User::getLogin, Function.identity()));
+        List<User> updatedUsers = new ArrayList<>();
+        for (UserSyncWriteBehind.PendingSync sync : syncs) {
+            User user = sync.getUser();
+            User existingUser = existingUsers.get(user.getLogin());
+            if (existingUser == null) {
+                log.debug("Saving user '{}' in local database", user.getLogin());
+                userRepository.save(user);
+                unknownLoginCache.loginAdded(user.getLogin());
+                this.clearUserCaches(user);
+            } else if (isUpdatedOnIdP(sync.getDetails(), existingUser)) {
                 log.debug("Updating user '{}' in local database", user.getLogin());
-                updateUser(user.getFirstName(), user.getLastName(), user.getEmail(),
+                updateUserDetails(existingUser, user.getFirstName(), user.getLastName(), user.getEmail(),
                     user.getLangKey(), user.getImageUrl());
+                updatedUsers.add(existingUser);
+                this.clearUserCaches(existingUser);
             }
-        } else {
-            log.debug("Saving user '{}' in local database", user.getLogin());
-            userRepository.save(user);
-            this.clearUserCaches(user);
         }
-        return user;
+        updatedUsers.forEach(userSearchIndexer::index);
+    }
+
+    private static boolean isUpdatedOnIdP(Map<String, Object> details, User existingUser) {
+        // if IdP sends last updated information, use it to determine if an update should happen
+        if (details.get("updated_at") != null) {
+            Instant dbModifiedDate = existingUser.getLastModifiedDate();
+            Instant idpModifiedDate = new Date(Long.valueOf((Integer) details.get("updated_at"))).toInstant();
+            return idpModifiedDate.isAfter(dbModifiedDate);
+        }
+        // no last updated info, blindly update
+        return true;
     }
 
     /**
      * Returns the user from an OAuth 2.0 login or resource server with JWT.
-     * Synchronizes the user in the local repository.
+     * Synchronizes the user in the local repository, unless it was already synchronized with the same claims.
+     * <p>
+     * Concurrent calls for the same login share a single synchronization, which runs in its own transaction
+     * (unless the caller already has one) so that it is committed before the waiting calls return.
      *
      * @param authToken the authentication token.
      * @return the user from the authentication.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public UserDTO getUserFromAuthentication(AbstractAuthenticationToken authToken) {
         Map<String, Object> attributes;
         if (authToken instanceof OAuth2AuthenticationToken) {
@@ -213,7 +252,81 @@ public class UserService {
                 return auth;
             })
             .collect(Collectors.toSet()));
-        return new UserDTO(syncUserWithIdP(attributes, user));
+        if (userSyncCache.isUpToDate(user)) {
+            log.debug("User '{}' is already synchronized with the IdP", user.getLogin());
+            return new UserDTO(user);
+        }
+        if (userSyncWriteBehind.isOpen()) {
+            userSyncWriteBehind.offer(attributes, user);
+            return new UserDTO(user);
+        }
+        String fingerprint = UserSyncCache.fingerprint(user);
+        String syncedFingerprint = userSyncs.execute(user.getLogin(), () -> syncUserWithIdPInTransaction(attributes, user, fingerprint));
+        if (!fingerprint.equals(syncedFingerprint)) {
+            // a concurrent call synchronized different claims for this login, ours must be applied on top
+            log.debug("User '{}' was concurrently synchronized with other claims", user.getLogin());
+            syncUserWithIdPInTransaction(attributes, user, fingerprint);
+        }
+        return new UserDTO(user);
+    }
+
+    private String syncUserWithIdPInTransaction(Map<String, Object> details, User user, String fingerprint) {
+        return transactionTemplate.execute(status -> {
+            syncUsersWithIdP(Collections.singletonList(new UserSyncWriteBehind.PendingSync(details, user)));
+            userSyncCache.markSynchronized(user);
+            return fingerprint;
+        });
+    }
+
+    /**
+     * Write the IdP synchronizations queued in write-behind mode, one transaction per batch so that
+     * Hibernate can send the inserts and updates as JDBC batches.
+     * <p>
+     * This is scheduled to get fired every {@code application.user-sync.write-behind.flush-interval-ms}, and
+     * returns right away while the write-behind mode is disabled, as nothing is ever queued then.
+     */
+    @Scheduled(fixedDelayString = "${application.user-sync.write-behind.flush-interval-ms:500}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void flushPendingUserSyncs() {
+        if (!userSyncWriteBehind.isEnabled()) {
+            return;
+        }
+        List<UserSyncWriteBehind.PendingSync> batch;
+        while (!(batch = userSyncWriteBehind.drain(userSyncWriteBehind.getBatchSize())).isEmpty()) {
+            writeUserSyncs(batch);
+        }
+    }
+
+    /**
+     * Stop queueing IdP synchronizations and write the pending ones before shutting down.
+     */
+    @PreDestroy
+    public void drainPendingUserSyncs() {
+        userSyncWriteBehind.close();
+        flushPendingUserSyncs();
+    }
+
+    private void writeUserSyncs(List<UserSyncWriteBehind.PendingSync> batch) {
+        try {
+            userSyncWriteBehind.getFlushTimer().record(() -> writeUserSyncsInTransaction(batch));
+        } catch (RuntimeException e) {
+            log.warn("Could not write a batch of {} user synchronizations, writing them one by one: {}", batch.size(), e.getMessage());
+            for (UserSyncWriteBehind.PendingSync sync : batch) {
+                try {
+                    writeUserSyncsInTransaction(Collections.singletonList(sync));
+                } catch (RuntimeException ex) {
+                    log.error("Could not synchronize user '{}' with the IdP", sync.getUser().getLogin(), ex);
+                }
+            }
+        }
+    }
+
+    private void writeUserSyncsInTransaction(List<UserSyncWriteBehind.PendingSync> batch) {
+        transactionTemplate.execute(status -> {
+            syncUsersWithIdP(batch);
+            batch.forEach(sync -> userSyncCache.markSynchronized(sync.getUser()));
+            return null;
+        });
     }
 
     private static User getUser(Map<String, Object> details) {
@@ -266,10 +379,18 @@ public class UserService {
         return user;
     }
 
+    SingleFlight<String, String> getUserSyncs() {
+        return userSyncs;
+    }
+
     private void clearUserCaches(User user) {
+        userSyncCache.evict(user.getLogin());
         Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).evict(user.getLogin());
+        cacheInvalidationBus.evict(UserRepository.USERS_BY_LOGIN_CACHE, user.getLogin());
         if (user.getEmail() != null) {
             Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE)).evict(user.getEmail());
+            cacheInvalidationBus.evict(UserRepository.USERS_BY_EMAIL_CACHE, user.getEmail());
         }
+        userCacheWarmer.evicted();
     }
 }
@@ -0,0 +1,176 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Remembers, for each login, a fingerprint of the IdP claims that were last synchronized into the local database.
+ * <p>
+ * When a user authenticates again with the same claims, {@link UserService} can skip the database and
+ * Elasticsearch round trips entirely. Entries live in the {@link #USER_SYNC_CACHE} region, which is bounded
+ * in size and time by the {@code application.user-sync.fingerprint-cache} properties.
+ */
+@Component
+public class UserSyncCache {
+
+    public static final String USER_SYNC_CACHE = "userSyncFingerprints";
+
+    private final CacheManager cacheManager;
+
+    private final boolean enabled;
+
+    private final Duration timeToLive;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public UserSyncCache(CacheManager cacheManager, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.UserSync.FingerprintCache properties = applicationProperties.getUserSync().getFingerprintCache();
+        this.cacheManager = cacheManager;
+        this.enabled = properties.isEnabled();
+        this.timeToLive = Duration.ofSeconds(properties.getTimeToLiveSeconds());
+        this.hits = Counter.builder("user.sync.fingerprint")
+            .description("IdP user synchronizations skipped or performed based on the claims fingerprint")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.misses = Counter.builder("user.sync.fingerprint")
+            .description("IdP user synchronizations skipped or performed based on the claims fingerprint")
+            .tag("result", "miss")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Check whether the given user, built from IdP claims, was already synchronized with exactly these claims.
+     *
+     * @param user the user built from the IdP claims.
+     * @return true if the local database is known to be up to date for this user.
+     */
+    public boolean isUpToDate(User user) {
+        if (!enabled) {
+            return false;
+        }
+        Entry entry = getCache().get(user.getLogin(), Entry.class);
+        if (entry != null && entry.getFingerprint().equals(fingerprint(user))
+            && entry.getSyncedAt().plus(timeToLive).isAfter(Instant.now())) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Record that the given user has been synchronized.
+     * <p>
+     * If a transaction is active, the fingerprint is only recorded once it commits, so a rolled back
+     * synchronization is retried on the next request.
+     *
+     * @param user the user built from the IdP claims.
+     */
+    public void markSynchronized(User user) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(fingerprint(user), Instant.now());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    getCache().put(user.getLogin(), entry);
+                }
+            });
+        } else {
+            getCache().put(user.getLogin(), entry);
+        }
+    }
+
+    /**
+     * Forget the fingerprint of a login, so its next authentication is synchronized again.
+     *
+     * @param login the login of the user.
+     */
+    public void evict(String login) {
+        if (enabled && login != null) {
+            getCache().evict(login);
+        }
+    }
+
+    /**
+     * Compute a fingerprint of the fields of a user that are synchronized from the IdP.
+     *
+     * @param user the user built from the IdP claims.
+     * @return a compact hash of the synchronized fields.
+     */
+    static String fingerprint(User user) {
+        String authorities = user.getAuthorities().stream()
+            .map(Authority::getName)
+            .sorted()
+            .collect(Collectors.joining(","));
+        String claims = String.join("\u0000",
+            Objects.toString(user.getId(), ""),
+            Objects.toString(user.getLogin(), ""),
+            Objects.toString(user.getFirstName(), ""),
+            Objects.toString(user.getLastName(), ""),
+            Objects.toString(user.getEmail(), ""),
+            Objects.toString(user.getLangKey(), ""),
+            Objects.toString(user.getImageUrl(), ""),
+            String.valueOf(user.getActivated()),
+            authorities);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(claims.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Cache getCache() {
+        return Objects.requireNonNull(cacheManager.getCache(USER_SYNC_CACHE));
+    }
+
+    /**
+     * The fingerprint of the claims of a login, and when they were last synchronized.
+     */
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String fingerprint;
+
+        private final Instant syncedAt;
+
+        public Entry(String fingerprint, Instant syncedAt) {
+            this.fingerprint = fingerprint;
+            this.syncedAt = syncedAt;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public Instant getSyncedAt() {
+            return syncedAt;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded queue of IdP user synchronizations waiting to be written to the database and Elasticsearch.
+ * <p>
+ * When {@code application.user-sync.write-behind.enabled} is set, {@link UserService} answers authenticated
+ * requests straight from the claims and leaves the upsert to this queue, which it flushes in batches on a
+ * schedule. Pending synchronizations are coalesced per login, so only the latest claims are written, and new
+ * logins are dropped (and counted) while the queue is full.
+ */
+@Component
+public class UserSyncWriteBehind {
+
+    private final Logger log = LoggerFactory.getLogger(UserSyncWriteBehind.class);
+
+    private final boolean enabled;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final Map<String, PendingSync> pending = new LinkedHashMap<>();
+
+    private volatile boolean closed;
+
+    private final Counter coalesced;
+
+    private final Counter dropped;
+
+    private final Timer flushTimer;
+
+    public UserSyncWriteBehind(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.UserSync.WriteBehind properties = applicationProperties.getUserSync().getWriteBehind();
+        this.enabled = properties.isEnabled();
+        this.capacity = properties.getQueueCapacity();
+        this.batchSize = properties.getBatchSize();
+        Gauge.builder("user.sync.write.behind.queue.depth", this, UserSyncWriteBehind::size)
+            .description("IdP user synchronizations waiting to be written")
+            .register(meterRegistry);
+        this.coalesced = Counter.builder("user.sync.write.behind.coalesced")
+            .description("IdP user synchronizations replaced by a newer one for the same login")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("user.sync.write.behind.dropped")
+            .description("IdP user synchronizations dropped because the queue was full")
+            .register(meterRegistry);
+        this.flushTimer = Timer.builder("user.sync.write.behind.flush")
+            .description("Time taken to write a batch of IdP user synchronizations")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return true if {@code application.user-sync.write-behind.enabled}, even once closed.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if synchronizations should be queued rather than written on the calling thread.
+     */
+    public boolean isOpen() {
+        return enabled && !closed;
+    }
+
+    /**
+     * Queue a synchronization, replacing any synchronization still pending for the same login.
+     *
+     * @param details the IdP claims.
+     * @param user    the user built from the IdP claims.
+     * @return false if the synchronization was dropped because the queue is full.
+     */
+    public synchronized boolean offer(Map<String, Object> details, User user) {
+        PendingSync sync = new PendingSync(details, user);
+        if (pending.remove(user.getLogin()) != null) {
+            coalesced.increment();
+        } else if (pending.size() >= capacity) {
+            log.warn("Dropping synchronization of user '{}', {} synchronizations are already pending", user.getLogin(), capacity);
+            dropped.increment();
+            return false;
+        }
+        pending.put(user.getLogin(), sync);
+        return true;
+    }
+
+    /**
+     * Remove the oldest pending synchronizations.
+     *
+     * @param maxSize the maximum number of synchronizations to remove.
+     * @return the removed synchronizations, oldest first.
+     */
+    public synchronized List<PendingSync> drain(int maxSize) {
+        List<PendingSync> batch = new ArrayList<>(Math.min(maxSize, pending.size()));
+        Iterator<PendingSync> iterator = pending.values().iterator();
+        while (batch.size() < maxSize && iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+        return batch;
+    }
+
+    /**
+     * Stop queueing synchronizations, so they are written on the calling thread again.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Timer getFlushTimer() {
+        return flushTimer;
+    }
+
+    /**
+     * An IdP user synchronization waiting to be written.
+     */
+    public static class PendingSync {
+
+        private final Map<String, Object> details;
+
+        private final User user;
+
+        PendingSync(Map<String, Object> details, User user) {
+            this.details = details;
+            this.user = user;
+        }
+
+        public Map<String, Object> getDetails() {
+            return details;
+        }
+
+        public User getUser() {
+            return user;
+        }
+    }
+}
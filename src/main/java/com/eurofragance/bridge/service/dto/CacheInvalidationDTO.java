@@ -0,0 +1,61 @@
+package com.eurofragance.bridge.service.dto;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A DTO representing a batch of cache invalidations sent to the other instances.
+ */
+public class CacheInvalidationDTO {
+
+    private String origin;
+
+    private Map<String, Set<String>> evictions = new HashMap<>();
+
+    private Set<String> clears = new HashSet<>();
+
+    public CacheInvalidationDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public CacheInvalidationDTO(String origin, Map<String, Set<String>> evictions, Set<String> clears) {
+        this.origin = origin;
+        this.evictions = evictions;
+        this.clears = clears;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public Map<String, Set<String>> getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(Map<String, Set<String>> evictions) {
+        this.evictions = evictions;
+    }
+
+    public Set<String> getClears() {
+        return clears;
+    }
+
+    public void setClears(Set<String> clears) {
+        this.clears = clears;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheInvalidationDTO{" +
+            "origin='" + origin + '\'' +
+            ", evictions=" + evictions +
+            ", clears=" + clears +
+            "}";
+    }
+}
@@ -0,0 +1,162 @@
+package com.eurofragance.bridge.service.dto;
+
+/**
+ * A DTO representing a cache region, with its sizing, expiry and statistics.
+ * <p>
+ * Unknown values, such as the statistics of a region without metrics, are {@code null}.
+ */
+public class CacheRegionDTO {
+
+    private String name;
+
+    private Long size;
+
+    private Long heapEntries;
+
+    private Long offHeapMb;
+
+    private Long diskMb;
+
+    private Long timeToLiveSeconds;
+
+    private Long timeToIdleSeconds;
+
+    private Long hits;
+
+    private Long misses;
+
+    private Long puts;
+
+    private Long removals;
+
+    private Long evictions;
+
+    private Double averageGetTimeMillis;
+
+    public CacheRegionDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Long getHeapEntries() {
+        return heapEntries;
+    }
+
+    public void setHeapEntries(Long heapEntries) {
+        this.heapEntries = heapEntries;
+    }
+
+    public Long getOffHeapMb() {
+        return offHeapMb;
+    }
+
+    public void setOffHeapMb(Long offHeapMb) {
+        this.offHeapMb = offHeapMb;
+    }
+
+    public Long getDiskMb() {
+        return diskMb;
+    }
+
+    public void setDiskMb(Long diskMb) {
+        this.diskMb = diskMb;
+    }
+
+    public Long getTimeToLiveSeconds() {
+        return timeToLiveSeconds;
+    }
+
+    public void setTimeToLiveSeconds(Long timeToLiveSeconds) {
+        this.timeToLiveSeconds = timeToLiveSeconds;
+    }
+
+    public Long getTimeToIdleSeconds() {
+        return timeToIdleSeconds;
+    }
+
+    public void setTimeToIdleSeconds(Long timeToIdleSeconds) {
+        this.timeToIdleSeconds = timeToIdleSeconds;
+    }
+
+    public Long getHits() {
+        return hits;
+    }
+
+    public void setHits(Long hits) {
+        this.hits = hits;
+    }
+
+    public Long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(Long misses) {
+        this.misses = misses;
+    }
+
+    public Long getPuts() {
+        return puts;
+    }
+
+    public void setPuts(Long puts) {
+        this.puts = puts;
+    }
+
+    public Long getRemovals() {
+        return removals;
+    }
+
+    public void setRemovals(Long removals) {
+        this.removals = removals;
+    }
+
+    public Long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(Long evictions) {
+        this.evictions = evictions;
+    }
+
+    public Double getAverageGetTimeMillis() {
+        return averageGetTimeMillis;
+    }
+
+    public void setAverageGetTimeMillis(Double averageGetTimeMillis) {
+        this.averageGetTimeMillis = averageGetTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheRegionDTO{" +
+            "name='" + name + '\'' +
+            ", size=" + size +
+            ", heapEntries=" + heapEntries +
+            ", offHeapMb=" + offHeapMb +
+            ", diskMb=" + diskMb +
+            ", timeToLiveSeconds=" + timeToLiveSeconds +
+            ", timeToIdleSeconds=" + timeToIdleSeconds +
+            ", hits=" + hits +
+            ", misses=" + misses +
+            ", puts=" + puts +
+            ", removals=" + removals +
+            ", evictions=" + evictions +
+            ", averageGetTimeMillis=" + averageGetTimeMillis +
+            "}";
+    }
+}
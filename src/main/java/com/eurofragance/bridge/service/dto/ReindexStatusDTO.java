@@ -0,0 +1,155 @@
+package com.eurofragance.bridge.service.dto;
+
+import java.time.Instant;
+
+/**
+ * A DTO representing the progress of the last reindex of the user index.
+ */
+public class ReindexStatusDTO {
+
+    public enum State {
+        IDLE, COPYING, CATCHING_UP, PRUNING, COMPLETED, FAILED
+    }
+
+    private State state = State.IDLE;
+
+    private String index;
+
+    private boolean resumed;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private long indexed;
+
+    private long caughtUp;
+
+    private long pruned;
+
+    private double documentsPerSecond;
+
+    private String error;
+
+    public ReindexStatusDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public ReindexStatusDTO(ReindexStatusDTO status) {
+        this.state = status.state;
+        this.index = status.index;
+        this.resumed = status.resumed;
+        this.startedAt = status.startedAt;
+        this.finishedAt = status.finishedAt;
+        this.indexed = status.indexed;
+        this.caughtUp = status.caughtUp;
+        this.pruned = status.pruned;
+        this.documentsPerSecond = status.documentsPerSecond;
+        this.error = status.error;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public void setResumed(boolean resumed) {
+        this.resumed = resumed;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    /**
+     * @return the users copied to the index, including those copied before a resume.
+     */
+    public long getIndexed() {
+        return indexed;
+    }
+
+    public void setIndexed(long indexed) {
+        this.indexed = indexed;
+    }
+
+    /**
+     * @return the users modified during the copy and copied again after the alias swap.
+     */
+    public long getCaughtUp() {
+        return caughtUp;
+    }
+
+    public void setCaughtUp(long caughtUp) {
+        this.caughtUp = caughtUp;
+    }
+
+    /**
+     * @return the documents of users deleted during the copy, removed after the alias swap.
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    public void setPruned(long pruned) {
+        this.pruned = pruned;
+    }
+
+    public double getDocumentsPerSecond() {
+        return documentsPerSecond;
+    }
+
+    public void setDocumentsPerSecond(double documentsPerSecond) {
+        this.documentsPerSecond = documentsPerSecond;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "ReindexStatusDTO{" +
+            "state=" + state +
+            ", index='" + index + '\'' +
+            ", resumed=" + resumed +
+            ", startedAt=" + startedAt +
+            ", finishedAt=" + finishedAt +
+            ", indexed=" + indexed +
+            ", caughtUp=" + caughtUp +
+            ", pruned=" + pruned +
+            ", documentsPerSecond=" + documentsPerSecond +
+            ", error='" + error + '\'' +
+            "}";
+    }
+}
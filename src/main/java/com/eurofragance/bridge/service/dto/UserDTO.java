@@ -4,6 +4,7 @@ import com.eurofragance.bridge.config.Constants;
 
 import com.eurofragance.bridge.domain.Authority;
 import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.search.UserSearchHit;
 
 import javax.validation.constraints.*;
 import java.time.Instant;
@@ -72,6 +73,22 @@ public class UserDTO {
             .collect(Collectors.toSet());
     }
 
+    /**
+     * A user found by a search, without its authorities and auditors, which are not indexed.
+     */
+    public UserDTO(UserSearchHit hit) {
+        this.id = hit.getId();
+        this.login = hit.getLogin();
+        this.firstName = hit.getFirstName();
+        this.lastName = hit.getLastName();
+        this.email = hit.getEmail();
+        this.activated = hit.isActivated();
+        this.imageUrl = hit.getImageUrl();
+        this.langKey = hit.getLangKey();
+        this.createdDate = hit.getCreatedDate();
+        this.lastModifiedDate = hit.getLastModifiedDate();
+    }
+
     public String getId() {
         return id;
     }
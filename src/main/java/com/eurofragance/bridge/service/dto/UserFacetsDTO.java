@@ -0,0 +1,107 @@
+package com.eurofragance.bridge.service.dto;
+
+import com.eurofragance.bridge.repository.search.UserFacets;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A DTO representing the number of users per language, activation status, authority and creation date bucket,
+ * for the user management dashboard.
+ */
+public class UserFacetsDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long total;
+
+    private String interval;
+
+    private Map<String, Long> langKeys;
+
+    private Map<Boolean, Long> activated;
+
+    private Map<String, Long> authorities;
+
+    private Map<Instant, Long> createdDates;
+
+    public UserFacetsDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public UserFacetsDTO(UserFacets facets, UserFacets.Interval interval, Map<String, Long> authorities) {
+        this.total = facets.getTotal();
+        this.interval = interval.getExpression();
+        this.langKeys = facets.getLangKeys();
+        this.activated = facets.getActivated();
+        this.authorities = authorities;
+        this.createdDates = facets.getCreatedDates();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public void setInterval(String interval) {
+        this.interval = interval;
+    }
+
+    public Map<String, Long> getLangKeys() {
+        return langKeys;
+    }
+
+    public void setLangKeys(Map<String, Long> langKeys) {
+        this.langKeys = langKeys;
+    }
+
+    public Map<Boolean, Long> getActivated() {
+        return activated;
+    }
+
+    public void setActivated(Map<Boolean, Long> activated) {
+        this.activated = activated;
+    }
+
+    /**
+     * @return the number of users per authority, counted in the database as the authorities are not indexed.
+     */
+    public Map<String, Long> getAuthorities() {
+        return authorities;
+    }
+
+    public void setAuthorities(Map<String, Long> authorities) {
+        this.authorities = authorities;
+    }
+
+    /**
+     * @return the number of users per creation date bucket, by start of bucket, from the oldest user to the newest.
+     */
+    public Map<Instant, Long> getCreatedDates() {
+        return createdDates;
+    }
+
+    public void setCreatedDates(Map<Instant, Long> createdDates) {
+        this.createdDates = createdDates;
+    }
+
+    @Override
+    public String toString() {
+        return "UserFacetsDTO{" +
+            "total=" + total +
+            ", interval='" + interval + '\'' +
+            ", langKeys=" + langKeys +
+            ", activated=" + activated +
+            ", authorities=" + authorities +
+            ", createdDates=" + createdDates +
+            "}";
+    }
+}
@@ -0,0 +1,72 @@
+package com.eurofragance.bridge.service.dto;
+
+/**
+ * A DTO representing the progress of a user import.
+ */
+public class UserImportDTO {
+
+    private long read;
+
+    private long imported;
+
+    private long skipped;
+
+    private long elapsedMillis;
+
+    public UserImportDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public UserImportDTO(long read, long imported, long skipped, long elapsedMillis) {
+        this.read = read;
+        this.imported = imported;
+        this.skipped = skipped;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRead() {
+        return read;
+    }
+
+    public void setRead(long read) {
+        this.read = read;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(long skipped) {
+        this.skipped = skipped;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getUsersPerSecond() {
+        return elapsedMillis == 0 ? 0 : imported * 1000d / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "UserImportDTO{" +
+            "read=" + read +
+            ", imported=" + imported +
+            ", skipped=" + skipped +
+            ", elapsedMillis=" + elapsedMillis +
+            "}";
+    }
+}
@@ -0,0 +1,56 @@
+package com.eurofragance.bridge.service.dto;
+
+import com.eurofragance.bridge.domain.User;
+
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A DTO representing a user suggested by the autocomplete, with only what a typeahead displays.
+ */
+public class UserSuggestionDTO {
+
+    private String login;
+
+    private String displayName;
+
+    public UserSuggestionDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public UserSuggestionDTO(User user) {
+        this.login = user.getLogin();
+        String name = Stream.of(user.getFirstName(), user.getLastName())
+            .filter(Objects::nonNull)
+            .collect(Collectors.joining(" "));
+        this.displayName = name.isEmpty() ? user.getLogin() : name;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    /**
+     * @return the first and last names of the user, or the login if the user has no name.
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public void setDisplayName(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSuggestionDTO{" +
+            "login='" + login + '\'' +
+            ", displayName='" + displayName + '\'' +
+            "}";
+    }
+}
@@ -0,0 +1,49 @@
+package com.eurofragance.bridge.web.rest;
+
+import com.eurofragance.bridge.service.CacheInvalidationBus;
+import com.eurofragance.bridge.service.dto.CacheInvalidationDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller receiving the cache invalidations of the other instances.
+ * <p>
+ * Peers are not authenticated with a token but with the shared {@code application.cache.invalidation.secret}.
+ */
+@RestController
+public class CacheInvalidationResource {
+
+    private final Logger log = LoggerFactory.getLogger(CacheInvalidationResource.class);
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public CacheInvalidationResource(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+    }
+
+    /**
+     * {@code POST /cache-invalidations} : apply the cache invalidations of a peer.
+     *
+     * @param secret       the shared secret of the peers.
+     * @param invalidation the invalidations.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)}.
+     * @throws AccessDeniedException if the secret does not match.
+     */
+    @PostMapping(CacheInvalidationBus.PATH)
+    public ResponseEntity<Void> applyInvalidations(@RequestHeader(value = CacheInvalidationBus.SECRET_HEADER, required = false) String secret,
+                                                   @RequestBody CacheInvalidationDTO invalidation) {
+        if (!cacheInvalidationBus.isTrusted(secret)) {
+            throw new AccessDeniedException("Invalid cache invalidation secret");
+        }
+        log.debug("REST request to apply cache invalidations : {}", invalidation);
+        cacheInvalidationBus.apply(invalidation);
+        return ResponseEntity.noContent().build();
+    }
+}
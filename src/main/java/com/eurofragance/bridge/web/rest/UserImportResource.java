@@ -0,0 +1,61 @@
+package com.eurofragance.bridge.web.rest;
+
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+import com.eurofragance.bridge.service.UserImportService;
+import com.eurofragance.bridge.service.dto.UserImportDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * REST controller for importing users from a Keycloak realm export.
+ */
+@RestController
+@RequestMapping("/api")
+public class UserImportResource {
+
+    private final Logger log = LoggerFactory.getLogger(UserImportResource.class);
+
+    private final UserImportService userImportService;
+
+    public UserImportResource(UserImportService userImportService) {
+        this.userImportService = userImportService;
+    }
+
+    /**
+     * {@code POST /users/import} : import the users of a Keycloak realm or users export.
+     *
+     * @param users the realm or users export, like {@code jhipster-users-0.json}.
+     * @param realm the realm export, like {@code jhipster-realm.json}, used to resolve the groups of the users to roles.
+     * @return the outcome of the import.
+     * @throws IOException if an export cannot be read.
+     */
+    @PostMapping("/users/import")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public UserImportDTO importUsers(@RequestParam("users") MultipartFile users,
+                                     @RequestParam(value = "realm", required = false) MultipartFile realm) throws IOException {
+        log.debug("REST request to import users from : {}", users.getOriginalFilename());
+        Map<String, Set<String>> groupRoles = Collections.emptyMap();
+        if (realm != null) {
+            try (InputStream inputStream = realm.getInputStream()) {
+                groupRoles = userImportService.readGroupRoles(inputStream);
+            }
+        }
+        try (InputStream inputStream = users.getInputStream()) {
+            return userImportService.importUsers(inputStream, groupRoles,
+                progress -> log.info("Importing users from {}: {}", users.getOriginalFilename(), progress));
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.eurofragance.bridge.web.rest;
 
+import com.eurofragance.bridge.config.ApplicationProperties;
 import com.eurofragance.bridge.config.Constants;
-import com.eurofragance.bridge.domain.User;
-import com.eurofragance.bridge.repository.search.UserSearchRepository;
+import com.eurofragance.bridge.repository.search.SearchAfterPage;
+import com.eurofragance.bridge.repository.search.UserFacets;
+import com.eurofragance.bridge.repository.search.UserSearchHit;
 import com.eurofragance.bridge.security.AuthoritiesConstants;
+import com.eurofragance.bridge.service.UserFacetService;
+import com.eurofragance.bridge.service.UserSearchCache;
+import com.eurofragance.bridge.service.UserSearchExporter;
 import com.eurofragance.bridge.service.UserService;
 import com.eurofragance.bridge.service.dto.UserDTO;
+import com.eurofragance.bridge.service.dto.UserFacetsDTO;
+import com.eurofragance.bridge.service.dto.UserSuggestionDTO;
+import com.eurofragance.bridge.web.rest.errors.BadRequestAlertException;
 
 import io.github.jhipster.web.util.HeaderUtil;
 import io.github.jhipster.web.util.PaginationUtil;
@@ -15,19 +23,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
-
-import static org.elasticsearch.index.query.QueryBuilders.*;
 
 /**
  * REST controller for managing users.
@@ -57,6 +66,8 @@ import static org.elasticsearch.index.query.QueryBuilders.*;
 @RequestMapping("/api")
 public class UserResource {
 
+    static final String SEARCH_AFTER_HEADER = "X-Search-After";
+
     private final Logger log = LoggerFactory.getLogger(UserResource.class);
 
     @Value("${jhipster.clientApp.name}")
@@ -64,12 +75,25 @@ public class UserResource {
 
     private final UserService userService;
 
-    private final UserSearchRepository userSearchRepository;
+    private final UserSearchCache userSearchCache;
+
+    private final UserSearchExporter userSearchExporter;
+
+    private final UserFacetService userFacetService;
 
-    public UserResource(UserService userService, UserSearchRepository userSearchRepository) {
+    private final int maxPageSize;
+
+    private final int maxSuggestions;
+
+    public UserResource(UserService userService, UserSearchCache userSearchCache, UserSearchExporter userSearchExporter,
+                        UserFacetService userFacetService, ApplicationProperties applicationProperties) {
 
         this.userService = userService;
-        this.userSearchRepository = userSearchRepository;
+        this.userSearchCache = userSearchCache;
+        this.userSearchExporter = userSearchExporter;
+        this.userFacetService = userFacetService;
+        this.maxPageSize = applicationProperties.getSearch().getMaxPageSize();
+        this.maxSuggestions = applicationProperties.getSearch().getMaxSuggestions();
     }
 
     /**
@@ -111,14 +135,112 @@ public class UserResource {
 
     /**
      * {@code SEARCH /_search/users/:query} : search for the User corresponding to the query.
+     * <p>
+     * The size of the pages is capped by {@code application.search.max-page-size}. The {@code X-Search-After}
+     * header holds the cursor of the next page: passing it back as the {@code searchAfter} parameter reads the
+     * next page with {@code search_after}, which stays fast however deep the page is.
      *
-     * @param query the query to search.
-     * @return the result of the search.
+     * @param query       the query to search.
+     * @param pageable    the pagination information.
+     * @param searchAfter the cursor of the previous page, from its {@code X-Search-After} header.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the page of users.
+     * @throws IOException if the search request failed.
      */
     @GetMapping("/_search/users/{query}")
-    public List<User> search(@PathVariable String query) {
-        return StreamSupport
-            .stream(userSearchRepository.search(queryStringQuery(query)).spliterator(), false)
+    public ResponseEntity<List<UserDTO>> search(@PathVariable String query, Pageable pageable,
+                                                @RequestParam(required = false) String searchAfter) throws IOException {
+        log.debug("REST request to search for a page of Users for query {}", query);
+        Pageable capped = PageRequest.of(pageable.getPageNumber(), Math.min(pageable.getPageSize(), maxPageSize), pageable.getSort());
+        SearchAfterPage<UserSearchHit> page;
+        try {
+            page = userSearchCache.search(query, capped, searchAfter);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), "userManagement", "searchinvalid");
+        }
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(
+            ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("searchAfter"), page);
+        if (page.getSearchAfter() != null) {
+            headers.add(SEARCH_AFTER_HEADER, page.getSearchAfter());
+        }
+        return new ResponseEntity<>(page.map(UserDTO::new).getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * {@code GET /_export/users/:query} : export every User corresponding to the query, as newline-delimited JSON.
+     * <p>
+     * The users are streamed from a scroll of the index as the client reads them, so the export is not limited
+     * by the heap, nor paginated. The query is searched first, so that an invalid query is answered with a
+     * {@code 400 (Bad Request)} rather than an interrupted stream; the {@code X-Total-Count} header holds the
+     * number of users matching it then. The request times out after {@code application.search.export.timeout-ms},
+     * not the timeout of the other asynchronous requests.
+     *
+     * @param query the query to search.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the users, one per line.
+     * @throws IOException if the search request failed.
+     */
+    @GetMapping("/_export/users/{query}")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<ResponseBodyEmitter> export(@PathVariable String query) throws IOException {
+        log.debug("REST request to export the Users for query {}", query);
+        SearchAfterPage<UserSearchHit> page;
+        try {
+            page = userSearchCache.search(query, PageRequest.of(0, 1), null);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), "userManagement", "searchinvalid");
+        }
+        ResponseBodyEmitter body = userSearchExporter.export(query);
+        return ResponseEntity.ok()
+            .contentType(UserSearchExporter.NDJSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson\"")
+            .header("X-Total-Count", Long.toString(page.getTotalElements()))
+            .body(body);
+    }
+
+    /**
+     * {@code GET /_facets/users?interval=:interval} : count the users per language, activation status, authority
+     * and creation date bucket.
+     * <p>
+     * The counts are cached until the next write to the user index.
+     *
+     * @param interval the interval of the creation date buckets: {@code day}, {@code week}, {@code month},
+     *                 {@code quarter} or {@code year}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the counts, or with status
+     * {@code 400 (Bad Request)} if the interval is unknown.
+     * @throws IOException if the search request failed.
+     */
+    @GetMapping("/_facets/users")
+    @PreAuthorize("hasRole(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<UserFacetsDTO> facets(@RequestParam(defaultValue = "month") String interval) throws IOException {
+        log.debug("REST request to count the Users per facet by {}", interval);
+        UserFacets.Interval parsed;
+        try {
+            parsed = UserFacets.Interval.parse(interval);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), "userManagement", "intervalinvalid");
+        }
+        return ResponseEntity.ok(userFacetService.getFacets(parsed));
+    }
+
+    /**
+     * {@code GET /_suggest/users?prefix=:prefix} : suggest the users whose login, names or email start with the prefix.
+     * <p>
+     * Every word of the prefix must start a word of one of these fields, so {@code "jo do"} suggests John Doe.
+     * The number of suggestions is capped by {@code application.search.max-suggestions}.
+     *
+     * @param prefix the prefix typed.
+     * @param size   the maximum number of suggestions.
+     * @return the list of suggested users, best matches first.
+     * @throws IOException if the search request failed.
+     */
+    @GetMapping("/_suggest/users")
+    public List<UserSuggestionDTO> suggest(@RequestParam String prefix, @RequestParam(required = false) Integer size) throws IOException {
+        log.debug("REST request to suggest Users for prefix {}", prefix);
+        if (prefix.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        int capped = size == null ? maxSuggestions : Math.max(1, Math.min(size, maxSuggestions));
+        return userSearchCache.suggest(prefix, capped).stream()
+            .map(UserSuggestionDTO::new)
             .collect(Collectors.toList());
     }
 }
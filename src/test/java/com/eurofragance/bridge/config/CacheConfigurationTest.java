@@ -0,0 +1,125 @@
+package com.eurofragance.bridge.config;
+
+import com.eurofragance.bridge.repository.UserRepository;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.SizedResourcePool;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link com.eurofragance.bridge.config.CacheConfiguration} class.
+ */
+public class CacheConfigurationTest {
+
+    private JHipsterProperties jHipsterProperties;
+
+    private ApplicationProperties applicationProperties;
+
+    @BeforeEach
+    public void init() {
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getCache().getEhcache().setMaxEntries(100);
+        jHipsterProperties.getCache().getEhcache().setTimeToLiveSeconds(3600);
+        applicationProperties = new ApplicationProperties();
+    }
+
+    @Test
+    public void testRegionFallsBackToJHipsterDefaults() {
+        CacheConfiguration<Object, Object> configuration = regionConfiguration(UserRepository.USERS_BY_LOGIN_CACHE);
+
+        assertThat(configuration.getResourcePools().getResourceTypeSet()).containsExactly(ResourceType.Core.HEAP);
+        assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(100);
+        assertThat(configuration.getExpiryPolicy().getExpiryForCreation("key", "value")).isEqualTo(Duration.ofSeconds(3600));
+    }
+
+    @Test
+    public void testRegionWithOffHeapTier() {
+        ApplicationProperties.Cache.Region region = new ApplicationProperties.Cache.Region();
+        region.setHeapEntries(1000L);
+        region.setOffHeapMb(64L);
+        region.setTimeToLiveSeconds(60L);
+        applicationProperties.getCache().getRegions().put(UserRepository.USERS_BY_LOGIN_CACHE, region);
+
+        CacheConfiguration<Object, Object> configuration = regionConfiguration(UserRepository.USERS_BY_LOGIN_CACHE);
+
+        assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize()).isEqualTo(1000);
+        SizedResourcePool offHeap = configuration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP);
+        assertThat(offHeap.getSize()).isEqualTo(64);
+        assertThat(offHeap.getUnit()).isEqualTo(MemoryUnit.MB);
+        assertThat(configuration.getExpiryPolicy().getExpiryForCreation("key", "value")).isEqualTo(Duration.ofSeconds(60));
+        assertThat(regionConfiguration(UserRepository.USERS_BY_EMAIL_CACHE).getResourcePools().getResourceTypeSet())
+            .containsExactly(ResourceType.Core.HEAP);
+    }
+
+    @Test
+    public void testTimeToIdleTakesPrecedence() {
+        ApplicationProperties.Cache.Region region = new ApplicationProperties.Cache.Region();
+        region.setTimeToLiveSeconds(60L);
+        region.setTimeToIdleSeconds(30L);
+        applicationProperties.getCache().getRegions().put(UserRepository.USERS_BY_LOGIN_CACHE, region);
+
+        CacheConfiguration<Object, Object> configuration = regionConfiguration(UserRepository.USERS_BY_LOGIN_CACHE);
+
+        assertThat(configuration.getExpiryPolicy().getExpiryForCreation("key", "value")).isEqualTo(Duration.ofSeconds(30));
+        assertThat(configuration.getExpiryPolicy().getExpiryForAccess("key", () -> "value")).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void testCacheManagerWithDiskTier() throws IOException {
+        Path diskPath = Files.createTempDirectory("ehcache");
+        ApplicationProperties.Cache.Region region = new ApplicationProperties.Cache.Region();
+        region.setHeapEntries(10L);
+        region.setOffHeapMb(1L);
+        region.setDiskMb(2L);
+        applicationProperties.getCache().setDiskPath(diskPath.toString());
+        applicationProperties.getCache().getRegions().put(UserRepository.USERS_BY_LOGIN_CACHE, region);
+        javax.cache.CacheManager cacheManager = createCacheManager();
+        try {
+            javax.cache.Cache<Object, Object> cache = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+            for (int i = 0; i < 100; i++) {
+                cache.put("user-" + i, "value-" + i);
+            }
+
+            assertThat(cache.get("user-0")).isEqualTo("value-0");
+            assertThat(cache.get("user-99")).isEqualTo("value-99");
+            assertThat(Files.list(diskPath).count()).isPositive();
+        } finally {
+            cacheManager.close();
+            FileSystemUtils.deleteRecursively(diskPath);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CacheConfiguration<Object, Object> regionConfiguration(String cacheName) {
+        javax.cache.CacheManager cacheManager = createCacheManager();
+        try {
+            Eh107Configuration<Object, Object> configuration = cacheManager.getCache(cacheName).getConfiguration(Eh107Configuration.class);
+            return configuration.unwrap(CacheConfiguration.class);
+        } finally {
+            cacheManager.close();
+        }
+    }
+
+    private javax.cache.CacheManager createCacheManager() {
+        com.eurofragance.bridge.config.CacheConfiguration cacheConfiguration =
+            new com.eurofragance.bridge.config.CacheConfiguration(jHipsterProperties, applicationProperties);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("cacheManagerCustomizer", cacheConfiguration.cacheManagerCustomizer());
+        return cacheConfiguration.jCacheCacheManager(beanFactory.getBeanProvider(JCacheManagerCustomizer.class));
+    }
+}
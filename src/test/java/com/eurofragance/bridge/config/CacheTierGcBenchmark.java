@@ -0,0 +1,159 @@
+package com.eurofragance.bridge.config;
+
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.github.jhipster.config.JHipsterProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JMH benchmark of the GC pauses caused by 1M cached users, with the {@code usersByLogin} region on heap only
+ * and with a small heap tier in front of an off-heap tier, as configured by {@code application.cache.regions}.
+ * <p>
+ * Each operation reads a random user and replaces one in ten, so that cached users keep being promoted and
+ * collected. The GC pauses of each iteration are logged after its score, run with {@code -prof gc} for the
+ * allocation rates. Run the {@link #main(String[])} method from the IDE, as it needs the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=2g", "-XX:+UseG1GC"})
+public class CacheTierGcBenchmark {
+
+    private static final int USERS = 1_000_000;
+
+    private final Logger log = LoggerFactory.getLogger(CacheTierGcBenchmark.class);
+
+    @Param({"heap", "offheap"})
+    private String tier;
+
+    private javax.cache.CacheManager cacheManager;
+
+    private javax.cache.Cache<Object, Object> cache;
+
+    private final AtomicLong pauses = new AtomicLong();
+
+    private final AtomicLong pauseMillis = new AtomicLong();
+
+    private final AtomicLong maxPauseMillis = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Cache.Region region = new ApplicationProperties.Cache.Region();
+        if ("heap".equals(tier)) {
+            region.setHeapEntries((long) USERS);
+        } else {
+            region.setHeapEntries(10_000L);
+            region.setOffHeapMb(1536L);
+        }
+        applicationProperties.getCache().getRegions().put(UserRepository.USERS_BY_LOGIN_CACHE, region);
+
+        CacheConfiguration cacheConfiguration = new CacheConfiguration(jHipsterProperties, applicationProperties);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("cacheManagerCustomizer", cacheConfiguration.cacheManagerCustomizer());
+        cacheManager = cacheConfiguration.jCacheCacheManager(beanFactory.getBeanProvider(JCacheManagerCustomizer.class));
+        cache = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        for (int i = 0; i < USERS; i++) {
+            cache.put(login(i), createUser(i));
+        }
+
+        NotificationListener listener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                long duration = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData())
+                    .getGcInfo().getDuration();
+                pauses.incrementAndGet();
+                pauseMillis.addAndGet(duration);
+                maxPauseMillis.accumulateAndGet(duration, Math::max);
+            }
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPauses() {
+        pauses.set(0);
+        pauseMillis.set(0);
+        maxPauseMillis.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void logPauses() {
+        log.info("[{}] GC pauses: {}, total {} ms, max {} ms", tier, pauses.get(), pauseMillis.get(), maxPauseMillis.get());
+    }
+
+    @TearDown
+    public void tearDown() {
+        cacheManager.close();
+    }
+
+    @Benchmark
+    public Object readAndReplace() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(USERS);
+        if (random.nextInt(10) == 0) {
+            cache.put(login(i), createUser(i));
+        }
+        return cache.get(login(i));
+    }
+
+    private static String login(int i) {
+        return "user-" + i;
+    }
+
+    private static User createUser(int i) {
+        User user = new User();
+        user.setId("id-" + i);
+        user.setLogin(login(i));
+        user.setFirstName("First" + i);
+        user.setLastName("Last" + i);
+        user.setEmail(login(i) + "@localhost");
+        user.setActivated(true);
+        user.setLangKey("en");
+        Authority authority = new Authority();
+        authority.setName(AuthoritiesConstants.USER);
+        user.setAuthorities(Collections.singleton(authority));
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheTierGcBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,74 @@
+package com.eurofragance.bridge.config;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.service.dto.CacheRegionDTO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@link CachesEndpoint} management endpoint.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+public class CachesEndpointIT {
+
+    @Autowired
+    private CachesEndpoint cachesEndpoint;
+
+    @Autowired
+    private javax.cache.CacheManager cacheManager;
+
+    @AfterEach
+    public void cleanup() {
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
+    }
+
+    @Test
+    public void testListRegions() {
+        assertThat(cachesEndpoint.regions()).extracting(CacheRegionDTO::getName)
+            .contains(UserRepository.USERS_BY_LOGIN_CACHE, UserRepository.USERS_BY_EMAIL_CACHE);
+
+        WebEndpointResponse<CacheRegionDTO> region = cachesEndpoint.region(UserRepository.USERS_BY_LOGIN_CACHE);
+        assertThat(region.getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK);
+        assertThat(region.getBody().getHeapEntries()).isPositive();
+        assertThat(cachesEndpoint.region("unknown").getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND);
+    }
+
+    @Test
+    public void testEvictAndClear() {
+        javax.cache.Cache<Object, Object> cache = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        cache.put("first", "cached");
+        cache.put("second", "cached");
+
+        assertThat(cachesEndpoint.evict(UserRepository.USERS_BY_LOGIN_CACHE, "first").getStatus())
+            .isEqualTo(WebEndpointResponse.STATUS_NO_CONTENT);
+        assertThat(cache.containsKey("first")).isFalse();
+        assertThat(cache.containsKey("second")).isTrue();
+        assertThat(cachesEndpoint.evict(UserRepository.USERS_BY_LOGIN_CACHE, null).getStatus())
+            .isEqualTo(WebEndpointResponse.STATUS_NO_CONTENT);
+        assertThat(cache.containsKey("second")).isFalse();
+        assertThat(cachesEndpoint.evict("unknown", null).getStatus()).isEqualTo(WebEndpointResponse.STATUS_NOT_FOUND);
+    }
+
+    @Test
+    public void testUpdate() {
+        Long heapEntries = cachesEndpoint.region(UserRepository.USERS_BY_LOGIN_CACHE).getBody().getHeapEntries();
+        try {
+            WebEndpointResponse<CacheRegionDTO> region = cachesEndpoint.update(UserRepository.USERS_BY_LOGIN_CACHE,
+                heapEntries + 1, null, null, null);
+
+            assertThat(region.getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK);
+            assertThat(region.getBody().getHeapEntries()).isEqualTo(heapEntries + 1);
+            assertThat(cachesEndpoint.update(UserRepository.USERS_BY_LOGIN_CACHE, null, 1L, null, null).getStatus())
+                .isEqualTo(WebEndpointResponse.STATUS_BAD_REQUEST);
+        } finally {
+            cachesEndpoint.update(UserRepository.USERS_BY_LOGIN_CACHE, heapEntries, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.eurofragance.bridge.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.jcache.JCacheCache;
+
+import javax.cache.Caching;
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link JCacheRegionMetrics} class.
+ */
+public class JCacheRegionMetricsTest {
+
+    private javax.cache.CacheManager cacheManager;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        cacheManager = provider.getCacheManager(URI.create("jcache-region-metrics-test"), new DefaultConfiguration(provider.getDefaultClassLoader()));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void destroy() {
+        cacheManager.close();
+    }
+
+    @Test
+    public void testHeapRegionMetrics() {
+        javax.cache.Cache<Object, Object> cache = createCache("heap", ResourcePoolsBuilder.heap(100));
+
+        cache.put("user-1", "value-1");
+        cache.put("user-2", "value-2");
+        cache.get("user-1");
+        cache.get("user-3");
+
+        assertThat(meterRegistry.get("cache.size").tag("cache", "heap").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "heap").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "heap").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.puts").tag("cache", "heap").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.gets.latency").tag("cache", "heap").tag("cacheManager", "cacheManager").gauge().value())
+            .isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void testSizeOfOffHeapRegionCountsAllTiers() {
+        javax.cache.Cache<Object, Object> cache = createCache("offheap", ResourcePoolsBuilder.heap(10).offheap(1, MemoryUnit.MB));
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("user-" + i, "value-" + i);
+        }
+
+        assertThat(meterRegistry.get("cache.size").tag("cache", "offheap").gauge().value()).isEqualTo(100);
+    }
+
+    private javax.cache.Cache<Object, Object> createCache(String name, ResourcePoolsBuilder resourcePools) {
+        javax.cache.Cache<Object, Object> cache = cacheManager.createCache(name, Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class, resourcePools).build()));
+        new JCacheRegionMetrics.Provider().getMeterBinder(new JCacheCache(cache), Tags.of("cacheManager", "cacheManager"))
+            .bindTo(meterRegistry);
+        return cache;
+    }
+}
@@ -0,0 +1,71 @@
+package com.eurofragance.bridge.repository;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link UserOutboxRepository}.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+@Transactional
+public class UserOutboxRepositoryIT {
+
+    private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+    @Autowired
+    private UserOutboxRepository userOutboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void init() {
+        jdbcTemplate.update("DELETE FROM jhi_user_outbox");
+        userOutboxRepository.append("user-1", NOW.minusSeconds(30));
+        userOutboxRepository.append("user-2", NOW.minusSeconds(20));
+        userOutboxRepository.append("user-1", NOW.minusSeconds(10));
+    }
+
+    @Test
+    public void testOldestRowsAreClaimedFirst() {
+        List<UserOutboxEntry> entries = userOutboxRepository.claim(2, NOW);
+
+        assertThat(entries).extracting(UserOutboxEntry::getUserId).containsExactly("user-1", "user-2");
+        assertThat(entries).extracting(UserOutboxEntry::getCreatedDate).containsExactly(NOW.minusSeconds(30), NOW.minusSeconds(20));
+        assertThat(userOutboxRepository.count()).isEqualTo(3);
+        assertThat(userOutboxRepository.findOldestCreatedDate()).contains(NOW.minusSeconds(30));
+    }
+
+    @Test
+    public void testRescheduledRowsAreClaimedOnceAvailable() {
+        UserOutboxEntry first = userOutboxRepository.claim(1, NOW).get(0);
+
+        userOutboxRepository.reschedule(Collections.singletonMap(first, NOW.plusSeconds(60)));
+
+        assertThat(userOutboxRepository.claim(10, NOW)).extracting(UserOutboxEntry::getUserId).containsExactly("user-2", "user-1");
+        List<UserOutboxEntry> later = userOutboxRepository.claim(10, NOW.plusSeconds(60));
+        assertThat(later).hasSize(3);
+        assertThat(later.get(0).getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeletedRowsAreNotClaimedAgain() {
+        userOutboxRepository.delete(userOutboxRepository.claim(2, NOW));
+
+        assertThat(userOutboxRepository.claim(10, NOW)).extracting(UserOutboxEntry::getCreatedDate).containsExactly(NOW.minusSeconds(10));
+        assertThat(userOutboxRepository.count()).isEqualTo(1);
+    }
+}
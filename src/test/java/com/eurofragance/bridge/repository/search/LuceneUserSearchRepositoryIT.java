@@ -0,0 +1,100 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.Constants;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.service.UserSearchCache;
+import com.eurofragance.bridge.service.UserSearchIndexer;
+
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.cache.Caching;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for the {@link LuceneUserSearchRepository}, searched instead of Elasticsearch with the
+ * {@value Constants#SPRING_PROFILE_LUCENE} profile.
+ * <p>
+ * The application context of the profile has a JCache {@code CacheManager} of its own, as the shared one would have
+ * its regions recreated under the cached context of the other tests.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class, LuceneUserSearchRepositoryIT.CacheManagerConfiguration.class})
+@ActiveProfiles(Constants.SPRING_PROFILE_LUCENE)
+public class LuceneUserSearchRepositoryIT {
+
+    @TestConfiguration
+    public static class CacheManagerConfiguration {
+
+        @Bean
+        public javax.cache.CacheManager jCacheCacheManager(ObjectProvider<JCacheManagerCustomizer> cacheManagerCustomizers) {
+            EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+            javax.cache.CacheManager cacheManager = provider.getCacheManager(URI.create("urn:bridge:lucene-test"),
+                new DefaultConfiguration(provider.getDefaultClassLoader()));
+            cacheManagerCustomizers.orderedStream().forEach(customizer -> customizer.customize(cacheManager));
+            return cacheManager;
+        }
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSearchRepository userSearchRepository;
+
+    @Autowired
+    private UserSearchIndexer userSearchIndexer;
+
+    @Autowired
+    private UserSearchCache userSearchCache;
+
+    @AfterEach
+    public void cleanup() {
+        userRepository.findById("lucene-user").ifPresent(userRepository::delete);
+        userSearchRepository.deleteAll();
+    }
+
+    @Test
+    public void testWritesOfTheIndexerAreSearchable() throws IOException {
+        assertThat(userSearchRepository).isInstanceOf(LuceneUserSearchRepository.class);
+        User user = new User();
+        user.setId("lucene-user");
+        user.setLogin("lucene");
+        user.setFirstName("Lucy");
+        user.setLastName("Lucene");
+        user.setEmail("lucene@localhost");
+        user.setActivated(true);
+        user.setLastModifiedDate(Instant.now());
+        user = userRepository.saveAndFlush(user);
+
+        // the indexer sends the users as they are in the database
+        userSearchIndexer.index(user);
+        userSearchIndexer.flush();
+
+        assertThat(userSearchCache.search("luc*", PageRequest.of(0, 20), null).getContent())
+            .extracting(UserSearchHit::getLogin).containsExactly("lucene");
+        assertThat(userSearchCache.suggest("lucy l", 10)).extracting(User::getLogin).containsExactly("lucene");
+
+        userRepository.delete(user);
+        userSearchIndexer.delete(user);
+        userSearchIndexer.flush();
+
+        assertThat(userSearchCache.search("luc*", PageRequest.of(0, 20), null).getContent()).isEmpty();
+    }
+}
@@ -0,0 +1,266 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.domain.User;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.query.NativeSearchQueryBuilder;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Test class for the {@link LuceneUserSearchRepository}, on an index in memory unless stated otherwise.
+ */
+public class LuceneUserSearchRepositoryTest {
+
+    private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+    private LuceneUserSearchRepository repository;
+
+    @BeforeEach
+    public void init() throws IOException {
+        repository = new LuceneUserSearchRepository(objectMapper(), null);
+        repository.saveAll(Arrays.asList(
+            user("1", "john", "John", "Doe", true),
+            user("2", "johanna", "Jóhanna", "Smith", true),
+            user("3", "jdoe", "Jane", "Doe", false),
+            user("4", "admin", "Administrator", null, true)));
+    }
+
+    @AfterEach
+    public void destroy() throws IOException {
+        repository.close();
+    }
+
+    @Test
+    public void testQueryStringSearch() throws IOException {
+        SearchAfterPage<UserSearchHit> page = repository.searchPage("jo* AND activated:true", PageRequest.of(0, 20, Sort.by("login")), null);
+
+        assertThat(page.getContent()).extracting(UserSearchHit::getLogin).containsExactly("johanna", "john");
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent().get(0).getEmail()).isEqualTo("johanna@localhost");
+        assertThat(repository.searchPage("doe", PageRequest.of(0, 20), null).getContent())
+            .extracting(UserSearchHit::getLogin).containsExactlyInAnyOrder("john", "jdoe");
+    }
+
+    @Test
+    public void testCursorReadsTheNextPage() throws IOException {
+        PageRequest firstPage = PageRequest.of(0, 3, Sort.by(Sort.Order.desc("lastName")));
+        SearchAfterPage<UserSearchHit> first = repository.searchPage("*:*", firstPage, null);
+        SearchAfterPage<UserSearchHit> second = repository.searchPage("*:*", firstPage.next(), first.getSearchAfter());
+
+        // the users without last name come last, then by id
+        assertThat(first.getContent()).extracting(UserSearchHit::getId).containsExactly("2", "1", "3");
+        assertThat(second.getContent()).extracting(UserSearchHit::getId).containsExactly("4");
+        assertThat(second.getSearchAfter()).isNull();
+    }
+
+    @Test
+    public void testInvalidSearches() {
+        assertThatThrownBy(() -> repository.searchPage("john", PageRequest.of(0, 20, Sort.by("password")), null))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.searchPage("john", PageRequest.of(0, 20), "not a cursor"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.searchPage("login:(john", PageRequest.of(0, 20), null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testElasticsearchQueries() {
+        assertThat(repository.search(QueryBuilders.queryStringQuery("jo* AND activated:true")))
+            .extracting(User::getLogin).containsExactlyInAnyOrder("john", "johanna");
+        Page<User> page = repository.search(QueryBuilders.matchAllQuery(), PageRequest.of(1, 3, Sort.by("login")));
+        assertThat(page.getContent()).extracting(User::getLogin).containsExactly("john");
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(repository.search(new NativeSearchQueryBuilder().withQuery(QueryBuilders.queryStringQuery("doe"))
+            .withPageable(PageRequest.of(0, 20, Sort.by("login"))).build()).getContent())
+            .extracting(User::getLogin).containsExactly("jdoe", "john");
+        assertThat(repository.searchSimilar(user("1", "john", "John", "Doe", true), new String[]{"lastName"}, PageRequest.of(0, 20)))
+            .extracting(User::getLogin).containsExactly("jdoe");
+
+        assertThatThrownBy(() -> repository.search(QueryBuilders.termQuery("login", "john")))
+            .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> repository.search(new NativeSearchQueryBuilder().withQuery(QueryBuilders.matchAllQuery())
+            .withFilter(QueryBuilders.termQuery("activated", true)).build()))
+            .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void testScrollSearchReadsEveryBatch() throws IOException {
+        List<List<String>> batches = new ArrayList<>();
+        repository.scrollSearch("activated:true", 2, Duration.ofMinutes(1),
+            users -> batches.add(users.stream().map(UserSearchHit::getLogin).collect(Collectors.toList())));
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0)).hasSize(2);
+        assertThat(batches.stream().flatMap(List::stream)).containsExactlyInAnyOrder("john", "johanna", "admin");
+        assertThatThrownBy(() -> repository.scrollSearch("login:(john", 2, Duration.ofMinutes(1), users -> { }))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testSuggestMatchesEveryWordPrefix() throws IOException {
+        assertThat(repository.suggest("jo do", 10)).extracting(User::getLogin).containsExactly("john");
+        assertThat(repository.suggest("Joh", 10)).extracting(User::getLogin).containsExactlyInAnyOrder("john", "johanna");
+        // ascii-folded
+        assertThat(repository.suggest("johan", 10)).extracting(User::getLogin).containsExactly("johanna");
+        assertThat(repository.suggest("-", 10)).isEmpty();
+    }
+
+    @Test
+    public void testOlderWritesAreIgnored() throws IOException {
+        User renamed = user("1", "john", "Johnny", "Doe", true);
+        renamed.setLastModifiedDate(NOW.plusSeconds(10));
+        User older = user("1", "john", "Jack", "Doe", true);
+        older.setLastModifiedDate(NOW.plusSeconds(5));
+
+        assertThat(repository.bulk(null, Collections.singletonList(renamed), Collections.emptyMap())).isEmpty();
+        repository.bulk(null, Collections.singletonList(older), Collections.singletonMap("3", NOW));
+        assertThat(repository.findById("1").map(User::getFirstName)).contains("Johnny");
+        assertThat(repository.existsById("3")).isFalse();
+
+        // the tombstone of the deletion rejects an older write too
+        User recreated = user("3", "jdoe", "Jane", "Doe", false);
+        recreated.setLastModifiedDate(NOW.minusSeconds(1));
+        repository.bulk(null, Collections.singletonList(recreated), Collections.emptyMap());
+        assertThat(repository.existsById("3")).isFalse();
+        assertThat(repository.count()).isEqualTo(3);
+        assertThat(repository.searchPage("jdoe", PageRequest.of(0, 20), null).getContent()).isEmpty();
+    }
+
+    @Test
+    public void testReindexBehindTheAlias() throws IOException {
+        assertThat(repository.getIndices()).containsExactly("user");
+
+        ReindexCheckpoint checkpoint = repository.createIndex();
+        repository.bulk(checkpoint.getIndex(), Collections.singletonList(user("5", "peter", "Peter", "Pan", true)), Collections.emptyMap());
+        checkpoint.setLastId("5");
+        checkpoint.setIndexed(1);
+        repository.saveCheckpoint(checkpoint);
+        assertThat(repository.getCheckpoints()).extracting(ReindexCheckpoint::getLastId).containsExactly("5");
+        List<String> ids = new ArrayList<>();
+        repository.scrollIds(checkpoint.getIndex(), 10, ids::addAll);
+        assertThat(ids).containsExactly("5");
+
+        repository.finishIndex(checkpoint.getIndex(), 1);
+        assertThat(repository.swapAlias(checkpoint.getIndex(), repository.getIndices())).isEmpty();
+
+        assertThat(repository.getIndices()).containsExactly(checkpoint.getIndex());
+        assertThat(repository.searchPage("*:*", PageRequest.of(0, 20), null).getContent()).extracting(UserSearchHit::getLogin).containsExactly("peter");
+    }
+
+    @Test
+    public void testIndicesAreReopenedFromTheirDirectory() throws IOException {
+        Path path = Files.createTempDirectory("lucene");
+        try {
+            ReindexCheckpoint checkpoint;
+            try (LuceneUserSearchRepository onDisk = new LuceneUserSearchRepository(objectMapper(), path)) {
+                checkpoint = onDisk.createIndex();
+                onDisk.saveAll(Collections.singletonList(user("1", "john", "John", "Doe", true)));
+                onDisk.bulk(checkpoint.getIndex(), Collections.singletonList(user("5", "peter", "Peter", "Pan", true)), Collections.emptyMap());
+                checkpoint.setCompleted(true);
+                onDisk.saveCheckpoint(checkpoint);
+                onDisk.swapAlias(checkpoint.getIndex(), onDisk.getIndices());
+            }
+
+            try (LuceneUserSearchRepository reopened = new LuceneUserSearchRepository(objectMapper(), path)) {
+                assertThat(reopened.getIndices()).containsExactly(checkpoint.getIndex());
+                assertThat(reopened.getCheckpoints()).extracting(ReindexCheckpoint::isCompleted).containsExactly(true);
+                assertThat(reopened.suggest("pe", 10)).extracting(User::getLogin).containsExactly("peter");
+            }
+            // the concrete index replaced by the alias is gone
+            try (java.util.stream.Stream<Path> files = Files.list(path)) {
+                assertThat(files.map(file -> file.getFileName().toString()).collect(Collectors.toList()))
+                    .containsExactlyInAnyOrder(checkpoint.getIndex(), "alias");
+            }
+        } finally {
+            FileSystemUtils.deleteRecursively(path);
+        }
+    }
+
+    @Test
+    public void testChecksumOfRanges() throws IOException {
+        List<User> users = Arrays.asList(user("1", "john", "John", "Doe", true), user("2", "johanna", "Jóhanna", "Smith", true),
+            user("3", "jdoe", "Jane", "Doe", false), user("4", "admin", "Administrator", null, true));
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setLastModifiedDate(NOW.plusSeconds(i));
+        }
+        users.get(2).setLastModifiedDate(null);
+        repository.saveAll(users);
+        RangeChecksum first = new RangeChecksum();
+        first.add("1", NOW);
+        first.add("2", NOW.plusSeconds(1));
+        RangeChecksum last = new RangeChecksum();
+        last.add("3", null);
+        last.add("4", NOW.plusSeconds(3));
+
+        List<RangeChecksum> checksums = repository.checksum(Arrays.asList(
+            new UserIdRange("", "2"), new UserIdRange("2", null), new UserIdRange("4", null)));
+
+        // the same checksum as computed from the database
+        assertThat(checksums).containsExactly(first, last, new RangeChecksum());
+        assertThat(repository.findInRange(new UserIdRange("1", null), 2))
+            .extracting(User::getId, User::getLastModifiedDate).containsExactly(tuple("2", NOW.plusSeconds(1)), tuple("3", null));
+    }
+
+    @Test
+    public void testFacets() throws IOException {
+        List<User> users = Arrays.asList(user("1", "john", "John", "Doe", true), user("2", "johanna", "Jóhanna", "Smith", true),
+            user("3", "jdoe", "Jane", "Doe", false), user("4", "admin", "Administrator", null, true));
+        // a Wednesday, the day after, then a Sunday and the Monday after it
+        users.get(0).setCreatedDate(NOW);
+        users.get(1).setCreatedDate(NOW.plus(Duration.ofDays(1)));
+        users.get(2).setCreatedDate(NOW.plus(Duration.ofDays(11)));
+        users.get(3).setCreatedDate(NOW.plus(Duration.ofDays(12)));
+        users.get(3).setLangKey("fr");
+        repository.saveAll(users);
+
+        UserFacets facets = repository.facets(UserFacets.Interval.WEEK);
+
+        assertThat(facets.getTotal()).isEqualTo(4);
+        assertThat(facets.getLangKeys()).containsExactly(entry("en", 3L), entry("fr", 1L));
+        assertThat(facets.getActivated()).containsExactly(entry(true, 3L), entry(false, 1L));
+        // the weeks start on Monday, the empty one in between is counted too
+        assertThat(facets.getCreatedDates()).containsExactly(entry(Instant.parse("2019-12-30T00:00:00Z"), 2L),
+            entry(Instant.parse("2020-01-06T00:00:00Z"), 1L), entry(Instant.parse("2020-01-13T00:00:00Z"), 1L));
+        assertThat(repository.facets(UserFacets.Interval.YEAR).getCreatedDates()).containsExactly(entry(NOW, 4L));
+    }
+
+    private static ObjectMapper objectMapper() {
+        return new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+
+    private static User user(String id, String login, String firstName, String lastName, boolean activated) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin(login);
+        user.setFirstName(firstName);
+        user.setLastName(lastName);
+        user.setEmail(login + "@localhost");
+        user.setActivated(activated);
+        user.setLangKey("en");
+        return user;
+    }
+}
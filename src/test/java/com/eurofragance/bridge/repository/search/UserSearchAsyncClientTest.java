@@ -0,0 +1,188 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.domain.User;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link UserSearchAsyncClient} class, against a stub of Elasticsearch.
+ */
+public class UserSearchAsyncClientTest {
+
+    private static final Instant MODIFIED = Instant.parse("2020-01-01T00:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private HttpServer server;
+
+    private RestClient restClient;
+
+    private String requestPath;
+
+    private String requestEncoding;
+
+    private byte[] requestBody;
+
+    private int responseStatus;
+
+    private String responseBody;
+
+    @BeforeEach
+    public void init() throws IOException {
+        responseStatus = 200;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requestPath = exchange.getRequestURI().getPath();
+            requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            try (InputStream in = exchange.getRequestBody()) {
+                requestBody = StreamUtils.copyToByteArray(in);
+            }
+            byte[] response = gzip(responseBody.getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(responseStatus, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        restClient = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort())).build();
+    }
+
+    @AfterEach
+    public void destroy() throws IOException {
+        restClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testBulkSendsGzippedVersionedActions() throws IOException {
+        responseBody = "{\"took\":1,\"errors\":true,\"items\":[" +
+            "{\"index\":{\"_id\":\"1\",\"status\":201}}," +
+            "{\"index\":{\"_id\":\"2\",\"status\":409}}," +
+            "{\"index\":{\"_id\":\"3\",\"status\":400}}," +
+            "{\"delete\":{\"_id\":\"4\",\"status\":404}}]}";
+        UserSearchAsyncClient client = client(true);
+
+        Map<String, Integer> failures = client.bulk(null, Arrays.asList(user("1"), user("2"), user("3")),
+            Collections.singletonMap("4", MODIFIED)).join();
+
+        assertThat(failures).containsOnlyKeys("3").containsEntry("3", 400);
+        assertThat(requestPath).isEqualTo("/user/user/_bulk");
+        assertThat(requestEncoding).isEqualTo("gzip");
+        String body = new String(gunzip(requestBody), StandardCharsets.UTF_8);
+        assertThat(body).endsWith("\n");
+        List<String> lines = Arrays.asList(body.split("\n"));
+        assertThat(lines).hasSize(7);
+        JsonNode action = objectMapper.readTree(lines.get(0)).path("index");
+        assertThat(action.path("_id").asText()).isEqualTo("1");
+        assertThat(action.path("version").asLong()).isEqualTo(MODIFIED.toEpochMilli());
+        assertThat(action.path("version_type").asText()).isEqualTo(UserSearchRepositoryImpl.VERSION_TYPE);
+        assertThat(objectMapper.readValue(lines.get(1), User.class).getLogin()).isEqualTo("user-1");
+        assertThat(objectMapper.readTree(lines.get(6)).path("delete").path("_id").asText()).isEqualTo("4");
+    }
+
+    @Test
+    public void testBulkToAnIndexWithoutCompression() throws IOException {
+        responseBody = "{\"took\":1,\"errors\":false,\"items\":[{\"index\":{\"_id\":\"1\",\"status\":201}}]}";
+        UserSearchAsyncClient client = client(false);
+
+        // the request buffers are reused
+        for (int i = 0; i < 3; i++) {
+            assertThat(client.bulk("user-2", Collections.singletonList(user("1")), Collections.emptyMap()).join()).isEmpty();
+
+            assertThat(requestPath).isEqualTo("/user-2/user/_bulk");
+            assertThat(requestEncoding).isNull();
+            assertThat(new String(requestBody, StandardCharsets.UTF_8).split("\n")).hasSize(2);
+        }
+    }
+
+    @Test
+    public void testSearchPageReadsTheSamePageAsJest() throws IOException {
+        responseBody = "{\"took\":1,\"hits\":{\"total\":3,\"hits\":[" +
+            "{\"_id\":\"1\",\"_source\":{\"id\":\"1\",\"login\":\"user-1\"},\"sort\":[1.0,\"1\"]}," +
+            "{\"_id\":\"2\",\"_source\":{\"id\":\"2\",\"login\":\"user-2\"},\"sort\":[0.5,\"2\"]}]}}";
+        Pageable pageable = PageRequest.of(0, 2, Sort.by("login"));
+
+        SearchAfterPage<UserSearchHit> page = client(true).searchPage("user*", pageable, null).join();
+
+        assertThat(page.getContent()).extracting(UserSearchHit::getLogin).containsExactly("user-1", "user-2");
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getSearchAfter()).isEqualTo(UserSearchRepositoryImpl.encodeCursor("[0.5,\"2\"]"));
+        assertThat(requestPath).isEqualTo("/user/user/_search");
+        assertThat(objectMapper.readTree(requestBody))
+            .isEqualTo(objectMapper.readTree(UserSearchRepositoryImpl.toSearchPageBody("user*", pageable, null).toString()));
+    }
+
+    @Test
+    public void testFailedRequestsCompleteExceptionally() {
+        responseStatus = 500;
+        responseBody = "{\"error\":\"boom\",\"status\":500}";
+
+        assertThatThrownBy(() -> client(true).searchPage("user*", PageRequest.of(0, 2), null).join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(IOException.class);
+    }
+
+    private UserSearchAsyncClient client(boolean compression) {
+        return new UserSearchAsyncClient(restClient, objectMapper, "user", "user", compression, 1, 1024 * 1024);
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user-" + id);
+        user.setEmail("user-" + id + "@localhost");
+        user.setActivated(true);
+        user.setLastModifiedDate(MODIFIED);
+        return user;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+}
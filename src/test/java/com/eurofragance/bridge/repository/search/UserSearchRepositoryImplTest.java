@@ -0,0 +1,120 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.config.ElasticsearchConfiguration;
+import com.eurofragance.bridge.domain.User;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpServer;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.config.HttpClientConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link UserSearchRepositoryImpl} class, through the entity mapper of the
+ * {@link ElasticsearchConfiguration}, against a stub of Elasticsearch.
+ */
+public class UserSearchRepositoryImplTest {
+
+    private static final Instant CREATED = Instant.parse("2019-06-01T08:30:00Z");
+
+    private static final Instant MODIFIED = Instant.parse("2020-01-01T00:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private HttpServer server;
+
+    private JestClient jestClient;
+
+    private UserSearchRepositoryImpl repository;
+
+    private String requestBody;
+
+    private String responseBody;
+
+    @BeforeEach
+    public void init() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                requestBody = StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+            }
+            byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        JestClientFactory factory = new JestClientFactory();
+        factory.setHttpClientConfig(new HttpClientConfig.Builder("http://localhost:" + server.getAddress().getPort()).build());
+        jestClient = factory.getObject();
+        ElasticsearchPersistentEntity<?> entity = Mockito.mock(ElasticsearchPersistentEntity.class);
+        Mockito.when(entity.getIndexName()).thenReturn("user");
+        Mockito.when(entity.getIndexType()).thenReturn("user");
+        ElasticsearchOperations elasticsearchOperations = Mockito.mock(ElasticsearchOperations.class);
+        Mockito.doReturn(entity).when(elasticsearchOperations).getPersistentEntityFor(User.class);
+        repository = new UserSearchRepositoryImpl(jestClient, elasticsearchOperations,
+            new ElasticsearchConfiguration(objectMapper).getEntityMapper());
+    }
+
+    @AfterEach
+    public void destroy() throws IOException {
+        jestClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSearchPageReadsTheIndexedDates() throws IOException {
+        responseBody = "{\"took\":1,\"timed_out\":false,\"hits\":{\"total\":1,\"max_score\":1.0,\"hits\":[" +
+            "{\"_index\":\"user\",\"_type\":\"user\",\"_id\":\"1\",\"_score\":1.0,\"_source\":{\"id\":\"1\",\"login\":\"john\"," +
+            "\"email\":\"john@localhost\",\"activated\":true,\"langKey\":\"en\",\"createdDate\":\"" + CREATED + "\"," +
+            "\"lastModifiedDate\":\"" + MODIFIED + "\"},\"sort\":[1.0,\"1\"]}]}}";
+
+        SearchAfterPage<UserSearchHit> page = repository.searchPage("john*", PageRequest.of(0, 20), null);
+
+        assertThat(page.getTotalElements()).isEqualTo(1);
+        UserSearchHit hit = page.getContent().get(0);
+        assertThat(hit.getLogin()).isEqualTo("john");
+        assertThat(hit.isActivated()).isTrue();
+        assertThat(hit.getCreatedDate()).isEqualTo(CREATED);
+        assertThat(hit.getLastModifiedDate()).isEqualTo(MODIFIED);
+        JsonNode source = objectMapper.readTree(requestBody).path("_source");
+        assertThat(source).extracting(JsonNode::asText).contains("createdDate", "lastModifiedDate");
+    }
+
+    @Test
+    public void testSearchPageWithoutIndexedDates() throws IOException {
+        responseBody = "{\"took\":1,\"timed_out\":false,\"hits\":{\"total\":1,\"max_score\":1.0,\"hits\":[" +
+            "{\"_index\":\"user\",\"_type\":\"user\",\"_id\":\"1\",\"_score\":1.0,\"_source\":{\"id\":\"1\",\"login\":\"john\"}," +
+            "\"sort\":[1.0,\"1\"]}]}}";
+
+        UserSearchHit hit = repository.searchPage("john*", PageRequest.of(0, 20), null).getContent().get(0);
+
+        // missing dates are left out, not read as the current instant
+        assertThat(hit.getCreatedDate()).isNull();
+        assertThat(hit.getLastModifiedDate()).isNull();
+    }
+}
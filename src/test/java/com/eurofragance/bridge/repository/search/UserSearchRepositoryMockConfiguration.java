@@ -1,13 +1,19 @@
 package com.eurofragance.bridge.repository.search;
 
+import com.eurofragance.bridge.config.Constants;
+
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 /**
  * Configure a Mock version of {@link UserSearchRepository} to test the
  * application without starting Elasticsearch.
+ * <p>
+ * The tests run with the {@value Constants#SPRING_PROFILE_LUCENE} profile search a real embedded index instead.
  */
 @Configuration
+@Profile("!" + Constants.SPRING_PROFILE_LUCENE)
 public class UserSearchRepositoryMockConfiguration {
 
     @MockBean
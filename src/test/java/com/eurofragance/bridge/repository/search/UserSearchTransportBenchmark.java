@@ -0,0 +1,234 @@
+package com.eurofragance.bridge.repository.search;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.ElasticsearchConfiguration;
+import com.eurofragance.bridge.domain.User;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpServer;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.config.HttpClientConfig;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.autoconfigure.elasticsearch.rest.RestClientProperties;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JMH benchmark of the throughput and the allocations of the two transports of the user index: Jest through the
+ * {@link UserSearchRepositoryImpl}, and the low-level client through the {@link UserSearchAsyncClient}, with and
+ * without gzipped requests.
+ * <p>
+ * Both send a page of 20 users search, and a {@code _bulk} request of 500 users, from 4 threads over as many pooled
+ * connections, to a stub of Elasticsearch on the loopback interface answering canned responses, gzipped when asked.
+ * The scores miss the work of Elasticsearch and the bandwidth of a real network, where the gzipped requests gain
+ * the most, so compare the {@code gc.alloc.rate.norm} lines, the bytes allocated per operation, as much as the
+ * throughputs. Run the {@link #main(String[])} method from the IDE, as it needs the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(4)
+@Fork(1)
+public class UserSearchTransportBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final int BULK_SIZE = 500;
+
+    @Param({"jest", "async", "async-gzip"})
+    private String transport;
+
+    private HttpServer server;
+
+    private JestClient jestClient;
+
+    private RestClient restClient;
+
+    private UserSearchRepositoryImpl repository;
+
+    private UserSearchAsyncClient asyncClient;
+
+    private List<User> users;
+
+    private final Pageable pageable = PageRequest.of(0, PAGE_SIZE);
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] searchResponse = gzip(searchResponse());
+        byte[] bulkResponse = gzip(bulkResponse());
+        // without it the stub waits for the delayed ACKs of the client, 40ms on Linux
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/", exchange -> {
+            byte[] buffer = new byte[8192];
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read(buffer) >= 0) {
+                    // the whole request is read, as Elasticsearch does
+                }
+            }
+            byte[] response = exchange.getRequestURI().getPath().endsWith("/_bulk") ? bulkResponse : searchResponse;
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        String uri = "http://localhost:" + server.getAddress().getPort();
+
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        ElasticsearchConfiguration configuration = new ElasticsearchConfiguration(objectMapper);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Search.RestClient properties = applicationProperties.getSearch().getRestClient();
+        properties.setMaxConnections(4);
+        properties.setMaxConnectionsPerRoute(4);
+        properties.setCompression("async-gzip".equals(transport));
+
+        JestClientFactory factory = new JestClientFactory();
+        factory.setHttpClientConfig(new HttpClientConfig.Builder(uri)
+            .multiThreaded(true)
+            .maxTotalConnection(properties.getMaxConnections())
+            .defaultMaxTotalConnectionPerRoute(properties.getMaxConnectionsPerRoute())
+            .build());
+        jestClient = factory.getObject();
+        ElasticsearchPersistentEntity<?> entity = Mockito.mock(ElasticsearchPersistentEntity.class);
+        Mockito.when(entity.getIndexName()).thenReturn("user");
+        Mockito.when(entity.getIndexType()).thenReturn("user");
+        ElasticsearchOperations elasticsearchOperations = Mockito.mock(ElasticsearchOperations.class);
+        Mockito.doReturn(entity).when(elasticsearchOperations).getPersistentEntityFor(User.class);
+        repository = new UserSearchRepositoryImpl(jestClient, elasticsearchOperations, configuration.getEntityMapper());
+
+        RestClientBuilder builder = RestClient.builder(HttpHost.create(uri));
+        configuration.restClientBuilderCustomizer(new RestClientProperties(), applicationProperties).customize(builder);
+        restClient = builder.build();
+        asyncClient = new UserSearchAsyncClient(restClient, objectMapper, "user", "user", properties.isCompression(),
+            properties.getBufferPoolSize(), properties.getMaxBufferKb() * 1024);
+
+        users = new ArrayList<>(BULK_SIZE);
+        for (int i = 0; i < BULK_SIZE; i++) {
+            User user = new User();
+            user.setId("user-" + i);
+            user.setLogin("john" + i);
+            user.setFirstName("John");
+            user.setLastName("Doe");
+            user.setEmail("john" + i + "@localhost");
+            user.setImageUrl("http://placehold.it/50x50");
+            user.setActivated(true);
+            user.setLangKey("en");
+            user.setCreatedBy("system");
+            user.setLastModifiedBy("system");
+            user.setLastModifiedDate(Instant.parse("2020-01-01T00:00:00Z").plusSeconds(i));
+            users.add(user);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        jestClient.close();
+        restClient.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public SearchAfterPage<UserSearchHit> search() throws IOException {
+        if ("jest".equals(transport)) {
+            return repository.searchPage("john*", pageable, null);
+        }
+        return asyncClient.searchPage("john*", pageable, null).join();
+    }
+
+    @Benchmark
+    public Map<String, Integer> bulk() throws IOException {
+        if ("jest".equals(transport)) {
+            return repository.bulk(null, users, Collections.emptyMap());
+        }
+        return asyncClient.bulk(null, users, Collections.emptyMap()).join();
+    }
+
+    private static byte[] gzip(String response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(response.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static String searchResponse() {
+        StringBuilder hits = new StringBuilder();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            if (i > 0) {
+                hits.append(',');
+            }
+            String id = "user-" + i;
+            hits.append("{\"_index\":\"user\",\"_type\":\"user\",\"_id\":\"").append(id).append("\",\"_score\":1.0,")
+                .append("\"_source\":{\"id\":\"").append(id).append("\",\"login\":\"john").append(i)
+                .append("\",\"firstName\":\"John\",\"lastName\":\"Doe\",\"email\":\"john").append(i)
+                .append("@localhost\",\"imageUrl\":\"http://placehold.it/50x50\",\"activated\":true,\"langKey\":\"en\"},")
+                .append("\"sort\":[1.0,\"").append(id).append("\"]}");
+        }
+        return "{\"took\":1,\"timed_out\":false,\"hits\":{\"total\":1000,\"max_score\":1.0,\"hits\":[" + hits + "]}}";
+    }
+
+    private static String bulkResponse() {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < BULK_SIZE; i++) {
+            if (i > 0) {
+                items.append(',');
+            }
+            items.append("{\"index\":{\"_index\":\"user\",\"_type\":\"user\",\"_id\":\"user-").append(i)
+                .append("\",\"_version\":1,\"result\":\"created\",\"status\":201}}");
+        }
+        return "{\"took\":3,\"errors\":false,\"items\":[" + items + "]}";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(UserSearchTransportBenchmark.class.getSimpleName())
+            // reports the bytes allocated per operation, as gc.alloc.rate.norm
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,118 @@
+package com.eurofragance.bridge.security.oauth2;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link JwtCache} class.
+ */
+public class JwtCacheTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    private MeterRegistry meterRegistry;
+
+    private JwtDecoder delegate;
+
+    private JwtCache jwtCache;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        delegate = mock(JwtDecoder.class);
+        jwtCache = new JwtCache(new ConcurrentMapCacheManager(JwtCache.JWT_CACHE), new ApplicationProperties(), meterRegistry);
+    }
+
+    @Test
+    public void testRepeatedTokenIsDecodedOnce() {
+        Jwt jwt = createJwt(Instant.now().plusSeconds(60));
+        when(delegate.decode(TOKEN)).thenReturn(jwt);
+        JwtDecoder decoder = jwtCache.decoder(delegate);
+
+        assertThat(decoder.decode(TOKEN)).isSameAs(jwt);
+        assertThat(decoder.decode(TOKEN)).isSameAs(jwt);
+
+        verify(delegate, times(1)).decode(TOKEN);
+        assertThat(meterRegistry.get("security.jwt.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("security.jwt.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExpiredTokenIsDecodedAgain() {
+        when(delegate.decode(TOKEN)).thenReturn(createJwt(Instant.now().minusSeconds(1)));
+        JwtDecoder decoder = jwtCache.decoder(delegate);
+
+        decoder.decode(TOKEN);
+        decoder.decode(TOKEN);
+
+        verify(delegate, times(2)).decode(TOKEN);
+    }
+
+    @Test
+    public void testTokenWithoutExpirationIsNotCached() {
+        when(delegate.decode(TOKEN)).thenReturn(createJwt(null));
+        JwtDecoder decoder = jwtCache.decoder(delegate);
+
+        decoder.decode(TOKEN);
+        decoder.decode(TOKEN);
+
+        verify(delegate, times(2)).decode(TOKEN);
+    }
+
+    @Test
+    public void testAuthoritiesOfCachedToken() {
+        Jwt jwt = createJwt(Instant.now().plusSeconds(60));
+        when(delegate.decode(TOKEN)).thenReturn(jwt);
+        jwtCache.decoder(delegate).decode(TOKEN);
+
+        assertThat(jwtCache.getAuthorities(jwt)).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.USER);
+    }
+
+    @Test
+    public void testAuthoritiesOfUncachedToken() {
+        assertThat(jwtCache.getAuthorities(createJwt(Instant.now().plusSeconds(60)))).extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.USER);
+    }
+
+    @Test
+    public void testDisabledCacheDecodesEveryToken() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getJwtCache().setEnabled(false);
+        jwtCache = new JwtCache(new ConcurrentMapCacheManager(JwtCache.JWT_CACHE), applicationProperties, meterRegistry);
+        when(delegate.decode(TOKEN)).thenReturn(createJwt(Instant.now().plusSeconds(60)));
+        JwtDecoder decoder = jwtCache.decoder(delegate);
+
+        decoder.decode(TOKEN);
+        decoder.decode(TOKEN);
+
+        verify(delegate, times(2)).decode(TOKEN);
+    }
+
+    private static Jwt createJwt(Instant expiresAt) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("sub", "user");
+        claims.put("groups", Collections.singletonList(AuthoritiesConstants.USER));
+        return new Jwt(TOKEN, Instant.now().minusSeconds(60), expiresAt, Collections.singletonMap("alg", "RS256"), claims);
+    }
+}
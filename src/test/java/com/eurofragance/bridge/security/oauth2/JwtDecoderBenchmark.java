@@ -0,0 +1,102 @@
+package com.eurofragance.bridge.security.oauth2;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.security.SecurityUtils;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the per-request CPU cost of decoding a bearer token and extracting its authorities,
+ * with and without {@link JwtCache}.
+ * <p>
+ * The decoder verifies an RS256 signature against an in-memory JWK set and validates the claims, like the
+ * {@link JwkSourceJwtDecoder} built by {@code SecurityConfiguration} once it has fetched the JWK set.
+ * Run the {@link #main(String[])} method from the IDE, as it needs the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtDecoderBenchmark {
+
+    private String token;
+
+    private JwtDecoder decoder;
+
+    private JwtCache jwtCache;
+
+    private JwtDecoder cachingDecoder;
+
+    @Setup
+    public void setup() throws JOSEException {
+        RSAKey rsaKey = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+            .subject("4c973896-5761-41fc-8217-07c5d13a004b")
+            .issuer("http://localhost:9080/auth/realms/jhipster")
+            .issueTime(new Date())
+            .expirationTime(Date.from(Instant.now().plusSeconds(3600)))
+            .claim("preferred_username", "admin")
+            .claim("groups", Arrays.asList("ROLE_ADMIN", "ROLE_USER", "offline_access", "uma_authorization"))
+            .build();
+        SignedJWT signedJwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(rsaKey.getKeyID()).build(), claims);
+        signedJwt.sign(new RSASSASigner(rsaKey));
+        token = signedJwt.serialize();
+
+        decoder = new JwkSourceJwtDecoder(new ImmutableJWKSet<>(new JWKSet(rsaKey.toPublicJWK())));
+
+        jwtCache = new JwtCache(new ConcurrentMapCacheManager(JwtCache.JWT_CACHE), new ApplicationProperties(), new SimpleMeterRegistry());
+        cachingDecoder = jwtCache.decoder(decoder);
+    }
+
+    @Benchmark
+    public void decodeWithoutCache(Blackhole blackhole) {
+        Jwt jwt = decoder.decode(token);
+        blackhole.consume(jwt);
+        blackhole.consume(SecurityUtils.extractAuthorityFromClaims(jwt.getClaims()));
+    }
+
+    @Benchmark
+    public void decodeWithCache(Blackhole blackhole) {
+        Jwt jwt = cachingDecoder.decode(token);
+        blackhole.consume(jwt);
+        blackhole.consume(jwtCache.getAuthorities(jwt));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtDecoderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
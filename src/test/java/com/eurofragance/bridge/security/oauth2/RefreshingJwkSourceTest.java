@@ -0,0 +1,164 @@
+package com.eurofragance.bridge.security.oauth2;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link RefreshingJwkSource} class, against a local stand-in of the IdP.
+ */
+public class RefreshingJwkSourceTest {
+
+    private HttpServer server;
+
+    private String issuer;
+
+    private volatile String jwks;
+
+    private volatile boolean available = true;
+
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+
+    private MeterRegistry meterRegistry;
+
+    private RSAKey firstKey;
+
+    private RSAKey secondKey;
+
+    @BeforeEach
+    public void init() throws IOException, JOSEException {
+        firstKey = new RSAKeyGenerator(2048).keyID("first").generate();
+        secondKey = new RSAKeyGenerator(2048).keyID("second").generate();
+        jwks = new JWKSet(firstKey.toPublicJWK()).toString();
+        meterRegistry = new SimpleMeterRegistry();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        issuer = "http://localhost:" + server.getAddress().getPort() + "/auth/realms/jhipster";
+        server.createContext("/auth/realms/jhipster/.well-known/openid-configuration", exchange ->
+            respond(exchange, 200, "{\"issuer\":\"" + issuer + "\",\"jwks_uri\":\"" + issuer + "/protocol/openid-connect/certs\"}"));
+        server.createContext("/auth/realms/jhipster/protocol/openid-connect/certs", exchange -> {
+            jwksRequests.incrementAndGet();
+            if (available) {
+                respond(exchange, 200, jwks);
+            } else {
+                respond(exchange, 503, "");
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void destroy() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testJwkSetIsFetchedEagerly() {
+        RefreshingJwkSource source = createSource(Duration.ofMinutes(1));
+
+        assertThat(jwksRequests.get()).isEqualTo(1);
+        assertThat(source.getJwkSet().getKeyByKeyId("first")).isNotNull();
+        assertThat(meterRegistry.get("security.jwk.refresh").tag("result", "success").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("security.jwk.age").gauge().value()).isLessThan(60);
+    }
+
+    @Test
+    public void testTokenIsDecodedWithoutFetchingOnRequestPath() throws JOSEException {
+        JwkSourceJwtDecoder decoder = new JwkSourceJwtDecoder(createSource(Duration.ofMinutes(1)));
+
+        Jwt jwt = decoder.decode(sign(firstKey));
+
+        assertThat(jwt.getSubject()).isEqualTo("admin");
+        assertThat(jwksRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLastKnownKeysAreServedWhenIdpIsDown() throws JOSEException {
+        RefreshingJwkSource source = createSource(Duration.ofMinutes(1));
+        available = false;
+
+        assertThat(source.refresh()).isFalse();
+
+        assertThat(new JwkSourceJwtDecoder(source).decode(sign(firstKey)).getSubject()).isEqualTo("admin");
+        assertThat(meterRegistry.get("security.jwk.refresh").tag("result", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnknownKeyTriggersRefresh() throws JOSEException {
+        JwkSourceJwtDecoder decoder = new JwkSourceJwtDecoder(createSource(Duration.ZERO));
+        jwks = new JWKSet(secondKey.toPublicJWK()).toString();
+
+        assertThat(decoder.decode(sign(secondKey)).getSubject()).isEqualTo("admin");
+        assertThat(jwksRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnknownKeyRefreshesAreRateLimited() throws JOSEException {
+        JwkSourceJwtDecoder decoder = new JwkSourceJwtDecoder(createSource(Duration.ofMinutes(1)));
+        String token = sign(secondKey);
+
+        assertThatThrownBy(() -> decoder.decode(token)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> decoder.decode(token)).isInstanceOf(JwtException.class);
+        assertThat(jwksRequests.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testIssuerMismatchIsRejected() {
+        assertThatThrownBy(() -> RefreshingJwkSource.fromOidcIssuerLocation(issuer.replace("localhost", "127.0.0.1"),
+            new RestTemplate(), Duration.ZERO, meterRegistry)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private RefreshingJwkSource createSource(Duration minRefreshInterval) {
+        return RefreshingJwkSource.fromOidcIssuerLocation(issuer, new RestTemplate(), minRefreshInterval, meterRegistry);
+    }
+
+    private String sign(RSAKey key) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+            .subject("admin")
+            .issuer(issuer)
+            .issueTime(new Date())
+            .expirationTime(Date.from(Instant.now().plusSeconds(60)))
+            .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
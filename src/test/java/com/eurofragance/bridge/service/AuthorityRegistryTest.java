@@ -0,0 +1,111 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.repository.AuthorityRepository;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for {@link AuthorityRegistry}.
+ */
+public class AuthorityRegistryTest {
+
+    private AuthorityRepository authorityRepository;
+
+    private AuthorityRegistry authorityRegistry;
+
+    @BeforeEach
+    public void init() {
+        authorityRepository = mock(AuthorityRepository.class);
+        when(authorityRepository.findAll()).thenReturn(Arrays.asList(authority(AuthoritiesConstants.USER), authority(AuthoritiesConstants.ADMIN)));
+        authorityRegistry = new AuthorityRegistry(authorityRepository);
+    }
+
+    @AfterEach
+    public void destroy() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testNamesAreLoadedOnce() {
+        assertThat(authorityRegistry.getNames()).containsExactly(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        assertThat(authorityRegistry.contains(AuthoritiesConstants.USER)).isTrue();
+        assertThat(authorityRegistry.contains("ROLE_UNKNOWN")).isFalse();
+
+        verify(authorityRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testRegisterKnownAuthorityDoesNotInsert() {
+        authorityRegistry.register(AuthoritiesConstants.USER);
+
+        verify(authorityRepository, never()).saveAndFlush(any(Authority.class));
+    }
+
+    @Test
+    public void testRegisterUnknownAuthorityInsertsAndSwapsNames() {
+        authorityRegistry.register("ROLE_MANAGER");
+
+        verify(authorityRepository).saveAndFlush(authority("ROLE_MANAGER"));
+        assertThat(authorityRegistry.getNames()).containsExactly(AuthoritiesConstants.ADMIN, "ROLE_MANAGER", AuthoritiesConstants.USER);
+        verify(authorityRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void testRegisteredAuthorityIsVisibleAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        authorityRegistry.register("ROLE_MANAGER");
+
+        assertThat(authorityRegistry.contains("ROLE_MANAGER")).isFalse();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(authorityRegistry.contains("ROLE_MANAGER")).isTrue();
+    }
+
+    @Test
+    public void testUnknownAuthorityHasNoReference() {
+        assertThat(authorityRegistry.getReference("ROLE_UNKNOWN")).isNull();
+
+        verify(authorityRepository, never()).getOne(any());
+    }
+
+    @Test
+    public void testReferencesReloadTheNamesOnceOnAMiss() {
+        when(authorityRepository.getOne(any())).thenAnswer(invocation -> authority(invocation.getArgument(0)));
+        authorityRegistry.getNames();
+        // created by another instance
+        when(authorityRepository.findAll()).thenReturn(Arrays.asList(authority(AuthoritiesConstants.USER),
+            authority(AuthoritiesConstants.ADMIN), authority("ROLE_MANAGER")));
+
+        assertThat(authorityRegistry.getReferences(Arrays.asList(AuthoritiesConstants.USER, "ROLE_MANAGER", "ROLE_UNKNOWN")))
+            .extracting(Authority::getName).containsExactly(AuthoritiesConstants.USER, "ROLE_MANAGER");
+        assertThat(authorityRegistry.contains("ROLE_MANAGER")).isTrue();
+        verify(authorityRepository, times(2)).findAll();
+
+        authorityRegistry.getReferences(Arrays.asList(AuthoritiesConstants.USER, "ROLE_MANAGER"));
+        verify(authorityRepository, times(2)).findAll();
+    }
+
+    private static Authority authority(String name) {
+        Authority authority = new Authority();
+        authority.setName(name);
+        return authority;
+    }
+}
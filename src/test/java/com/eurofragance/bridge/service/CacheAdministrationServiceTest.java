@@ -0,0 +1,182 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.CacheConfiguration;
+import com.eurofragance.bridge.config.JCacheRegionMetrics;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.security.oauth2.JwtCache;
+import com.eurofragance.bridge.service.dto.CacheRegionDTO;
+
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.cache.jcache.JCacheCache;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for the {@link CacheAdministrationService} class, on the cache regions of {@link CacheConfiguration}.
+ */
+public class CacheAdministrationServiceTest {
+
+    private JHipsterProperties jHipsterProperties;
+
+    private ApplicationProperties applicationProperties;
+
+    private javax.cache.CacheManager cacheManager;
+
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private CacheAdministrationService cacheAdministrationService;
+
+    @BeforeEach
+    public void init() {
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getCache().getEhcache().setMaxEntries(100);
+        jHipsterProperties.getCache().getEhcache().setTimeToLiveSeconds(3600);
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Cache.Region region = new ApplicationProperties.Cache.Region();
+        region.setHeapEntries(10L);
+        region.setOffHeapMb(1L);
+        applicationProperties.getCache().getRegions().put(UserRepository.USERS_BY_EMAIL_CACHE, region);
+
+        CacheConfiguration cacheConfiguration = new CacheConfiguration(jHipsterProperties, applicationProperties);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("cacheManagerCustomizer", cacheConfiguration.cacheManagerCustomizer());
+        cacheManager = cacheConfiguration.jCacheCacheManager(beanFactory.getBeanProvider(JCacheManagerCustomizer.class));
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new JCacheRegionMetrics.Provider()
+            .getMeterBinder(new JCacheCache(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)), Tags.empty())
+            .bindTo(meterRegistry);
+        cacheInvalidationBus = mock(CacheInvalidationBus.class);
+        cacheAdministrationService = new CacheAdministrationService(cacheManager, cacheInvalidationBus, meterRegistry,
+            applicationProperties, jHipsterProperties);
+    }
+
+    @AfterEach
+    public void destroy() {
+        cacheManager.close();
+    }
+
+    @Test
+    public void testGetRegion() {
+        javax.cache.Cache<Object, Object> cache = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        cache.put("login", "user");
+        cache.get("login");
+        cache.get("unknown");
+
+        CacheRegionDTO region = cacheAdministrationService.getRegion(UserRepository.USERS_BY_LOGIN_CACHE).get();
+
+        assertThat(region.getName()).isEqualTo(UserRepository.USERS_BY_LOGIN_CACHE);
+        assertThat(region.getHeapEntries()).isEqualTo(100);
+        assertThat(region.getOffHeapMb()).isNull();
+        assertThat(region.getTimeToLiveSeconds()).isEqualTo(3600);
+        assertThat(region.getTimeToIdleSeconds()).isNull();
+        assertThat(region.getSize()).isEqualTo(1);
+        assertThat(region.getPuts()).isEqualTo(1);
+        assertThat(region.getHits()).isEqualTo(1);
+        assertThat(region.getMisses()).isEqualTo(1);
+        assertThat(cacheAdministrationService.getRegion(UserRepository.USERS_BY_EMAIL_CACHE).get().getOffHeapMb()).isEqualTo(1);
+        assertThat(cacheAdministrationService.getRegion("unknown")).isEmpty();
+        assertThat(cacheAdministrationService.getRegions()).extracting(CacheRegionDTO::getName)
+            .contains(UserRepository.USERS_BY_LOGIN_CACHE, UserRepository.USERS_BY_EMAIL_CACHE);
+    }
+
+    @Test
+    public void testEvictAndClear() {
+        javax.cache.Cache<Object, Object> cache = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        cache.put("first", "user");
+        cache.put("second", "user");
+
+        assertThat(cacheAdministrationService.evict(UserRepository.USERS_BY_LOGIN_CACHE, "first")).isTrue();
+        assertThat(cache.containsKey("first")).isFalse();
+        assertThat(cache.containsKey("second")).isTrue();
+        verify(cacheInvalidationBus).evict(UserRepository.USERS_BY_LOGIN_CACHE, "first");
+
+        assertThat(cacheAdministrationService.clear(UserRepository.USERS_BY_LOGIN_CACHE)).isTrue();
+        assertThat(cache.containsKey("second")).isFalse();
+        verify(cacheInvalidationBus).clear(UserRepository.USERS_BY_LOGIN_CACHE);
+
+        assertThat(cacheAdministrationService.clear("unknown")).isFalse();
+    }
+
+    @Test
+    public void testResizeHeapAndExpiry() {
+        javax.cache.Cache<Object, Object> cache = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        for (int i = 0; i < 50; i++) {
+            cache.put("user-" + i, "value");
+        }
+        ApplicationProperties.Cache.Region changes = new ApplicationProperties.Cache.Region();
+        changes.setHeapEntries(10L);
+        changes.setTimeToIdleSeconds(60L);
+
+        Optional<CacheRegionDTO> region = cacheAdministrationService.update(UserRepository.USERS_BY_LOGIN_CACHE, changes);
+
+        assertThat(region.get().getHeapEntries()).isEqualTo(10);
+        assertThat(region.get().getTimeToIdleSeconds()).isEqualTo(60);
+        assertThat(region.get().getTimeToLiveSeconds()).isNull();
+        for (int i = 50; i < 100; i++) {
+            cache.put("user-" + i, "value");
+        }
+        int entries = 0;
+        for (javax.cache.Cache.Entry<Object, Object> ignored : cache) {
+            entries++;
+        }
+        assertThat(entries).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    public void testResizeOffHeapNeedsRestart() {
+        ApplicationProperties.Cache.Region changes = new ApplicationProperties.Cache.Region();
+        changes.setOffHeapMb(2L);
+
+        assertThatThrownBy(() -> cacheAdministrationService.update(UserRepository.USERS_BY_EMAIL_CACHE, changes))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(cacheAdministrationService.getRegion(UserRepository.USERS_BY_EMAIL_CACHE).get().getOffHeapMb()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRejectedUpdateLeavesRegionUnchanged() {
+        long heapEntries = cacheAdministrationService.getRegion(JwtCache.JWT_CACHE).get().getHeapEntries();
+        ApplicationProperties.Cache.Region changes = new ApplicationProperties.Cache.Region();
+        changes.setHeapEntries(heapEntries / 2);
+        changes.setTimeToLiveSeconds(60L);
+
+        // the expiry of the bearer tokens is their own
+        assertThatThrownBy(() -> cacheAdministrationService.update(JwtCache.JWT_CACHE, changes))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(cacheAdministrationService.getRegion(JwtCache.JWT_CACHE).get().getHeapEntries()).isEqualTo(heapEntries);
+    }
+
+    @Test
+    public void testApplyConfiguration() {
+        ApplicationProperties.Cache.Region region = new ApplicationProperties.Cache.Region();
+        region.setHeapEntries(20L);
+        region.setTimeToLiveSeconds(120L);
+        applicationProperties.getCache().getRegions().put(UserRepository.USERS_BY_LOGIN_CACHE, region);
+        applicationProperties.getCache().getRegions().get(UserRepository.USERS_BY_EMAIL_CACHE).setOffHeapMb(2L);
+        jHipsterProperties.getCache().getEhcache().setTimeToLiveSeconds(600);
+
+        cacheAdministrationService.applyConfiguration();
+
+        CacheRegionDTO byLogin = cacheAdministrationService.getRegion(UserRepository.USERS_BY_LOGIN_CACHE).get();
+        assertThat(byLogin.getHeapEntries()).isEqualTo(20);
+        assertThat(byLogin.getTimeToLiveSeconds()).isEqualTo(120);
+        CacheRegionDTO byEmail = cacheAdministrationService.getRegion(UserRepository.USERS_BY_EMAIL_CACHE).get();
+        assertThat(byEmail.getTimeToLiveSeconds()).isEqualTo(600);
+        // needs a restart
+        assertThat(byEmail.getOffHeapMb()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,221 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.service.dto.CacheInvalidationDTO;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link CacheInvalidationBus} class, with two instances talking through a local HTTP server.
+ */
+public class CacheInvalidationBusTest {
+
+    private static final String SECRET = "secret";
+
+    private HttpServer server;
+
+    private MeterRegistry meterRegistry;
+
+    private javax.cache.CacheManager peerCacheManager;
+
+    private javax.cache.Cache<Object, Object> peerCache;
+
+    private CacheInvalidationBus peer;
+
+    private CacheInvalidationBus bus;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void init() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        peerCacheManager = mock(javax.cache.CacheManager.class);
+        peerCache = mock(javax.cache.Cache.class);
+        when(peerCacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE)).thenReturn(peerCache);
+        peer = createBus(peerCacheManager, Collections.emptyList());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(CacheInvalidationBus.PATH, exchange -> {
+            if (peer.isTrusted(exchange.getRequestHeaders().getFirst(CacheInvalidationBus.SECRET_HEADER))) {
+                peer.apply(objectMapper.readValue(exchange.getRequestBody(), CacheInvalidationDTO.class));
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                exchange.sendResponseHeaders(403, -1);
+            }
+            exchange.close();
+        });
+        server.start();
+
+        bus = createBus(mock(javax.cache.CacheManager.class),
+            Collections.singletonList("http://localhost:" + server.getAddress().getPort()));
+    }
+
+    @AfterEach
+    public void destroy() {
+        server.stop(0);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testEvictionsAreSentToPeersInOneBatch() {
+        bus.evict(UserRepository.USERS_BY_LOGIN_CACHE, "user-1");
+        bus.evict(UserRepository.USERS_BY_LOGIN_CACHE, "user-2");
+        bus.evict(UserRepository.USERS_BY_LOGIN_CACHE, "user-1");
+
+        bus.flush();
+
+        verify(peerCache).removeAll(new HashSet<>(Arrays.asList("user-1", "user-2")));
+        assertThat(meterRegistry.get("cache.invalidation.messages").tag("result", "sent").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.invalidation.messages").tag("result", "received").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNothingIsSentWithoutEvictions() {
+        bus.flush();
+
+        assertThat(meterRegistry.get("cache.invalidation.messages").tag("result", "sent").counter().count()).isZero();
+    }
+
+    @Test
+    public void testRegionIsClearedWhenTooManyKeysAreEvicted() {
+        for (int i = 0; i <= 1000; i++) {
+            bus.evict(UserRepository.USERS_BY_LOGIN_CACHE, "user-" + i);
+        }
+
+        bus.flush();
+
+        verify(peerCache).clear();
+        verify(peerCache, never()).removeAll(any());
+    }
+
+    @Test
+    public void testRegionIsClearedForNonStringKeys() {
+        bus.evict(UserRepository.USERS_BY_LOGIN_CACHE, 1L);
+
+        CacheInvalidationDTO invalidation = bus.drain();
+
+        assertThat(invalidation.getClears()).containsExactly(UserRepository.USERS_BY_LOGIN_CACHE);
+        assertThat(invalidation.getEvictions()).isEmpty();
+    }
+
+    @Test
+    public void testEvictionIsQueuedAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        bus.evict(UserRepository.USERS_BY_LOGIN_CACHE, "user-1");
+
+        assertThat(bus.drain()).isNull();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(bus.drain().getEvictions()).containsKey(UserRepository.USERS_BY_LOGIN_CACHE);
+    }
+
+    @Test
+    public void testListenersAreNotifiedOfReceivedInvalidations() {
+        CacheInvalidationBus.Listener listener = mock(CacheInvalidationBus.Listener.class);
+        peer.addListener(UserRepository.USERS_BY_LOGIN_CACHE, listener);
+
+        peer.apply(new CacheInvalidationDTO("other", Collections.singletonMap(UserRepository.USERS_BY_LOGIN_CACHE,
+            Collections.singleton("user-1")), Collections.singleton(UserRepository.USERS_BY_LOGIN_CACHE)));
+
+        verify(listener).evicted(Collections.singleton("user-1"));
+        verify(listener).cleared();
+    }
+
+    @Test
+    public void testOwnInvalidationsAreIgnored() {
+        peer.apply(new CacheInvalidationDTO(peer.getOrigin(), Collections.emptyMap(),
+            Collections.singleton(UserRepository.USERS_BY_LOGIN_CACHE)));
+
+        verify(peerCache, never()).clear();
+    }
+
+    @Test
+    public void testWrongSecretIsRejected() {
+        assertThat(peer.isTrusted(SECRET)).isTrue();
+        assertThat(peer.isTrusted("wrong")).isFalse();
+        assertThat(peer.isTrusted(null)).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPeersAreDiscoveredExceptSelf() {
+        Registration registration = mock(Registration.class);
+        when(registration.getServiceId()).thenReturn("bridge");
+        when(registration.getHost()).thenReturn("10.0.0.1");
+        when(registration.getPort()).thenReturn(8081);
+        ObjectProvider<Registration> registrationProvider = mock(ObjectProvider.class);
+        when(registrationProvider.getIfAvailable()).thenReturn(registration);
+        DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+        when(discoveryClient.getInstances("bridge")).thenReturn(Arrays.asList(
+            new DefaultServiceInstance("bridge-1", "bridge", "10.0.0.1", 8081, false),
+            new DefaultServiceInstance("bridge-2", "bridge", "10.0.0.2", 8081, false)));
+
+        CacheInvalidationBus discoveringBus = new CacheInvalidationBus(mock(javax.cache.CacheManager.class), discoveryClient,
+            registrationProvider, new RestTemplateBuilder(), createProperties(Collections.emptyList()), new SimpleMeterRegistry());
+
+        assertThat(discoveringBus.getPeers()).containsExactly(URI.create("http://10.0.0.2:8081"));
+    }
+
+    @Test
+    public void testDisabledBusQueuesNothing() {
+        ApplicationProperties applicationProperties = createProperties(Collections.emptyList());
+        applicationProperties.getCache().getInvalidation().setEnabled(false);
+        CacheInvalidationBus disabledBus = new CacheInvalidationBus(mock(javax.cache.CacheManager.class), mock(DiscoveryClient.class),
+            mockRegistration(), new RestTemplateBuilder(), applicationProperties, new SimpleMeterRegistry());
+
+        disabledBus.evict(UserRepository.USERS_BY_LOGIN_CACHE, "user-1");
+
+        assertThat(disabledBus.drain()).isNull();
+        assertThat(disabledBus.isTrusted(SECRET)).isFalse();
+    }
+
+    private CacheInvalidationBus createBus(javax.cache.CacheManager cacheManager, List<String> peers) {
+        return new CacheInvalidationBus(cacheManager, mock(DiscoveryClient.class), mockRegistration(), new RestTemplateBuilder(),
+            createProperties(peers), meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<Registration> mockRegistration() {
+        return mock(ObjectProvider.class);
+    }
+
+    private static ApplicationProperties createProperties(List<String> peers) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getInvalidation().setEnabled(true);
+        applicationProperties.getCache().getInvalidation().setSecret(SECRET);
+        applicationProperties.getCache().getInvalidation().setPeers(peers);
+        return applicationProperties;
+    }
+}
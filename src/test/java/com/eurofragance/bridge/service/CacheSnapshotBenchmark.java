@@ -0,0 +1,235 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * JMH benchmark of the time to warm the user caches after a restart: loading the users with their authorities
+ * from the database (cold start) against reading a {@link UserCacheSnapshot} and checking the last modified
+ * dates of its users, as {@link CacheSnapshotService} does.
+ * <p>
+ * Both run batched {@code IN} queries against an in-memory H2 database, so the cold start misses the network
+ * transfer of the full rows and the Hibernate hydration, and its score is a lower bound. Run the
+ * {@link #main(String[])} method from the IDE, as it needs the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CacheSnapshotBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"10000", "100000"})
+    private int users;
+
+    private Connection connection;
+
+    private Path directory;
+
+    private Path path;
+
+    private List<String> ids;
+
+    @Setup
+    public void setup() throws SQLException, IOException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:snapshot-benchmark;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table jhi_user (id varchar(100) primary key, login varchar(50) not null unique, " +
+                "first_name varchar(50), last_name varchar(50), email varchar(254) unique, image_url varchar(256), " +
+                "activated boolean not null, lang_key varchar(10), created_by varchar(50) not null, created_date timestamp, " +
+                "last_modified_by varchar(50), last_modified_date timestamp)");
+            statement.execute("create table jhi_user_authority (user_id varchar(100) not null, authority_name varchar(50) not null, " +
+                "primary key (user_id, authority_name))");
+        }
+        ids = new ArrayList<>(users);
+        Map<String, UserCacheSnapshot.Entry> entries = new LinkedHashMap<>();
+        try (PreparedStatement insertUser = connection.prepareStatement("insert into jhi_user values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement insertAuthority = connection.prepareStatement("insert into jhi_user_authority values (?, ?)")) {
+            Instant now = Instant.now();
+            for (int i = 0; i < users; i++) {
+                User user = createUser(i, now);
+                ids.add(user.getId());
+                entries.put(user.getId(), new UserCacheSnapshot.Entry(user, true, true));
+                insertUser.setString(1, user.getId());
+                insertUser.setString(2, user.getLogin());
+                insertUser.setString(3, user.getFirstName());
+                insertUser.setString(4, user.getLastName());
+                insertUser.setString(5, user.getEmail());
+                insertUser.setString(6, user.getImageUrl());
+                insertUser.setBoolean(7, user.getActivated());
+                insertUser.setString(8, user.getLangKey());
+                insertUser.setString(9, user.getCreatedBy());
+                insertUser.setTimestamp(10, Timestamp.from(user.getCreatedDate()));
+                insertUser.setString(11, user.getLastModifiedBy());
+                insertUser.setTimestamp(12, Timestamp.from(user.getLastModifiedDate()));
+                insertUser.addBatch();
+                for (Authority authority : user.getAuthorities()) {
+                    insertAuthority.setString(1, user.getId());
+                    insertAuthority.setString(2, authority.getName());
+                    insertAuthority.addBatch();
+                }
+            }
+            insertUser.executeBatch();
+            insertAuthority.executeBatch();
+        }
+        directory = Files.createTempDirectory("cache-snapshot-benchmark");
+        path = directory.resolve("snapshot.bin");
+        new UserCacheSnapshot(Instant.now(), Collections.emptyList(), new ArrayList<>(entries.values())).write(path);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        }
+        connection.close();
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Map<String, User> coldStart() throws SQLException {
+        Map<String, User> cache = new ConcurrentHashMap<>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<String> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            Map<String, User> loaded = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement("select u.*, ua.authority_name from jhi_user u " +
+                "left join jhi_user_authority ua on ua.user_id = u.id where u.id in (" + placeholders(batch.size()) + ")")) {
+                for (int i = 0; i < batch.size(); i++) {
+                    statement.setString(i + 1, batch.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        User user = loaded.computeIfAbsent(resultSet.getString("id"), id -> new User());
+                        if (user.getId() == null) {
+                            readUser(resultSet, user);
+                        }
+                        String name = resultSet.getString("authority_name");
+                        if (name != null) {
+                            Authority authority = new Authority();
+                            authority.setName(name);
+                            user.getAuthorities().add(authority);
+                        }
+                    }
+                }
+            }
+            loaded.values().forEach(user -> cache.put(user.getLogin(), user));
+        }
+        return cache;
+    }
+
+    @Benchmark
+    public Map<String, User> snapshotRestore() throws SQLException, IOException {
+        Map<String, User> cache = new ConcurrentHashMap<>();
+        List<UserCacheSnapshot.Entry> entries = UserCacheSnapshot.read(path).getEntries();
+        for (int from = 0; from < entries.size(); from += BATCH_SIZE) {
+            List<UserCacheSnapshot.Entry> batch = entries.subList(from, Math.min(from + BATCH_SIZE, entries.size()));
+            List<String> batchIds = batch.stream().map(entry -> entry.getUser().getId()).collect(Collectors.toList());
+            Map<String, Instant> lastModifiedDates = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement("select id, last_modified_date from jhi_user " +
+                "where id in (" + placeholders(batchIds.size()) + ")")) {
+                for (int i = 0; i < batchIds.size(); i++) {
+                    statement.setString(i + 1, batchIds.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        lastModifiedDates.put(resultSet.getString(1), resultSet.getTimestamp(2).toInstant());
+                    }
+                }
+            }
+            for (UserCacheSnapshot.Entry entry : batch) {
+                Instant lastModifiedDate = lastModifiedDates.get(entry.getUser().getId());
+                if (lastModifiedDate != null && lastModifiedDate.toEpochMilli() == entry.getUser().getLastModifiedDate().toEpochMilli()) {
+                    cache.put(entry.getUser().getLogin(), entry.getUser());
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static void readUser(ResultSet resultSet, User user) throws SQLException {
+        user.setId(resultSet.getString("id"));
+        user.setLogin(resultSet.getString("login"));
+        user.setFirstName(resultSet.getString("first_name"));
+        user.setLastName(resultSet.getString("last_name"));
+        user.setEmail(resultSet.getString("email"));
+        user.setImageUrl(resultSet.getString("image_url"));
+        user.setActivated(resultSet.getBoolean("activated"));
+        user.setLangKey(resultSet.getString("lang_key"));
+        user.setCreatedBy(resultSet.getString("created_by"));
+        user.setCreatedDate(resultSet.getTimestamp("created_date").toInstant());
+        user.setLastModifiedBy(resultSet.getString("last_modified_by"));
+        user.setLastModifiedDate(resultSet.getTimestamp("last_modified_date").toInstant());
+        user.setAuthorities(new HashSet<>());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static User createUser(int i, Instant now) {
+        User user = new User();
+        user.setId("00000000-0000-0000-0000-" + String.format("%012d", i));
+        user.setLogin("user-" + i);
+        user.setEmail("user-" + i + "@example.com");
+        user.setFirstName("First " + i);
+        user.setLastName("Last " + i);
+        user.setActivated(true);
+        user.setLangKey("en");
+        user.setImageUrl("https://www.gravatar.com/avatar/" + i);
+        user.setCreatedBy("system");
+        user.setCreatedDate(now);
+        user.setLastModifiedBy("system");
+        user.setLastModifiedDate(now);
+        Authority authority = new Authority();
+        authority.setName(i % 100 == 0 ? AuthoritiesConstants.ADMIN : AuthoritiesConstants.USER);
+        user.setAuthorities(new HashSet<>(Collections.singleton(authority)));
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheSnapshotBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,154 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.AuthorityRepository;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link CacheSnapshotService}.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+public class CacheSnapshotServiceIT {
+
+    private static final int USERS = 3;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private javax.cache.CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Path directory;
+
+    private ApplicationProperties applicationProperties;
+
+    private CacheSnapshotService cacheSnapshotService;
+
+    @BeforeEach
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("cache-snapshot");
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getSnapshot().setPath(directory.resolve("snapshot.bin").toString());
+        applicationProperties.getCache().getSnapshot().setBatchSize(2);
+        cacheSnapshotService = new CacheSnapshotService(userRepository, authorityRepository, cacheManager, transactionManager,
+            applicationProperties);
+        clearCaches();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setId("snapshot-" + i);
+            user.setLogin("snapshot-" + i);
+            user.setEmail("snapshot-" + i + "@localhost");
+            user.setActivated(true);
+            user.setAuthorities(Collections.singleton(authorityRepository.getOne(AuthoritiesConstants.USER)));
+            userRepository.saveAndFlush(user);
+            // cached through the repository, like the requests do
+            userRepository.findOneWithAuthoritiesByLogin(user.getLogin());
+            userRepository.findOneWithAuthoritiesByEmailIgnoreCase(user.getEmail());
+        }
+    }
+
+    @AfterEach
+    public void destroy() throws IOException {
+        for (int i = 0; i < USERS; i++) {
+            userRepository.findById("snapshot-" + i).ifPresent(userRepository::delete);
+        }
+        clearCaches();
+        Files.deleteIfExists(directory.resolve("snapshot.bin"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testCachesAreRestoredFromSnapshot() {
+        assertThat(cacheSnapshotService.save()).isEqualTo(USERS);
+        clearCaches();
+
+        assertThat(cacheSnapshotService.restore()).isEqualTo(USERS);
+
+        for (int i = 0; i < USERS; i++) {
+            User user = (User) cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("snapshot-" + i);
+            assertThat(user.getId()).isEqualTo("snapshot-" + i);
+            assertThat(user.getAuthorities()).extracting("name").containsExactly(AuthoritiesConstants.USER);
+            assertThat(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).get("snapshot-" + i + "@localhost")).isNotNull();
+        }
+    }
+
+    @Test
+    public void testModifiedUsersAreNotRestored() {
+        cacheSnapshotService.save();
+        clearCaches();
+        User modified = userRepository.findById("snapshot-1").get();
+        modified.setFirstName("Modified");
+        modified.setLastModifiedDate(Instant.now().plusSeconds(1));
+        userRepository.saveAndFlush(modified);
+        userRepository.deleteById("snapshot-2");
+
+        assertThat(cacheSnapshotService.restore()).isEqualTo(1);
+
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("snapshot-0")).isNotNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("snapshot-1")).isNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("snapshot-2")).isNull();
+    }
+
+    @Test
+    public void testUsersWithChangedAuthoritiesAreNotRestored() {
+        cacheSnapshotService.save();
+        clearCaches();
+        // granted without changing the last modified date of the user
+        new TransactionTemplate(transactionManager).execute(status -> jdbcTemplate.update(
+            "INSERT INTO jhi_user_authority (user_id, authority_name) VALUES (?, ?)", "snapshot-1", AuthoritiesConstants.ADMIN));
+
+        assertThat(cacheSnapshotService.restore()).isEqualTo(USERS - 1);
+
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("snapshot-0")).isNotNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("snapshot-1")).isNull();
+    }
+
+    @Test
+    public void testOldSnapshotIsIgnored() {
+        cacheSnapshotService.save();
+        clearCaches();
+        applicationProperties.getCache().getSnapshot().setMaxAgeSeconds(-1);
+
+        assertThat(cacheSnapshotService.restore()).isZero();
+    }
+
+    @Test
+    public void testMissingSnapshotIsIgnored() {
+        assertThat(cacheSnapshotService.restore()).isZero();
+    }
+
+    private void clearCaches() {
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).clear();
+    }
+}
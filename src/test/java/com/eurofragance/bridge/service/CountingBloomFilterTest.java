@@ -0,0 +1,91 @@
+package com.eurofragance.bridge.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link CountingBloomFilter} class.
+ */
+public class CountingBloomFilterTest {
+
+    private static final int LOGINS = 10000;
+
+    @Test
+    public void testAddedStringsAreNeverReportedAbsent() {
+        CountingBloomFilter filter = new CountingBloomFilter(LOGINS, 0.01);
+        for (int i = 0; i < LOGINS; i++) {
+            filter.add("user-" + i);
+        }
+
+        for (int i = 0; i < LOGINS; i++) {
+            assertThat(filter.mightContain("user-" + i)).isTrue();
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateIsAboutTheConfiguredProbability() {
+        CountingBloomFilter filter = new CountingBloomFilter(LOGINS, 0.01);
+        for (int i = 0; i < LOGINS; i++) {
+            filter.add("user-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < LOGINS; i++) {
+            if (filter.mightContain("unknown-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(LOGINS * 2 / 100);
+    }
+
+    @Test
+    public void testRemovedStringsAreReportedAbsent() {
+        CountingBloomFilter filter = new CountingBloomFilter(LOGINS, 0.01);
+        filter.add("user-1");
+        filter.add("user-2");
+
+        filter.remove("user-1");
+
+        assertThat(filter.mightContain("user-1")).isFalse();
+        assertThat(filter.mightContain("user-2")).isTrue();
+    }
+
+    @Test
+    public void testStringsAddedTwiceNeedTwoRemovals() {
+        CountingBloomFilter filter = new CountingBloomFilter(LOGINS, 0.01);
+        filter.add("user-1");
+        filter.add("user-1");
+
+        filter.remove("user-1");
+        assertThat(filter.mightContain("user-1")).isTrue();
+
+        filter.remove("user-1");
+        assertThat(filter.mightContain("user-1")).isFalse();
+    }
+
+    @Test
+    public void testSaturatedCountersAreNeverDecremented() {
+        CountingBloomFilter filter = new CountingBloomFilter(LOGINS, 0.01);
+        for (int i = 0; i < 300; i++) {
+            filter.add("user-1");
+        }
+        for (int i = 0; i < 300; i++) {
+            filter.remove("user-1");
+        }
+
+        assertThat(filter.mightContain("user-1")).isTrue();
+    }
+
+    @Test
+    public void testFilterIsSizedForTheProbability() {
+        CountingBloomFilter filter = new CountingBloomFilter(LOGINS, 0.01);
+
+        // about 9.6 cells and 7 hash functions per string for 1%
+        assertThat(filter.getCells()).isBetween(95000, 97000);
+        assertThat(filter.getHashFunctions()).isEqualTo(7);
+        assertThatThrownBy(() -> new CountingBloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountingBloomFilter(LOGINS, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,78 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.Constants;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Integration tests for {@link UnknownLoginCache}, built from the users of the database.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+public class UnknownLoginCacheIT {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private UnknownLoginCache unknownLoginCache;
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @BeforeEach
+    public void init() {
+        cacheManager.getCache(UnknownLoginCache.UNKNOWN_LOGINS_CACHE).clear();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getUnknownLogins().setEnabled(true);
+        unknownLoginCache = new UnknownLoginCache(userRepository, cacheManager, cacheInvalidationBus, Runnable::run,
+            transactionManager, applicationProperties, new SimpleMeterRegistry());
+        unknownLoginCache.rebuild();
+    }
+
+    @Test
+    public void testFilterIsBuiltFromTheDatabase() {
+        assertThat(unknownLoginCache.isBuilt()).isTrue();
+
+        assertThat(unknownLoginCache.find(Constants.ANONYMOUS_USER, this::findUser)).isPresent();
+        assertThat(queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUnknownLoginsAreAnsweredFromMemory() {
+        for (int i = 0; i < 100; i++) {
+            assertThat(unknownLoginCache.find("unknown-" + i, this::findUser)).isEmpty();
+            assertThat(unknownLoginCache.find("unknown-" + i, this::findUser)).isEmpty();
+        }
+
+        // only the false positives of the filter are queried, once
+        assertThat(queries.get()).isLessThan(10);
+    }
+
+    private Optional<User> findUser(String login) {
+        queries.incrementAndGet();
+        return userRepository.findOneWithAuthoritiesByLogin(login);
+    }
+}
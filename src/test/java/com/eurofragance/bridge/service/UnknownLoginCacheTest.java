@@ -0,0 +1,201 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.repository.UserRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link UnknownLoginCache} class.
+ */
+public class UnknownLoginCacheTest {
+
+    private UserRepository userRepository;
+
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private ConcurrentMapCacheManager cacheManager;
+
+    private MeterRegistry meterRegistry;
+
+    private UnknownLoginCache unknownLoginCache;
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @BeforeEach
+    public void init() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.streamAllLogins()).thenAnswer(invocation -> Arrays.asList("admin", "user").stream());
+        cacheInvalidationBus = mock(CacheInvalidationBus.class);
+        cacheManager = new ConcurrentMapCacheManager(UnknownLoginCache.UNKNOWN_LOGINS_CACHE);
+        meterRegistry = new SimpleMeterRegistry();
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getUnknownLogins().setEnabled(true);
+        unknownLoginCache = new UnknownLoginCache(userRepository, cacheManager, cacheInvalidationBus, Runnable::run,
+            mock(PlatformTransactionManager.class), applicationProperties, meterRegistry);
+    }
+
+    @AfterEach
+    public void destroy() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testEveryLookupIsQueriedUntilTheFilterIsBuilt() {
+        assertThat(unknownLoginCache.find("unknown", finder(null))).isEmpty();
+        cacheManager.getCache(UnknownLoginCache.UNKNOWN_LOGINS_CACHE).clear();
+        assertThat(unknownLoginCache.find("unknown", finder(null))).isEmpty();
+
+        assertThat(queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testUnknownLoginsAreFilteredWithoutQuery() {
+        unknownLoginCache.rebuild();
+
+        assertThat(unknownLoginCache.isBuilt()).isTrue();
+        assertThat(unknownLoginCache.find("unknown", finder(null))).isEmpty();
+        assertThat(queries.get()).isZero();
+        assertThat(meterRegistry.get("user.lookup.unknown").tag("result", "filtered").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testKnownLoginsAreQueried() {
+        unknownLoginCache.rebuild();
+
+        assertThat(unknownLoginCache.find("admin", finder("admin"))).contains("admin");
+        assertThat(queries.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testMissesPassingTheFilterAreCached() {
+        // a deleted login, still known to the filter
+        unknownLoginCache.rebuild();
+
+        assertThat(unknownLoginCache.find("user", finder(null))).isEmpty();
+        assertThat(unknownLoginCache.find("user", finder(null))).isEmpty();
+
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("user.lookup.unknown").tag("result", "queried").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("user.lookup.unknown").tag("result", "cached").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAddedLoginsAreFoundAndBroadcast() {
+        unknownLoginCache.rebuild();
+        unknownLoginCache.find("new-user", finder(null));
+
+        unknownLoginCache.loginAdded("new-user");
+
+        assertThat(unknownLoginCache.find("new-user", finder("new-user"))).contains("new-user");
+        verify(cacheInvalidationBus).evict(UnknownLoginCache.UNKNOWN_LOGINS_CACHE, "new-user");
+    }
+
+    @Test
+    public void testMissOverlappingAnInsertIsNotCached() {
+        unknownLoginCache.rebuild();
+        TransactionSynchronizationManager.initSynchronization();
+
+        // the lookup reads the database before the insert commits
+        assertThat(unknownLoginCache.find("user", login -> {
+            unknownLoginCache.loginAdded("user");
+            return Optional.empty();
+        })).isEmpty();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(unknownLoginCache.find("user", finder("user"))).contains("user");
+    }
+
+    @Test
+    public void testMissCachedBeforeCommitIsEvicted() {
+        unknownLoginCache.rebuild();
+        TransactionSynchronizationManager.initSynchronization();
+        unknownLoginCache.loginAdded("new-user");
+
+        // the lookup runs between the insert and its commit
+        assertThat(unknownLoginCache.find("new-user", finder(null))).isEmpty();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(unknownLoginCache.find("new-user", finder("new-user"))).contains("new-user");
+    }
+
+    @Test
+    public void testRemovedLoginsAreFilteredAfterCommit() {
+        unknownLoginCache.rebuild();
+        TransactionSynchronizationManager.initSynchronization();
+
+        unknownLoginCache.loginRemoved("user");
+        assertThat(unknownLoginCache.find("user", finder("user"))).contains("user");
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(unknownLoginCache.find("user", finder("user"))).isEmpty();
+    }
+
+    @Test
+    public void testLoginsAddedOnPeersAreFound() {
+        unknownLoginCache.rebuild();
+        ArgumentCaptor<CacheInvalidationBus.Listener> listener = ArgumentCaptor.forClass(CacheInvalidationBus.Listener.class);
+        verify(cacheInvalidationBus).addListener(eq(UnknownLoginCache.UNKNOWN_LOGINS_CACHE), listener.capture());
+
+        listener.getValue().evicted(Collections.singleton("peer-user"));
+
+        assertThat(unknownLoginCache.find("peer-user", finder("peer-user"))).contains("peer-user");
+    }
+
+    @Test
+    public void testFilterIsRebuiltWhenPeerClears() {
+        unknownLoginCache.rebuild();
+        ArgumentCaptor<CacheInvalidationBus.Listener> listener = ArgumentCaptor.forClass(CacheInvalidationBus.Listener.class);
+        verify(cacheInvalidationBus).addListener(eq(UnknownLoginCache.UNKNOWN_LOGINS_CACHE), listener.capture());
+        when(userRepository.streamAllLogins()).thenAnswer(invocation -> Arrays.asList("admin", "user", "peer-user").stream());
+
+        listener.getValue().cleared();
+
+        assertThat(unknownLoginCache.find("peer-user", finder("peer-user"))).contains("peer-user");
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysQueries() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getUnknownLogins().setEnabled(false);
+        UnknownLoginCache disabledCache = new UnknownLoginCache(userRepository, cacheManager, cacheInvalidationBus, Runnable::run,
+            mock(PlatformTransactionManager.class), applicationProperties, new SimpleMeterRegistry());
+        disabledCache.rebuild();
+
+        disabledCache.find("unknown", finder(null));
+        disabledCache.find("unknown", finder(null));
+
+        assertThat(queries.get()).isEqualTo(2);
+        assertThat(disabledCache.isBuilt()).isFalse();
+    }
+
+    private Function<String, Optional<String>> finder(String result) {
+        return login -> {
+            queries.incrementAndGet();
+            return Optional.ofNullable(result);
+        };
+    }
+}
@@ -0,0 +1,133 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link UserCacheSnapshot} class.
+ */
+public class UserCacheSnapshotTest {
+
+    private Path directory;
+
+    private Path path;
+
+    @BeforeEach
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("cache-snapshot");
+        path = directory.resolve("snapshot.bin");
+    }
+
+    @AfterEach
+    public void destroy() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testSnapshotIsReadBack() throws IOException {
+        User admin = createUser("admin", AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        admin.setFirstName("Ädmin");
+        User user = createUser("user", AuthoritiesConstants.USER);
+        user.setEmail(null);
+        user.setImageUrl(null);
+        user.setActivated(false);
+        Instant writtenAt = Instant.ofEpochMilli(1500000000000L);
+
+        new UserCacheSnapshot(writtenAt, Collections.singletonList(AuthoritiesConstants.ADMIN), Arrays.asList(
+            new UserCacheSnapshot.Entry(admin, true, true), new UserCacheSnapshot.Entry(user, true, false))).write(path);
+        UserCacheSnapshot snapshot = UserCacheSnapshot.read(path);
+
+        assertThat(snapshot.getWrittenAt()).isEqualTo(writtenAt);
+        assertThat(snapshot.getAuthorities()).containsExactly(AuthoritiesConstants.ADMIN);
+        assertThat(snapshot.getEntries()).hasSize(2);
+        UserCacheSnapshot.Entry adminEntry = snapshot.getEntries().get(0);
+        assertThat(adminEntry.isInUsersByLogin()).isTrue();
+        assertThat(adminEntry.isInUsersByEmail()).isTrue();
+        assertThat(adminEntry.getUser()).isEqualToComparingOnlyGivenFields(admin, "id", "login", "email", "firstName", "lastName",
+            "activated", "langKey", "imageUrl", "createdBy", "createdDate", "lastModifiedBy", "lastModifiedDate");
+        assertThat(adminEntry.getUser().getAuthorities()).extracting("name")
+            .containsOnly(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        UserCacheSnapshot.Entry userEntry = snapshot.getEntries().get(1);
+        assertThat(userEntry.isInUsersByEmail()).isFalse();
+        assertThat(userEntry.getUser().getEmail()).isNull();
+        assertThat(userEntry.getUser().getImageUrl()).isNull();
+        assertThat(userEntry.getUser().getActivated()).isFalse();
+    }
+
+    @Test
+    public void testOtherVersionIsRejected() throws IOException {
+        writeSnapshot();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(4);
+            file.writeShort(UserCacheSnapshot.VERSION + 1);
+        }
+
+        assertThatThrownBy(() -> UserCacheSnapshot.read(path)).isInstanceOf(IOException.class).hasMessageContaining("version");
+    }
+
+    @Test
+    public void testCorruptedSnapshotIsRejected() throws IOException {
+        writeSnapshot();
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() / 2);
+            int value = file.read();
+            file.seek(file.length() / 2);
+            file.write(value ^ 0xFF);
+        }
+
+        assertThatThrownBy(() -> UserCacheSnapshot.read(path)).isInstanceOf(IOException.class).hasMessageContaining("Corrupted");
+    }
+
+    @Test
+    public void testOtherFileIsRejected() throws IOException {
+        Files.write(path, new byte[64]);
+
+        assertThatThrownBy(() -> UserCacheSnapshot.read(path)).isInstanceOf(IOException.class);
+    }
+
+    private void writeSnapshot() throws IOException {
+        new UserCacheSnapshot(Instant.now(), Collections.emptyList(), Collections.singletonList(
+            new UserCacheSnapshot.Entry(createUser("user", AuthoritiesConstants.USER), true, true))).write(path);
+    }
+
+    private static User createUser(String login, String... authorities) {
+        User user = new User();
+        user.setId(login + "-id");
+        user.setLogin(login);
+        user.setEmail(login + "@localhost");
+        user.setFirstName(login);
+        user.setLastName("Doe");
+        user.setActivated(true);
+        user.setLangKey("en");
+        user.setImageUrl("http://placehold.it/50x50");
+        user.setCreatedBy("system");
+        user.setCreatedDate(Instant.ofEpochSecond(1400000000L, 123456789));
+        user.setLastModifiedBy("system");
+        user.setLastModifiedDate(Instant.ofEpochSecond(1500000000L, 987654321));
+        user.setAuthorities(new HashSet<>());
+        for (String name : authorities) {
+            Authority authority = new Authority();
+            authority.setName(name);
+            user.getAuthorities().add(authority);
+        }
+        return user;
+    }
+}
@@ -0,0 +1,171 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.domain.PersistentAuditEvent;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.AuthorityRepository;
+import com.eurofragance.bridge.repository.PersistenceAuditEventRepository;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Integration tests for {@link UserCacheWarmer}.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+public class UserCacheWarmerIT {
+
+    private static final int USERS = 5;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private ApplicationProperties applicationProperties;
+
+    @BeforeEach
+    public void init() {
+        persistenceAuditEventRepository.deleteAll();
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).clear();
+        Instant now = Instant.now();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setId("warm-up-" + i);
+            user.setLogin("warm-up-" + i);
+            user.setEmail("warm-up-" + i + "@localhost");
+            user.setActivated(true);
+            user.setAuthorities(Collections.singleton(authorityRepository.getOne(AuthoritiesConstants.USER)));
+            userRepository.saveAndFlush(user);
+            // user 0 is the most recently active
+            createAuditEvent(user.getLogin(), now.minus(i, ChronoUnit.MINUTES));
+            createAuditEvent(user.getLogin(), now.minus(i + 60, ChronoUnit.MINUTES));
+        }
+        createAuditEvent("unknown", now.minus(30, ChronoUnit.SECONDS));
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getWarmUp().setBatchSize(2);
+    }
+
+    @AfterEach
+    public void destroy() {
+        persistenceAuditEventRepository.deleteAll();
+        for (int i = 0; i < USERS; i++) {
+            userRepository.deleteById("warm-up-" + i);
+        }
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).clear();
+    }
+
+    @Test
+    public void testMostRecentlyActiveUsersAreCached() {
+        applicationProperties.getCache().getWarmUp().setMaxUsers(4);
+
+        int loaded = createWarmer().warmUp();
+
+        assertThat(loaded).isEqualTo(3);
+        for (int i = 0; i < 3; i++) {
+            User cached = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("warm-up-" + i, User.class);
+            assertThat(cached).isNotNull();
+            assertThat(cached.getAuthorities()).extracting("name").containsExactly(AuthoritiesConstants.USER);
+            assertThat(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).get("warm-up-" + i + "@localhost")).isNotNull();
+        }
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("warm-up-3")).isNull();
+        assertThat(userRepository.findOneWithAuthoritiesByLogin("warm-up-0")).isPresent();
+    }
+
+    @Test
+    public void testWarmUpStopsAtTimeBudget() {
+        applicationProperties.getCache().getWarmUp().setMaxSeconds(-1);
+
+        assertThat(createWarmer().warmUp()).isZero();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("warm-up-0")).isNull();
+    }
+
+    @Test
+    public void testCachedEntriesAreNotReplaced() {
+        User cached = new User();
+        cached.setLogin("warm-up-0");
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).put("warm-up-0", cached);
+
+        createWarmer().warmUp();
+
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("warm-up-0", User.class)).isSameAs(cached);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUsersModifiedWhileReadAreNotCached() {
+        AtomicReference<UserCacheWarmer> warmer = new AtomicReference<>();
+        UserRepository modifyingUserRepository = mock(UserRepository.class, delegatesTo(userRepository));
+        doAnswer(invocation -> {
+            List<User> users = userRepository.findAllWithAuthoritiesByLoginIn(invocation.getArgument(0));
+            if (((Collection<String>) invocation.getArgument(0)).contains("warm-up-0")) {
+                // the first batch is modified once read
+                warmer.get().evicted();
+            }
+            return users;
+        }).when(modifyingUserRepository).findAllWithAuthoritiesByLoginIn(any());
+        warmer.set(createWarmer(modifyingUserRepository));
+
+        int loaded = warmer.get().warmUp();
+
+        // the first batch is warm-up-0 and the unknown principal
+        assertThat(loaded).isEqualTo(USERS - 1);
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("warm-up-0")).isNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).get("warm-up-0@localhost")).isNull();
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).get("warm-up-1")).isNotNull();
+    }
+
+    private UserCacheWarmer createWarmer() {
+        return createWarmer(userRepository);
+    }
+
+    private UserCacheWarmer createWarmer(UserRepository userRepository) {
+        return new UserCacheWarmer(persistenceAuditEventRepository, userRepository, cacheManager, transactionManager,
+            cacheInvalidationBus, applicationProperties);
+    }
+
+    private void createAuditEvent(String principal, Instant date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventDate(date);
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        persistenceAuditEventRepository.save(event);
+    }
+}
@@ -0,0 +1,148 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.Constants;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+import com.eurofragance.bridge.service.dto.UserImportDTO;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the throughput of the {@link UserImportService}, importing a Keycloak users export of 20000
+ * users into the H2 database of the tests.
+ * <p>
+ * The application runs with the {@value Constants#SPRING_PROFILE_LUCENE} profile, so that the imported users are
+ * indexed without Elasticsearch, and the users imported by an iteration are deleted after it. The users per second
+ * of each iteration are logged after its score. Run the {@link #main(String[])} method from the IDE, as it needs
+ * the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UserImportBenchmark {
+
+    private static final int USERS = 20000;
+
+    private final Logger log = LoggerFactory.getLogger(UserImportBenchmark.class);
+
+    private ConfigurableApplicationContext context;
+
+    private UserImportService userImportService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private CacheManager cacheManager;
+
+    private Path export;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new SpringApplicationBuilder(BridgeApp.class, TestSecurityConfiguration.class)
+            .profiles(Constants.SPRING_PROFILE_LUCENE)
+            // the security configuration needs the web application, listening on any free port
+            .properties("server.port=0")
+            .run();
+        userImportService = context.getBean(UserImportService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        cacheManager = context.getBean(CacheManager.class);
+        export = Files.createTempFile("users", ".json");
+        writeUsersExport(context.getBean(ObjectMapper.class), export);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteImportedUsers() {
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM jhi_user_authority WHERE user_id LIKE 'benchmark-%'");
+            jdbcTemplate.update("DELETE FROM jhi_user WHERE id LIKE 'benchmark-%'");
+            return jdbcTemplate.update("DELETE FROM jhi_user_outbox");
+        });
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).clear();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(export);
+        context.close();
+    }
+
+    @Benchmark
+    public UserImportDTO importUsers() throws IOException {
+        UserImportDTO result;
+        try (InputStream users = Files.newInputStream(export)) {
+            result = userImportService.importUsers(users, Collections.emptyMap(), progress -> { });
+        }
+        log.info("Imported {} users in {} ms: {} users/s", result.getImported(), result.getElapsedMillis(),
+            Math.round(result.getUsersPerSecond()));
+        return result;
+    }
+
+    private static void writeUsersExport(ObjectMapper objectMapper, Path export) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(Files.newOutputStream(export))) {
+            generator.writeStartObject();
+            generator.writeStringField("realm", "benchmark");
+            generator.writeArrayFieldStart("users");
+            for (int i = 0; i < USERS; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("id", "benchmark-" + i);
+                generator.writeNumberField("createdTimestamp", 1505479415590L + i);
+                generator.writeStringField("username", "benchmark" + i);
+                generator.writeBooleanField("enabled", true);
+                generator.writeStringField("firstName", "Bench");
+                generator.writeStringField("lastName", "Mark " + i);
+                generator.writeStringField("email", "benchmark" + i + "@localhost");
+                generator.writeArrayFieldStart("realmRoles");
+                generator.writeString(AuthoritiesConstants.USER);
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(UserImportBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,229 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+import com.eurofragance.bridge.service.dto.UserImportDTO;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Integration tests for {@link UserImportService}.
+ * <p>
+ * The batches are committed by the service, so the users and authorities imported are deleted after each test.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+public class UserImportServiceIT {
+
+    private static final Path REALM_CONFIG = Paths.get("src/main/docker/realm-config");
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRegistry authorityRegistry;
+
+    @Autowired
+    private UserSearchIndexer userSearchIndexer;
+
+    @Autowired
+    private UnknownLoginCache unknownLoginCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    /**
+     * This repository is mocked in the com.eurofragance.bridge.repository.search test package.
+     *
+     * @see com.eurofragance.bridge.repository.search.UserSearchRepositoryMockConfiguration
+     */
+    @Autowired
+    private UserSearchRepository mockUserSearchRepository;
+
+    private Set<String> existingUserIds;
+
+    private Set<String> existingAuthorities;
+
+    @BeforeEach
+    public void init() {
+        existingUserIds = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM jhi_user", String.class));
+        existingAuthorities = new HashSet<>(jdbcTemplate.queryForList("SELECT name FROM jhi_authority", String.class));
+    }
+
+    @AfterEach
+    public void destroy() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            List<String> userIds = jdbcTemplate.queryForList("SELECT id FROM jhi_user", String.class);
+            userIds.removeAll(existingUserIds);
+            userIds.forEach(id -> {
+                jdbcTemplate.update("DELETE FROM jhi_user_authority WHERE user_id = ?", id);
+                jdbcTemplate.update("DELETE FROM jhi_user WHERE id = ?", id);
+            });
+            List<String> authorities = jdbcTemplate.queryForList("SELECT name FROM jhi_authority", String.class);
+            authorities.removeAll(existingAuthorities);
+            authorities.forEach(name -> jdbcTemplate.update("DELETE FROM jhi_authority WHERE name = ?", name));
+            return jdbcTemplate.update("DELETE FROM jhi_user_outbox");
+        });
+        authorityRegistry.refresh();
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
+        cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).clear();
+    }
+
+    @Test
+    public void assertThatKeycloakExportIsImported() throws IOException {
+        UserImportDTO result = importRealmConfigUsers();
+
+        // the service account is not a user
+        assertThat(result.getRead()).isEqualTo(3);
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getSkipped()).isEqualTo(1);
+        User admin = userRepository.findOneWithAuthoritiesByLogin("admin").get();
+        assertThat(admin.getEmail()).isEqualTo("admin@localhost");
+        assertThat(admin.getActivated()).isTrue();
+        assertThat(admin.getAuthorities()).extracting(Authority::getName)
+            .containsExactlyInAnyOrder(AuthoritiesConstants.ADMIN, AuthoritiesConstants.USER);
+        User user = userRepository.findOneWithAuthoritiesByLogin("user").get();
+        assertThat(user.getAuthorities()).extracting(Authority::getName).containsExactly(AuthoritiesConstants.USER);
+        // indexed through the outbox, once the batch is committed
+        assertThat(outboxUserIds()).containsExactlyInAnyOrder(admin.getId(), user.getId());
+        verify(mockUserSearchRepository, never()).saveAll(anyIterable());
+    }
+
+    @Test
+    public void assertThatExistingUsersAreSkipped() throws IOException {
+        importRealmConfigUsers();
+        long count = userRepository.count();
+
+        UserImportDTO result = importRealmConfigUsers();
+
+        assertThat(result.getImported()).isZero();
+        assertThat(result.getSkipped()).isEqualTo(3);
+        assertThat(userRepository.count()).isEqualTo(count);
+    }
+
+    @Test
+    public void assertThatNewRolesAreInsertedBeforeTheirUsers() throws IOException {
+        UserImportDTO result = importUsers(userImportService, "{\"users\":[" +
+            realmUser("import-1", "auditor", "ROLE_AUDITOR", AuthoritiesConstants.USER) + "]}");
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(authorityRegistry.contains("ROLE_AUDITOR")).isTrue();
+        assertThat(userRepository.findOneWithAuthoritiesByLogin("auditor").get().getAuthorities()).extracting(Authority::getName)
+            .containsExactlyInAnyOrder("ROLE_AUDITOR", AuthoritiesConstants.USER);
+    }
+
+    @Test
+    public void assertThatFailedBatchIsRolledBackAlone() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUserImport().setBatchSize(2);
+        UserImportService service = new UserImportService(jdbcTemplate, userSearchIndexer, authorityRegistry,
+            unknownLoginCache, objectMapper, transactionManager, applicationProperties);
+        // the authority names are limited to 50 characters
+        String invalidRole = "ROLE_" + String.join("", Collections.nCopies(50, "X"));
+
+        assertThatThrownBy(() -> importUsers(service, "{\"users\":[" +
+            realmUser("import-1", "first", "ROLE_AUDITOR") + "," +
+            realmUser("import-2", "second", AuthoritiesConstants.USER) + "," +
+            realmUser("import-3", "third", "ROLE_REVIEWER") + "," +
+            realmUser("import-4", "fourth", invalidRole) + "]}"))
+            .isInstanceOf(RuntimeException.class);
+
+        assertThat(userRepository.findOneByLogin("first")).isPresent();
+        assertThat(userRepository.findOneByLogin("second")).isPresent();
+        assertThat(userRepository.findOneByLogin("third")).isNotPresent();
+        assertThat(userRepository.findOneByLogin("fourth")).isNotPresent();
+        assertThat(authorityRegistry.refresh()).contains("ROLE_AUDITOR").doesNotContain("ROLE_REVIEWER", invalidRole);
+        assertThat(outboxUserIds()).containsExactlyInAnyOrder("import-1", "import-2");
+    }
+
+    @Test
+    public void assertThatProgressIsReportedAfterEachBatch() throws IOException {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUserImport().setBatchSize(2);
+        UserImportService service = new UserImportService(jdbcTemplate, userSearchIndexer, authorityRegistry,
+            unknownLoginCache, objectMapper, transactionManager, applicationProperties);
+        List<UserImportDTO> progress = new ArrayList<>();
+
+        UserImportDTO result;
+        try (InputStream users = new ByteArrayInputStream(("{\"users\":[" +
+            realmUser("import-1", "first", AuthoritiesConstants.USER) + "," +
+            realmUser("import-2", "second", AuthoritiesConstants.USER) + "," +
+            realmUser("import-3", "third", AuthoritiesConstants.USER) + "]}").getBytes(StandardCharsets.UTF_8))) {
+            result = service.importUsers(users, Collections.emptyMap(), progress::add);
+        }
+
+        assertThat(result.getImported()).isEqualTo(3);
+        assertThat(progress).extracting(UserImportDTO::getImported).startsWith(2L).endsWith(3L);
+    }
+
+    private UserImportDTO importRealmConfigUsers() throws IOException {
+        Map<String, Set<String>> groupRoles;
+        try (InputStream realm = Files.newInputStream(REALM_CONFIG.resolve("jhipster-realm.json"))) {
+            groupRoles = userImportService.readGroupRoles(realm);
+        }
+        try (InputStream users = Files.newInputStream(REALM_CONFIG.resolve("jhipster-users-0.json"))) {
+            return userImportService.importUsers(users, groupRoles, progress -> { });
+        }
+    }
+
+    private List<String> outboxUserIds() {
+        return jdbcTemplate.queryForList("SELECT user_id FROM jhi_user_outbox", String.class);
+    }
+
+    private static UserImportDTO importUsers(UserImportService service, String export) throws IOException {
+        try (InputStream users = new ByteArrayInputStream(export.getBytes(StandardCharsets.UTF_8))) {
+            return service.importUsers(users, Collections.emptyMap(), progress -> { });
+        }
+    }
+
+    private static String realmUser(String id, String username, String... realmRoles) {
+        return "{\"id\":\"" + id + "\",\"username\":\"" + username + "\",\"enabled\":true," +
+            "\"email\":\"" + username + "@import.localhost\",\"realmRoles\":[\"" + String.join("\",\"", realmRoles) + "\"]}";
+    }
+}
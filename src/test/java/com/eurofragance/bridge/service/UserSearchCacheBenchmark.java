@@ -0,0 +1,172 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.CacheConfiguration;
+import com.eurofragance.bridge.config.ElasticsearchConfiguration;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.search.SearchAfterPage;
+import com.eurofragance.bridge.repository.search.UserSearchHit;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+import com.eurofragance.bridge.repository.search.UserSearchRepositoryImpl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.github.jhipster.config.JHipsterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.config.HttpClientConfig;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.cache.jcache.JCacheCacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the latency percentiles of the user search, with the {@link UserSearchCache} and without it,
+ * for the queries of an admin typing names: the prefixes of a few names, the short ones being the most frequent.
+ * <p>
+ * The searches go through the {@link UserSearchRepositoryImpl} and a real {@link JestClient}, to a stub of
+ * Elasticsearch on the loopback interface answering a page of 20 users at once, so the scores without the cache
+ * miss the search time of Elasticsearch and the network latency, and are a lower bound. Look at the
+ * {@code p0.99} line of each score. Run the {@link #main(String[])} method from the IDE, as it needs the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class UserSearchCacheBenchmark {
+
+    private static final String[] NAMES = {"john", "johanna", "maria", "marc", "peter", "paula", "ahmed", "alice", "olga", "oliver"};
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private HttpServer server;
+
+    private JestClient jestClient;
+
+    private javax.cache.CacheManager cacheManager;
+
+    private UserSearchCache userSearchCache;
+
+    private List<String> queries;
+
+    private final Pageable pageable = PageRequest.of(0, PAGE_SIZE);
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] response = searchResponse().getBytes(StandardCharsets.UTF_8);
+        // without it the stub waits for the delayed ACKs of the client, 40ms on Linux
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().close();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        JestClientFactory factory = new JestClientFactory();
+        factory.setHttpClientConfig(new HttpClientConfig.Builder("http://localhost:" + server.getAddress().getPort())
+            .multiThreaded(true)
+            .build());
+        jestClient = factory.getObject();
+
+        ElasticsearchPersistentEntity<?> entity = Mockito.mock(ElasticsearchPersistentEntity.class);
+        Mockito.when(entity.getIndexName()).thenReturn("user");
+        Mockito.when(entity.getIndexType()).thenReturn("user");
+        ElasticsearchOperations elasticsearchOperations = Mockito.mock(ElasticsearchOperations.class);
+        Mockito.doReturn(entity).when(elasticsearchOperations).getPersistentEntityFor(User.class);
+        UserSearchRepositoryImpl repository = new UserSearchRepositoryImpl(jestClient, elasticsearchOperations,
+            new ElasticsearchConfiguration(new ObjectMapper()).getEntityMapper());
+        UserSearchRepository userSearchRepository = Mockito.mock(UserSearchRepository.class, AdditionalAnswers.delegatesTo(repository));
+
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearch().getResultCache().setEnabled(cache);
+        CacheConfiguration cacheConfiguration = new CacheConfiguration(new JHipsterProperties(), applicationProperties);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("cacheManagerCustomizer", cacheConfiguration.cacheManagerCustomizer());
+        cacheManager = cacheConfiguration.jCacheCacheManager(beanFactory.getBeanProvider(JCacheManagerCustomizer.class));
+        userSearchCache = new UserSearchCache(userSearchRepository, new JCacheCacheManager(cacheManager),
+            Mockito.mock(CacheInvalidationBus.class), applicationProperties, new SimpleMeterRegistry());
+
+        // the shorter prefixes are typed more often, as every query starts with them
+        queries = new ArrayList<>();
+        for (String name : NAMES) {
+            for (int length = 1; length <= name.length(); length++) {
+                for (int i = length; i <= name.length(); i++) {
+                    queries.add(name.substring(0, length) + "*");
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cacheManager.close();
+        jestClient.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public SearchAfterPage<UserSearchHit> search() throws IOException {
+        String query = queries.get(ThreadLocalRandom.current().nextInt(queries.size()));
+        return userSearchCache.search(query, pageable, null);
+    }
+
+    private static String searchResponse() {
+        StringBuilder hits = new StringBuilder();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            if (i > 0) {
+                hits.append(',');
+            }
+            String id = "user-" + i;
+            hits.append("{\"_index\":\"user\",\"_type\":\"user\",\"_id\":\"").append(id).append("\",\"_score\":1.0,")
+                .append("\"_source\":{\"id\":\"").append(id).append("\",\"login\":\"john").append(i)
+                .append("\",\"firstName\":\"John\",\"lastName\":\"Doe\",\"email\":\"john").append(i)
+                .append("@localhost\",\"imageUrl\":\"http://placehold.it/50x50\",\"activated\":true,\"langKey\":\"en\"},")
+                .append("\"sort\":[1.0,\"").append(id).append("\"]}");
+        }
+        return "{\"took\":1,\"timed_out\":false,\"hits\":{\"total\":1000,\"max_score\":1.0,\"hits\":[" + hits + "]}}";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UserSearchCacheBenchmark.class.getSimpleName()).build()).run();
+    }
+}
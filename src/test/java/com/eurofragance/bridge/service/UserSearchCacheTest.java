@@ -0,0 +1,169 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.search.SearchAfterPage;
+import com.eurofragance.bridge.repository.search.UserSearchHit;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link UserSearchCache} class.
+ */
+public class UserSearchCacheTest {
+
+    private static final Pageable PAGE = PageRequest.of(0, 20);
+
+    private UserSearchRepository userSearchRepository;
+
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private UserSearchCache userSearchCache;
+
+    @BeforeEach
+    public void init() throws IOException {
+        userSearchRepository = mock(UserSearchRepository.class);
+        when(userSearchRepository.searchPage(anyString(), any(), any()))
+            .thenAnswer(invocation -> new SearchAfterPage<>(Collections.singletonList(new UserSearchHit()), invocation.getArgument(1), 1, null));
+        cacheInvalidationBus = mock(CacheInvalidationBus.class);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearch().getResultCache().setRefreshIntervalMs(0);
+        meterRegistry = new SimpleMeterRegistry();
+        userSearchCache = new UserSearchCache(userSearchRepository, new ConcurrentMapCacheManager(UserSearchCache.USER_SEARCH_CACHE),
+            cacheInvalidationBus, applicationProperties, meterRegistry);
+    }
+
+    @Test
+    public void testSameNormalizedQueryIsCached() throws IOException {
+        SearchAfterPage<UserSearchHit> page = userSearchCache.search("login:john*  AND activated:true", PAGE, null);
+
+        assertThat(userSearchCache.search(" login:john* AND\tactivated:true ", PAGE, null)).isSameAs(page);
+        verify(userSearchRepository, times(1)).searchPage(anyString(), any(), any());
+        assertThat(meterRegistry.get("search.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("search.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPagesAreCachedSeparately() throws IOException {
+        userSearchCache.search("john*", PAGE, null);
+        userSearchCache.search("john*", PageRequest.of(1, 20), null);
+        userSearchCache.search("john*", PAGE, "cursor");
+        userSearchCache.search("John*", PAGE, null);
+
+        verify(userSearchRepository, times(4)).searchPage(anyString(), any(), any());
+    }
+
+    @Test
+    public void testWriteStartsANewGeneration() throws IOException {
+        userSearchCache.search("john*", PAGE, null);
+
+        userSearchCache.invalidate();
+        userSearchCache.search("john*", PAGE, null);
+
+        verify(userSearchRepository, times(2)).searchPage(eq("john*"), any(), any());
+        verify(cacheInvalidationBus).clear(UserSearchCache.USER_SEARCH_CACHE);
+    }
+
+    @Test
+    public void testPageReadBeforeTheRefreshIsNotCached() throws IOException {
+        applicationProperties.getSearch().getResultCache().setRefreshIntervalMs(60000);
+        userSearchCache.invalidate();
+
+        userSearchCache.search("john*", PAGE, null);
+        userSearchCache.search("john*", PAGE, null);
+
+        verify(userSearchRepository, times(2)).searchPage(eq("john*"), any(), any());
+    }
+
+    @Test
+    public void testPageReadDuringAWriteIsNotCached() throws IOException {
+        doAnswer(invocation -> {
+            userSearchCache.invalidate();
+            return new SearchAfterPage<>(Collections.emptyList(), invocation.getArgument(1), 0, null);
+        }).when(userSearchRepository).searchPage(anyString(), any(), any());
+
+        userSearchCache.search("john*", PAGE, null);
+        userSearchCache.search("john*", PAGE, null);
+
+        verify(userSearchRepository, times(2)).searchPage(eq("john*"), any(), any());
+    }
+
+    @Test
+    public void testWriteOnAPeerStartsANewGeneration() throws IOException {
+        ArgumentCaptor<CacheInvalidationBus.Listener> listener = ArgumentCaptor.forClass(CacheInvalidationBus.Listener.class);
+        verify(cacheInvalidationBus).addListener(eq(UserSearchCache.USER_SEARCH_CACHE), listener.capture());
+        userSearchCache.search("john*", PAGE, null);
+
+        listener.getValue().cleared();
+        userSearchCache.search("john*", PAGE, null);
+
+        verify(userSearchRepository, times(2)).searchPage(eq("john*"), any(), any());
+    }
+
+    @Test
+    public void testSuggestionsAreCachedByPrefix() throws IOException {
+        when(userSearchRepository.suggest(anyString(), anyInt())).thenReturn(Collections.singletonList(new User()));
+
+        List<User> users = userSearchCache.suggest("Jo  Do", 10);
+
+        assertThat(userSearchCache.suggest("jo do", 10)).isSameAs(users);
+        userSearchCache.suggest("jo do", 5);
+        verify(userSearchRepository, times(2)).suggest(anyString(), anyInt());
+    }
+
+    @Test
+    public void testOtherResultsAreCachedUntilAWrite() throws IOException {
+        List<Object> loads = new ArrayList<>();
+        UserSearchCache.Loader<Object> loader = () -> {
+            Object result = new Object();
+            loads.add(result);
+            return result;
+        };
+
+        Object result = userSearchCache.get("facets|MONTH", loader);
+
+        assertThat(userSearchCache.get("facets|MONTH", loader)).isSameAs(result);
+        userSearchCache.get("facets|YEAR", loader);
+        userSearchCache.invalidate();
+        assertThat(userSearchCache.get("facets|MONTH", loader)).isNotSameAs(result);
+        assertThat(loads).hasSize(3);
+    }
+
+    @Test
+    public void testDisabledCacheAlwaysSearches() throws IOException {
+        applicationProperties.getSearch().getResultCache().setEnabled(false);
+
+        userSearchCache.search("john*", PAGE, null);
+        userSearchCache.search("john*", PAGE, null);
+
+        verify(userSearchRepository, times(2)).searchPage(eq("john*"), any(), any());
+    }
+}
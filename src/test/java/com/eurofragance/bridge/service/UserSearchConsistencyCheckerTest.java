@@ -0,0 +1,184 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.LuceneUserSearchRepository;
+import com.eurofragance.bridge.repository.search.UserIdRange;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link UserSearchConsistencyChecker} class, on a Lucene index in memory.
+ */
+public class UserSearchConsistencyCheckerTest {
+
+    private static final Instant MODIFIED = Instant.parse("2020-01-01T00:00:00Z");
+
+    private final NavigableMap<String, User> database = new TreeMap<>();
+
+    private LuceneUserSearchRepository index;
+
+    private UserSearchRepository userSearchRepository;
+
+    private UserSearchCache userSearchCache;
+
+    private UserSearchReindexer userSearchReindexer;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private UserSearchConsistencyChecker checker;
+
+    @BeforeEach
+    public void init() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            User user = user(String.format("%04d", i));
+            database.put(user.getId(), user);
+        }
+        index = new LuceneUserSearchRepository(new ObjectMapper().registerModule(new JavaTimeModule()), null);
+        index.saveAll(database.values());
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findLastModifiedDatesByIdGreaterThan(anyString(), any())).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(1);
+            return database.tailMap(invocation.getArgument(0), false).values().stream()
+                .limit(pageable.getPageSize())
+                .map(user -> new Object[]{user.getId(), user.getLastModifiedDate()})
+                .collect(Collectors.toList());
+        });
+        when(userRepository.findAllById(any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return ids.stream().filter(database::containsKey).map(database::get).collect(Collectors.toList());
+        });
+        userSearchRepository = mock(UserSearchRepository.class, AdditionalAnswers.delegatesTo(index));
+        userSearchCache = mock(UserSearchCache.class);
+        userSearchReindexer = mock(UserSearchReindexer.class);
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Search.Consistency consistency = applicationProperties.getSearch().getConsistency();
+        consistency.setRangeSize(400);
+        consistency.setBuckets(4);
+        consistency.setLeafSize(25);
+        meterRegistry = new SimpleMeterRegistry();
+        checker = new UserSearchConsistencyChecker(userRepository, userSearchRepository, userSearchCache, userSearchReindexer,
+            mock(PlatformTransactionManager.class), applicationProperties, meterRegistry);
+    }
+
+    @AfterEach
+    public void destroy() throws IOException {
+        index.close();
+    }
+
+    @Test
+    public void testMatchingRangesAreNotRepaired() throws IOException {
+        assertThat(checker.checkNextRange()).isZero();
+
+        verify(userSearchRepository, times(1)).checksum(any());
+        verify(userSearchRepository, never()).findInRange(any(), anyInt());
+        verify(userSearchRepository, never()).bulk(any(), any(), any());
+        assertThat(meterRegistry.get("search.consistency.buckets").tag("result", "match").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDriftedUsersAreRepaired() throws IOException {
+        index.deleteById("0010");
+        User stale = user("0200");
+        stale.setLastModifiedDate(MODIFIED.minusSeconds(1));
+        index.saveAll(Collections.singletonList(stale));
+        index.saveAll(Collections.singletonList(user("0150a")));
+
+        assertThat(checker.checkNextRange()).isEqualTo(3);
+
+        assertThat(index.findById("0010")).isPresent();
+        assertThat(index.findById("0200").map(User::getLastModifiedDate)).contains(MODIFIED);
+        assertThat(index.findById("0150a")).isEmpty();
+        assertThat(drift("missing")).isEqualTo(1);
+        assertThat(drift("stale")).isEqualTo(1);
+        assertThat(drift("orphaned")).isEqualTo(1);
+        assertThat(meterRegistry.get("search.consistency.repair").tag("result", "success").timer().count()).isEqualTo(3);
+        verify(userSearchCache, times(3)).invalidate();
+        // only the buckets which differ are read user by user
+        verify(userSearchRepository, atMost(6)).findInRange(any(), anyInt());
+        assertThat(checker.checkNextRange()).isZero();
+    }
+
+    @Test
+    public void testRangesAreCheckedInTurn() throws IOException {
+        List<UserIdRange> ranges = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<UserIdRange> checked = invocation.getArgument(0);
+            ranges.addAll(checked);
+            return index.checksum(checked);
+        }).when(userSearchRepository).checksum(any());
+        // an orphan after the last user is in the last range
+        index.saveAll(Collections.singletonList(user("1000")));
+
+        for (int i = 0; i < 4; i++) {
+            checker.checkNextRange();
+        }
+
+        assertThat(ranges).extracting(UserIdRange::toString).startsWith("(, 0399]", "(0399, 0799]", "(0799, ...)");
+        assertThat(ranges.get(ranges.size() - 1).toString()).isEqualTo("(, 0399]");
+        assertThat(index.findById("1000")).isEmpty();
+    }
+
+    @Test
+    public void testRecentlyModifiedUsersAreNotRepaired() throws IOException {
+        User recent = database.get("0042");
+        recent.setLastModifiedDate(Instant.now());
+
+        checker.checkNextRange();
+
+        assertThat(index.findById("0042").map(User::getLastModifiedDate)).contains(MODIFIED);
+        assertThat(meterRegistry.find("search.consistency.drift").counters())
+            .allSatisfy(counter -> assertThat(counter.count()).isZero());
+    }
+
+    private double drift(String type) {
+        return meterRegistry.get("search.consistency.drift").tag("type", type).counter().count();
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user-" + id);
+        user.setEmail("user-" + id + "@localhost");
+        user.setActivated(true);
+        user.setLangKey("en");
+        user.setLastModifiedDate(MODIFIED);
+        return user;
+    }
+}
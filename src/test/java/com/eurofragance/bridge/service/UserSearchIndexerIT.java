@@ -0,0 +1,266 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserOutboxRepository;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration tests for the {@link UserSearchIndexer}, sending the user changes of the outbox.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+public class UserSearchIndexerIT {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserOutboxRepository userOutboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * This repository is mocked in the com.eurofragance.bridge.repository.search test package.
+     *
+     * @see com.eurofragance.bridge.repository.search.UserSearchRepositoryMockConfiguration
+     */
+    @Autowired
+    private UserSearchRepository mockUserSearchRepository;
+
+    private UserSearchCache userSearchCache;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private UserSearchIndexer indexer;
+
+    @BeforeEach
+    public void init() throws IOException {
+        clearOutbox();
+        userSearchCache = mock(UserSearchCache.class);
+        when(mockUserSearchRepository.bulk(any(), anyCollection(), anyMap())).thenReturn(Collections.emptyMap());
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getSearch().getIndexer().setInitialBackoffMs(0);
+        meterRegistry = new SimpleMeterRegistry();
+        indexer = new UserSearchIndexer(mockUserSearchRepository, userSearchCache, userOutboxRepository, userRepository,
+            transactionManager, applicationProperties, meterRegistry);
+    }
+
+    @AfterEach
+    public void destroy() {
+        clearOutbox();
+        userRepository.findAllById(Arrays.asList("outbox-1", "outbox-2", "outbox-3")).forEach(userRepository::delete);
+    }
+
+    @Test
+    public void testChangesAreSentOncePerUser() throws IOException {
+        indexer.index(user("outbox-1", "first"));
+        indexer.index(user("outbox-1", "second"));
+        indexer.index(user("outbox-2", "third"));
+        User deleted = user("outbox-3", "deleted");
+        userRepository.delete(deleted);
+        indexer.delete(deleted);
+
+        indexer.flush();
+
+        verify(mockUserSearchRepository).bulk(isNull(), logins("second", "third"), deletedIds("outbox-3"));
+        verify(userSearchCache).invalidate();
+        assertThat(userOutboxRepository.count()).isZero();
+        assertThat(indexer.size()).isZero();
+        assertThat(meterRegistry.get("search.indexer.batch.size").summary().totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("search.indexer.sent").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("search.indexer.delay").timer().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("search.indexer.flush").tag("result", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUsersIndexedTogetherAreSentInOneRequest() throws IOException {
+        indexer.indexAll(Arrays.asList(user("outbox-1", "first"), user("outbox-2", "second")));
+
+        assertThat(userOutboxRepository.count()).isEqualTo(2);
+        indexer.flush();
+
+        verify(mockUserSearchRepository).bulk(isNull(), logins("first", "second"), anyMap());
+        assertThat(userOutboxRepository.count()).isZero();
+    }
+
+    @Test
+    public void testChangesAreWrittenInTheTransaction() {
+        User user = user("outbox-1", "first");
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.execute(status -> {
+            indexer.index(user);
+            status.setRollbackOnly();
+            return null;
+        });
+        assertThat(userOutboxRepository.count()).isZero();
+
+        transactionTemplate.execute(status -> {
+            indexer.index(user);
+            return null;
+        });
+        assertThat(userOutboxRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOutboxIsSentInBatches() throws IOException {
+        applicationProperties.getSearch().getIndexer().setBatchSize(2);
+        indexer.index(user("outbox-1", "first"));
+        indexer.index(user("outbox-2", "second"));
+        indexer.index(user("outbox-3", "third"));
+
+        indexer.flush();
+
+        verify(mockUserSearchRepository).bulk(isNull(), logins("first", "second"), deletedIds());
+        verify(mockUserSearchRepository).bulk(isNull(), logins("third"), deletedIds());
+        assertThat(userOutboxRepository.count()).isZero();
+    }
+
+    @Test
+    public void testFailedRequestIsRetried() throws IOException {
+        when(mockUserSearchRepository.bulk(any(), anyCollection(), anyMap()))
+            .thenThrow(new IOException("Connection refused"))
+            .thenReturn(Collections.emptyMap());
+        indexer.index(user("outbox-1", "first"));
+
+        indexer.flush();
+        assertThat(indexer.size()).isEqualTo(1);
+        assertThat(meterRegistry.get("search.indexer.flush").tag("result", "failure").timer().count()).isEqualTo(1);
+        indexer.flush();
+
+        verify(mockUserSearchRepository, times(2)).bulk(any(), anyCollection(), anyMap());
+        assertThat(indexer.size()).isZero();
+        assertThat(indexer.getLag()).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    public void testRetryWaitsForBackoff() throws IOException {
+        applicationProperties.getSearch().getIndexer().setInitialBackoffMs(60000);
+        when(mockUserSearchRepository.bulk(any(), anyCollection(), anyMap())).thenThrow(new IOException("Connection refused"));
+        user("outbox-1", "first");
+        userOutboxRepository.append("outbox-1", Instant.now().minusSeconds(60));
+
+        indexer.flush();
+        indexer.flush();
+
+        verify(mockUserSearchRepository, times(1)).bulk(any(), anyCollection(), anyMap());
+        assertThat(indexer.size()).isEqualTo(1);
+        assertThat(indexer.getLag()).isGreaterThanOrEqualTo(Duration.ofSeconds(60));
+        assertThat(meterRegistry.get("search.indexer.lag").gauge().value()).isGreaterThanOrEqualTo(60);
+    }
+
+    @Test
+    public void testOnlyTransientItemFailuresAreRetried() throws IOException {
+        Map<String, Integer> failures = new HashMap<>();
+        failures.put("outbox-1", 429);
+        failures.put("outbox-2", 400);
+        when(mockUserSearchRepository.bulk(any(), anyCollection(), anyMap())).thenReturn(failures).thenReturn(Collections.emptyMap());
+        indexer.index(user("outbox-1", "first"));
+        indexer.index(user("outbox-2", "second"));
+        indexer.index(user("outbox-3", "third"));
+
+        indexer.flush();
+        assertThat(indexer.size()).isEqualTo(1);
+        assertThat(meterRegistry.get("search.indexer.dropped").counter().count()).isEqualTo(1);
+        indexer.flush();
+
+        verify(mockUserSearchRepository).bulk(isNull(), logins("first"), deletedIds());
+        assertThat(indexer.size()).isZero();
+    }
+
+    @Test
+    public void testChangeIsDroppedAfterMaxAttempts() throws IOException {
+        applicationProperties.getSearch().getIndexer().setMaxAttempts(2);
+        when(mockUserSearchRepository.bulk(any(), anyCollection(), anyMap())).thenThrow(new IOException("Connection refused"));
+        indexer.index(user("outbox-1", "first"));
+
+        indexer.flush();
+        indexer.flush();
+
+        assertThat(indexer.size()).isZero();
+        assertThat(meterRegistry.get("search.indexer.dropped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDisabledIndexerWritesOnTheCallingThread() throws IOException {
+        applicationProperties.getSearch().getIndexer().setEnabled(false);
+        User user = user("outbox-1", "first");
+
+        indexer.index(user);
+        indexer.delete(user);
+
+        verify(mockUserSearchRepository).save(user);
+        verify(mockUserSearchRepository).delete(user);
+        verify(userSearchCache, times(2)).invalidate();
+        assertThat(userOutboxRepository.count()).isZero();
+        indexer.flush();
+        verify(mockUserSearchRepository, never()).bulk(any(), anyCollection(), anyMap());
+    }
+
+    private void clearOutbox() {
+        new TransactionTemplate(transactionManager).execute(status -> jdbcTemplate.update("DELETE FROM jhi_user_outbox"));
+    }
+
+    private static Collection<User> logins(String... logins) {
+        return argThat(users -> users.stream().map(User::getLogin).collect(Collectors.toSet())
+            .equals(new HashSet<>(Arrays.asList(logins))));
+    }
+
+    private static Map<String, Instant> deletedIds(String... ids) {
+        return argThat(deletions -> deletions.keySet().equals(new HashSet<>(Arrays.asList(ids))));
+    }
+
+    /**
+     * Save a user, the indexer sends the users as they are in the database.
+     */
+    private User user(String id, String login) {
+        User user = userRepository.findById(id).orElseGet(User::new);
+        user.setId(id);
+        user.setLogin(login);
+        user.setActivated(true);
+        return userRepository.saveAndFlush(user);
+    }
+}
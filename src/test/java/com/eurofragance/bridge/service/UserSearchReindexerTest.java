@@ -0,0 +1,189 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.ReindexCheckpoint;
+import com.eurofragance.bridge.repository.search.UserSearchRepository;
+import com.eurofragance.bridge.service.dto.ReindexStatusDTO;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the {@link UserSearchReindexer} class.
+ */
+public class UserSearchReindexerTest {
+
+    private UserRepository userRepository;
+
+    private UserSearchRepository userSearchRepository;
+
+    private UserSearchCache userSearchCache;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() throws IOException {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findAllByIdGreaterThanOrderByIdAsc(eq(""), any())).thenReturn(Arrays.asList(user("1"), user("2")));
+        when(userRepository.findAllByLastModifiedDateGreaterThanEqualAndIdGreaterThanOrderByIdAsc(any(), eq(""), any()))
+            .thenReturn(Collections.singletonList(user("2")));
+        when(userRepository.findLastModifiedDatesByIdIn(anyCollection()))
+            .thenReturn(Arrays.asList(new Object[]{"1", Instant.now()}, new Object[]{"2", Instant.now()}));
+
+        userSearchRepository = mock(UserSearchRepository.class);
+        userSearchCache = mock(UserSearchCache.class);
+        when(userSearchRepository.bulk(anyString(), anyCollection(), anyMap())).thenReturn(Collections.emptyMap());
+        when(userSearchRepository.getIndices()).thenReturn(Collections.singleton("user_1"));
+        when(userSearchRepository.swapAlias(eq("user_2"), any())).thenReturn(Collections.singleton("user_1"));
+        when(userSearchRepository.createIndex()).thenAnswer(invocation -> new ReindexCheckpoint("user_2", Instant.now()));
+        doAnswer(invocation -> {
+            Consumer<List<String>> consumer = invocation.getArgument(2);
+            consumer.accept(Arrays.asList("1", "2", "3"));
+            return null;
+        }).when(userSearchRepository).scrollIds(eq("user_2"), anyInt(), any());
+
+        applicationProperties = new ApplicationProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testReindexSwapsTheAliasToACompleteIndex() throws IOException {
+        UserSearchReindexer reindexer = createReindexer(Runnable::run);
+
+        reindexer.start(true);
+
+        verify(userSearchRepository).bulk(eq("user_2"), ids("1", "2"), eq(Collections.emptyMap()));
+        verify(userSearchRepository).finishIndex("user_2", 1);
+        verify(userSearchRepository).swapAlias("user_2", Collections.singleton("user_1"));
+        verify(userSearchRepository).bulk(eq("user_2"), ids("2"), eq(Collections.emptyMap()));
+        verify(userSearchRepository).bulk(eq("user_2"), ids(), deletedIds("3"));
+        verify(userSearchRepository, atLeastOnce()).saveCheckpoint(argThat(checkpoint -> checkpoint.isCompleted() && "2".equals(checkpoint.getLastId())));
+        verify(userSearchRepository).deleteIndex("user_1");
+        verify(userSearchCache, times(2)).invalidate();
+
+        ReindexStatusDTO status = reindexer.getStatus();
+        assertThat(status.getState()).isEqualTo(ReindexStatusDTO.State.COMPLETED);
+        assertThat(status.getIndex()).isEqualTo("user_2");
+        assertThat(status.isResumed()).isFalse();
+        assertThat(status.getIndexed()).isEqualTo(2);
+        assertThat(status.getCaughtUp()).isEqualTo(1);
+        assertThat(status.getPruned()).isEqualTo(1);
+        assertThat(meterRegistry.get("search.reindex.documents").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void testReindexResumesFromTheLastCheckpoint() throws IOException {
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint("user_2", Instant.now());
+        checkpoint.setLastId("1");
+        checkpoint.setIndexed(1);
+        when(userSearchRepository.getCheckpoints()).thenReturn(Collections.singletonList(checkpoint));
+        when(userRepository.findAllByIdGreaterThanOrderByIdAsc(eq("1"), any())).thenReturn(Collections.singletonList(user("2")));
+        UserSearchReindexer reindexer = createReindexer(Runnable::run);
+
+        reindexer.start(true);
+
+        verify(userSearchRepository, never()).createIndex();
+        verify(userRepository, never()).findAllByIdGreaterThanOrderByIdAsc(eq(""), any());
+        // copied after the checkpoint, then again by the catch up
+        verify(userSearchRepository, times(2)).bulk(eq("user_2"), ids("2"), eq(Collections.emptyMap()));
+        ReindexStatusDTO status = reindexer.getStatus();
+        assertThat(status.getState()).isEqualTo(ReindexStatusDTO.State.COMPLETED);
+        assertThat(status.isResumed()).isTrue();
+        assertThat(status.getIndexed()).isEqualTo(2);
+    }
+
+    @Test
+    public void testReindexFromScratchDeletesTheInterruptedIndex() throws IOException {
+        ReindexCheckpoint checkpoint = new ReindexCheckpoint("user_0", Instant.now());
+        when(userSearchRepository.getCheckpoints()).thenReturn(Collections.singletonList(checkpoint));
+        UserSearchReindexer reindexer = createReindexer(Runnable::run);
+
+        reindexer.start(false);
+
+        verify(userSearchRepository).deleteIndex("user_0");
+        verify(userSearchRepository).createIndex();
+        assertThat(reindexer.getStatus().getState()).isEqualTo(ReindexStatusDTO.State.COMPLETED);
+    }
+
+    @Test
+    public void testRejectedDocumentsFailTheReindexBeforeTheSwap() throws IOException {
+        Map<String, Integer> failures = Collections.singletonMap("1", 400);
+        when(userSearchRepository.bulk(anyString(), anyCollection(), anyMap())).thenReturn(failures);
+        UserSearchReindexer reindexer = createReindexer(Runnable::run);
+
+        reindexer.start(true);
+
+        verify(userSearchRepository, never()).swapAlias(anyString(), any());
+        verify(userSearchRepository, never()).deleteIndex(anyString());
+        ReindexStatusDTO status = reindexer.getStatus();
+        assertThat(status.getState()).isEqualTo(ReindexStatusDTO.State.FAILED);
+        assertThat(status.getError()).contains("rejected");
+        assertThat(reindexer.isRunning()).isFalse();
+    }
+
+    @Test
+    public void testOnlyOneReindexRunsAtATime() {
+        UserSearchReindexer reindexer = createReindexer(task -> { });
+
+        reindexer.start(true);
+
+        assertThat(reindexer.isRunning()).isTrue();
+        assertThatThrownBy(() -> reindexer.start(true)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private UserSearchReindexer createReindexer(Executor executor) {
+        return new UserSearchReindexer(userRepository, userSearchRepository, userSearchCache, mock(PlatformTransactionManager.class), executor,
+            applicationProperties, meterRegistry);
+    }
+
+    private static Collection<User> ids(String... ids) {
+        return argThat(users -> users.stream().map(User::getId).collect(Collectors.toList()).equals(Arrays.asList(ids)));
+    }
+
+    private static Map<String, Instant> deletedIds(String... ids) {
+        return argThat(deletions -> deletions.keySet().equals(new HashSet<>(Arrays.asList(ids))));
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user" + id);
+        return user;
+    }
+}
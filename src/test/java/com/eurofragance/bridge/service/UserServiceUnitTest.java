@@ -0,0 +1,172 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.User;
+import com.eurofragance.bridge.repository.AuthorityRepository;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.security.AuthoritiesConstants;
+import com.eurofragance.bridge.service.dto.UserDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the IdP synchronization of {@link UserService}, without a database.
+ */
+public class UserServiceUnitTest {
+
+    private static final String DEFAULT_LOGIN = "johndoe";
+
+    private static final int PARALLEL_CALLS = 10;
+
+    private UserRepository userRepository;
+
+    private UserService userService;
+
+    private UserSyncWriteBehind userSyncWriteBehind;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void init() {
+        userRepository = mock(UserRepository.class);
+        userService = createUserService(new ApplicationProperties());
+        executor = Executors.newFixedThreadPool(PARALLEL_CALLS);
+    }
+
+    private UserService createUserService(ApplicationProperties applicationProperties) {
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserSyncCache userSyncCache = new UserSyncCache(cacheManager, applicationProperties, meterRegistry);
+        userSyncWriteBehind = new UserSyncWriteBehind(applicationProperties, meterRegistry);
+        return new UserService(userRepository, mock(UserSearchIndexer.class), new AuthorityRegistry(mock(AuthorityRepository.class)),
+            cacheManager, userSyncCache, userSyncWriteBehind, mock(CacheInvalidationBus.class), mock(UnknownLoginCache.class),
+            mock(UserCacheWarmer.class), mock(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelSyncsOfSameLoginWriteOnce() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(PARALLEL_CALLS - 1);
+        userService.getUserSyncs().setWaitListener(login -> waiting.countDown());
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            saving.countDown();
+            released.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+
+        List<Future<UserDTO>> results = new ArrayList<>();
+        for (int i = 0; i < PARALLEL_CALLS; i++) {
+            results.add(executor.submit(() -> userService.getUserFromAuthentication(createOAuth2AuthenticationToken())));
+        }
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+        // the other calls wait for the synchronization in flight before it completes
+        assertThat(waiting.await(5, TimeUnit.SECONDS)).isTrue();
+        released.countDown();
+
+        for (Future<UserDTO> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS).getLogin()).isEqualTo(DEFAULT_LOGIN);
+        }
+        verify(userRepository, times(1)).save(any(User.class));
+    }
+
+    @Test
+    public void testWriteBehindCoalescesSyncsAndWritesThemOnFlush() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUserSync().getWriteBehind().setEnabled(true);
+        userService = createUserService(applicationProperties);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.getUserFromAuthentication(createOAuth2AuthenticationToken(DEFAULT_LOGIN, "johndoe@localhost"));
+        userService.getUserFromAuthentication(createOAuth2AuthenticationToken(DEFAULT_LOGIN, "john.doe@localhost"));
+        userService.getUserFromAuthentication(createOAuth2AuthenticationToken("janedoe", "janedoe@localhost"));
+
+        assertThat(userSyncWriteBehind.size()).isEqualTo(2);
+        verify(userRepository, never()).save(any(User.class));
+
+        userService.flushPendingUserSyncs();
+
+        assertThat(userSyncWriteBehind.size()).isZero();
+        verify(userRepository, times(1)).findAllByLoginIn(any());
+        ArgumentCaptor<User> savedUsers = ArgumentCaptor.forClass(User.class);
+        verify(userRepository, times(2)).save(savedUsers.capture());
+        assertThat(savedUsers.getAllValues()).extracting(User::getEmail)
+            .containsExactly("john.doe@localhost", "janedoe@localhost");
+    }
+
+    @Test
+    public void testDisabledWriteBehindIsNotPolled() {
+        userSyncWriteBehind = mock(UserSyncWriteBehind.class);
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
+        userService = new UserService(userRepository, mock(UserSearchIndexer.class), new AuthorityRegistry(mock(AuthorityRepository.class)),
+            cacheManager, new UserSyncCache(cacheManager, new ApplicationProperties(), new SimpleMeterRegistry()), userSyncWriteBehind,
+            mock(CacheInvalidationBus.class), mock(UnknownLoginCache.class), mock(UserCacheWarmer.class), mock(PlatformTransactionManager.class));
+
+        userService.flushPendingUserSyncs();
+
+        verify(userSyncWriteBehind, never()).drain(anyInt());
+    }
+
+    @Test
+    public void testClosedWriteBehindWritesOnCallingThread() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUserSync().getWriteBehind().setEnabled(true);
+        userService = createUserService(applicationProperties);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        userService.getUserFromAuthentication(createOAuth2AuthenticationToken("janedoe", "janedoe@localhost"));
+
+        userService.drainPendingUserSyncs();
+        userService.getUserFromAuthentication(createOAuth2AuthenticationToken());
+
+        assertThat(userSyncWriteBehind.size()).isZero();
+        verify(userRepository, times(2)).save(any(User.class));
+    }
+
+    private OAuth2AuthenticationToken createOAuth2AuthenticationToken() {
+        return createOAuth2AuthenticationToken(DEFAULT_LOGIN, "johndoe@localhost");
+    }
+
+    private OAuth2AuthenticationToken createOAuth2AuthenticationToken(String login, String email) {
+        Map<String, Object> userDetails = new HashMap<>();
+        userDetails.put("sub", login);
+        userDetails.put("email", email);
+        Collection<GrantedAuthority> authorities = Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.USER));
+        return new OAuth2AuthenticationToken(new DefaultOAuth2User(authorities, userDetails, "sub"), authorities, "oidc");
+    }
+}
@@ -0,0 +1,95 @@
+package com.eurofragance.bridge.service;
+
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.domain.Authority;
+import com.eurofragance.bridge.domain.User;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link UserSyncCache}.
+ */
+public class UserSyncCacheTest {
+
+    private MeterRegistry meterRegistry;
+
+    private UserSyncCache userSyncCache;
+
+    private User user;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        userSyncCache = new UserSyncCache(new ConcurrentMapCacheManager(UserSyncCache.USER_SYNC_CACHE),
+            new ApplicationProperties(), meterRegistry);
+
+        user = new User();
+        user.setId("id1");
+        user.setLogin("johndoe");
+        user.setEmail("johndoe@localhost");
+        user.setFirstName("john");
+        user.setLastName("doe");
+        user.setLangKey("en");
+        user.setActivated(true);
+        Authority authority = new Authority();
+        authority.setName("ROLE_USER");
+        user.setAuthorities(Collections.singleton(authority));
+    }
+
+    @Test
+    public void testUnknownLoginIsNotUpToDate() {
+        assertThat(userSyncCache.isUpToDate(user)).isFalse();
+        assertThat(meterRegistry.get("user.sync.fingerprint").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSynchronizedUserWithSameClaimsIsUpToDate() {
+        userSyncCache.markSynchronized(user);
+
+        assertThat(userSyncCache.isUpToDate(user)).isTrue();
+        assertThat(meterRegistry.get("user.sync.fingerprint").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testChangedClaimsAreNotUpToDate() {
+        userSyncCache.markSynchronized(user);
+        user.setFirstName("johnny");
+
+        assertThat(userSyncCache.isUpToDate(user)).isFalse();
+    }
+
+    @Test
+    public void testChangedAuthoritiesAreNotUpToDate() {
+        userSyncCache.markSynchronized(user);
+        user.setAuthorities(Collections.emptySet());
+
+        assertThat(userSyncCache.isUpToDate(user)).isFalse();
+    }
+
+    @Test
+    public void testEvictedLoginIsNotUpToDate() {
+        userSyncCache.markSynchronized(user);
+        userSyncCache.evict(user.getLogin());
+
+        assertThat(userSyncCache.isUpToDate(user)).isFalse();
+    }
+
+    @Test
+    public void testExpiredEntryIsNotUpToDate() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUserSync().getFingerprintCache().setTimeToLiveSeconds(0);
+        userSyncCache = new UserSyncCache(new ConcurrentMapCacheManager(UserSyncCache.USER_SYNC_CACHE),
+            applicationProperties, meterRegistry);
+        userSyncCache.markSynchronized(user);
+
+        assertThat(userSyncCache.isUpToDate(user)).isFalse();
+    }
+}
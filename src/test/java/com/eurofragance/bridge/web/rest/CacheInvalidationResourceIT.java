@@ -0,0 +1,91 @@
+package com.eurofragance.bridge.web.rest;
+
+import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.ApplicationProperties;
+import com.eurofragance.bridge.config.TestSecurityConfiguration;
+import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.service.CacheInvalidationBus;
+import com.eurofragance.bridge.web.rest.errors.ExceptionTranslator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the {@link CacheInvalidationResource} REST controller.
+ */
+@SpringBootTest(classes = {BridgeApp.class, TestSecurityConfiguration.class})
+public class CacheInvalidationResourceIT {
+
+    private static final String SECRET = "secret";
+
+    private static final String INVALIDATION = "{\"origin\":\"peer\",\"evictions\":{\"" +
+        UserRepository.USERS_BY_LOGIN_CACHE + "\":[\"johndoe\"]},\"clears\":[]}";
+
+    @Autowired
+    private javax.cache.CacheManager cacheManager;
+
+    @Autowired
+    private DiscoveryClient discoveryClient;
+
+    @Autowired
+    private ObjectProvider<Registration> registration;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restCacheInvalidationMockMvc;
+
+    @BeforeEach
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getInvalidation().setEnabled(true);
+        applicationProperties.getCache().getInvalidation().setSecret(SECRET);
+        CacheInvalidationBus cacheInvalidationBus = new CacheInvalidationBus(cacheManager, discoveryClient, registration,
+            new RestTemplateBuilder(), applicationProperties, new SimpleMeterRegistry());
+        this.restCacheInvalidationMockMvc = MockMvcBuilders.standaloneSetup(new CacheInvalidationResource(cacheInvalidationBus))
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(jacksonMessageConverter)
+            .build();
+        cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).put("johndoe", "cached");
+    }
+
+    @Test
+    public void testInvalidationsAreApplied() throws Exception {
+        restCacheInvalidationMockMvc.perform(post(CacheInvalidationBus.PATH)
+            .header(CacheInvalidationBus.SECRET_HEADER, SECRET)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(INVALIDATION))
+            .andExpect(status().isNoContent());
+
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).containsKey("johndoe")).isFalse();
+    }
+
+    @Test
+    public void testInvalidationsWithWrongSecretAreRejected() throws Exception {
+        restCacheInvalidationMockMvc.perform(post(CacheInvalidationBus.PATH)
+            .header(CacheInvalidationBus.SECRET_HEADER, "wrong")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(INVALIDATION))
+            .andExpect(status().isForbidden());
+
+        assertThat(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).containsKey("johndoe")).isTrue();
+    }
+}
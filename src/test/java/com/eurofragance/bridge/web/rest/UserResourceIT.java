@@ -1,13 +1,20 @@
 package com.eurofragance.bridge.web.rest;
 
 import com.eurofragance.bridge.BridgeApp;
+import com.eurofragance.bridge.config.ApplicationProperties;
 import com.eurofragance.bridge.config.TestSecurityConfiguration;
 import com.eurofragance.bridge.domain.Authority;
 import com.eurofragance.bridge.domain.User;
 import com.eurofragance.bridge.repository.UserRepository;
+import com.eurofragance.bridge.repository.search.SearchAfterPage;
+import com.eurofragance.bridge.repository.search.UserFacets;
+import com.eurofragance.bridge.repository.search.UserSearchHit;
 import com.eurofragance.bridge.repository.search.UserSearchRepository;
 import com.eurofragance.bridge.security.AuthoritiesConstants;
 
+import com.eurofragance.bridge.service.UserFacetService;
+import com.eurofragance.bridge.service.UserSearchCache;
+import com.eurofragance.bridge.service.UserSearchExporter;
 import com.eurofragance.bridge.service.UserService;
 import com.eurofragance.bridge.service.dto.UserDTO;
 import com.eurofragance.bridge.service.mapper.UserMapper;
@@ -15,23 +22,38 @@ import com.eurofragance.bridge.web.rest.errors.ExceptionTranslator;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -71,6 +93,18 @@ public class UserResourceIT {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserSearchCache userSearchCache;
+
+    @Autowired
+    private UserSearchExporter userSearchExporter;
+
+    @Autowired
+    private UserFacetService userFacetService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private UserMapper userMapper;
 
@@ -97,12 +131,14 @@ public class UserResourceIT {
     public void setup() {
         cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE).clear();
         cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE).clear();
-        UserResource userResource = new UserResource(userService, mockUserSearchRepository);
+        cacheManager.getCache(UserSearchCache.USER_SEARCH_CACHE).clear();
+        UserResource userResource = new UserResource(userService, userSearchCache, userSearchExporter, userFacetService,
+            applicationProperties);
 
         this.restUserMockMvc = MockMvcBuilders.standaloneSetup(userResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
-            .setMessageConverters(jacksonMessageConverter)
+            .setMessageConverters(jacksonMessageConverter, new ByteArrayHttpMessageConverter())
             .build();
     }
 
@@ -125,6 +161,24 @@ public class UserResourceIT {
         return user;
     }
 
+    /**
+     * Create the search hit of a User, with the fields of the index.
+     */
+    public static UserSearchHit searchHit(User user) {
+        UserSearchHit hit = new UserSearchHit();
+        hit.setId(user.getId());
+        hit.setLogin(user.getLogin());
+        hit.setFirstName(user.getFirstName());
+        hit.setLastName(user.getLastName());
+        hit.setEmail(user.getEmail());
+        hit.setImageUrl(user.getImageUrl());
+        hit.setActivated(user.getActivated());
+        hit.setLangKey(user.getLangKey());
+        hit.setCreatedDate(user.getCreatedDate());
+        hit.setLastModifiedDate(user.getLastModifiedDate());
+        return hit;
+    }
+
     @BeforeEach
     public void initTest() {
         user = createEntity(em);
@@ -182,6 +236,165 @@ public class UserResourceIT {
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void searchUsers() throws Exception {
+        user.setCreatedDate(Instant.parse("2020-01-01T00:00:00Z"));
+        when(mockUserSearchRepository.searchPage(eq("john*"), any(), isNull()))
+            .thenAnswer(invocation -> new SearchAfterPage<>(Collections.singletonList(searchHit(user)), invocation.getArgument(1), 300, "cursor"));
+
+        restUserMockMvc.perform(get("/api/_search/users/john*?size=1000&sort=login,asc")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string("X-Total-Count", "300"))
+            .andExpect(header().string(UserResource.SEARCH_AFTER_HEADER, "cursor"))
+            .andExpect(jsonPath("$.[*].login").value(hasItem(DEFAULT_LOGIN)))
+            .andExpect(jsonPath("$.[*].email").value(hasItem(DEFAULT_EMAIL)))
+            .andExpect(jsonPath("$.[*].createdDate").value(hasItem("2020-01-01T00:00:00Z")))
+            .andExpect(jsonPath("$.[0].authorities").doesNotExist());
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(mockUserSearchRepository).searchPage(eq("john*"), pageable.capture(), isNull());
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(applicationProperties.getSearch().getMaxPageSize());
+        assertThat(pageable.getValue().getSort().getOrderFor("login")).isNotNull();
+    }
+
+    @Test
+    public void searchUsersAfterCursor() throws Exception {
+        when(mockUserSearchRepository.searchPage(eq("john*"), any(), eq("cursor")))
+            .thenAnswer(invocation -> new SearchAfterPage<>(Collections.singletonList(searchHit(user)), invocation.getArgument(1), 300, null));
+
+        restUserMockMvc.perform(get("/api/_search/users/john*?page=1&size=20&searchAfter=cursor")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(UserResource.SEARCH_AFTER_HEADER))
+            .andExpect(header().string("Link", not(containsString("searchAfter"))))
+            .andExpect(jsonPath("$.[*].login").value(hasItem(DEFAULT_LOGIN)));
+    }
+
+    @Test
+    public void searchUsersWithInvalidSort() throws Exception {
+        when(mockUserSearchRepository.searchPage(any(), any(), any())).thenThrow(new IllegalArgumentException("Users cannot be sorted by password"));
+
+        restUserMockMvc.perform(get("/api/_search/users/john*?sort=password,asc")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportUsers() throws Exception {
+        user.setCreatedDate(Instant.parse("2020-01-01T00:00:00Z"));
+        UserSearchHit other = new UserSearchHit();
+        other.setId("id2");
+        other.setLogin("janedoe");
+        other.setEmail("janedoe@localhost");
+        doAnswer(invocation -> {
+            Consumer<List<UserSearchHit>> consumer = invocation.getArgument(3);
+            consumer.accept(Collections.singletonList(searchHit(user)));
+            consumer.accept(Collections.singletonList(other));
+            return null;
+        }).when(mockUserSearchRepository).scrollSearch(eq("*doe"), anyInt(), any(), any());
+        when(mockUserSearchRepository.searchPage(eq("*doe"), any(), isNull()))
+            .thenAnswer(invocation -> new SearchAfterPage<>(Collections.singletonList(searchHit(user)), invocation.getArgument(1), 2, null));
+
+        MvcResult result = restUserMockMvc.perform(get("/api/_export/users/*doe"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        // the timeout of the export, not the one of the other asynchronous requests
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(applicationProperties.getSearch().getExport().getTimeoutMs());
+        String body = restUserMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(UserSearchExporter.NDJSON_VALUE))
+            .andExpect(header().string("Content-Disposition", containsString("users.ndjson")))
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"login\":\"" + DEFAULT_LOGIN + "\"", "\"createdDate\":\"2020-01-01T00:00:00Z\"")
+            .doesNotContain("password").doesNotContain("authorities");
+        assertThat(lines[1]).contains("\"login\":\"janedoe\"");
+        verify(mockUserSearchRepository).scrollSearch(eq("*doe"), eq(applicationProperties.getSearch().getExport().getBatchSize()), any(), any());
+    }
+
+    @Test
+    public void exportUsersWithInvalidQuery() throws Exception {
+        when(mockUserSearchRepository.searchPage(eq("login:("), any(), isNull())).thenThrow(new IllegalArgumentException("Invalid query login:("));
+
+        restUserMockMvc.perform(get("/api/_export/users/login:("))
+            .andExpect(status().isBadRequest());
+
+        verify(mockUserSearchRepository, never()).scrollSearch(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    @Transactional
+    public void getUserFacets() throws Exception {
+        Set<Authority> authorities = new HashSet<>();
+        Authority authority = new Authority();
+        authority.setName(AuthoritiesConstants.ADMIN);
+        authorities.add(authority);
+        user.setAuthorities(authorities);
+        userRepository.saveAndFlush(user);
+        long admins = userRepository.countByAuthority().stream()
+            .filter(row -> AuthoritiesConstants.ADMIN.equals(row[0]))
+            .mapToLong(row -> (Long) row[1])
+            .sum();
+        Map<Instant, Long> createdDates = new LinkedHashMap<>();
+        createdDates.put(Instant.parse("2020-01-01T00:00:00Z"), 2L);
+        createdDates.put(Instant.parse("2020-01-06T00:00:00Z"), 0L);
+        createdDates.put(Instant.parse("2020-01-13T00:00:00Z"), 1L);
+        when(mockUserSearchRepository.facets(UserFacets.Interval.WEEK)).thenReturn(new UserFacets(3,
+            Collections.singletonMap(DEFAULT_LANGKEY, 3L), Collections.singletonMap(true, 3L), createdDates));
+
+        restUserMockMvc.perform(get("/api/_facets/users?interval=week")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.total").value(3))
+            .andExpect(jsonPath("$.interval").value("week"))
+            .andExpect(jsonPath("$.langKeys." + DEFAULT_LANGKEY).value(3))
+            .andExpect(jsonPath("$.activated.true").value(3))
+            .andExpect(jsonPath("$.authorities." + AuthoritiesConstants.ADMIN).value((int) admins))
+            .andExpect(jsonPath("$.createdDates.length()").value(3))
+            .andExpect(jsonPath("$.createdDates['2020-01-06T00:00:00Z']").value(0));
+
+        assertThat(admins).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void getUserFacetsWithInvalidInterval() throws Exception {
+        restUserMockMvc.perform(get("/api/_facets/users?interval=fortnight")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+
+        verify(mockUserSearchRepository, never()).facets(any());
+    }
+
+    @Test
+    public void suggestUsers() throws Exception {
+        when(mockUserSearchRepository.suggest(eq("jo do"), anyInt())).thenReturn(Collections.singletonList(user));
+
+        restUserMockMvc.perform(get("/api/_suggest/users?prefix=jo do&size=1000")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].login").value(hasItem(DEFAULT_LOGIN)))
+            .andExpect(jsonPath("$.[*].displayName").value(hasItem(DEFAULT_FIRSTNAME + " " + DEFAULT_LASTNAME)))
+            .andExpect(jsonPath("$.[*].email").doesNotExist());
+
+        verify(mockUserSearchRepository).suggest("jo do", applicationProperties.getSearch().getMaxSuggestions());
+    }
+
+    @Test
+    public void suggestUsersWithBlankPrefix() throws Exception {
+        restUserMockMvc.perform(get("/api/_suggest/users?prefix= ")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+
+        verify(mockUserSearchRepository, never()).suggest(any(), anyInt());
+    }
+
     @Test
     @Transactional
     public void getAllAuthorities() throws Exception {